@@ -1,13 +1,13 @@
 package matt.noobgraphics;
 
-import android.opengl.GLSurfaceView;
+import android.content.ComponentCallbacks2;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 
 import matt.noobgraphics.graphics.MyGLSurfaceView;
 
 public class MainActivity extends AppCompatActivity {
-    private GLSurfaceView mGLView;
+    private MyGLSurfaceView mGLView;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -24,9 +24,8 @@ public class MainActivity extends AppCompatActivity {
     protected void onPause() {
         super.onPause();
         // The following call pauses the rendering thread.
-        // If your OpenGL application is memory intensive,
-        // you should consider de-allocating objects that
-        // consume significant memory here.
+        // It also frees the renderer's GL objects, which
+        // are recreated as they are drawn after resuming.
         mGLView.onPause();
     }
 
@@ -34,8 +33,15 @@ public class MainActivity extends AppCompatActivity {
     protected void onResume() {
         super.onResume();
         // The following call resumes a paused rendering thread.
-        // If you de-allocated graphic objects for onPause()
-        // this is a good place to re-allocate them.
+        // Objects freed in onPause() come back lazily on use.
         mGLView.onResume();
     }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // nothing is drawn while hidden, so GL objects are only taking memory
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)
+            mGLView.releaseGLResources();
+    }
 }
\ No newline at end of file
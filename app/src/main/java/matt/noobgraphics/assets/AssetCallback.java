@@ -0,0 +1,11 @@
+package matt.noobgraphics.assets;
+
+/**
+ * Told when an {@link AssetLoader} request finishes. Both methods run on the GL thread, from
+ * {@link AssetLoader#drainUploads}, so the asset can be drawn right away.
+ */
+public interface AssetCallback<T> {
+    void onLoaded(T asset);
+
+    void onFailed(Throwable error);
+}
@@ -0,0 +1,31 @@
+package matt.noobgraphics.assets;
+
+import java.io.IOException;
+
+import matt.noobgraphics.graphics.gl.GLBackend;
+
+/**
+ * Loads one asset for an {@link AssetLoader}, in two steps: {@link #decode} reads and parses it
+ * on a worker thread into CPU buffers ready for GL, then {@link #upload} hands those to GL on
+ * the GL thread. Decode should do everything that doesn't need GL, so upload is little more
+ * than glBufferData / glTexImage2D calls.
+ *
+ * @param <T> the drawable result
+ */
+public interface AssetJob<T> {
+    /**
+     * Worker thread. Reads and parses the asset.
+     */
+    void decode() throws IOException;
+
+    /**
+     * @return bytes {@link #upload} will hand to GL, counted against the per-frame upload budget.
+     *         Called on the GL thread after decode.
+     */
+    int getUploadBytes();
+
+    /**
+     * GL thread. Creates the GL objects; the job's CPU buffers may be dropped afterwards.
+     */
+    T upload(GLBackend gl);
+}
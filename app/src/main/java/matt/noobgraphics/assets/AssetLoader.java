@@ -0,0 +1,166 @@
+package matt.noobgraphics.assets;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import matt.noobgraphics.graphics.gl.GLBackend;
+import matt.noobgraphics.input.LatencyStats;
+import matt.noobgraphics.timing.Clock;
+
+/**
+ * Loads assets without stalling frames: {@link AssetJob#decode} runs on worker threads, and
+ * decoded jobs queue up for the GL thread, which uploads some of them each frame in
+ * {@link #drainUploads} within a time and byte budget. Requests complete, and callbacks run,
+ * on the GL thread as soon as their asset is drawable.
+ *
+ * {@link #load} may be called from any thread; everything else on the GL thread. Queue depths
+ * are safe to read from anywhere.
+ */
+public class AssetLoader {
+    private final GLBackend mGL;
+    private final Executor mWorkers;
+    private final Clock mClock;
+
+    private final ConcurrentLinkedQueue<AssetRequest<?>> mDecoded = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mDecodeDepth = new AtomicInteger();
+    private final AtomicInteger mUploadDepth = new AtomicInteger();
+
+    // GL thread only
+    private final LatencyStats mLoadLatency = new LatencyStats();
+    private final LatencyStats mUploadWait = new LatencyStats();
+    private long mLoaded;
+    private long mFailed;
+    private long mBytesUploaded;
+    private long mLastDrainNanos;
+    private int mLastDrainCount;
+
+    /**
+     * @param gl the GL uploads go to
+     * @param workers runs decodes, e.g. a small fixed thread pool
+     * @param clock time source for budgets and latency
+     */
+    public AssetLoader(GLBackend gl, Executor workers, Clock clock) {
+        mGL = gl;
+        mWorkers = workers;
+        mClock = clock;
+    }
+
+    /**
+     * Starts loading an asset. Any thread.
+     * @param callback told on the GL thread when the asset is drawable or failed; may be null
+     * @throws java.util.concurrent.RejectedExecutionException if the workers won't take the
+     *         decode, e.g. after shutdown; nothing was queued then
+     */
+    public <T> AssetRequest<T> load(AssetJob<T> job, AssetCallback<T> callback) {
+        final AssetRequest<T> request = new AssetRequest<>(job, callback, mClock.nanoTime());
+        mDecodeDepth.incrementAndGet();
+        try {
+            mWorkers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    decode(request);
+                }
+            });
+        } catch (RuntimeException e) {
+            mDecodeDepth.decrementAndGet();
+            throw e;
+        }
+        return request;
+    }
+
+    private void decode(AssetRequest<?> request) {
+        try {
+            if (!request.isCancelled())
+                request.mJob.decode();
+        } catch (Throwable e) {
+            // reported from the GL thread like every other completion
+            request.mError = e;
+        }
+        request.mDecodedNanos = mClock.nanoTime();
+        mUploadDepth.incrementAndGet();
+        mDecoded.add(request);
+        mDecodeDepth.decrementAndGet();
+    }
+
+    /**
+     * GL thread, once per frame. Uploads decoded assets in the order they finished decoding until
+     * the next one would go over either budget. At least one is uploaded if any is waiting, so a
+     * single asset bigger than the budget still gets through.
+     * @param budgetNanos time to spend uploading
+     * @param budgetBytes bytes to upload
+     * @return how many requests completed
+     */
+    public int drainUploads(long budgetNanos, long budgetBytes) {
+        long start = mClock.nanoTime();
+        long bytes = 0;
+        int completed = 0;
+        AssetRequest<?> request;
+        while ((request = mDecoded.peek()) != null) {
+            if (completed > 0) {
+                if (mClock.nanoTime() - start >= budgetNanos)
+                    break;
+                if (request.mError == null && !request.isCancelled()
+                        && bytes + request.mJob.getUploadBytes() > budgetBytes)
+                    break;
+            }
+            mDecoded.poll();
+            mUploadDepth.decrementAndGet();
+            if (!request.startUpload())
+                continue;           // cancelled
+            bytes += upload(request);
+            completed++;
+        }
+        mLastDrainNanos = mClock.nanoTime() - start;
+        mLastDrainCount = completed;
+        return completed;
+    }
+
+    private <T> int upload(AssetRequest<T> request) {
+        long now = mClock.nanoTime();
+        if (request.mError != null) {
+            mFailed++;
+            request.failed(request.mError);
+            return 0;
+        }
+        T asset;
+        int bytes;
+        try {
+            bytes = request.mJob.getUploadBytes();
+            asset = request.mJob.upload(mGL);
+        } catch (Throwable e) {
+            // anything else would leave the request uploading forever
+            mFailed++;
+            request.failed(e);
+            return 0;
+        }
+        mUploadWait.record(now - request.mDecodedNanos);
+        mLoadLatency.record(mClock.nanoTime() - request.mRequestNanos);
+        mLoaded++;
+        mBytesUploaded += bytes;
+        request.loaded(asset);
+        return bytes;
+    }
+
+    /** @return requests waiting for or in decode. Any thread. */
+    public int getDecodeQueueDepth() { return mDecodeDepth.get(); }
+
+    /** @return decoded requests waiting for the GL thread. Any thread. */
+    public int getUploadQueueDepth() { return mUploadDepth.get(); }
+
+    /** @return time from {@link #load} to drawable */
+    public LatencyStats getLoadLatency() { return mLoadLatency; }
+
+    /** @return time decoded assets waited for upload, i.e. what the budget costs */
+    public LatencyStats getUploadWait() { return mUploadWait; }
+
+    public long getLoadedCount() { return mLoaded; }
+    public long getFailedCount() { return mFailed; }
+    public long getBytesUploaded() { return mBytesUploaded; }
+
+    /** @return time the last {@link #drainUploads} took */
+    public long getLastDrainNanos() { return mLastDrainNanos; }
+
+    /** @return requests the last {@link #drainUploads} completed */
+    public int getLastDrainCount() { return mLastDrainCount; }
+}
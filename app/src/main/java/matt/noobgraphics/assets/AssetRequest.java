@@ -0,0 +1,112 @@
+package matt.noobgraphics.assets;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One asset on its way through an {@link AssetLoader}. Done once the asset is uploaded and
+ * drawable, or failed, or cancelled.
+ *
+ * {@link #cancel} succeeds until the upload starts: a cancelled job is skipped wherever it is, so
+ * it never creates GL objects that nobody would release. get() must not be called on the GL
+ * thread, which is the one that completes requests.
+ */
+public class AssetRequest<T> implements Future<T> {
+    static final int PENDING = 0;
+    static final int UPLOADING = 1;
+    static final int LOADED = 2;
+    static final int FAILED = 3;
+    static final int CANCELLED = 4;
+
+    final AssetJob<T> mJob;
+    final AssetCallback<T> mCallback;
+    final long mRequestNanos;
+    // written by the worker before the request is queued for upload
+    long mDecodedNanos;
+    Throwable mError;
+
+    private final AtomicInteger mState = new AtomicInteger(PENDING);
+    private final CountDownLatch mDone = new CountDownLatch(1);
+    private T mAsset;
+
+    AssetRequest(AssetJob<T> job, AssetCallback<T> callback, long requestNanos) {
+        mJob = job;
+        mCallback = callback;
+        mRequestNanos = requestNanos;
+    }
+
+    public AssetJob<T> getJob() { return mJob; }
+
+    /** @return false if the request was cancelled meanwhile */
+    boolean startUpload() {
+        return mState.compareAndSet(PENDING, UPLOADING);
+    }
+
+    void loaded(T asset) {
+        mAsset = asset;
+        mState.set(LOADED);
+        mDone.countDown();
+        if (mCallback != null)
+            mCallback.onLoaded(asset);
+    }
+
+    void failed(Throwable error) {
+        mError = error;
+        mState.set(FAILED);
+        mDone.countDown();
+        if (mCallback != null)
+            mCallback.onFailed(error);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!mState.compareAndSet(PENDING, CANCELLED))
+            return false;
+        mDone.countDown();
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return mState.get() == CANCELLED;
+    }
+
+    @Override
+    public boolean isDone() {
+        return mState.get() >= LOADED;
+    }
+
+    /** @return true once the asset is uploaded and drawable */
+    public boolean isLoaded() {
+        return mState.get() == LOADED;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        mDone.await();
+        return result();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!mDone.await(timeout, unit))
+            throw new TimeoutException();
+        return result();
+    }
+
+    private T result() throws ExecutionException {
+        switch (mState.get()) {
+            case LOADED:
+                return mAsset;
+            case CANCELLED:
+                throw new CancellationException();
+            default:
+                throw new ExecutionException(mError);
+        }
+    }
+}
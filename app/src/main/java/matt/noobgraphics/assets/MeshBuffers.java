@@ -0,0 +1,62 @@
+package matt.noobgraphics.assets;
+
+import matt.noobgraphics.graphics.GLResources;
+import matt.noobgraphics.mesh.VertexLayout;
+
+/**
+ * A mesh in GL buffer objects: one interleaved GL_ARRAY_BUFFER of {@link #getLayout()} and one
+ * GL_ELEMENT_ARRAY_BUFFER holding the base mesh's indices followed by its LODs'. The buffers are
+ * {@link GLResources} handles, so look their names up each frame rather than keeping them.
+ */
+public class MeshBuffers {
+    private final GLResources mResources;
+    private final int mVertexBuffer;        // GLResources handles
+    private final int mIndexBuffer;
+    private final VertexLayout mLayout;
+    private final int mIndexType;
+    private final int mIndexCount;
+    private final int mBytes;
+    // decodes quantized positions, null for float ones
+    private final float[] mPositionDecode;
+
+    MeshBuffers(GLResources resources, int vertexBuffer, int indexBuffer, VertexLayout layout, int indexType,
+                int indexCount, int bytes, float[] positionDecode) {
+        mResources = resources;
+        mVertexBuffer = vertexBuffer;
+        mIndexBuffer = indexBuffer;
+        mLayout = layout;
+        mIndexType = indexType;
+        mIndexCount = indexCount;
+        mBytes = bytes;
+        mPositionDecode = positionDecode;
+    }
+
+    /** @return the vertex buffer's GL name, recreated first if it isn't resident. GL thread. */
+    public int getVertexBuffer() { return mResources.get(mVertexBuffer); }
+
+    /** @return the index buffer's GL name, recreated first if it isn't resident. GL thread. */
+    public int getIndexBuffer() { return mResources.get(mIndexBuffer); }
+
+    public VertexLayout getLayout() { return mLayout; }
+    public int getIndexType() { return mIndexType; }
+
+    /** @return indices of the base mesh, the first ones in the index buffer */
+    public int getIndexCount() { return mIndexCount; }
+
+    /** @return bytes of buffer object storage */
+    public int getBytes() { return mBytes; }
+
+    /**
+     * @return the matrix that maps quantized positions to model space, or null if positions are
+     *         floats
+     */
+    public float[] getPositionDecodeMatrix() { return mPositionDecode; }
+
+    /**
+     * Deletes the buffer objects and lets go of their data. GL thread.
+     */
+    public void release() {
+        mResources.release(mVertexBuffer);
+        mResources.release(mIndexBuffer);
+    }
+}
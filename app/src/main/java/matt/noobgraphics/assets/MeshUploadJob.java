@@ -0,0 +1,126 @@
+package matt.noobgraphics.assets;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import android.opengl.GLES20;
+
+import matt.noobgraphics.graphics.GLResources;
+import matt.noobgraphics.graphics.gl.GLBackend;
+import matt.noobgraphics.mesh.MappedMesh;
+import matt.noobgraphics.mesh.MeshFile;
+import matt.noobgraphics.mesh.VertexLayout;
+
+/**
+ * Loads a {@link MeshFile} into {@link MeshBuffers}. The file is read whole into a direct buffer
+ * on the worker, rather than memory mapped, so the GL thread never waits on page faults while
+ * glBufferData copies it.
+ *
+ * The buffer objects are registered with {@link GLResources}: they count against its budget,
+ * and come back after a trim, an eviction or a lost context. The decoded copy is dropped after
+ * the first upload; later ones map the file again on the GL thread, so an evicted mesh holds no
+ * memory at all.
+ */
+public class MeshUploadJob implements AssetJob<MeshBuffers> {
+    private final File mFile;
+    private final GLResources mResources;
+    private MappedMesh mMesh;
+
+    /**
+     * @param resources owner of the buffer objects, used on the GL thread
+     */
+    public MeshUploadJob(File file, GLResources resources) {
+        mFile = file;
+        mResources = resources;
+    }
+
+    @Override
+    public void decode() throws IOException {
+        FileInputStream in = new FileInputStream(mFile);
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer data = ByteBuffer.allocateDirect((int) channel.size());
+            while (data.hasRemaining())
+                if (channel.read(data) < 0)
+                    throw new IOException("Unexpected end of " + mFile);
+            data.flip();
+            mMesh = new MappedMesh(data);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Override
+    public int getUploadBytes() {
+        return vertexBytes() + indexBytes();
+    }
+
+    private int vertexBytes() {
+        return mMesh.getVertexCount() * mMesh.getVertexStride();
+    }
+
+    private int indexBytes() {
+        return mMesh.getIndices().remaining() * VertexLayout.typeSize(mMesh.getIndexType());
+    }
+
+    @Override
+    public MeshBuffers upload(GLBackend gl) {
+        int vertices = mResources.register(GLResources.BUFFER,
+                new FileSource(mFile, GLES20.GL_ARRAY_BUFFER, mMesh, vertexBytes()));
+        int indices = mResources.register(GLResources.BUFFER,
+                new FileSource(mFile, GLES20.GL_ELEMENT_ARRAY_BUFFER, mMesh, indexBytes()));
+        // drawable as soon as the request completes
+        mResources.get(vertices);
+        mResources.get(indices);
+
+        float[] decode = mMesh.hasQuantizedPositions() ? mMesh.getPositionDecodeMatrix(new float[16], 0) : null;
+        MeshBuffers mesh = new MeshBuffers(mResources, vertices, indices, mMesh.getLayout(), mMesh.getIndexType(),
+                mMesh.getIndexCount(), getUploadBytes(), decode);
+        // the sources let go of the decoded copy once they have uploaded it
+        mMesh = null;
+        return mesh;
+    }
+
+    /**
+     * The vertex or index data of a mesh file: the decoded mesh for the first upload, the file
+     * mapped again for any after that.
+     */
+    private static class FileSource implements GLResources.Source {
+        private final File mFile;
+        private final int mTarget;
+        private final int mBytes;
+        private MappedMesh mDecoded;
+
+        FileSource(File file, int target, MappedMesh decoded, int bytes) {
+            mFile = file;
+            mTarget = target;
+            mDecoded = decoded;
+            mBytes = bytes;
+        }
+
+        @Override
+        public int create(GLBackend gl) {
+            MappedMesh mesh = mDecoded;
+            if (mesh == null) {
+                try {
+                    mesh = MappedMesh.open(mFile);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Can't reload " + mFile, e);
+                }
+            }
+            Buffer data = mTarget == GLES20.GL_ARRAY_BUFFER ? mesh.getVertexData() : mesh.getIndices();
+            int name = GLResources.buffer(mTarget, data, mBytes).create(gl);
+            mDecoded = null;
+            return name;
+        }
+
+        @Override
+        public int getBytes() {
+            return mBytes;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package matt.noobgraphics.concurrent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free handoff of state snapshots from one producer thread (e.g. the UI thread) to one
+ * consumer thread (e.g. the GL thread).
+ *
+ * There are three slots: the producer owns one (back), the consumer owns one (front), and the
+ * third (middle) holds the most recently published snapshot. Publishing and acquiring are each
+ * a single atomic swap with the middle slot, so neither side ever blocks or waits for the other,
+ * and the consumer always sees a complete snapshot, never a half-written one.
+ *
+ * The slot handed out by {@link #beginWrite()} contains whatever was written into it a couple of
+ * publishes ago, so producers must write the whole snapshot, not just what changed.
+ *
+ * @param <T> the snapshot type. Slots are reused, never reallocated.
+ */
+public class TripleBuffer<T> {
+    // state = index of the middle slot, plus FRESH if it was published since the last acquire
+    private static final int INDEX_MASK = 0x3;
+    private static final int FRESH = 0x4;
+
+    private final Object[] mSlots;
+    private final AtomicInteger mState;
+
+    // only touched by the producer
+    private int mBack;
+    private long mPublished;
+
+    // only touched by the consumer
+    private int mFront;
+    private long mAcquired;
+
+    /**
+     * @param initial the snapshot the consumer sees before anything is published
+     * @param spare1 a second, distinct snapshot instance
+     * @param spare2 a third, distinct snapshot instance
+     */
+    public TripleBuffer(T initial, T spare1, T spare2) {
+        if (initial == spare1 || initial == spare2 || spare1 == spare2)
+            throw new IllegalArgumentException("TripleBuffer slots must be distinct objects");
+        mSlots = new Object[] { initial, spare1, spare2 };
+        mFront = 0;
+        mState = new AtomicInteger(1);
+        mBack = 2;
+    }
+
+    /**
+     * Producer side. Returns the slot to fill in; call {@link #publish()} when it is complete.
+     * @return the producer's private slot
+     */
+    @SuppressWarnings("unchecked")
+    public T beginWrite() {
+        return (T) mSlots[mBack];
+    }
+
+    /**
+     * Producer side. Makes the slot from {@link #beginWrite()} the latest snapshot.
+     */
+    public void publish() {
+        int old = mState.getAndSet(mBack | FRESH);
+        mBack = old & INDEX_MASK;
+        mPublished++;
+    }
+
+    /**
+     * Consumer side. Returns the most recently published snapshot, or the same one as last time
+     * if nothing new was published. The result stays valid until the next call.
+     * @return the consumer's current snapshot
+     */
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        if ((mState.get() & FRESH) != 0) {
+            int old = mState.getAndSet(mFront);
+            mFront = old & INDEX_MASK;
+            mAcquired++;
+        }
+        return (T) mSlots[mFront];
+    }
+
+    /**
+     * Safe from either side.
+     * @return true if a snapshot was published since the last {@link #acquire()}
+     */
+    public boolean hasUpdate() {
+        return (mState.get() & FRESH) != 0;
+    }
+
+    /**
+     * @return number of snapshots published. Only meaningful on the producer thread.
+     */
+    public long getPublishedCount() { return mPublished; }
+
+    /**
+     * @return number of new snapshots picked up. Only meaningful on the consumer thread.
+     */
+    public long getAcquiredCount() { return mAcquired; }
+}
@@ -0,0 +1,19 @@
+package matt.noobgraphics.debug;
+
+/**
+ * Source of a per-thread "bytes allocated so far" counter. Only differences between two reads
+ * on the same thread are meaningful.
+ */
+public interface AllocationCounter {
+    /**
+     * @return false if this platform can't count allocations, in which case
+     * {@link #allocatedBytes()} always returns 0
+     */
+    boolean isSupported();
+
+    /**
+     * Must not allocate itself, otherwise it shows up in every measurement.
+     * @return the running total of bytes allocated by the calling thread
+     */
+    long allocatedBytes();
+}
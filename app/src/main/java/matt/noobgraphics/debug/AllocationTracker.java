@@ -0,0 +1,179 @@
+package matt.noobgraphics.debug;
+
+import java.util.Arrays;
+
+/**
+ * Measures how many bytes the render thread allocates per frame, and which named scopes they
+ * come from. Allocations in the render loop are what cause GC pauses and frame hitches, so in
+ * steady state this should read 0.
+ *
+ * Scopes are registered once up front and then referred to by id, so begin/end themselves don't
+ * allocate. Bytes are attributed to the innermost open scope only (self bytes, not inclusive).
+ * Anything allocated in a frame outside of all scopes is counted as {@link #UNSCOPED}.
+ *
+ * When disabled every method is a no-op, so the renderer can call it unconditionally.
+ *
+ * Not thread safe: use one tracker per thread being measured.
+ */
+public class AllocationTracker {
+    public static final int UNSCOPED = 0;
+
+    private static final int MAX_DEPTH = 32;
+
+    private final AllocationCounter mCounter;
+    private boolean mEnabled;
+
+    private String[] mScopeNames = new String[8];
+    private long[] mScopeBytes = new long[8];
+    private int mScopeCount;
+
+    private final int[] mStack = new int[MAX_DEPTH];
+    private int mDepth;
+    private long mMark;
+    private long mFrameStart;
+
+    private long mFrames;
+    private long mLastFrameBytes;
+    private long mMaxFrameBytes;
+    private long mTotalBytes;
+
+    /**
+     * @param counter where allocation numbers come from. Tracking only turns on if the counter
+     *                is supported.
+     */
+    public AllocationTracker(AllocationCounter counter) {
+        mCounter = counter;
+        mEnabled = counter != null && counter.isSupported();
+        mScopeNames[UNSCOPED] = "(unscoped)";
+        mScopeCount = 1;
+    }
+
+    /**
+     * @return a tracker that does nothing
+     */
+    public static AllocationTracker disabled() {
+        return new AllocationTracker(null);
+    }
+
+    public boolean isEnabled() { return mEnabled; }
+
+    /**
+     * Registers a named scope. Do this at setup, not per frame.
+     * @param name label used in reports
+     * @return the id to pass to {@link #begin(int)}
+     */
+    public int registerScope(String name) {
+        if (mScopeCount == mScopeNames.length) {
+            mScopeNames = Arrays.copyOf(mScopeNames, mScopeCount * 2);
+            mScopeBytes = Arrays.copyOf(mScopeBytes, mScopeCount * 2);
+        }
+        mScopeNames[mScopeCount] = name;
+        return mScopeCount++;
+    }
+
+    public void beginFrame() {
+        if (!mEnabled) return;
+        mDepth = 0;
+        mFrameStart = mMark = mCounter.allocatedBytes();
+    }
+
+    public void begin(int scope) {
+        if (!mEnabled) return;
+        if (mDepth == MAX_DEPTH)
+            throw new IllegalStateException("AllocationTracker scopes nested too deep");
+        attribute();
+        mStack[mDepth++] = scope;
+    }
+
+    public void end(int scope) {
+        if (!mEnabled) return;
+        if (mDepth == 0 || mStack[mDepth - 1] != scope)
+            throw new IllegalStateException("Unbalanced AllocationTracker.end for "
+                    + mScopeNames[scope]);
+        attribute();
+        mDepth--;
+    }
+
+    public void endFrame() {
+        if (!mEnabled) return;
+        attribute();
+        mLastFrameBytes = mMark - mFrameStart;
+        mTotalBytes += mLastFrameBytes;
+        if (mLastFrameBytes > mMaxFrameBytes)
+            mMaxFrameBytes = mLastFrameBytes;
+        mFrames++;
+    }
+
+    /**
+     * Charges everything allocated since the last mark to the innermost open scope
+     */
+    private void attribute() {
+        long now = mCounter.allocatedBytes();
+        int scope = mDepth == 0 ? UNSCOPED : mStack[mDepth - 1];
+        mScopeBytes[scope] += now - mMark;
+        mMark = now;
+    }
+
+    /**
+     * Forget all numbers but keep the registered scopes, e.g. after warm-up
+     */
+    public void reset() {
+        Arrays.fill(mScopeBytes, 0);
+        mFrames = mLastFrameBytes = mMaxFrameBytes = mTotalBytes = 0;
+    }
+
+    public long getFrameCount() { return mFrames; }
+    public long getLastFrameBytes() { return mLastFrameBytes; }
+    public long getMaxFrameBytes() { return mMaxFrameBytes; }
+    public long getTotalBytes() { return mTotalBytes; }
+
+    /**
+     * @return average bytes allocated per frame since the last reset
+     */
+    public double getAverageFrameBytes() {
+        return mFrames == 0 ? 0 : (double) mTotalBytes / mFrames;
+    }
+
+    public String getScopeName(int scope) { return mScopeNames[scope]; }
+    public long getScopeBytes(int scope) { return mScopeBytes[scope]; }
+
+    /**
+     * The scopes that allocated the most, biggest first. Allocates; call it from reporting code,
+     * not from inside a tracked frame.
+     * @param n maximum number of scopes to return
+     * @return scope ids, only scopes that allocated anything
+     */
+    public int[] getTopScopes(int n) {
+        int[] ids = new int[mScopeCount];
+        int count = 0;
+        for (int i = 0; i < mScopeCount; i++)
+            if (mScopeBytes[i] > 0)
+                ids[count++] = i;
+
+        // selection sort, there are only ever a handful of scopes
+        int top = Math.min(n, count);
+        for (int i = 0; i < top; i++) {
+            int best = i;
+            for (int j = i + 1; j < count; j++)
+                if (mScopeBytes[ids[j]] > mScopeBytes[ids[best]])
+                    best = j;
+            int tmp = ids[i]; ids[i] = ids[best]; ids[best] = tmp;
+        }
+        return Arrays.copyOf(ids, top);
+    }
+
+    /**
+     * @param n how many scopes to list
+     * @return a one-line human readable summary
+     */
+    public String report(int n) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(mFrames).append(" frames, avg ")
+          .append(String.format("%.1f", getAverageFrameBytes())).append(" B/frame, max ")
+          .append(mMaxFrameBytes).append(" B");
+        for (int scope : getTopScopes(n)) {
+            sb.append(", ").append(mScopeNames[scope]).append('=').append(mScopeBytes[scope]);
+        }
+        return sb.toString();
+    }
+}
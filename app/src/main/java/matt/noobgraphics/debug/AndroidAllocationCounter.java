@@ -0,0 +1,34 @@
+package matt.noobgraphics.debug;
+
+import android.os.Debug;
+
+/**
+ * Counts allocations with the Dalvik/ART thread allocation counters. Counting costs a bit of
+ * performance, so it is only switched on while an instance is {@link #start() started}.
+ */
+@SuppressWarnings("deprecation")
+public class AndroidAllocationCounter implements AllocationCounter {
+
+    /**
+     * Starts the VM's allocation counting and zeroes the calling thread's count. Call on the
+     * thread being measured, e.g. from a GLSurfaceView.queueEvent for the GL thread.
+     */
+    public void start() {
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+    }
+
+    public void stop() {
+        Debug.stopAllocCounting();
+    }
+
+    @Override
+    public boolean isSupported() {
+        return true;
+    }
+
+    @Override
+    public long allocatedBytes() {
+        return Debug.getThreadAllocSize();
+    }
+}
@@ -0,0 +1,129 @@
+package matt.noobgraphics.graphics;
+
+import java.util.Arrays;
+
+/**
+ * Draw commands recorded as primitives, so any thread can build one without touching GL or
+ * allocating, and the GL thread can replay it with {@link CommandReplayer}.
+ *
+ * A command names its program, vertex buffer object and layout (an id from
+ * {@link CommandReplayer#registerLayout}), index buffer object (0 for glDrawArrays), index
+ * type, first index byte offset (or first vertex) and count, plus a slot of
+ * {@link #UNIFORMS_PER_DRAW} floats in the uniform blob: the MVP matrix, then the color.
+ *
+ * Commands carry a 32 bit unsigned sort key. {@link #sort} orders them by it, stably, e.g. with
+ * the program in the high bits so state changes are minimised and depth below it.
+ *
+ * Arrays grow when full and are kept by {@link #clear}, so steady state allocates nothing.
+ */
+public class CommandList {
+    public static final int UNIFORMS_PER_DRAW = 16 + 4;
+
+    // one record per command
+    static final int PROGRAM = 0;
+    static final int VERTEX_BUFFER = 1;
+    static final int LAYOUT = 2;
+    static final int INDEX_BUFFER = 3;
+    static final int INDEX_TYPE = 4;
+    static final int FIRST = 5;
+    static final int COUNT = 6;
+    static final int UNIFORM_OFFSET = 7;
+    static final int RECORD_SIZE = 8;
+
+    private int[] mCommands;
+    private float[] mUniforms;
+    private long[] mKeys;           // sort key << 32 | command number
+    private long[] mScratch;
+    private final int[] mCounts = new int[256];
+    private int mCount;
+
+    public CommandList() {
+        this(256);
+    }
+
+    public CommandList(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        mCommands = new int[capacity * RECORD_SIZE];
+        mUniforms = new float[capacity * UNIFORMS_PER_DRAW];
+        mKeys = new long[capacity];
+        mScratch = new long[capacity];
+    }
+
+    /**
+     * Records a draw. Fill its uniforms in {@link #getUniforms()} at the returned offset (after
+     * this call, since the blob may have grown).
+     * @param indexBuffer buffer object of the indices, or 0 to draw vertices first .. first + count
+     * @param first byte offset of the first index, or the first vertex for glDrawArrays
+     * @return offset of the draw's MVP matrix and color in the uniform blob
+     */
+    public int draw(int sortKey, int program, int vertexBuffer, int layout,
+                    int indexBuffer, int indexType, int first, int count) {
+        if (mCount == mKeys.length)
+            grow();
+        int c = mCount * RECORD_SIZE;
+        int uniforms = mCount * UNIFORMS_PER_DRAW;
+        mCommands[c + PROGRAM] = program;
+        mCommands[c + VERTEX_BUFFER] = vertexBuffer;
+        mCommands[c + LAYOUT] = layout;
+        mCommands[c + INDEX_BUFFER] = indexBuffer;
+        mCommands[c + INDEX_TYPE] = indexType;
+        mCommands[c + FIRST] = first;
+        mCommands[c + COUNT] = count;
+        mCommands[c + UNIFORM_OFFSET] = uniforms;
+        mKeys[mCount] = ((long) sortKey << 32) | mCount;
+        mCount++;
+        return uniforms;
+    }
+
+    private void grow() {
+        int capacity = mKeys.length * 2;
+        mCommands = Arrays.copyOf(mCommands, capacity * RECORD_SIZE);
+        mUniforms = Arrays.copyOf(mUniforms, capacity * UNIFORMS_PER_DRAW);
+        mKeys = Arrays.copyOf(mKeys, capacity);
+        mScratch = new long[capacity];
+    }
+
+    /**
+     * Orders the commands by sort key, keeping recording order among equal keys. A radix sort
+     * over the keys' four bytes, so it allocates nothing.
+     */
+    public void sort() {
+        long[] from = mKeys, to = mScratch;
+        int[] counts = mCounts;
+        for (int shift = 32; shift < 64; shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < mCount; i++)
+                counts[(int) (from[i] >>> shift) & 0xFF]++;
+            for (int b = 0, sum = 0; b < 256; b++) {
+                int n = counts[b];
+                counts[b] = sum;
+                sum += n;
+            }
+            for (int i = 0; i < mCount; i++)
+                to[counts[(int) (from[i] >>> shift) & 0xFF]++] = from[i];
+            long[] swap = from;
+            from = to;
+            to = swap;
+        }
+        // four passes: the sorted keys end up back in mKeys
+    }
+
+    public void clear() {
+        mCount = 0;
+    }
+
+    public int size() { return mCount; }
+
+    /** The uniform blob; replaced whenever the list grows */
+    public float[] getUniforms() { return mUniforms; }
+
+    /** @return the sort key of the command at position i of the (sorted) order */
+    public int getSortKey(int i) { return (int) (mKeys[i] >>> 32); }
+
+    /** @return the record offset in {@link #getCommands()} of the command at position i */
+    int getRecord(int i) { return (int) mKeys[i] * RECORD_SIZE; }
+
+    int[] getCommands() { return mCommands; }
+
+    long getKey(int i) { return mKeys[i]; }
+}
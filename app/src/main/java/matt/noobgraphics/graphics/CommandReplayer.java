@@ -0,0 +1,206 @@
+package matt.noobgraphics.graphics;
+
+import java.util.Arrays;
+
+import android.opengl.GLES20;
+
+import matt.noobgraphics.graphics.gl.GLBackend;
+import matt.noobgraphics.mesh.VertexLayout;
+
+/**
+ * Issues the GL calls for sorted {@link CommandList}s, on the GL thread.
+ *
+ * Several lists, e.g. one per recording thread, are merged by sort key as they are replayed;
+ * equal keys go in list order, so lists recorded over consecutive ranges of a scene replay
+ * exactly as one list recorded serially would. Program, buffer and attribute binds are only
+ * issued when they change from the previous command, and uMVPMatrix / vColor locations are
+ * looked up once per program. Nothing is allocated per command.
+ */
+public class CommandReplayer {
+    private final GLBackend mGL;
+    private final VertexBindings mBindings;
+
+    private VertexLayout[] mLayouts = new VertexLayout[8];
+    private int mLayoutCount;
+
+    // uniform locations per program; few programs, so a linear scan
+    private int[] mPrograms = new int[8];
+    private int[] mMVPLocations = new int[8];
+    private int[] mColorLocations = new int[8];
+    private int mProgramCount;
+
+    private int[] mHeads = new int[4];
+    private final CommandList[] mSingle = new CommandList[1];
+
+    // state of the previous command
+    private int mProgram;
+    private int mMVPLocation;
+    private int mColorLocation;
+    private int mVertexBuffer;
+    private int mLayout;
+    private int mIndexBuffer;
+
+    private int mDraws;
+    private int mProgramChanges;
+    private int mBufferChanges;
+
+    public CommandReplayer(GLBackend gl, VertexBindings bindings) {
+        mGL = gl;
+        mBindings = bindings;
+    }
+
+    /**
+     * @return the id commands refer to the layout by
+     */
+    public int registerLayout(VertexLayout layout) {
+        for (int i = 0; i < mLayoutCount; i++)
+            if (mLayouts[i] == layout)
+                return i;
+        if (mLayoutCount == mLayouts.length)
+            mLayouts = Arrays.copyOf(mLayouts, mLayoutCount * 2);
+        mLayouts[mLayoutCount] = layout;
+        return mLayoutCount++;
+    }
+
+    /**
+     * Replays the first count lists, each already {@link CommandList#sort sorted}, merged by
+     * sort key. Leaves no program, buffer or attribute array bound.
+     */
+    public void replay(CommandList[] lists, int count) {
+        if (mHeads.length < count)
+            mHeads = new int[count];
+        Arrays.fill(mHeads, 0, count, 0);
+        resetState();
+
+        while (true) {
+            // the lists are few, so finding the lowest head by scanning beats a heap
+            int next = -1;
+            long nextKey = 0;
+            for (int l = 0; l < count; l++) {
+                CommandList list = lists[l];
+                int head = mHeads[l];
+                if (head == list.size())
+                    continue;
+                long key = list.getKey(head) >>> 32;
+                if (next < 0 || key < nextKey) {
+                    next = l;
+                    nextKey = key;
+                }
+            }
+            if (next < 0)
+                break;
+            execute(lists[next], mHeads[next]++);
+        }
+
+        mBindings.unbind();
+        if (mVertexBuffer != 0)
+            mGL.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        if (mIndexBuffer != 0)
+            mGL.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        resetState();
+    }
+
+    /**
+     * Replays one sorted list
+     */
+    public void replay(CommandList list) {
+        CommandList[] lists = mSingle;
+        lists[0] = list;
+        replay(lists, 1);
+        lists[0] = null;
+    }
+
+    private void resetState() {
+        mProgram = 0;
+        mVertexBuffer = 0;
+        mLayout = -1;
+        mIndexBuffer = 0;
+    }
+
+    private void execute(CommandList list, int i) {
+        int[] commands = list.getCommands();
+        int c = list.getRecord(i);
+
+        int program = commands[c + CommandList.PROGRAM];
+        boolean programChanged = program != mProgram;
+        if (programChanged) {
+            mGL.glUseProgram(program);
+            mProgram = program;
+            lookUpUniforms(program);
+            mProgramChanges++;
+        }
+
+        int vertexBuffer = commands[c + CommandList.VERTEX_BUFFER];
+        int layout = commands[c + CommandList.LAYOUT];
+        if (vertexBuffer != mVertexBuffer) {
+            mGL.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBuffer);
+            mBufferChanges++;
+        }
+        // attribute locations belong to the program, so a new one needs them pointed again
+        if (programChanged || vertexBuffer != mVertexBuffer || layout != mLayout) {
+            mBindings.unbind();
+            mBindings.bind(program, mLayouts[layout], 0);
+            mVertexBuffer = vertexBuffer;
+            mLayout = layout;
+        }
+
+        int indexBuffer = commands[c + CommandList.INDEX_BUFFER];
+        if (indexBuffer != mIndexBuffer) {
+            mGL.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+            mIndexBuffer = indexBuffer;
+            mBufferChanges++;
+        }
+
+        float[] uniforms = list.getUniforms();
+        int u = commands[c + CommandList.UNIFORM_OFFSET];
+        mGL.glUniformMatrix4fv(mMVPLocation, 1, false, uniforms, u);
+        mGL.glUniform4fv(mColorLocation, 1, uniforms, u + 16);
+
+        int first = commands[c + CommandList.FIRST];
+        int count = commands[c + CommandList.COUNT];
+        if (indexBuffer != 0)
+            mGL.glDrawElements(GLES20.GL_TRIANGLES, count, commands[c + CommandList.INDEX_TYPE], first);
+        else
+            mGL.glDrawArrays(GLES20.GL_TRIANGLES, first, count);
+        mDraws++;
+    }
+
+    private void lookUpUniforms(int program) {
+        for (int p = 0; p < mProgramCount; p++) {
+            if (mPrograms[p] == program) {
+                mMVPLocation = mMVPLocations[p];
+                mColorLocation = mColorLocations[p];
+                return;
+            }
+        }
+        if (mProgramCount == mPrograms.length) {
+            int capacity = mProgramCount * 2;
+            mPrograms = Arrays.copyOf(mPrograms, capacity);
+            mMVPLocations = Arrays.copyOf(mMVPLocations, capacity);
+            mColorLocations = Arrays.copyOf(mColorLocations, capacity);
+        }
+        mMVPLocation = mGL.glGetUniformLocation(program, "uMVPMatrix");
+        mColorLocation = mGL.glGetUniformLocation(program, "vColor");
+        mPrograms[mProgramCount] = program;
+        mMVPLocations[mProgramCount] = mMVPLocation;
+        mColorLocations[mProgramCount] = mColorLocation;
+        mProgramCount++;
+    }
+
+    /**
+     * Forgets cached uniform locations, for when programs are deleted or relinked or the
+     * context is lost. Layout ids stay valid.
+     */
+    public void clear() {
+        mProgramCount = 0;
+    }
+
+    /** @return draws issued so far */
+    public int getDraws() { return mDraws; }
+
+    /** @return glUseProgram calls issued so far */
+    public int getProgramChanges() { return mProgramChanges; }
+
+    /** @return glBindBuffer calls issued so far, not counting unbinds at the end */
+    public int getBufferChanges() { return mBufferChanges; }
+}
@@ -0,0 +1,181 @@
+package matt.noobgraphics.graphics;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Linear allocator for transient off-heap memory, e.g. each frame's sprite, debug line and text
+ * vertices. There is one preallocated direct buffer per frame in flight; allocations bump a
+ * cursor through the current frame's buffer, and {@link #beginFrame} resets it once the
+ * {@link FrameFence} says the GPU is done with the frame that last used it.
+ *
+ * A frame that runs out of room gets extra overflow buffers and keeps going. The next time its
+ * buffer comes round, it is replaced by one big enough for what the frame used, so steady
+ * state is one buffer per frame and no allocation. Only the GL thread may use this.
+ */
+public class FrameAllocator {
+    public static final int DEFAULT_ALIGNMENT = 16;
+
+    // regrown buffers are rounded up to this
+    private static final int GRANULE = 4096;
+
+    private final FrameFence mFence;
+    private final Region[] mRegions;
+    private long mFrame = -1;
+    private Region mCurrent;
+
+    private int mHighWater;
+    private int mOverflows;
+    private int mGrowths;
+    private int mWaits;
+
+    /** One frame's memory: a main buffer plus any overflow buffers */
+    private static final class Region {
+        ByteBuffer buffer;
+        final List<ByteBuffer> overflow = new ArrayList<>();
+        ByteBuffer chunk;           // the one being allocated from
+        int cursor;
+        int used;                   // bytes handed out this frame, padding included
+        long frame = -1;
+    }
+
+    public FrameAllocator(int framesInFlight, int bytesPerFrame) {
+        this(framesInFlight, bytesPerFrame, FrameFence.SWAP_THROTTLED);
+    }
+
+    public FrameAllocator(int framesInFlight, int bytesPerFrame, FrameFence fence) {
+        if (framesInFlight < 1)
+            throw new IllegalArgumentException("Frames in flight " + framesInFlight);
+        mFence = fence;
+        mRegions = new Region[framesInFlight];
+        for (int i = 0; i < framesInFlight; i++) {
+            mRegions[i] = new Region();
+            mRegions[i].buffer = allocateDirect(Math.max(bytesPerFrame, 1));
+        }
+    }
+
+    private static ByteBuffer allocateDirect(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Starts the next frame, waiting for the GPU if it still reads this frame's buffer from
+     * framesInFlight frames ago
+     * @return the new frame's number
+     */
+    public long beginFrame() {
+        mFrame++;
+        Region region = mRegions[(int) (mFrame % mRegions.length)];
+        if (region.frame >= 0 && !mFence.isComplete(region.frame)) {
+            mWaits++;
+            mFence.waitFor(region.frame);
+        }
+
+        if (!region.overflow.isEmpty()) {
+            int capacity = (region.used + region.used / 4 + GRANULE - 1) / GRANULE * GRANULE;
+            region.buffer = allocateDirect(capacity);
+            region.overflow.clear();
+            mGrowths++;
+        }
+        region.chunk = region.buffer;
+        region.cursor = 0;
+        region.used = 0;
+        region.frame = mFrame;
+        mCurrent = region;
+        return mFrame;
+    }
+
+    /**
+     * Ends the frame, after everything that reads its allocations was submitted to GL
+     */
+    public void endFrame() {
+        checkFrame();
+        mHighWater = Math.max(mHighWater, mCurrent.used);
+        mFence.insert(mFrame);
+        mCurrent = null;
+    }
+
+    /**
+     * @return a native order slice of the frame's memory, positioned at 0 with bytes
+     *         remaining, aligned to DEFAULT_ALIGNMENT. Valid until the frame's fence passes.
+     */
+    public ByteBuffer allocate(int bytes) {
+        return allocate(bytes, DEFAULT_ALIGNMENT);
+    }
+
+    /**
+     * @param alignment a power of two
+     */
+    public ByteBuffer allocate(int bytes, int alignment) {
+        int offset = reserve(bytes, alignment);
+        ByteBuffer chunk = mCurrent.chunk;
+        chunk.limit(offset + bytes).position(offset);
+        ByteBuffer slice = chunk.slice().order(ByteOrder.nativeOrder());
+        chunk.clear();
+        return slice;
+    }
+
+    /**
+     * Like allocate, without creating a slice: the memory is bytes from the returned offset of
+     * {@link #getChunk()}, which may be a different buffer after every reserve
+     */
+    public int reserve(int bytes, int alignment) {
+        checkFrame();
+        if (bytes < 0 || alignment < 1 || (alignment & (alignment - 1)) != 0)
+            throw new IllegalArgumentException("Bytes " + bytes + ", alignment " + alignment);
+        Region region = mCurrent;
+        int offset = (region.cursor + alignment - 1) & -alignment;
+        if (offset + bytes > region.chunk.capacity()) {
+            // overflow: a fresh chunk twice the last, so a frame overflows only a few times
+            mOverflows++;
+            region.chunk = allocateDirect(Math.max(bytes, region.chunk.capacity() * 2));
+            region.overflow.add(region.chunk);
+            region.cursor = 0;
+            offset = 0;
+        }
+        region.used += offset - region.cursor + bytes;
+        region.cursor = offset + bytes;
+        return offset;
+    }
+
+    /** @return the buffer the last reserve came from */
+    public ByteBuffer getChunk() {
+        checkFrame();
+        return mCurrent.chunk;
+    }
+
+    private void checkFrame() {
+        if (mCurrent == null)
+            throw new IllegalStateException("Not in a frame");
+    }
+
+    public int getFramesInFlight() { return mRegions.length; }
+
+    /** @return bytes handed out so far this frame, alignment padding included */
+    public int getFrameBytes() { return mCurrent == null ? 0 : mCurrent.used; }
+
+    /** @return the most bytes any finished frame used */
+    public int getHighWaterMark() { return mHighWater; }
+
+    /** @return how many allocations didn't fit and needed an overflow buffer */
+    public int getOverflowCount() { return mOverflows; }
+
+    /** @return how many times a frame's main buffer was replaced by a bigger one */
+    public int getGrowthCount() { return mGrowths; }
+
+    /** @return how many frames had to wait for the GPU */
+    public int getWaitCount() { return mWaits; }
+
+    /** @return bytes of direct memory held, main and overflow buffers */
+    public long getCapacity() {
+        long total = 0;
+        for (Region region : mRegions) {
+            total += region.buffer.capacity();
+            for (ByteBuffer overflow : region.overflow)
+                total += overflow.capacity();
+        }
+        return total;
+    }
+}
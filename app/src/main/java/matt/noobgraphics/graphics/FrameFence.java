@@ -0,0 +1,30 @@
+package matt.noobgraphics.graphics;
+
+/**
+ * Tells per-frame resources when the GPU has finished with a frame, so memory the frame's
+ * draws read can be reused. Frames are numbered by whoever inserts them.
+ */
+public interface FrameFence {
+    /**
+     * For GL ES 2, which has no fences: trusts that eglSwapBuffers keeps the CPU no more than
+     * the allocator's frames in flight ahead of the GPU, which holds on the drivers we target
+     * with 3 or more.
+     */
+    FrameFence SWAP_THROTTLED = new FrameFence() {
+        @Override public void insert(long frame) { }
+        @Override public boolean isComplete(long frame) { return true; }
+        @Override public void waitFor(long frame) { }
+    };
+
+    /**
+     * Marks the end of the frame's GPU work, after its last draw was submitted
+     */
+    void insert(long frame);
+
+    boolean isComplete(long frame);
+
+    /**
+     * Blocks until the GPU has finished the frame
+     */
+    void waitFor(long frame);
+}
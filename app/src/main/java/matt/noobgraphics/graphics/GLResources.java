@@ -0,0 +1,416 @@
+package matt.noobgraphics.graphics;
+
+import java.nio.Buffer;
+import java.util.Arrays;
+
+import android.opengl.GLES20;
+
+import matt.noobgraphics.graphics.gl.GLBackend;
+import matt.noobgraphics.texture.MipChain;
+import matt.noobgraphics.util.LruList;
+
+/**
+ * Owns the GL objects of whoever registers them: every program, buffer and texture is
+ * registered with a {@link Source} that can create it again, and is referred to by a handle
+ * instead of its GL name.
+ *
+ * Nothing is created at registration. {@link #get} creates a resource the first time it is
+ * used, and again after {@link #trim} (pause, trim memory) deleted it or a new context
+ * ({@link #onContextCreated}) took it away, so a resume only pays for what the next frames
+ * actually draw. Resident counts and bytes are kept per type.
+ *
+ * With a memory budget set, making room for a resource evicts the least recently used buffers
+ * and textures, as long as they weren't used this frame (see {@link #beginFrame}); evicted ones
+ * are streamed in again when next used. If this frame alone needs more than the budget, it goes
+ * over rather than thrash.
+ *
+ * Only the GL thread may use this.
+ */
+public class GLResources {
+    public static final int PROGRAM = 0;
+    public static final int BUFFER = 1;
+    public static final int TEXTURE = 2;
+    public static final int TYPE_COUNT = 3;
+
+    /**
+     * Creates one GL object. Keeps whatever CPU side data it needs to do so again.
+     */
+    public interface Source {
+        /**
+         * @return the new object's GL name; the object is left unbound
+         */
+        int create(GLBackend gl);
+
+        /** @return GL memory the object takes, as far as it is known */
+        int getBytes();
+    }
+
+    private final GLBackend mGL;
+
+    private int mCount;
+    private int[] mTypes = new int[16];
+    private Source[] mSources = new Source[16];
+    private int[] mNames = new int[16];     // 0 while not resident
+    private int[] mBytes = new int[16];
+    // released handles, reused by register
+    private int[] mFree = new int[16];
+    private int mFreeCount;
+
+    private final int[] mResidentCount = new int[TYPE_COUNT];
+    private final long[] mResidentBytes = new long[TYPE_COUNT];
+    private final int[] mScratch = new int[1];
+
+    private int mCreates;
+    private int mContextLosses;
+
+    // buffers and textures by last use, for the budget
+    private final LruList mLru = new LruList();
+    private long mBudget = Long.MAX_VALUE;
+    private long mFrame;
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+    private long mEvictedBytes;
+
+    public GLResources(GLBackend gl) {
+        mGL = gl;
+    }
+
+    /**
+     * @param type {@link #PROGRAM}, {@link #BUFFER} or {@link #TEXTURE}
+     * @return the handle to {@link #get} the GL name with
+     */
+    public int register(int type, Source source) {
+        if (type < 0 || type >= TYPE_COUNT)
+            throw new IllegalArgumentException("Unknown resource type " + type);
+        int handle;
+        if (mFreeCount > 0) {
+            handle = mFree[--mFreeCount];
+        } else {
+            if (mCount == mTypes.length) {
+                int capacity = mCount * 2;
+                mTypes = Arrays.copyOf(mTypes, capacity);
+                mSources = Arrays.copyOf(mSources, capacity);
+                mNames = Arrays.copyOf(mNames, capacity);
+                mBytes = Arrays.copyOf(mBytes, capacity);
+            }
+            handle = mCount++;
+        }
+        mTypes[handle] = type;
+        mSources[handle] = source;
+        mNames[handle] = 0;
+        return handle;
+    }
+
+    /**
+     * @return the resource's GL name, creating it first if it isn't resident
+     */
+    public int get(int handle) {
+        int name = mNames[handle];
+        if (name != 0) {
+            mHits++;
+            if (mBytes[handle] > 0)
+                mLru.touch(handle, mFrame);
+            return name;
+        }
+        Source source = mSources[handle];
+        if (source == null)
+            throw new IllegalStateException("Resource " + handle + " was released");
+        mMisses++;
+        int bytes = source.getBytes();
+        makeRoom(bytes);
+        name = source.create(mGL);
+        mNames[handle] = name;
+        mBytes[handle] = bytes;
+        mResidentCount[mTypes[handle]]++;
+        mResidentBytes[mTypes[handle]] += bytes;
+        if (bytes > 0)
+            mLru.touch(handle, mFrame);
+        mCreates++;
+        return name;
+    }
+
+    private void makeRoom(int bytes) {
+        long resident = getResidentBytes();
+        while (resident + bytes > mBudget) {
+            int victim = mLru.leastRecent();
+            // everything left is needed this frame
+            if (victim < 0 || mLru.lastUsed(victim) == mFrame)
+                return;
+            resident -= mBytes[victim];
+            mEvictedBytes += mBytes[victim];
+            mEvictions++;
+            evict(victim);
+        }
+    }
+
+    /**
+     * Starts a new frame: resources used from now on are the ones the budget won't evict
+     */
+    public void beginFrame() {
+        mFrame++;
+    }
+
+    /**
+     * @param bytes most buffer and texture memory to keep resident, Long.MAX_VALUE for no limit;
+     *              a lower budget takes effect as resources are next created
+     */
+    public void setBudget(long bytes) {
+        mBudget = bytes;
+    }
+
+    public long getBudget() { return mBudget; }
+
+    public boolean isResident(int handle) {
+        return mNames[handle] != 0;
+    }
+
+    /**
+     * Deletes the resource and forgets it; the handle may be handed out again.
+     */
+    public void release(int handle) {
+        if (mSources[handle] == null)
+            return;
+        evict(handle);
+        mSources[handle] = null;
+        if (mFreeCount == mFree.length)
+            mFree = Arrays.copyOf(mFree, mFreeCount * 2);
+        mFree[mFreeCount++] = handle;
+    }
+
+    /**
+     * Deletes the GL object but keeps the resource registered, so the next {@link #get}
+     * creates it again
+     */
+    public void evict(int handle) {
+        int name = mNames[handle];
+        if (name == 0)
+            return;
+        switch (mTypes[handle]) {
+            case PROGRAM:
+                mGL.glDeleteProgram(name);
+                break;
+            case BUFFER:
+                mScratch[0] = name;
+                mGL.glDeleteBuffers(1, mScratch, 0);
+                break;
+            case TEXTURE:
+                mScratch[0] = name;
+                mGL.glDeleteTextures(1, mScratch, 0);
+                break;
+        }
+        forget(handle);
+    }
+
+    private void forget(int handle) {
+        mLru.remove(handle);
+        mNames[handle] = 0;
+        mResidentCount[mTypes[handle]]--;
+        mResidentBytes[mTypes[handle]] -= mBytes[handle];
+        mBytes[handle] = 0;
+    }
+
+    /**
+     * Deletes every GL object, e.g. when paused or asked to trim memory. They come back one by
+     * one as they are used.
+     */
+    public void trim() {
+        for (int handle = 0; handle < mCount; handle++)
+            evict(handle);
+    }
+
+    /**
+     * Call from onSurfaceCreated. If anything was resident, the previous context and its
+     * objects are gone: their names are dropped without deleting them (they may belong to
+     * objects of the new context by now) and everything is recreated lazily.
+     * @return true if a context was lost
+     */
+    public boolean onContextCreated() {
+        boolean lost = false;
+        for (int handle = 0; handle < mCount; handle++) {
+            if (mNames[handle] != 0) {
+                forget(handle);
+                lost = true;
+            }
+        }
+        if (lost)
+            mContextLosses++;
+        return lost;
+    }
+
+    /** @return resident objects of the type */
+    public int getResidentCount(int type) { return mResidentCount[type]; }
+
+    /** @return GL memory of the type's resident objects, programs count as 0 */
+    public long getResidentBytes(int type) { return mResidentBytes[type]; }
+
+    /** @return registered resources, resident or not */
+    public int getRegisteredCount() { return mCount - mFreeCount; }
+
+    /** @return objects created so far, first creations and re-creations */
+    public int getCreates() { return mCreates; }
+
+    public int getContextLosses() { return mContextLosses; }
+
+    /** @return GL memory of every resident object */
+    public long getResidentBytes() {
+        long bytes = 0;
+        for (int type = 0; type < TYPE_COUNT; type++)
+            bytes += mResidentBytes[type];
+        return bytes;
+    }
+
+    /** @return gets that found the object resident */
+    public long getHits() { return mHits; }
+
+    /** @return gets that had to create the object */
+    public long getMisses() { return mMisses; }
+
+    /** @return share of gets that found the object resident, 1 before any */
+    public double getHitRate() {
+        long gets = mHits + mMisses;
+        return gets == 0 ? 1 : (double) mHits / gets;
+    }
+
+    /** @return objects the budget evicted, not counting trims and releases */
+    public long getEvictions() { return mEvictions; }
+
+    public long getEvictedBytes() { return mEvictedBytes; }
+
+    /**
+     * A program linked from vertex and fragment shader source
+     */
+    public static Source program(final String vertexShaderCode, final String fragmentShaderCode) {
+        return new Source() {
+            @Override
+            public int create(GLBackend gl) {
+                int vertexShader = MyGLRenderer.loadShader(gl, GLES20.GL_VERTEX_SHADER, vertexShaderCode);
+                int fragmentShader = MyGLRenderer.loadShader(gl, GLES20.GL_FRAGMENT_SHADER, fragmentShaderCode);
+                int program = gl.glCreateProgram();
+                gl.glAttachShader(program, vertexShader);
+                gl.glAttachShader(program, fragmentShader);
+                gl.glLinkProgram(program);
+                // the program keeps them until it is deleted itself
+                gl.glDeleteShader(vertexShader);
+                gl.glDeleteShader(fragmentShader);
+                return program;
+            }
+
+            @Override
+            public int getBytes() {
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * A GL_STATIC_DRAW buffer object
+     * @param target GL_ARRAY_BUFFER or GL_ELEMENT_ARRAY_BUFFER
+     * @param data kept, and uploaded from its position each time
+     * @param bytes how much of the data to upload
+     */
+    public static Source buffer(final int target, final Buffer data, final int bytes) {
+        return new Source() {
+            @Override
+            public int create(GLBackend gl) {
+                int[] name = new int[1];
+                gl.glGenBuffers(1, name, 0);
+                gl.glBindBuffer(target, name[0]);
+                gl.glBufferData(target, bytes, data, GLES20.GL_STATIC_DRAW);
+                gl.glBindBuffer(target, 0);
+                return name[0];
+            }
+
+            @Override
+            public int getBytes() {
+                return bytes;
+            }
+        };
+    }
+
+    /**
+     * A GL_TEXTURE_2D without mipmaps, linear filtered and clamped to the edge
+     * @param format GL_RGBA, GL_RGB, GL_LUMINANCE or GL_ALPHA
+     * @param type GL_UNSIGNED_BYTE or one of the packed 16 bit types
+     * @param pixels kept, and uploaded from its position each time
+     */
+    public static Source texture(final int width, final int height, final int format, final int type,
+                                 final Buffer pixels) {
+        final int bytes = width * height * bytesPerPixel(format, type);
+        return new Source() {
+            @Override
+            public int create(GLBackend gl) {
+                int[] name = new int[1];
+                gl.glGenTextures(1, name, 0);
+                gl.glBindTexture(GLES20.GL_TEXTURE_2D, name[0]);
+                gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+                gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+                gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+                gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+                gl.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, format, width, height, 0, format, type, pixels);
+                gl.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+                return name[0];
+            }
+
+            @Override
+            public int getBytes() {
+                return bytes;
+            }
+        };
+    }
+
+    /**
+     * A mipmapped GL_TEXTURE_2D, trilinear filtered and repeating
+     * @param chain kept, and uploaded level by level each time
+     * @throws IllegalArgumentException if the chain isn't a power of two in both dimensions.
+     *         Without OES_texture_npot, ES 2.0 treats a mipmapped or repeating texture of any
+     *         other size as incomplete and samples black; resize the image first, or upload a
+     *         single level with {@link #texture(int, int, int, int, Buffer)}.
+     */
+    public static Source texture(final MipChain chain) {
+        int width = chain.getWidth(0), height = chain.getHeight(0);
+        if ((width & (width - 1)) != 0 || (height & (height - 1)) != 0)
+            throw new IllegalArgumentException("Mipmapped texture " + width + "x" + height + " isn't a power of two");
+        return new Source() {
+            @Override
+            public int create(GLBackend gl) {
+                int[] name = new int[1];
+                gl.glGenTextures(1, name, 0);
+                gl.glBindTexture(GLES20.GL_TEXTURE_2D, name[0]);
+                gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR_MIPMAP_LINEAR);
+                gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+                // 16 bit rows of odd widths are only 2 byte aligned
+                gl.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 2);
+                for (int level = 0; level < chain.getLevelCount(); level++)
+                    gl.glTexImage2D(GLES20.GL_TEXTURE_2D, level, chain.getGLFormat(), chain.getWidth(level),
+                            chain.getHeight(level), 0, chain.getGLFormat(), chain.getGLType(), chain.getLevel(level));
+                gl.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 4);
+                gl.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+                return name[0];
+            }
+
+            @Override
+            public int getBytes() {
+                return chain.getBytes();
+            }
+        };
+    }
+
+    /**
+     * @return bytes per pixel of a glTexImage2D format and type
+     */
+    public static int bytesPerPixel(int format, int type) {
+        if (type != GLES20.GL_UNSIGNED_BYTE)
+            return 2;       // GL_UNSIGNED_SHORT_5_6_5, _4_4_4_4, _5_5_5_1
+        switch (format) {
+            case GLES20.GL_RGBA:
+                return 4;
+            case GLES20.GL_RGB:
+                return 3;
+            case GLES20.GL_LUMINANCE_ALPHA:
+                return 2;
+            default:
+                return 1;
+        }
+    }
+}
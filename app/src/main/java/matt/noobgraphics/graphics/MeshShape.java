@@ -0,0 +1,130 @@
+package matt.noobgraphics.graphics;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import android.opengl.GLES20;
+
+import matt.noobgraphics.graphics.gl.GLBackend;
+import matt.noobgraphics.math.Matrix4;
+import matt.noobgraphics.mesh.LodSelector;
+import matt.noobgraphics.mesh.MappedMesh;
+import matt.noobgraphics.mesh.MeshFile;
+
+/**
+ * A flat colored mesh loaded from a {@link MeshFile}, drawn like {@link Square} but straight from
+ * the memory mapped vertex and index data.
+ */
+public class MeshShape {
+
+    private final String vertexShaderCode =
+            "uniform mat4 uMVPMatrix;" +
+            "attribute vec4 vPosition;" +
+            "void main() {" +
+            "  gl_Position = uMVPMatrix * vPosition;" +
+            "}";
+
+    private final String fragmentShaderCode =
+            "precision mediump float;" +
+            "uniform vec4 vColor;" +
+            "void main() {" +
+            "  gl_FragColor = vColor;" +
+            "}";
+
+    private final GLBackend mGL;
+    private final VertexBindings mBindings;
+    private final MappedMesh mMesh;
+    private final ByteBuffer mVertices;
+    private final Buffer mIndices;
+    private final GLResources mResources;
+    private final int mProgram;             // a GLResources handle
+    private int mColorHandle;
+    private int mMVPMatrixHandle;
+    // quantized positions are drawn with mvp * decode
+    private final float[] mDecode;
+    private final float[] mMatrix = new float[16];
+
+    float color[] = { 0.8f, 0.8f, 0.8f, 1.0f };
+
+    /**
+     * @param gl - The GL the shape is created and drawn with.
+     * @param mesh - The mesh to draw; must have positions.
+     */
+    public MeshShape(GLBackend gl, MappedMesh mesh) {
+        this(gl, new VertexBindings(gl), mesh);
+    }
+
+    /**
+     * @param gl - The GL the shape is created and drawn with.
+     * @param bindings - Attribute binding cache shared with other shapes on the same GL.
+     * @param mesh - The mesh to draw; must have positions.
+     */
+    public MeshShape(GLBackend gl, VertexBindings bindings, MappedMesh mesh) {
+        this(gl, bindings, new GLResources(gl), mesh);
+    }
+
+    /**
+     * @param gl - The GL the shape is created and drawn with.
+     * @param bindings - Attribute binding cache shared with other shapes on the same GL.
+     * @param resources - Owner of the shape's GL objects, which recreates them after a context loss.
+     * @param mesh - The mesh to draw; must have positions.
+     */
+    public MeshShape(GLBackend gl, VertexBindings bindings, GLResources resources, MappedMesh mesh) {
+        mGL = gl;
+        mBindings = bindings;
+        mResources = resources;
+        mMesh = mesh;
+        if (mesh.findAttribute(MeshFile.POSITION) < 0)
+            throw new IllegalArgumentException("Mesh has no positions");
+
+        // views into the mapping, no copies
+        mVertices = mesh.getVertexData();
+        mIndices = mesh.getIndices();
+        mDecode = mesh.hasQuantizedPositions() ? mesh.getPositionDecodeMatrix(new float[16], 0) : null;
+
+        mProgram = mResources.register(GLResources.PROGRAM,
+                GLResources.program(vertexShaderCode, fragmentShaderCode));
+    }
+
+    /**
+     * Draws the full detail mesh
+     */
+    public void draw(float[] mvpMatrix) {
+        drawRange(mvpMatrix, 0, mMesh.getIndexCount());
+    }
+
+    /**
+     * Draws one of the mesh's levels of detail
+     * @param lod - The level, or -1 for the full detail mesh, as from {@link LodSelector}.
+     */
+    public void drawLod(float[] mvpMatrix, int lod) {
+        if (lod < 0)
+            draw(mvpMatrix);
+        else
+            drawRange(mvpMatrix, mMesh.getLodFirstIndex(lod), mMesh.getLodIndexCount(lod));
+    }
+
+    private void drawRange(float[] mvpMatrix, int firstIndex, int indexCount) {
+        int program = mResources.get(mProgram);
+        mGL.glUseProgram(program);
+
+        // the shader only reads vPosition, so only positions get bound
+        mBindings.bind(program, mMesh.getLayout(), mVertices);
+
+        mColorHandle = mGL.glGetUniformLocation(program, "vColor");
+        mGL.glUniform4fv(mColorHandle, 1, color, 0);
+
+        mMVPMatrixHandle = mGL.glGetUniformLocation(program, "uMVPMatrix");
+        if (mDecode != null) {
+            Matrix4.multiplyMM(mMatrix, 0, mvpMatrix, 0, mDecode, 0);
+            mvpMatrix = mMatrix;
+        }
+        mGL.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mvpMatrix, 0);
+        MyGLRenderer.checkGlError(mGL, "glUniformMatrix4fv");
+
+        mIndices.position(firstIndex);
+        mGL.glDrawElements(GLES20.GL_TRIANGLES, indexCount, mMesh.getIndexType(), mIndices);
+
+        mBindings.unbind();
+    }
+}
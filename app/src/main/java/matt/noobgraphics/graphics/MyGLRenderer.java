@@ -20,9 +20,22 @@ import javax.microedition.khronos.opengles.GL10;
 
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
-import android.opengl.Matrix;
 import android.util.Log;
 
+import matt.noobgraphics.assets.AssetLoader;
+import matt.noobgraphics.concurrent.TripleBuffer;
+import matt.noobgraphics.debug.AllocationTracker;
+import matt.noobgraphics.graphics.gl.AndroidGLBackend;
+import matt.noobgraphics.graphics.gl.GLBackend;
+import matt.noobgraphics.input.LatencyStats;
+import matt.noobgraphics.input.RenderRequestThrottle;
+import matt.noobgraphics.timing.Clock;
+import matt.noobgraphics.timing.FrameScheduler;
+import matt.noobgraphics.math.Matrix4;
+import matt.noobgraphics.scene.SceneGraph;
+import matt.noobgraphics.simulation.FixedTimestepLoop;
+import matt.noobgraphics.simulation.SimulationState;
+
 /**
  * Provides drawing instructions for a GLSurfaceView object. This class
  * must override the OpenGL ES drawing lifecycle methods:
@@ -35,42 +48,199 @@ import android.util.Log;
 public class MyGLRenderer implements GLSurfaceView.Renderer {
 
     private static final String TAG = "MyGLRenderer";
+
+    // log an allocation report this often while allocation tracking is on
+    private static final int ALLOCATION_REPORT_FRAMES = 300;
+
+    // per frame share of asset uploads, so loading never costs a visible hitch
+    private static final long UPLOAD_BUDGET_NANOS = 2000000L;
+    private static final long UPLOAD_BUDGET_BYTES = 4 * 1024 * 1024;
+
+    // GL memory kept resident for meshes and textures; least recently drawn ones go first
+    private static final long RESOURCE_BUDGET_BYTES = 64L * 1024 * 1024;
+
+    private final GLBackend mGL;
+    private final Clock mClock;
+    private final FrameScheduler mFrameScheduler;
     private Triangle mTriangle;
     private Square   mSquare;
+    private VertexBindings mBindings;
+    private final GLResources mResources;
 
     // mMVPMatrix is an abbreviation for "Model View Projection Matrix"
-    private final float[] mMVPMatrix = new float[16];
-    private final float[] mProjectionMatrix = new float[16];
-    private final float[] mViewMatrix = new float[16];
-    private final float[] mRotationMatrix = new float[16];
+    // Every matrix the frame needs is preallocated: onDrawFrame must not allocate
+    private final Matrix4 mMVPMatrix = new Matrix4();
+    private final Matrix4 mProjectionMatrix = new Matrix4();
+    private final Matrix4 mViewMatrix = new Matrix4();
+    private final Matrix4 mScratch = new Matrix4();
+
+    // model transforms; both shapes hang off a common root
+    private final SceneGraph mScene = new SceneGraph(4);
+    private final int mRootNode = mScene.createNode(SceneGraph.NO_PARENT);
+    private final int mSquareNode = mScene.createNode(mRootNode);
+    private final int mTriangleNode = mScene.createNode(mRootNode);
+    private float mTriangleAngle;
 
-    private float mAngle;
+    // optional fixed-timestep simulation driving the square; drawn interpolated between ticks
+    private FixedTimestepLoop mSimulation;
+    private SimulationState mSimState;
+
+    // optional background asset loading, uploaded a budget's worth per frame
+    private AssetLoader mAssetLoader;
+
+    // UI thread -> GL thread handoff. mPendingState is the UI thread's copy of the state,
+    // published as a whole snapshot every time it changes.
+    private final TripleBuffer<RenderState> mStateChannel =
+            new TripleBuffer<>(new RenderState(), new RenderState(), new RenderState());
+    private final RenderState mPendingState = new RenderState();
+
+    private final RenderRequestThrottle mRenderThrottle = new RenderRequestThrottle();
+    private final LatencyStats mInputLatency = new LatencyStats();
+    private long mLastInputTimeNanos;
+
+    private AllocationTracker mAllocTracker = AllocationTracker.disabled();
+    private int mScopeCamera;
+    private int mScopeSquare;
+    private int mScopeTriangle;
+    private boolean mLogAllocations;
+
+    public MyGLRenderer() {
+        this(new AndroidGLBackend());
+    }
+
+    /**
+     * @param gl - The GL implementation to render with. Tests pass a fake one.
+     */
+    public MyGLRenderer(GLBackend gl) {
+        this(gl, Clock.SYSTEM);
+    }
+
+    /**
+     * @param gl - The GL implementation to render with. Tests pass a fake one.
+     * @param clock - Time source for frame pacing and latency measurement.
+     */
+    public MyGLRenderer(GLBackend gl, Clock clock) {
+        mGL = gl;
+        mClock = clock;
+        mFrameScheduler = new FrameScheduler(clock);
+        // creates nothing until drawn, so assets can register before the surface exists
+        mResources = new GLResources(gl);
+        mResources.setBudget(RESOURCE_BUDGET_BYTES);
+    }
+
+    /**
+     * Debug mode: measure what onDrawFrame allocates, per frame and per draw scope.
+     *
+     * @param tracker - The tracker to record into, must be used only on the GL thread.
+     * @param logReports - Whether to periodically write the tracker's report to logcat.
+     */
+    public void setAllocationTracker(AllocationTracker tracker, boolean logReports) {
+        mAllocTracker = tracker;
+        mScopeCamera   = tracker.registerScope("camera");
+        mScopeSquare   = tracker.registerScope("square");
+        mScopeTriangle = tracker.registerScope("triangle");
+        mLogAllocations = logReports;
+    }
+
+    /**
+     * Let a simulation move the square. Entity 0 of the simulation is the square's transform.
+     * Call before rendering starts.
+     *
+     * @param simulation - The loop to draw from, or null for a static square.
+     */
+    public void setSimulation(FixedTimestepLoop simulation) {
+        mSimulation = simulation;
+        mSimState = simulation == null ? null : new SimulationState(simulation.getCapacity());
+    }
+
+    /**
+     * Let assets load in the background. Each frame uploads what decoded meanwhile, within a
+     * budget, before drawing. Jobs should keep their GL objects in {@link #getResources()}, so
+     * they count against the memory budget. Call before rendering starts.
+     *
+     * @param loader - The loader to drain, built on this renderer's GL, or null.
+     */
+    public void setAssetLoader(AssetLoader loader) {
+        mAssetLoader = loader;
+    }
+
+    public AllocationTracker getAllocationTracker() {
+        return mAllocTracker;
+    }
 
     @Override
     public void onSurfaceCreated(GL10 unused, EGLConfig config) {
 
         // Set the background frame color
-        GLES20.glClearColor(0.0f, 0.0f, 0.0f, 1.0f);
+        mGL.glClearColor(0.0f, 0.0f, 0.0f, 1.0f);
 
-        mTriangle = new Triangle();
-        mSquare   = new Square();
+        if (mBindings == null) {
+            mBindings = new VertexBindings(mGL);
+            mTriangle = new Triangle(mGL, mBindings, mResources);
+            mSquare   = new Square(mGL, mBindings, mResources);
+        } else {
+            // the context was lost with everything in it; objects come back as they are drawn
+            mResources.onContextCreated();
+            mBindings.clear();
+        }
+    }
+
+    /**
+     * Deletes every GL object the renderer owns, e.g. when paused or asked to trim memory; they
+     * are recreated as they are drawn again. GL thread.
+     */
+    public void trimResources() {
+        if (mBindings == null)
+            return;
+        mResources.trim();
+        // recreated programs get new names
+        mBindings.clear();
+    }
+
+    /**
+     * Every program, buffer and texture the renderer draws with, under one memory budget. May be
+     * handed to asset jobs on any thread; use it on the GL thread only.
+     */
+    public GLResources getResources() {
+        return mResources;
     }
 
     @Override
     public void onDrawFrame(GL10 unused) {
-        float[] scratch = new float[16];
+        AllocationTracker tracker = mAllocTracker;
+        tracker.beginFrame();
 
         // Draw background color
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+        mGL.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
 
+        // Input arriving from here on needs another frame
+        mRenderThrottle.onFrameStarted();
+        mFrameScheduler.onFrameStarted();
+        RenderState state = mStateChannel.acquire();
+        if (state.inputTimeNanos != 0 && state.inputTimeNanos != mLastInputTimeNanos) {
+            mInputLatency.record(mClock.nanoTime() - state.inputTimeNanos);
+            mLastInputTimeNanos = state.inputTimeNanos;
+        }
+
+        mResources.beginFrame();
+        if (mAssetLoader != null)
+            mAssetLoader.drainUploads(UPLOAD_BUDGET_NANOS, UPLOAD_BUDGET_BYTES);
+
+        tracker.begin(mScopeCamera);
         // Set the camera position (View matrix)
-        Matrix.setLookAtM(mViewMatrix, 0, 0, 0, -3, 0f, 0f, 0f, 0f, 1.0f, 0.0f);
+        mViewMatrix.setLookAt(0, 0, -3, 0f, 0f, 0f, 0f, 1.0f, 0.0f);
 
         // Calculate the projection and view transformation
-        Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mViewMatrix, 0);
+        mProjectionMatrix.multiply(mViewMatrix, mMVPMatrix);
+        tracker.end(mScopeCamera);
 
-        // Draw square
-        mSquare.draw(mMVPMatrix);
+        // Update the model transforms; only what changed is recomputed
+        if (mSimulation != null) {
+            mSimulation.interpolate(mClock.nanoTime(), mSimState);
+            float[] p = mSimState.positions, r = mSimState.rotations;
+            mScene.setTranslation(mSquareNode, p[0], p[1], p[2]);
+            mScene.setRotation(mSquareNode, r[0], r[1], r[2], r[3]);
+        }
 
         // Create a rotation for the triangle
 
@@ -79,28 +249,48 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
         // long time = SystemClock.uptimeMillis() % 4000L;
         // float angle = 0.090f * ((int) time);
 
-        Matrix.setRotateM(mRotationMatrix, 0, mAngle, 0, 0, 1.0f);
+        if (state.angle != mTriangleAngle) {
+            double half = Math.toRadians(state.angle) / 2;
+            mScene.setRotation(mTriangleNode, 0, 0, (float) Math.sin(half), (float) Math.cos(half));
+            mTriangleAngle = state.angle;
+        }
+        mScene.update();
+        float[] world = mScene.getWorldMatrices();
 
-        // Combine the rotation matrix with the projection and camera view
+        // Combine each model matrix with the projection and camera view
         // Note that the mMVPMatrix factor *must be first* in order
         // for the matrix multiplication product to be correct.
-        Matrix.multiplyMM(scratch, 0, mMVPMatrix, 0, mRotationMatrix, 0);
+
+        // Draw square
+        tracker.begin(mScopeSquare);
+        Matrix4.multiplyMM(mScratch.m, 0, mMVPMatrix.m, 0, world, mScene.getMatrixOffset(mSquareNode));
+        mSquare.draw(mScratch.m);
+        tracker.end(mScopeSquare);
 
         // Draw triangle
-        mTriangle.draw(scratch);
+        tracker.begin(mScopeTriangle);
+        Matrix4.multiplyMM(mScratch.m, 0, mMVPMatrix.m, 0, world, mScene.getMatrixOffset(mTriangleNode));
+        mTriangle.draw(mScratch.m);
+        tracker.end(mScopeTriangle);
+
+        tracker.endFrame();
+        if (mLogAllocations && tracker.getFrameCount() == ALLOCATION_REPORT_FRAMES) {
+            Log.d(TAG, "Allocations: " + tracker.report(3));
+            tracker.reset();
+        }
     }
 
     @Override
     public void onSurfaceChanged(GL10 unused, int width, int height) {
         // Adjust the viewport based on geometry changes,
         // such as screen rotation
-        GLES20.glViewport(0, 0, width, height);
+        mGL.glViewport(0, 0, width, height);
 
         float ratio = (float) width / height;
 
         // this projection matrix is applied to object coordinates
         // in the onDrawFrame() method
-        Matrix.frustumM(mProjectionMatrix, 0, -ratio, ratio, -1, 1, 3, 7);
+        mProjectionMatrix.setFrustum(-ratio, ratio, -1, 1, 3, 7);
 
     }
 
@@ -110,19 +300,20 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
      * <p><strong>Note:</strong> When developing shaders, use the checkGlError()
      * method to debug shader coding errors.</p>
      *
+     * @param gl - The GL to compile with.
      * @param type - Vertex or fragment shader type.
      * @param shaderCode - String containing the shader code.
      * @return - Returns an id for the shader.
      */
-    public static int loadShader(int type, String shaderCode){
+    public static int loadShader(GLBackend gl, int type, String shaderCode){
 
         // create a vertex shader type (GLES20.GL_VERTEX_SHADER)
         // or a fragment shader type (GLES20.GL_FRAGMENT_SHADER)
-        int shader = GLES20.glCreateShader(type);
+        int shader = gl.glCreateShader(type);
 
         // add the source code to the shader and compile it
-        GLES20.glShaderSource(shader, shaderCode);
-        GLES20.glCompileShader(shader);
+        gl.glShaderSource(shader, shaderCode);
+        gl.glCompileShader(shader);
 
         return shader;
     }
@@ -132,35 +323,89 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
     * just after making it:
     *
     * <pre>
-    * mColorHandle = GLES20.glGetUniformLocation(mProgram, "vColor");
-    * MyGLRenderer.checkGlError("glGetUniformLocation");</pre>
+    * mColorHandle = mGL.glGetUniformLocation(mProgram, "vColor");
+    * MyGLRenderer.checkGlError(mGL, "glGetUniformLocation");</pre>
     *
     * If the operation is not successful, the check throws an error.
     *
+    * @param gl - The GL the call was made on.
     * @param glOperation - Name of the OpenGL call to check.
     */
-    public static void checkGlError(String glOperation) {
+    public static void checkGlError(GLBackend gl, String glOperation) {
         int error;
-        while ((error = GLES20.glGetError()) != GLES20.GL_NO_ERROR) {
+        while ((error = gl.glGetError()) != GLES20.GL_NO_ERROR) {
             Log.e(TAG, glOperation + ": glError " + error);
             throw new RuntimeException(glOperation + ": glError " + error);
         }
     }
 
     /**
-     * Returns the rotation angle of the triangle shape (mTriangle).
+     * Returns the rotation angle of the triangle shape (mTriangle) as last set through
+     * {@link #setAngle(float)}. Call from the same thread as setAngle.
      *
      * @return - A float representing the rotation angle.
      */
     public float getAngle() {
-        return mAngle;
+        return mPendingState.angle;
     }
 
     /**
-     * Sets the rotation angle of the triangle shape (mTriangle).
+     * Sets the rotation angle of the triangle shape (mTriangle). Safe to call from the UI thread
+     * while the GL thread draws; the next frame picks it up.
      */
     public void setAngle(float angle) {
-        mAngle = angle;
+        setAngle(angle, 0);
+    }
+
+    /**
+     * Sets the rotation angle as the result of user input, so the frame that shows it can
+     * measure input-to-render latency.
+     *
+     * @param angle - The new angle.
+     * @param inputTimeNanos - System.nanoTime() of the oldest input the angle reflects.
+     */
+    public void setAngle(float angle, long inputTimeNanos) {
+        mPendingState.angle = angle;
+        mPendingState.inputTimeNanos = inputTimeNanos;
+        publishState();
+    }
+
+    /**
+     * @return true if state published with setAngle hasn't been picked up by a frame yet.
+     * Any thread.
+     */
+    public boolean hasUnrenderedState() {
+        return mStateChannel.hasUpdate();
+    }
+
+    /**
+     * Gate for requestRender(): lets at most one render request be outstanding.
+     */
+    public RenderRequestThrottle getRenderThrottle() {
+        return mRenderThrottle;
+    }
+
+    /**
+     * Decides which vsyncs get a frame. Also holds the frame time statistics.
+     */
+    public FrameScheduler getFrameScheduler() {
+        return mFrameScheduler;
+    }
+
+    /**
+     * Time from a touch sample to the start of the first frame that includes it.
+     */
+    public LatencyStats getInputLatency() {
+        return mInputLatency;
+    }
+
+    /**
+     * Hands the UI thread's current state to the GL thread as one snapshot. Lock free and never
+     * blocks on the GL thread.
+     */
+    private void publishState() {
+        mStateChannel.beginWrite().copyFrom(mPendingState);
+        mStateChannel.publish();
     }
 
 }
\ No newline at end of file
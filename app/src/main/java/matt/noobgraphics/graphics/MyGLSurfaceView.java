@@ -17,16 +17,40 @@ package matt.noobgraphics.graphics;
 
 import android.content.Context;
 import android.opengl.GLSurfaceView;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 
+import matt.noobgraphics.debug.AllocationTracker;
+import matt.noobgraphics.debug.AndroidAllocationCounter;
+import matt.noobgraphics.input.MotionEventAdapter;
+import matt.noobgraphics.input.RenderRequestThrottle;
+import matt.noobgraphics.input.TouchCoalescer;
+import matt.noobgraphics.simulation.FixedTimestepLoop;
+import matt.noobgraphics.simulation.SimulationState;
+import matt.noobgraphics.simulation.SpinSimulation;
+import matt.noobgraphics.timing.Clock;
+import matt.noobgraphics.timing.FrameScheduler;
+
 /**
  * A view container where OpenGL ES graphics can be drawn on screen.
  * This view can also be used to capture touch events, such as a user
  * interacting with drawn objects.
  */
-public class MyGLSurfaceView extends GLSurfaceView {
+public class MyGLSurfaceView extends GLSurfaceView implements Choreographer.FrameCallback {
+
+    // Debug mode: log how many bytes each frame allocates on the GL thread
+    private static final boolean TRACK_ALLOCATIONS = false;
+
+    // how long the square spins after resume or the last touch, before the scene settles and
+    // adaptive pacing drops to its idle rate
+    private static final long SPIN_NANOS = 5000000000L;
 
     private final MyGLRenderer mRenderer;
+    private final FrameScheduler mFrameScheduler;
+    private final FixedTimestepLoop mSimulation;
+    private boolean mVsyncPosted;
+    private boolean mPaused;
+    private long mSpinUntilNanos;
 
     public MyGLSurfaceView(Context context) {
         super(context);
@@ -36,49 +60,155 @@ public class MyGLSurfaceView extends GLSurfaceView {
 
         // Set the Renderer for drawing on the GLSurfaceView
         mRenderer = new MyGLRenderer();
+        final AndroidAllocationCounter counter = TRACK_ALLOCATIONS ? new AndroidAllocationCounter() : null;
+        if (counter != null)
+            mRenderer.setAllocationTracker(new AllocationTracker(counter), true);
         setRenderer(mRenderer);
+        if (counter != null) {
+            // the thread counters are per thread, so start them on the GL thread
+            queueEvent(new Runnable() {
+                @Override
+                public void run() {
+                    counter.start();
+                }
+            });
+        }
 
-        // Render the view only when there is a change in the drawing data
+        // Frames are requested by the FrameScheduler on vsync, in whichever pacing mode it is in
         setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
+        mFrameScheduler = mRenderer.getFrameScheduler();
+
+        // Slowly spin the square from a 60Hz simulation; frames interpolate between ticks
+        mSimulation = new FixedTimestepLoop(new SpinSimulation((float) Math.PI / 4),
+                new SimulationState(1), Clock.SYSTEM, 60.0f, 5);
+        mRenderer.setSimulation(mSimulation);
+        mFrameScheduler.setMode(FrameScheduler.MODE_ADAPTIVE);
+        mFrameScheduler.setTargetRate(0);
     }
 
-    private final float TOUCH_SCALE_FACTOR = 180.0f / 320;
-    private float mPreviousX;
-    private float mPreviousY;
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (getDisplay() != null)
+            mFrameScheduler.setDisplayRate(getDisplay().getRefreshRate());
+    }
+
+    /**
+     * Switch frame pacing, see {@link FrameScheduler} for the modes.
+     *
+     * @param mode - One of the FrameScheduler.MODE_ constants.
+     */
+    public void setFrameMode(int mode) {
+        mFrameScheduler.setMode(mode);
+        mFrameScheduler.requestFrame();
+        postVsync();
+    }
+
+    public FrameScheduler getFrameScheduler() {
+        return mFrameScheduler;
+    }
 
     @Override
-    public boolean onTouchEvent(MotionEvent e) {
-        // MotionEvent reports input details from the touch screen
-        // and other input controls. In this case, you are only
-        // interested in events where the touch position changed.
+    public void onResume() {
+        super.onResume();
+        mPaused = false;
+        spin();
+        mFrameScheduler.requestFrame();
+        postVsync();
+    }
 
-        float x = e.getX();
-        float y = e.getY();
+    /**
+     * Runs the simulation, and keeps the scheduler at its target rate, for another
+     * {@link #SPIN_NANOS}
+     */
+    private void spin() {
+        mSpinUntilNanos = System.nanoTime() + SPIN_NANOS;
+        if (!mSimulation.isRunning()) {
+            mSimulation.start();
+            mFrameScheduler.setAnimating(true);
+        }
+    }
 
-        switch (e.getAction()) {
-            case MotionEvent.ACTION_MOVE:
+    private void settle() {
+        mSimulation.stop();
+        mFrameScheduler.setAnimating(false);
+    }
 
-                float dx = x - mPreviousX;
-                float dy = y - mPreviousY;
+    @Override
+    public void onPause() {
+        mPaused = true;
+        Choreographer.getInstance().removeFrameCallback(this);
+        mVsyncPosted = false;
+        settle();
+        // queued before pausing, so the GL thread runs it first
+        releaseGLResources();
+        super.onPause();
+    }
 
-                // reverse direction of rotation above the mid-line
-                if (y > getHeight() / 2) {
-                    dx = dx * -1 ;
-                }
+    /**
+     * Frees the renderer's GL objects on the GL thread; they are recreated as they are drawn.
+     */
+    public void releaseGLResources() {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.trimResources();
+            }
+        });
+    }
 
-                // reverse direction of rotation to left of the mid-line
-                if (x < getWidth() / 2) {
-                    dy = dy * -1 ;
-                }
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mVsyncPosted = false;
+        if (mSimulation.isRunning() && frameTimeNanos >= mSpinUntilNanos)
+            settle();
+        // While the previous frame hasn't started yet, leave the scheduler's decision for the
+        // next vsync rather than dropping it
+        RenderRequestThrottle throttle = mRenderer.getRenderThrottle();
+        boolean busy = throttle.isPending();
+        if (!busy && mFrameScheduler.shouldRenderFrame() && throttle.tryRequest())
+            requestRender();
+        if (busy || mFrameScheduler.needsVsync())
+            postVsync();
+    }
 
-                mRenderer.setAngle(
-                        mRenderer.getAngle() +
-                        ((dx + dy) * TOUCH_SCALE_FACTOR));  // = 180.0f / 320
-                requestRender();
-        }
+    private void postVsync() {
+        if (mVsyncPosted || mPaused)
+            return;
+        mVsyncPosted = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    private final float TOUCH_SCALE_FACTOR = 180.0f / 320;
+    private final MotionEventAdapter mTouchEvent = new MotionEventAdapter();
+    private final TouchCoalescer mTouchCoalescer = new TouchCoalescer();
 
-        mPreviousX = x;
-        mPreviousY = y;
+    // oldest input not yet picked up by a frame, for latency measurement
+    private long mInputBatchStartNanos;
+
+    @Override
+    public boolean onTouchEvent(MotionEvent e) {
+        // MotionEvent reports input details from the touch screen
+        // and other input controls. In this case, you are only
+        // interested in events where the touch position changed.
+        // Every historical sample in the event is folded into one delta.
+        mTouchCoalescer.setViewSize(getWidth(), getHeight());
+        if (!mTouchCoalescer.onTouchEvent(mTouchEvent.set(e)))
+            return true;
+
+        if (!mRenderer.hasUnrenderedState())
+            mInputBatchStartNanos = mTouchCoalescer.getOldestSampleNanos();
+
+        mRenderer.setAngle(
+                mRenderer.getAngle() +
+                (mTouchCoalescer.getRotation() * TOUCH_SCALE_FACTOR),  // = 180.0f / 320
+                mInputBatchStartNanos);
+        mTouchCoalescer.reset();
+
+        // Render on the next vsync; later input before then rides along with the same frame
+        spin();
+        mFrameScheduler.requestFrame();
+        postVsync();
         return true;
     }
 
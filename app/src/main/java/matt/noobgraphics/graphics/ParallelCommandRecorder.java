@@ -0,0 +1,126 @@
+package matt.noobgraphics.graphics;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Records a frame's draw commands on several threads: the scene's items are split into as many
+ * consecutive ranges as there are lists, each range is recorded into its own
+ * {@link CommandList} and sorted on the thread that recorded it, and the GL thread then replays
+ * them all with {@link CommandReplayer#replay(CommandList[], int)}.
+ *
+ * Lists and tasks are created once and reused every frame, so recording allocates nothing once
+ * the lists have grown to the scene. Ranges smaller than the grain run on the calling thread.
+ */
+public class ParallelCommandRecorder {
+    public static final int DEFAULT_GRAIN = 256;
+
+    /**
+     * Writes the draw commands of scene items from .. to - 1. Called concurrently for disjoint
+     * ranges, so it must only read shared scene state.
+     */
+    public interface Recorder {
+        void record(CommandList list, int from, int to);
+    }
+
+    private final ForkJoinPool mPool;
+    private final int mGrain;
+    private final CommandList[] mLists;
+    private final RecordTask[] mTasks;
+    private final RecordAll mRoot = new RecordAll();
+    private int mUsed;
+
+    /**
+     * @param pool the threads to run on
+     * @param listCount how many lists, and so ranges, to record at most; usually the pool's
+     *                  parallelism
+     */
+    public ParallelCommandRecorder(ForkJoinPool pool, int listCount) {
+        this(pool, listCount, DEFAULT_GRAIN);
+    }
+
+    /**
+     * @param grain the fewest items worth a range of their own
+     */
+    public ParallelCommandRecorder(ForkJoinPool pool, int listCount, int grain) {
+        if (listCount < 1)
+            throw new IllegalArgumentException("Need at least one list");
+        if (grain < 1)
+            throw new IllegalArgumentException("Grain must be positive");
+        mPool = pool;
+        mGrain = grain;
+        mLists = new CommandList[listCount];
+        mTasks = new RecordTask[listCount];
+        for (int i = 0; i < listCount; i++) {
+            mLists[i] = new CommandList();
+            mTasks[i] = new RecordTask(mLists[i]);
+        }
+    }
+
+    /**
+     * Clears the lists and records items 0 .. itemCount - 1 into them, each list sorted.
+     * @return how many of {@link #getLists()} hold this frame's commands
+     */
+    public int record(Recorder recorder, int itemCount) {
+        int ranges = Math.max(1, Math.min(mLists.length, itemCount / mGrain));
+        for (int i = 0; i < mLists.length; i++)
+            mLists[i].clear();
+
+        for (int i = 0; i < ranges; i++) {
+            RecordTask task = mTasks[i];
+            task.reinitialize();
+            task.mRecorder = recorder;
+            task.mFrom = (int) ((long) itemCount * i / ranges);
+            task.mTo = (int) ((long) itemCount * (i + 1) / ranges);
+        }
+        mUsed = ranges;
+
+        if (ranges == 1) {
+            mTasks[0].compute();
+        } else {
+            mRoot.reinitialize();
+            mPool.invoke(mRoot);
+        }
+        for (int i = 0; i < ranges; i++)
+            mTasks[i].mRecorder = null;
+        return ranges;
+    }
+
+    /** @return every list; the first {@link #getUsed()} of them hold the last frame's commands */
+    public CommandList[] getLists() { return mLists; }
+
+    /** @return how many lists the last frame used */
+    public int getUsed() { return mUsed; }
+
+    private class RecordAll extends RecursiveAction {
+        @Override
+        protected void compute() {
+            if (mUsed == mTasks.length) {
+                invokeAll(mTasks);
+                return;
+            }
+            for (int i = 1; i < mUsed; i++)
+                mTasks[i].fork();
+            mTasks[0].compute();
+            for (int i = mUsed - 1; i > 0; i--)
+                mTasks[i].join();
+        }
+    }
+
+    private static class RecordTask extends RecursiveAction {
+        final CommandList mList;
+        Recorder mRecorder;
+        int mFrom;
+        int mTo;
+
+        RecordTask(CommandList list) {
+            mList = list;
+        }
+
+        @Override
+        protected void compute() {
+            mRecorder.record(mList, mFrom, mTo);
+            mList.sort();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package matt.noobgraphics.graphics;
+
+/**
+ * Everything the UI thread hands to the GL thread for one frame. Instances are recycled through
+ * a {@link matt.noobgraphics.concurrent.TripleBuffer}, so add fields as plain values or
+ * preallocated arrays and keep {@link #copyFrom(RenderState)} in sync.
+ */
+public class RenderState {
+    /** Rotation angle of the triangle, in degrees */
+    public float angle;
+
+    /** When the oldest input folded into this snapshot happened (System.nanoTime), 0 if none */
+    public long inputTimeNanos;
+
+    /**
+     * Overwrite this snapshot with another one
+     * @param other the snapshot to copy
+     */
+    public void copyFrom(RenderState other) {
+        angle = other.angle;
+        inputTimeNanos = other.inputTimeNanos;
+    }
+}
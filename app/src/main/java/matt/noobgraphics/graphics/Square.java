@@ -17,11 +17,15 @@ package matt.noobgraphics.graphics;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
 
 import android.opengl.GLES20;
 
+import matt.noobgraphics.graphics.gl.GLBackend;
+import matt.noobgraphics.mesh.MeshFile;
+import matt.noobgraphics.mesh.VertexBuilder;
+import matt.noobgraphics.mesh.VertexLayout;
+
 /**
  * A two-dimensional square for use as a drawn object in OpenGL ES 2.0.
  */
@@ -46,15 +50,18 @@ public class Square {
             "  gl_FragColor = vColor;" +
             "}";
 
-    private final FloatBuffer vertexBuffer;
+    private final GLBackend mGL;
+    private final VertexBindings mBindings;
+    private final ByteBuffer vertexBuffer;
     private final ShortBuffer drawListBuffer;
-    private final int mProgram;
-    private int mPositionHandle;
+    private final GLResources mResources;
+    private final int mProgram;             // a GLResources handle
     private int mColorHandle;
     private int mMVPMatrixHandle;
 
-    // number of coordinates per vertex in this array
-    static final int COORDS_PER_VERTEX = 3;
+    // one float position per vertex
+    static final VertexLayout LAYOUT = new VertexLayout()
+            .add(MeshFile.POSITION, 3, GLES20.GL_FLOAT, false);
     static float squareCoords[] = {
             -0.5f,  0.5f, 0.0f,   // top left
             -0.5f, -0.5f, 0.0f,   // bottom left
@@ -63,22 +70,45 @@ public class Square {
 
     private final short drawOrder[] = { 0, 1, 2, 0, 2, 3 }; // order to draw vertices
 
-    private final int vertexStride = COORDS_PER_VERTEX * 4; // 4 bytes per vertex
 
     float color[] = { 0.2f, 0.709803922f, 0.898039216f, 1.0f };
 
     /**
      * Sets up the drawing object data for use in an OpenGL ES context.
+     *
+     * @param gl - The GL the shape is created and drawn with.
      */
-    public Square() {
-        // initialize vertex byte buffer for shape coordinates
-        ByteBuffer bb = ByteBuffer.allocateDirect(
-        // (# of coordinate values * 4 bytes per float)
-                squareCoords.length * 4);
-        bb.order(ByteOrder.nativeOrder());
-        vertexBuffer = bb.asFloatBuffer();
-        vertexBuffer.put(squareCoords);
-        vertexBuffer.position(0);
+    public Square(GLBackend gl) {
+        this(gl, new VertexBindings(gl));
+    }
+
+    /**
+     * Sets up the drawing object data for use in an OpenGL ES context.
+     *
+     * @param gl - The GL the shape is created and drawn with.
+     * @param bindings - Attribute binding cache shared with other shapes on the same GL.
+     */
+    public Square(GLBackend gl, VertexBindings bindings) {
+        this(gl, bindings, new GLResources(gl));
+    }
+
+    /**
+     * Sets up the drawing object data for use in an OpenGL ES context.
+     *
+     * @param gl - The GL the shape is created and drawn with.
+     * @param bindings - Attribute binding cache shared with other shapes on the same GL.
+     * @param resources - Owner of the shape's GL objects, which recreates them after a context loss.
+     */
+    public Square(GLBackend gl, VertexBindings bindings, GLResources resources) {
+        mGL = gl;
+        mBindings = bindings;
+        mResources = resources;
+
+        // write the shape coordinates as interleaved vertices of LAYOUT
+        VertexBuilder vertices = new VertexBuilder(LAYOUT, squareCoords.length / 3);
+        for (int i = 0; i < squareCoords.length; i += 3)
+            vertices.put(0, squareCoords, i).next();
+        vertexBuffer = vertices.getBuffer();
 
         // initialize byte buffer for the draw list
         ByteBuffer dlb = ByteBuffer.allocateDirect(
@@ -89,18 +119,9 @@ public class Square {
         drawListBuffer.put(drawOrder);
         drawListBuffer.position(0);
 
-        // prepare shaders and OpenGL program
-        int vertexShader = MyGLRenderer.loadShader(
-                GLES20.GL_VERTEX_SHADER,
-                vertexShaderCode);
-        int fragmentShader = MyGLRenderer.loadShader(
-                GLES20.GL_FRAGMENT_SHADER,
-                fragmentShaderCode);
-
-        mProgram = GLES20.glCreateProgram();             // create empty OpenGL Program
-        GLES20.glAttachShader(mProgram, vertexShader);   // add the vertex shader to program
-        GLES20.glAttachShader(mProgram, fragmentShader); // add the fragment shader to program
-        GLES20.glLinkProgram(mProgram);                  // create OpenGL program executables
+        // the program is compiled on first draw
+        mProgram = mResources.register(GLResources.PROGRAM,
+                GLResources.program(vertexShaderCode, fragmentShaderCode));
     }
 
     /**
@@ -111,41 +132,33 @@ public class Square {
      */
     public void draw(float[] mvpMatrix) {
         // Add program to OpenGL environment
-        GLES20.glUseProgram(mProgram);
-
-        // get handle to vertex shader's vPosition member
-        mPositionHandle = GLES20.glGetAttribLocation(mProgram, "vPosition");
-
-        // Enable a handle to the triangle vertices
-        GLES20.glEnableVertexAttribArray(mPositionHandle);
+        int program = mResources.get(mProgram);
+        mGL.glUseProgram(program);
 
-        // Prepare the triangle coordinate data
-        GLES20.glVertexAttribPointer(
-                mPositionHandle, COORDS_PER_VERTEX,
-                GLES20.GL_FLOAT, false,
-                vertexStride, vertexBuffer);
+        // Enable and point the vertex shader's attributes at the square vertices
+        mBindings.bind(program, LAYOUT, vertexBuffer);
 
         // get handle to fragment shader's vColor member
-        mColorHandle = GLES20.glGetUniformLocation(mProgram, "vColor");
+        mColorHandle = mGL.glGetUniformLocation(program, "vColor");
 
         // Set color for drawing the triangle
-        GLES20.glUniform4fv(mColorHandle, 1, color, 0);
+        mGL.glUniform4fv(mColorHandle, 1, color, 0);
 
         // get handle to shape's transformation matrix
-        mMVPMatrixHandle = GLES20.glGetUniformLocation(mProgram, "uMVPMatrix");
-        MyGLRenderer.checkGlError("glGetUniformLocation");
+        mMVPMatrixHandle = mGL.glGetUniformLocation(program, "uMVPMatrix");
+        MyGLRenderer.checkGlError(mGL, "glGetUniformLocation");
 
         // Apply the projection and view transformation
-        GLES20.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mvpMatrix, 0);
-        MyGLRenderer.checkGlError("glUniformMatrix4fv");
+        mGL.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mvpMatrix, 0);
+        MyGLRenderer.checkGlError(mGL, "glUniformMatrix4fv");
 
         // Draw the square
-        GLES20.glDrawElements(
+        mGL.glDrawElements(
                 GLES20.GL_TRIANGLES, drawOrder.length,
                 GLES20.GL_UNSIGNED_SHORT, drawListBuffer);
 
-        // Disable vertex array
-        GLES20.glDisableVertexAttribArray(mPositionHandle);
+        // Disable vertex arrays
+        mBindings.unbind();
     }
 
 }
\ No newline at end of file
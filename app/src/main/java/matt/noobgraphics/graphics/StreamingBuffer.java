@@ -0,0 +1,143 @@
+package matt.noobgraphics.graphics;
+
+import java.nio.Buffer;
+
+import android.opengl.GLES20;
+
+import matt.noobgraphics.graphics.gl.GLBackend;
+
+/**
+ * A GL buffer object for data rewritten every frame, e.g. batched sprite vertices, uploaded so
+ * the driver never has to stall glBufferSubData until the GPU is done reading the old contents.
+ * Writes are sub-allocated from a cursor; each returns the byte offset to draw from.
+ *
+ * <ul>
+ * <li>{@link #ROTATE}: several buffers, one per frame in flight. {@link #beginFrame} moves to
+ *     the next one, which the GPU finished with frames ago.</li>
+ * <li>{@link #ORPHAN}: one buffer, appended to across frames. When it is full it is orphaned
+ *     with glBufferData(null), so the driver hands out fresh storage while the GPU keeps
+ *     reading the old.</li>
+ * </ul>
+ *
+ * Which is faster depends on the driver; measure. Either way a write that doesn't fit orphans
+ * the current buffer and starts again at 0, a wrap. Only the GL thread may use this.
+ *
+ * Streamed data is rewritten every frame, so there is nothing for {@link GLResources} to
+ * recreate the buffers from; the owner calls {@link #onContextCreated} instead.
+ */
+public class StreamingBuffer {
+    public static final int ROTATE = 0;
+    public static final int ORPHAN = 1;
+
+    public static final int DEFAULT_BUFFER_COUNT = 3;
+
+    private static final int ALIGNMENT = 4;
+
+    private final GLBackend mGL;
+    private final int mTarget;
+    private final int mCapacity;
+    private final int mStrategy;
+    private final int[] mBuffers;
+    private int mCurrent;
+    private int mCursor;
+
+    private long mBytesStreamed;
+    private int mWrites;
+    private int mWraps;
+    private int mRotations;
+
+    /**
+     * @param target GL_ARRAY_BUFFER or GL_ELEMENT_ARRAY_BUFFER
+     * @param capacity bytes per buffer
+     * @param strategy ROTATE or ORPHAN
+     * @param bufferCount buffers to rotate between; ORPHAN always uses one
+     */
+    public StreamingBuffer(GLBackend gl, int target, int capacity, int strategy, int bufferCount) {
+        if (strategy != ROTATE && strategy != ORPHAN)
+            throw new IllegalArgumentException("Unknown strategy " + strategy);
+        if (capacity < 1 || bufferCount < 1)
+            throw new IllegalArgumentException("Capacity " + capacity + ", buffers " + bufferCount);
+        mGL = gl;
+        mTarget = target;
+        mCapacity = capacity;
+        mStrategy = strategy;
+        mBuffers = new int[strategy == ORPHAN ? 1 : bufferCount];
+        create();
+    }
+
+    public StreamingBuffer(GLBackend gl, int target, int capacity, int strategy) {
+        this(gl, target, capacity, strategy, DEFAULT_BUFFER_COUNT);
+    }
+
+    private void create() {
+        mGL.glGenBuffers(mBuffers.length, mBuffers, 0);
+        for (int buffer : mBuffers) {
+            mGL.glBindBuffer(mTarget, buffer);
+            mGL.glBufferData(mTarget, mCapacity, null, GLES20.GL_STREAM_DRAW);
+        }
+        mCurrent = 0;
+        mCursor = 0;
+    }
+
+    /**
+     * Call from onSurfaceCreated after the context was lost: the old buffers went with it, so
+     * their names are dropped without deleting them and empty buffers are made in the new
+     * context. The current frame's writes must be redone.
+     */
+    public void onContextCreated() {
+        create();
+    }
+
+    /**
+     * Call once per frame before its writes
+     */
+    public void beginFrame() {
+        if (mStrategy == ROTATE && mBuffers.length > 1) {
+            mCurrent = (mCurrent + 1) % mBuffers.length;
+            mCursor = 0;
+            mRotations++;
+        }
+    }
+
+    /**
+     * Uploads bytes of data from its position, leaving the buffer object bound to the target
+     * @return the byte offset in {@link #getBuffer()} the data landed at, 4 byte aligned
+     */
+    public int write(Buffer data, int bytes) {
+        if (bytes > mCapacity)
+            throw new IllegalArgumentException(bytes + " bytes don't fit in " + mCapacity);
+        int buffer = mBuffers[mCurrent];
+        mGL.glBindBuffer(mTarget, buffer);
+        int offset = (mCursor + ALIGNMENT - 1) & -ALIGNMENT;
+        if (offset + bytes > mCapacity) {
+            mGL.glBufferData(mTarget, mCapacity, null, GLES20.GL_STREAM_DRAW);
+            mWraps++;
+            offset = 0;
+        }
+        mGL.glBufferSubData(mTarget, offset, bytes, data);
+        mCursor = offset + bytes;
+        mBytesStreamed += bytes;
+        mWrites++;
+        return offset;
+    }
+
+    /** @return the GL name of the buffer the next write goes to, and the last went to */
+    public int getBuffer() { return mBuffers[mCurrent]; }
+
+    public int getStrategy() { return mStrategy; }
+
+    public int getCapacity() { return mCapacity; }
+
+    public long getBytesStreamed() { return mBytesStreamed; }
+
+    public int getWriteCount() { return mWrites; }
+
+    /** @return writes that didn't fit and orphaned their buffer */
+    public int getWrapCount() { return mWraps; }
+
+    public int getRotationCount() { return mRotations; }
+
+    public void release() {
+        mGL.glDeleteBuffers(mBuffers.length, mBuffers, 0);
+    }
+}
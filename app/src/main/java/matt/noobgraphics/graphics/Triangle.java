@@ -16,11 +16,14 @@
 package matt.noobgraphics.graphics;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
 
 import android.opengl.GLES20;
 
+import matt.noobgraphics.graphics.gl.GLBackend;
+import matt.noobgraphics.mesh.MeshFile;
+import matt.noobgraphics.mesh.VertexBuilder;
+import matt.noobgraphics.mesh.VertexLayout;
+
 /**
  * A two-dimensional triangle for use as a drawn object in OpenGL ES 2.0.
  */
@@ -45,53 +48,67 @@ public class Triangle {
             "  gl_FragColor = vColor;" +
             "}";
 
-    private final FloatBuffer vertexBuffer;
-    private final int mProgram;
-    private int mPositionHandle;
+    private final GLBackend mGL;
+    private final VertexBindings mBindings;
+    private final ByteBuffer vertexBuffer;
+    private final GLResources mResources;
+    private final int mProgram;             // a GLResources handle
     private int mColorHandle;
     private int mMVPMatrixHandle;
 
-    // number of coordinates per vertex in this array
-    static final int COORDS_PER_VERTEX = 3;
+    // one float position per vertex
+    static final VertexLayout LAYOUT = new VertexLayout()
+            .add(MeshFile.POSITION, 3, GLES20.GL_FLOAT, false);
     static float triangleCoords[] = {
             // in counterclockwise order:
             0.0f,  0.622008459f, 0.0f,   // top
            -0.5f, -0.311004243f, 0.0f,   // bottom left
             0.5f, -0.311004243f, 0.0f    // bottom right
     };
-    private final int vertexCount = triangleCoords.length / COORDS_PER_VERTEX;
-    private final int vertexStride = COORDS_PER_VERTEX * 4; // 4 bytes per vertex
+    private final int vertexCount = triangleCoords.length / 3;
 
     float color[] = { 0.63671875f, 0.76953125f, 0.22265625f, 0.0f };
 
     /**
      * Sets up the drawing object data for use in an OpenGL ES context.
+     *
+     * @param gl - The GL the shape is created and drawn with.
+     */
+    public Triangle(GLBackend gl) {
+        this(gl, new VertexBindings(gl));
+    }
+
+    /**
+     * Sets up the drawing object data for use in an OpenGL ES context.
+     *
+     * @param gl - The GL the shape is created and drawn with.
+     * @param bindings - Attribute binding cache shared with other shapes on the same GL.
+     */
+    public Triangle(GLBackend gl, VertexBindings bindings) {
+        this(gl, bindings, new GLResources(gl));
+    }
+
+    /**
+     * Sets up the drawing object data for use in an OpenGL ES context.
+     *
+     * @param gl - The GL the shape is created and drawn with.
+     * @param bindings - Attribute binding cache shared with other shapes on the same GL.
+     * @param resources - Owner of the shape's GL objects, which recreates them after a context loss.
      */
-    public Triangle() {
-        // initialize vertex byte buffer for shape coordinates
-        ByteBuffer bb = ByteBuffer.allocateDirect(
-                // (number of coordinate values * 4 bytes per float)
-                triangleCoords.length * 4);
-        // use the device hardware's native byte order
-        bb.order(ByteOrder.nativeOrder());
-
-        // create a floating point buffer from the ByteBuffer
-        vertexBuffer = bb.asFloatBuffer();
-        // add the coordinates to the FloatBuffer
-        vertexBuffer.put(triangleCoords);
-        // set the buffer to read the first coordinate
-        vertexBuffer.position(0);
-
-        // prepare shaders and OpenGL program
-        int vertexShader = MyGLRenderer.loadShader(
-                GLES20.GL_VERTEX_SHADER, vertexShaderCode);
-        int fragmentShader = MyGLRenderer.loadShader(
-                GLES20.GL_FRAGMENT_SHADER, fragmentShaderCode);
-
-        mProgram = GLES20.glCreateProgram();             // create empty OpenGL Program
-        GLES20.glAttachShader(mProgram, vertexShader);   // add the vertex shader to program
-        GLES20.glAttachShader(mProgram, fragmentShader); // add the fragment shader to program
-        GLES20.glLinkProgram(mProgram);                  // create OpenGL program executables
+    public Triangle(GLBackend gl, VertexBindings bindings, GLResources resources) {
+        mGL = gl;
+        mBindings = bindings;
+        mResources = resources;
+
+        // write the shape coordinates as interleaved vertices of LAYOUT
+        VertexBuilder vertices = new VertexBuilder(LAYOUT, vertexCount);
+        for (int i = 0; i < triangleCoords.length; i += 3)
+            vertices.put(0, triangleCoords, i).next();
+        vertexBuffer = vertices.getBuffer();
+
+        // the program is compiled on first draw
+        mProgram = mResources.register(GLResources.PROGRAM,
+                GLResources.program(vertexShaderCode, fragmentShaderCode));
 
     }
 
@@ -103,39 +120,31 @@ public class Triangle {
      */
     public void draw(float[] mvpMatrix) {
         // Add program to OpenGL environment
-        GLES20.glUseProgram(mProgram);
-
-        // get handle to vertex shader's vPosition member
-        mPositionHandle = GLES20.glGetAttribLocation(mProgram, "vPosition");
-
-        // Enable a handle to the triangle vertices
-        GLES20.glEnableVertexAttribArray(mPositionHandle);
+        int program = mResources.get(mProgram);
+        mGL.glUseProgram(program);
 
-        // Prepare the triangle coordinate data
-        GLES20.glVertexAttribPointer(
-                mPositionHandle, COORDS_PER_VERTEX,
-                GLES20.GL_FLOAT, false,
-                vertexStride, vertexBuffer);
+        // Enable and point the vertex shader's attributes at the triangle vertices
+        mBindings.bind(program, LAYOUT, vertexBuffer);
 
         // get handle to fragment shader's vColor member
-        mColorHandle = GLES20.glGetUniformLocation(mProgram, "vColor");
+        mColorHandle = mGL.glGetUniformLocation(program, "vColor");
 
         // Set color for drawing the triangle
-        GLES20.glUniform4fv(mColorHandle, 1, color, 0);
+        mGL.glUniform4fv(mColorHandle, 1, color, 0);
 
         // get handle to shape's transformation matrix
-        mMVPMatrixHandle = GLES20.glGetUniformLocation(mProgram, "uMVPMatrix");
-        MyGLRenderer.checkGlError("glGetUniformLocation");
+        mMVPMatrixHandle = mGL.glGetUniformLocation(program, "uMVPMatrix");
+        MyGLRenderer.checkGlError(mGL, "glGetUniformLocation");
 
         // Apply the projection and view transformation
-        GLES20.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mvpMatrix, 0);
-        MyGLRenderer.checkGlError("glUniformMatrix4fv");
+        mGL.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mvpMatrix, 0);
+        MyGLRenderer.checkGlError(mGL, "glUniformMatrix4fv");
 
         // Draw the triangle
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, vertexCount);
+        mGL.glDrawArrays(GLES20.GL_TRIANGLES, 0, vertexCount);
 
-        // Disable vertex array
-        GLES20.glDisableVertexAttribArray(mPositionHandle);
+        // Disable vertex arrays
+        mBindings.unbind();
     }
 
 }
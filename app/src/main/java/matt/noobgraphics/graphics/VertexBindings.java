@@ -0,0 +1,130 @@
+package matt.noobgraphics.graphics;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import matt.noobgraphics.graphics.gl.GLBackend;
+import matt.noobgraphics.mesh.VertexLayout;
+
+/**
+ * Points a program's vertex attributes at interleaved vertex data of a {@link VertexLayout}.
+ *
+ * Attribute locations are looked up by name once per program and layout pair and cached, so a
+ * bind costs one cache lookup plus a glEnableVertexAttribArray and glVertexAttribPointer per
+ * attribute the program uses. Layouts match by identity. Only the GL thread may use this.
+ */
+public class VertexBindings {
+    private final GLBackend mGL;
+
+    // cached pairs; there are only ever a handful, so a linear scan beats hashing
+    private int mCount;
+    private int[] mPrograms = new int[8];
+    private VertexLayout[] mLayouts = new VertexLayout[8];
+    private int[][] mLocations = new int[8][];
+    private int mLast = -1;
+
+    // locations enabled by the last bind, for unbind
+    private int[] mBound;
+
+    private int mLookups;
+
+    public VertexBindings(GLBackend gl) {
+        mGL = gl;
+    }
+
+    /**
+     * Enables and points every attribute of layout that the program uses at vertices. The
+     * buffer's position is moved to each attribute's offset and left at 0.
+     * @param vertices interleaved vertices starting at index 0
+     */
+    public void bind(int program, VertexLayout layout, ByteBuffer vertices) {
+        int[] locations = locations(program, layout);
+        int stride = layout.getStride();
+        for (int a = 0; a < locations.length; a++) {
+            int location = locations[a];
+            if (location < 0)
+                continue;
+            mGL.glEnableVertexAttribArray(location);
+            vertices.position(layout.getOffset(a));
+            mGL.glVertexAttribPointer(location, layout.getComponents(a), layout.getType(a),
+                    layout.isNormalized(a), stride, vertices);
+        }
+        vertices.position(0);
+        mBound = locations;
+    }
+
+    /**
+     * Like {@link #bind(int, VertexLayout, ByteBuffer)}, for vertices in the GL_ARRAY_BUFFER
+     * currently bound
+     * @param offset byte offset of the first vertex in the buffer object
+     */
+    public void bind(int program, VertexLayout layout, int offset) {
+        int[] locations = locations(program, layout);
+        int stride = layout.getStride();
+        for (int a = 0; a < locations.length; a++) {
+            int location = locations[a];
+            if (location < 0)
+                continue;
+            mGL.glEnableVertexAttribArray(location);
+            mGL.glVertexAttribPointer(location, layout.getComponents(a), layout.getType(a),
+                    layout.isNormalized(a), stride, offset + layout.getOffset(a));
+        }
+        mBound = locations;
+    }
+
+    /**
+     * Disables the attributes the last bind enabled
+     */
+    public void unbind() {
+        if (mBound == null)
+            return;
+        for (int location : mBound)
+            if (location >= 0)
+                mGL.glDisableVertexAttribArray(location);
+        mBound = null;
+    }
+
+    /**
+     * @return the program's location of each of the layout's attributes, -1 where unused
+     */
+    public int[] locations(int program, VertexLayout layout) {
+        if (mLast >= 0 && mPrograms[mLast] == program && mLayouts[mLast] == layout)
+            return mLocations[mLast];
+        for (int i = 0; i < mCount; i++) {
+            if (mPrograms[i] == program && mLayouts[i] == layout) {
+                mLast = i;
+                return mLocations[i];
+            }
+        }
+
+        int[] locations = new int[layout.getAttributeCount()];
+        for (int a = 0; a < locations.length; a++)
+            locations[a] = mGL.glGetAttribLocation(program, layout.getName(a));
+        mLookups++;
+        if (mCount == mPrograms.length) {
+            mPrograms = Arrays.copyOf(mPrograms, mCount * 2);
+            mLayouts = Arrays.copyOf(mLayouts, mCount * 2);
+            mLocations = Arrays.copyOf(mLocations, mCount * 2);
+        }
+        mPrograms[mCount] = program;
+        mLayouts[mCount] = layout;
+        mLocations[mCount] = locations;
+        mLast = mCount++;
+        return locations;
+    }
+
+    /** @return how many program and layout pairs had to be looked up */
+    public int getLookups() { return mLookups; }
+
+    /**
+     * Forgets every cached location, for when programs are deleted or relinked or the context
+     * is lost
+     */
+    public void clear() {
+        Arrays.fill(mLayouts, 0, mCount, null);
+        Arrays.fill(mLocations, 0, mCount, null);
+        mCount = 0;
+        mLast = -1;
+        mBound = null;
+    }
+}
@@ -0,0 +1,60 @@
+package matt.noobgraphics.graphics.gl;
+
+import java.nio.Buffer;
+
+/**
+ * The subset of OpenGL ES 2.0 that the renderer talks to. Everything that draws goes through one
+ * of these instead of calling GLES20 directly, so the render logic can run on a plain JVM against
+ * a fake backend (see the unit tests) as well as on a device.
+ *
+ * Method names and arguments mirror {@link android.opengl.GLES20} one to one, and constants are
+ * the GLES20 ones.
+ */
+public interface GLBackend {
+    void glClearColor(float red, float green, float blue, float alpha);
+    void glClear(int mask);
+    void glViewport(int x, int y, int width, int height);
+    int glGetError();
+
+    int glCreateShader(int type);
+    void glShaderSource(int shader, String source);
+    void glCompileShader(int shader);
+    void glDeleteShader(int shader);
+
+    int glCreateProgram();
+    void glAttachShader(int program, int shader);
+    void glLinkProgram(int program);
+    void glUseProgram(int program);
+    void glDeleteProgram(int program);
+
+    int glGetAttribLocation(int program, String name);
+    int glGetUniformLocation(int program, String name);
+    void glEnableVertexAttribArray(int index);
+    void glDisableVertexAttribArray(int index);
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr);
+    /** Reads from the bound GL_ARRAY_BUFFER, starting offset bytes in */
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset);
+
+    void glGenBuffers(int n, int[] buffers, int offset);
+    void glDeleteBuffers(int n, int[] buffers, int offset);
+    void glBindBuffer(int target, int buffer);
+    /** @param data null to allocate size bytes of undefined content (orphaning any old store) */
+    void glBufferData(int target, int size, Buffer data, int usage);
+    void glBufferSubData(int target, int offset, int size, Buffer data);
+
+    void glGenTextures(int n, int[] textures, int offset);
+    void glDeleteTextures(int n, int[] textures, int offset);
+    void glBindTexture(int target, int texture);
+    void glTexParameteri(int target, int pname, int param);
+    void glPixelStorei(int pname, int param);
+    void glTexImage2D(int target, int level, int internalformat, int width, int height, int border,
+                      int format, int type, Buffer pixels);
+
+    void glUniform4fv(int location, int count, float[] v, int offset);
+    void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+
+    void glDrawArrays(int mode, int first, int count);
+    void glDrawElements(int mode, int count, int type, Buffer indices);
+    /** Reads indices from the bound GL_ELEMENT_ARRAY_BUFFER, starting offset bytes in */
+    void glDrawElements(int mode, int count, int type, int offset);
+}
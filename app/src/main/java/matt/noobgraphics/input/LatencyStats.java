@@ -0,0 +1,36 @@
+package matt.noobgraphics.input;
+
+/**
+ * Running latency numbers. Written by one thread; readers on other threads see recent but not
+ * necessarily mutually consistent values, which is fine for display and logging.
+ */
+public class LatencyStats {
+    // weight of the newest sample in the moving average
+    private static final double SMOOTHING = 0.1;
+
+    private volatile long mCount;
+    private volatile long mLastNanos;
+    private volatile long mMaxNanos;
+    private volatile double mAverageNanos;
+
+    public void record(long nanos) {
+        mLastNanos = nanos;
+        if (nanos > mMaxNanos)
+            mMaxNanos = nanos;
+        mAverageNanos = mCount == 0 ? nanos : mAverageNanos + SMOOTHING * (nanos - mAverageNanos);
+        mCount = mCount + 1;
+    }
+
+    public void reset() {
+        mCount = 0;
+        mLastNanos = mMaxNanos = 0;
+        mAverageNanos = 0;
+    }
+
+    public long getCount() { return mCount; }
+    public long getLastNanos() { return mLastNanos; }
+    public long getMaxNanos() { return mMaxNanos; }
+
+    /** @return exponential moving average, so it follows recent behaviour */
+    public double getAverageNanos() { return mAverageNanos; }
+}
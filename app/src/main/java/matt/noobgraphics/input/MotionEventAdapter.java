@@ -0,0 +1,59 @@
+package matt.noobgraphics.input;
+
+import android.view.MotionEvent;
+
+/**
+ * Presents an android MotionEvent as a {@link TouchEvent}. Reusable: point it at each new event
+ * with {@link #set(MotionEvent)} instead of allocating one per event.
+ */
+public class MotionEventAdapter implements TouchEvent {
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private MotionEvent mEvent;
+
+    public MotionEventAdapter set(MotionEvent event) {
+        mEvent = event;
+        return this;
+    }
+
+    @Override
+    public int getAction() {
+        return mEvent.getActionMasked();
+    }
+
+    @Override
+    public int getHistorySize() {
+        return mEvent.getHistorySize();
+    }
+
+    @Override
+    public float getHistoricalX(int pos) {
+        return mEvent.getHistoricalX(pos);
+    }
+
+    @Override
+    public float getHistoricalY(int pos) {
+        return mEvent.getHistoricalY(pos);
+    }
+
+    // MotionEvent times are SystemClock.uptimeMillis(), which is CLOCK_MONOTONIC like nanoTime()
+    @Override
+    public long getHistoricalEventTimeNanos(int pos) {
+        return mEvent.getHistoricalEventTime(pos) * NANOS_PER_MILLI;
+    }
+
+    @Override
+    public float getX() {
+        return mEvent.getX();
+    }
+
+    @Override
+    public float getY() {
+        return mEvent.getY();
+    }
+
+    @Override
+    public long getEventTimeNanos() {
+        return mEvent.getEventTime() * NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,43 @@
+package matt.noobgraphics.input;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allows at most one outstanding render request. The input thread asks before calling
+ * requestRender(), and the GL thread clears the request when it starts the frame. Since frames
+ * are paced by buffer swaps, that caps requests at one per vsync however fast input arrives.
+ */
+public class RenderRequestThrottle {
+    private final AtomicBoolean mPending = new AtomicBoolean();
+    private final AtomicLong mRequested = new AtomicLong();
+    private final AtomicLong mSuppressed = new AtomicLong();
+
+    /**
+     * Input side.
+     * @return true if the caller should request a render now, false if one is already pending
+     */
+    public boolean tryRequest() {
+        if (mPending.compareAndSet(false, true)) {
+            mRequested.incrementAndGet();
+            return true;
+        }
+        mSuppressed.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * GL side: call at the start of each frame, before reading input state
+     */
+    public void onFrameStarted() {
+        mPending.set(false);
+    }
+
+    public boolean isPending() { return mPending.get(); }
+
+    /** @return render requests let through */
+    public long getRequestedCount() { return mRequested.get(); }
+
+    /** @return render requests folded into an already pending one */
+    public long getSuppressedCount() { return mSuppressed.get(); }
+}
@@ -0,0 +1,123 @@
+package matt.noobgraphics.input;
+
+/**
+ * Folds every touch sample, including the historical ones MotionEvent batches up, into one
+ * aggregated delta per frame. Nothing is dropped, however many samples arrive between frames,
+ * and the consumer applies the result once.
+ *
+ * Besides the raw movement it accumulates a rotation in pixels around the view centre using
+ * the drag rule from the OpenGL ES sample: horizontal movement counts backwards below the
+ * mid-line and vertical movement counts backwards left of it.
+ *
+ * Single threaded: feed and take on the thread that receives the events.
+ */
+public class TouchCoalescer {
+    private float mWidth;
+    private float mHeight;
+
+    private boolean mTracking;
+    private float mPreviousX;
+    private float mPreviousY;
+
+    private float mDx;
+    private float mDy;
+    private float mRotation;
+    private int mSamples;
+    private long mOldestSampleNanos;
+
+    private long mTotalSamples;
+    private long mTotalEvents;
+
+    public void setViewSize(float width, float height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * Consumes an event and all its historical samples.
+     * @param e the event
+     * @return true if it moved anything, i.e. there is a delta to apply
+     */
+    public boolean onTouchEvent(TouchEvent e) {
+        mTotalEvents++;
+        int before = mSamples;
+
+        switch (e.getAction()) {
+            case TouchEvent.ACTION_DOWN:
+                mTracking = true;
+                mPreviousX = e.getX();
+                mPreviousY = e.getY();
+                break;
+
+            case TouchEvent.ACTION_MOVE:
+                if (!mTracking) {
+                    // missed the down, start from the oldest sample we have
+                    mTracking = true;
+                    mPreviousX = e.getHistorySize() > 0 ? e.getHistoricalX(0) : e.getX();
+                    mPreviousY = e.getHistorySize() > 0 ? e.getHistoricalY(0) : e.getY();
+                }
+                for (int i = 0, n = e.getHistorySize(); i < n; i++)
+                    addSample(e.getHistoricalX(i), e.getHistoricalY(i), e.getHistoricalEventTimeNanos(i));
+                addSample(e.getX(), e.getY(), e.getEventTimeNanos());
+                break;
+
+            case TouchEvent.ACTION_UP:
+            case TouchEvent.ACTION_CANCEL:
+                mTracking = false;
+                break;
+        }
+
+        return mSamples > before;
+    }
+
+    private void addSample(float x, float y, long timeNanos) {
+        float dx = x - mPreviousX;
+        float dy = y - mPreviousY;
+        mPreviousX = x;
+        mPreviousY = y;
+        if (dx == 0 && dy == 0)
+            return;
+
+        mDx += dx;
+        mDy += dy;
+
+        // reverse direction of rotation above the mid-line
+        float rdx = y > mHeight / 2 ? -dx : dx;
+        // reverse direction of rotation to left of the mid-line
+        float rdy = x < mWidth / 2 ? -dy : dy;
+        mRotation += rdx + rdy;
+
+        if (mSamples == 0)
+            mOldestSampleNanos = timeNanos;
+        mSamples++;
+        mTotalSamples++;
+    }
+
+    /** @return true if there are samples that haven't been taken yet */
+    public boolean hasDelta() { return mSamples > 0; }
+
+    public float getDx() { return mDx; }
+    public float getDy() { return mDy; }
+    public float getRotation() { return mRotation; }
+
+    /** @return number of samples folded into the current delta */
+    public int getSampleCount() { return mSamples; }
+
+    /** @return timestamp of the first sample folded into the current delta */
+    public long getOldestSampleNanos() { return mOldestSampleNanos; }
+
+    /**
+     * Starts a new delta. Call after applying the current one.
+     */
+    public void reset() {
+        mDx = mDy = mRotation = 0;
+        mSamples = 0;
+        mOldestSampleNanos = 0;
+    }
+
+    /** @return samples seen so far, including historical ones */
+    public long getTotalSamples() { return mTotalSamples; }
+
+    /** @return events seen so far */
+    public long getTotalEvents() { return mTotalEvents; }
+}
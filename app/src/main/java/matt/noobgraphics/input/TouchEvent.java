@@ -0,0 +1,27 @@
+package matt.noobgraphics.input;
+
+/**
+ * Platform-neutral view of a single-pointer touch event with its batched history, modelled on
+ * android.view.MotionEvent. Historical samples are the positions the panel reported since the
+ * previous event, oldest first; the current position comes after them.
+ *
+ * Times are in nanoseconds on the System.nanoTime() time base.
+ */
+public interface TouchEvent {
+    // same values as MotionEvent
+    int ACTION_DOWN = 0;
+    int ACTION_UP = 1;
+    int ACTION_MOVE = 2;
+    int ACTION_CANCEL = 3;
+
+    int getAction();
+
+    int getHistorySize();
+    float getHistoricalX(int pos);
+    float getHistoricalY(int pos);
+    long getHistoricalEventTimeNanos(int pos);
+
+    float getX();
+    float getY();
+    long getEventTimeNanos();
+}
@@ -150,6 +150,82 @@ public class Matrix4 {
                            m[3]*rhs.x() + m[7]*rhs.y() + m[11]*rhs.z() + m[15]*rhs.w());
     }
 
+    /**
+     * Matrix times matrix multiplication into an existing matrix, so nothing is allocated.
+     * out may be this or rhs.
+     * @param rhs the right hand side matrix
+     * @param out the matrix to write the result to
+     * @return out
+     */
+    public Matrix4 multiply(Matrix4 rhs, Matrix4 out) {
+        multiplyMM(out.m, 0, m, 0, rhs.m, 0);
+        return out;
+    }
+
+    /**
+     * Matrix4 times vector4 multiplication into an existing vector, so nothing is allocated.
+     * out may be rhs.
+     * @param rhs the vector to transform
+     * @param out the vector to write the result to
+     * @return out
+     */
+    public Vector4 multiply(Vector4 rhs, Vector4 out) {
+        float x = rhs.v[0], y = rhs.v[1], z = rhs.v[2], w = rhs.v[3];
+        out.v[0] = m[0]*x + m[4]*y + m[8]*z  + m[12]*w;
+        out.v[1] = m[1]*x + m[5]*y + m[9]*z  + m[13]*w;
+        out.v[2] = m[2]*x + m[6]*y + m[10]*z + m[14]*w;
+        out.v[3] = m[3]*x + m[7]*y + m[11]*z + m[15]*w;
+        return out;
+    }
+
+    /**
+     * Raw column-major multiply on packed arrays: out = lhs * rhs. This is the kernel the
+     * allocation-free paths use, and it works on matrices stored back to back in one big array.
+     * Both inputs are read before the column they affect is written, so out may alias lhs or rhs.
+     * @param out destination array
+     * @param outOffset index of the first element of the result
+     * @param lhs left hand side array
+     * @param lhsOffset index of the first element of the left hand matrix
+     * @param rhs right hand side array
+     * @param rhsOffset index of the first element of the right hand matrix
+     */
+    public static void multiplyMM(float[] out, int outOffset,
+                                  float[] lhs, int lhsOffset,
+                                  float[] rhs, int rhsOffset) {
+        final float a0 = lhs[lhsOffset],    a4 = lhs[lhsOffset+4], a8  = lhs[lhsOffset+8],  a12 = lhs[lhsOffset+12];
+        final float a1 = lhs[lhsOffset+1],  a5 = lhs[lhsOffset+5], a9  = lhs[lhsOffset+9],  a13 = lhs[lhsOffset+13];
+        final float a2 = lhs[lhsOffset+2],  a6 = lhs[lhsOffset+6], a10 = lhs[lhsOffset+10], a14 = lhs[lhsOffset+14];
+        final float a3 = lhs[lhsOffset+3],  a7 = lhs[lhsOffset+7], a11 = lhs[lhsOffset+11], a15 = lhs[lhsOffset+15];
+
+        // Column 1
+        float b0 = rhs[rhsOffset], b1 = rhs[rhsOffset+1], b2 = rhs[rhsOffset+2], b3 = rhs[rhsOffset+3];
+        out[outOffset]   = a0*b0 + a4*b1 + a8*b2  + a12*b3;
+        out[outOffset+1] = a1*b0 + a5*b1 + a9*b2  + a13*b3;
+        out[outOffset+2] = a2*b0 + a6*b1 + a10*b2 + a14*b3;
+        out[outOffset+3] = a3*b0 + a7*b1 + a11*b2 + a15*b3;
+
+        // Column 2
+        b0 = rhs[rhsOffset+4];   b1 = rhs[rhsOffset+5];   b2 = rhs[rhsOffset+6];   b3 = rhs[rhsOffset+7];
+        out[outOffset+4] = a0*b0 + a4*b1 + a8*b2  + a12*b3;
+        out[outOffset+5] = a1*b0 + a5*b1 + a9*b2  + a13*b3;
+        out[outOffset+6] = a2*b0 + a6*b1 + a10*b2 + a14*b3;
+        out[outOffset+7] = a3*b0 + a7*b1 + a11*b2 + a15*b3;
+
+        // Column 3
+        b0 = rhs[rhsOffset+8];   b1 = rhs[rhsOffset+9];   b2 = rhs[rhsOffset+10];   b3 = rhs[rhsOffset+11];
+        out[outOffset+8] = a0*b0 + a4*b1 + a8*b2  + a12*b3;
+        out[outOffset+9] = a1*b0 + a5*b1 + a9*b2  + a13*b3;
+        out[outOffset+10] = a2*b0 + a6*b1 + a10*b2 + a14*b3;
+        out[outOffset+11] = a3*b0 + a7*b1 + a11*b2 + a15*b3;
+
+        // Column 4
+        b0 = rhs[rhsOffset+12];   b1 = rhs[rhsOffset+13];   b2 = rhs[rhsOffset+14];   b3 = rhs[rhsOffset+15];
+        out[outOffset+12] = a0*b0 + a4*b1 + a8*b2  + a12*b3;
+        out[outOffset+13] = a1*b0 + a5*b1 + a9*b2  + a13*b3;
+        out[outOffset+14] = a2*b0 + a6*b1 + a10*b2 + a14*b3;
+        out[outOffset+15] = a3*b0 + a7*b1 + a11*b2 + a15*b3;
+    }
+
     /**
      * Transpose of the matrix. Returns a new matrix.
      * @return the transpose
@@ -342,6 +418,123 @@ public class Matrix4 {
         return mat;
     }
 
+    /**
+     * Overwrites this matrix with a camera (view) matrix, same as android.opengl.Matrix.setLookAtM
+     * @return this
+     */
+    public Matrix4 setLookAt(float eyeX, float eyeY, float eyeZ,
+                             float centerX, float centerY, float centerZ,
+                             float upX, float upY, float upZ) {
+        // forward
+        float fx = centerX - eyeX, fy = centerY - eyeY, fz = centerZ - eyeZ;
+        float rlf = 1.0f / (float) Math.sqrt(fx*fx + fy*fy + fz*fz);
+        fx *= rlf;  fy *= rlf;  fz *= rlf;
+
+        // side = forward x up
+        float sx = fy*upZ - fz*upY, sy = fz*upX - fx*upZ, sz = fx*upY - fy*upX;
+        float rls = 1.0f / (float) Math.sqrt(sx*sx + sy*sy + sz*sz);
+        sx *= rls;  sy *= rls;  sz *= rls;
+
+        // recomputed up = side x forward
+        float ux = sy*fz - sz*fy, uy = sz*fx - sx*fz, uz = sx*fy - sy*fx;
+
+        m[0] = sx;  m[4] = sy;  m[8]  = sz;
+        m[1] = ux;  m[5] = uy;  m[9]  = uz;
+        m[2] = -fx; m[6] = -fy; m[10] = -fz;
+        m[3] = 0;   m[7] = 0;   m[11] = 0;
+
+        m[12] = -(sx*eyeX + sy*eyeY + sz*eyeZ);
+        m[13] = -(ux*eyeX + uy*eyeY + uz*eyeZ);
+        m[14] = fx*eyeX + fy*eyeY + fz*eyeZ;
+        m[15] = 1.0f;
+        return this;
+    }
+
+    /**
+     * Overwrites this matrix with a perspective frustum, same as android.opengl.Matrix.frustumM
+     * @return this
+     */
+    public Matrix4 setFrustum(float left, float right, float bottom, float top, float zNear, float zFar) {
+        for (int i = 0; i < MATRIX_SIZE; i++)
+            m[i] = 0.0f;
+
+        m[0]  = 2.0f * zNear / (right - left);
+        m[5]  = 2.0f * zNear / (top - bottom);
+        m[8]  = (right + left) / (right - left);
+        m[9]  = (top + bottom) / (top - bottom);
+        m[10] = -(zFar + zNear) / (zFar - zNear);
+        m[11] = -1.0f;
+        m[14] = -2.0f * zFar * zNear / (zFar - zNear);
+        return this;
+    }
+
+    /**
+     * Overwrites this matrix with a rotation around the given (unit length) axis. The in-place
+     * version of {@link #rotate(Vector3, float)}
+     * @param rad the degree in radians to rotate
+     * @return this
+     */
+    public Matrix4 setRotate(float rad, float x, float y, float z) {
+        float cos = (float) Math.cos(rad);
+        float sin = (float) Math.sin(rad);
+        float nc = 1 - cos;
+
+        m[0] = cos + x*x*nc;    m[4] = x*y*nc - z*sin;  m[8]  = x*z*nc + y*sin;  m[12] = 0;
+        m[1] = y*x*nc + z*sin;  m[5] = cos + y*y*nc;    m[9]  = y*z*nc - x*sin;  m[13] = 0;
+        m[2] = z*x*nc - y*sin;  m[6] = z*y*nc + x*sin;  m[10] = cos + z*z*nc;    m[14] = 0;
+        m[3] = 0;               m[7] = 0;               m[11] = 0;               m[15] = 1.0f;
+        return this;
+    }
+
+    /**
+     * Overwrites this matrix with translate * rotate * scale
+     * @param t the translation
+     * @param r the (unit length) rotation
+     * @param s the scale
+     * @return this
+     */
+    public Matrix4 setTRS(Vector3 t, Quaternion r, Vector3 s) {
+        setTRS(m, 0, t.x(), t.y(), t.z(), r.x(), r.y(), r.z(), r.w(), s.x(), s.y(), s.z());
+        return this;
+    }
+
+    /**
+     * Packed version of {@link #setTRS(Vector3, Quaternion, Vector3)}: writes the column-major
+     * matrix T * R * S to out[outOffset..outOffset+15].
+     */
+    public static void setTRS(float[] out, int outOffset,
+                              float tx, float ty, float tz,
+                              float qx, float qy, float qz, float qw,
+                              float sx, float sy, float sz) {
+        float xx = qx*qx, yy = qy*qy, zz = qz*qz;
+        float xy = qx*qy, xz = qx*qz, yz = qy*qz;
+        float wx = qw*qx, wy = qw*qy, wz = qw*qz;
+
+        // Column 1
+        out[outOffset]    = (1 - 2*(yy + zz)) * sx;
+        out[outOffset+1]  = 2*(xy + wz) * sx;
+        out[outOffset+2]  = 2*(xz - wy) * sx;
+        out[outOffset+3]  = 0;
+
+        // Column 2
+        out[outOffset+4]  = 2*(xy - wz) * sy;
+        out[outOffset+5]  = (1 - 2*(xx + zz)) * sy;
+        out[outOffset+6]  = 2*(yz + wx) * sy;
+        out[outOffset+7]  = 0;
+
+        // Column 3
+        out[outOffset+8]  = 2*(xz + wy) * sz;
+        out[outOffset+9]  = 2*(yz - wx) * sz;
+        out[outOffset+10] = (1 - 2*(xx + yy)) * sz;
+        out[outOffset+11] = 0;
+
+        // Column 4
+        out[outOffset+12] = tx;
+        out[outOffset+13] = ty;
+        out[outOffset+14] = tz;
+        out[outOffset+15] = 1.0f;
+    }
+
     /**
      * 0 based index access
      * @param col The column of the element to access
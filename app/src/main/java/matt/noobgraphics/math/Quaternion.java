@@ -0,0 +1,218 @@
+package matt.noobgraphics.math;
+
+/**
+ * Rotation quaternion stored as [ x y z w ], w being the scalar part.
+ *
+ * Besides the object methods there are static kernels that work on quaternions packed 4 floats
+ * apiece into big arrays, for code that keeps thousands of rotations without an object each.
+ */
+public class Quaternion {
+    public final static int SIZE = 4;
+
+    // below this the angle between two rotations is small enough to lerp instead of slerp
+    private final static float SLERP_LINEAR_THRESHOLD = 0.9995f;
+
+    public final float[] q = new float[4];
+
+    /**
+     * Creates the identity rotation
+     */
+    public Quaternion() {
+        q[3] = 1.0f;
+    }
+
+    public Quaternion(float x, float y, float z, float w) {
+        q[0] = x;
+        q[1] = y;
+        q[2] = z;
+        q[3] = w;
+    }
+
+    /**
+     * Deep copy constructor
+     */
+    public Quaternion(Quaternion other) {
+        set(other);
+    }
+
+    /**
+     * Creates a rotation around the given axis
+     * @param axis the (unit length) axis to rotate around
+     * @param rad the angle in radians
+     * @return the rotation
+     */
+    public static Quaternion fromAxisAngle(Vector3 axis, float rad) {
+        return new Quaternion().setAxisAngle(axis.x(), axis.y(), axis.z(), rad);
+    }
+
+    /**
+     * Overwrites this with a rotation around the given (unit length) axis
+     * @param rad the angle in radians
+     * @return this
+     */
+    public Quaternion setAxisAngle(float x, float y, float z, float rad) {
+        float s = (float) Math.sin(rad / 2);
+        q[0] = x * s;
+        q[1] = y * s;
+        q[2] = z * s;
+        q[3] = (float) Math.cos(rad / 2);
+        return this;
+    }
+
+    public Quaternion set(Quaternion other) {
+        q[0] = other.q[0];
+        q[1] = other.q[1];
+        q[2] = other.q[2];
+        q[3] = other.q[3];
+        return this;
+    }
+
+    /**
+     * Quaternion product, i.e. apply rhs first and then this. Returns a new Quaternion.
+     */
+    public Quaternion multiply(Quaternion rhs) {
+        return multiply(rhs, new Quaternion());
+    }
+
+    /**
+     * Quaternion product into an existing quaternion. out may be this or rhs.
+     * @return out
+     */
+    public Quaternion multiply(Quaternion rhs, Quaternion out) {
+        multiply(out.q, 0, q, 0, rhs.q, 0);
+        return out;
+    }
+
+    public float dot(Quaternion rhs) {
+        return q[0]*rhs.q[0] + q[1]*rhs.q[1] + q[2]*rhs.q[2] + q[3]*rhs.q[3];
+    }
+
+    public float length() {
+        return (float) Math.sqrt(dot(this));
+    }
+
+    /**
+     * Normalize in place, i.e. make length = 1
+     */
+    public void normalize() {
+        normalize(q, 0);
+    }
+
+    /**
+     * The inverse rotation. Assumes unit length. Returns a new Quaternion.
+     */
+    public Quaternion conjugate() {
+        return new Quaternion(-q[0], -q[1], -q[2], q[3]);
+    }
+
+    /**
+     * Rotation matrix of this quaternion. Returns a new matrix.
+     */
+    public Matrix4 toMatrix() {
+        Matrix4 mat = new Matrix4();
+        Matrix4.setTRS(mat.m, 0, 0, 0, 0, q[0], q[1], q[2], q[3], 1, 1, 1);
+        return mat;
+    }
+
+    /**
+     * Spherical interpolation along the shortest path. out may be a or b.
+     * @param t 0 gives a, 1 gives b
+     * @return out
+     */
+    public static Quaternion slerp(Quaternion a, Quaternion b, float t, Quaternion out) {
+        slerp(out.q, 0, a.q, 0, b.q, 0, t);
+        return out;
+    }
+
+    /**
+     * Packed quaternion product: out = lhs * rhs. out may alias either input.
+     */
+    public static void multiply(float[] out, int outOffset,
+                                float[] lhs, int lhsOffset,
+                                float[] rhs, int rhsOffset) {
+        float ax = lhs[lhsOffset], ay = lhs[lhsOffset+1], az = lhs[lhsOffset+2], aw = lhs[lhsOffset+3];
+        float bx = rhs[rhsOffset], by = rhs[rhsOffset+1], bz = rhs[rhsOffset+2], bw = rhs[rhsOffset+3];
+        out[outOffset]   = aw*bx + ax*bw + ay*bz - az*by;
+        out[outOffset+1] = aw*by - ax*bz + ay*bw + az*bx;
+        out[outOffset+2] = aw*bz + ax*by - ay*bx + az*bw;
+        out[outOffset+3] = aw*bw - ax*bx - ay*by - az*bz;
+    }
+
+    /**
+     * Packed normalize in place. A zero quaternion is left alone.
+     */
+    public static void normalize(float[] a, int offset) {
+        float x = a[offset], y = a[offset+1], z = a[offset+2], w = a[offset+3];
+        float lengthSq = x*x + y*y + z*z + w*w;
+        if (lengthSq != 0) {
+            float inv = 1.0f / (float) Math.sqrt(lengthSq);
+            a[offset]   = x * inv;
+            a[offset+1] = y * inv;
+            a[offset+2] = z * inv;
+            a[offset+3] = w * inv;
+        }
+    }
+
+    /**
+     * Packed spherical interpolation along the shortest path. Falls back to a normalized lerp
+     * when the two rotations are nearly the same, where slerp is numerically unstable and the
+     * difference is invisible. out may alias either input.
+     * @param t 0 gives a, 1 gives b
+     */
+    public static void slerp(float[] out, int outOffset,
+                             float[] a, int aOffset,
+                             float[] b, int bOffset, float t) {
+        float ax = a[aOffset], ay = a[aOffset+1], az = a[aOffset+2], aw = a[aOffset+3];
+        float bx = b[bOffset], by = b[bOffset+1], bz = b[bOffset+2], bw = b[bOffset+3];
+
+        float cos = ax*bx + ay*by + az*bz + aw*bw;
+        // q and -q are the same rotation; flip b to take the short way round
+        if (cos < 0) {
+            cos = -cos;
+            bx = -bx;   by = -by;   bz = -bz;   bw = -bw;
+        }
+
+        float wa, wb;
+        if (cos > SLERP_LINEAR_THRESHOLD) {
+            wa = 1 - t;
+            wb = t;
+        } else {
+            float theta = (float) Math.acos(cos);
+            float invSin = 1.0f / (float) Math.sin(theta);
+            wa = (float) Math.sin((1 - t) * theta) * invSin;
+            wb = (float) Math.sin(t * theta) * invSin;
+        }
+
+        out[outOffset]   = wa*ax + wb*bx;
+        out[outOffset+1] = wa*ay + wb*by;
+        out[outOffset+2] = wa*az + wb*bz;
+        out[outOffset+3] = wa*aw + wb*bw;
+        if (cos > SLERP_LINEAR_THRESHOLD)
+            normalize(out, outOffset);
+    }
+
+    public float x() { return q[0]; }
+    public float y() { return q[1]; }
+    public float z() { return q[2]; }
+    public float w() { return q[3]; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Quaternion)) return false;
+
+        Quaternion rhs = (Quaternion) o;
+        for (int i = 0; i < SIZE; i++)
+            if (q[i] != rhs.q[i]) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        // + 0.0f turns -0 into 0, which equals treats as the same
+        for (int i = 0; i < SIZE; i++)
+            hash = 31 * hash + Float.floatToIntBits(q[i] + 0.0f);
+        return hash;
+    }
+}
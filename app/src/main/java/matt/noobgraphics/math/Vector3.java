@@ -96,6 +96,20 @@ public class Vector3 {
         return new Vector3(v[0]/rhs.v[0], v[1]/rhs.v[1], v[2]/rhs.v[2]);
     }
 
+    /**
+     * Linear interpolation into an existing vector. out may be this or rhs.
+     * @param rhs the vector at t = 1
+     * @param t interpolation factor, 0 gives this
+     * @param out the vector to write the result to
+     * @return out
+     */
+    public Vector3 lerp(Vector3 rhs, float t, Vector3 out) {
+        out.v[0] = v[0] + (rhs.v[0] - v[0]) * t;
+        out.v[1] = v[1] + (rhs.v[1] - v[1]) * t;
+        out.v[2] = v[2] + (rhs.v[2] - v[2]) * t;
+        return out;
+    }
+
     /**
      * Dot product
      * @param rhs the vector to calculate the dot product with
@@ -114,6 +128,38 @@ public class Vector3 {
                            v[0]*rhs.V(1) - v[1]*rhs.V(0));
     }
 
+    /**
+     * Packed cross product: out = a x b, 3 floats each. out may alias either input.
+     */
+    public static void cross(float[] out, int outOffset, float[] a, int aOffset, float[] b, int bOffset) {
+        float ax = a[aOffset], ay = a[aOffset+1], az = a[aOffset+2];
+        float bx = b[bOffset], by = b[bOffset+1], bz = b[bOffset+2];
+        out[outOffset]   = ay*bz - az*by;
+        out[outOffset+1] = az*bx - ax*bz;
+        out[outOffset+2] = ax*by - ay*bx;
+    }
+
+    /**
+     * Packed dot product of 3 floats each
+     */
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset) {
+        return a[aOffset]*b[bOffset] + a[aOffset+1]*b[bOffset+1] + a[aOffset+2]*b[bOffset+2];
+    }
+
+    /**
+     * Packed normalize in place. A zero vector is left alone.
+     */
+    public static void normalize(float[] a, int offset) {
+        float x = a[offset], y = a[offset+1], z = a[offset+2];
+        float lengthSq = x*x + y*y + z*z;
+        if (lengthSq != 0) {
+            float inv = 1.0f / (float) Math.sqrt(lengthSq);
+            a[offset]   = x * inv;
+            a[offset+1] = y * inv;
+            a[offset+2] = z * inv;
+        }
+    }
+
     /**
      * Normalize, i.e. make length = 1
      */
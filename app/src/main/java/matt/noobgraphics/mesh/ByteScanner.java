@@ -0,0 +1,324 @@
+package matt.noobgraphics.mesh;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Buffered reader for mesh files that parses numbers straight from the bytes, without making a
+ * String per token. Handles both text (whitespace separated tokens, line by line) and binary
+ * (little or big endian values) data, since PLY files mix the two.
+ *
+ * Reads either a channel sequentially or a FileChannel from a given offset with positional
+ * reads, which leaves the channel's own position alone so several scanners can read different
+ * parts of one file at the same time.
+ */
+public class ByteScanner {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    // exact powers of ten in double precision
+    private static final double[] POW10 = new double[23];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++)
+            POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private final ReadableByteChannel mChannel;
+    private final FileChannel mFile;
+    private long mFilePosition;
+
+    private final byte[] mBytes;
+    private final ByteBuffer mBuffer;
+    private int mPos;
+    private int mLimit;
+    private long mBufferStart;      // stream offset of mBytes[0]
+    private boolean mEof;
+
+    public ByteScanner(ReadableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ByteScanner(ReadableByteChannel channel, int bufferSize) {
+        mChannel = channel;
+        mFile = null;
+        mBytes = new byte[bufferSize];
+        mBuffer = ByteBuffer.wrap(mBytes);
+    }
+
+    /**
+     * Reads the file from the given offset to its end with positional reads
+     */
+    public ByteScanner(FileChannel file, long offset, int bufferSize) {
+        mChannel = null;
+        mFile = file;
+        mFilePosition = offset;
+        mBufferStart = offset;
+        mBytes = new byte[bufferSize];
+        mBuffer = ByteBuffer.wrap(mBytes);
+    }
+
+    /**
+     * Moves unread bytes to the front and reads more after them
+     * @return false at the end of the stream
+     */
+    private boolean fill() throws IOException {
+        if (mEof)
+            return false;
+        int remaining = mLimit - mPos;
+        System.arraycopy(mBytes, mPos, mBytes, 0, remaining);
+        mBufferStart += mPos;
+        mPos = 0;
+        mLimit = remaining;
+
+        mBuffer.clear();
+        mBuffer.position(remaining);
+        int read;
+        do {
+            if (mFile != null) {
+                read = mFile.read(mBuffer, mFilePosition);
+                if (read > 0)
+                    mFilePosition += read;
+            } else {
+                read = mChannel.read(mBuffer);
+            }
+        } while (read == 0);
+        if (read < 0) {
+            mEof = true;
+            return false;
+        }
+        mLimit += read;
+        return true;
+    }
+
+    /** @return the offset of the next unread byte, counted from where the scanner started */
+    public long position() {
+        return mBufferStart + mPos;
+    }
+
+    /** @return the next byte without consuming it, or -1 at the end */
+    public int peek() throws IOException {
+        if (mPos == mLimit && !fill())
+            return -1;
+        return mBytes[mPos] & 0xFF;
+    }
+
+    /** @return the next byte, or -1 at the end */
+    public int read() throws IOException {
+        if (mPos == mLimit && !fill())
+            return -1;
+        return mBytes[mPos++] & 0xFF;
+    }
+
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    /**
+     * Skips spaces and tabs, but not line ends
+     */
+    public void skipSpaces() throws IOException {
+        while (true) {
+            if (mPos == mLimit && !fill())
+                return;
+            if (!isSpace(mBytes[mPos]))
+                return;
+            mPos++;
+        }
+    }
+
+    /**
+     * Skips spaces, then checks for the end of the line, a comment or the end of the data
+     */
+    public boolean atLineEnd() throws IOException {
+        skipSpaces();
+        int c = peek();
+        return c == '\n' || c == '#' || c == -1;
+    }
+
+    /**
+     * Consumes everything up to and including the next line feed
+     */
+    public void skipLine() throws IOException {
+        while (true) {
+            if (mPos == mLimit && !fill())
+                return;
+            if (mBytes[mPos++] == '\n')
+                return;
+        }
+    }
+
+    /**
+     * Skips one whitespace separated token on the current line
+     * @return false if the line had no more tokens
+     */
+    public boolean skipToken() throws IOException {
+        if (atLineEnd())
+            return false;
+        int c;
+        while ((c = peek()) != -1 && c != '\n' && !isSpace(c))
+            mPos++;
+        return true;
+    }
+
+    /**
+     * Reads the rest of the line as a String, without the line end. Allocates; meant for headers.
+     * @return the line, or null at the end of the data
+     */
+    public String readLine() throws IOException {
+        if (peek() == -1)
+            return null;
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = read()) != -1 && c != '\n') {
+            if (c != '\r')
+                line.append((char) c);
+        }
+        return line.toString();
+    }
+
+    /**
+     * Parses a decimal integer after skipping leading spaces
+     */
+    public int nextInt() throws IOException {
+        skipSpaces();
+        int c = peek();
+        boolean negative = c == '-';
+        if (c == '-' || c == '+') {
+            mPos++;
+            c = peek();
+        }
+        if (c < '0' || c > '9')
+            throw new IOException("Expected an integer at offset " + position());
+        long value = 0;
+        while (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE + 1L)
+                throw new IOException("Integer too large at offset " + position());
+            mPos++;
+            c = peek();
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Parses a decimal floating point number (with optional sign, fraction and exponent) after
+     * skipping leading spaces. Accurate to the float's last bit, give or take one.
+     */
+    public float nextFloat() throws IOException {
+        skipSpaces();
+        int c = peek();
+        boolean negative = c == '-';
+        if (c == '-' || c == '+') {
+            mPos++;
+            c = peek();
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean any = false;
+        while (c >= '0' && c <= '9') {
+            any = true;
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0)
+                    digits++;
+            } else {
+                exponent++;
+            }
+            mPos++;
+            c = peek();
+        }
+        if (c == '.') {
+            mPos++;
+            c = peek();
+            while (c >= '0' && c <= '9') {
+                any = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0)
+                        digits++;
+                    exponent--;
+                }
+                mPos++;
+                c = peek();
+            }
+        }
+        if (!any)
+            throw new IOException("Expected a number at offset " + position());
+
+        if (c == 'e' || c == 'E') {
+            mPos++;
+            exponent += nextExponent();
+        }
+
+        double value = mantissa;
+        if (mantissa != 0 && exponent != 0) {
+            if (exponent > 0)
+                value = exponent < POW10.length ? value * POW10[exponent] : value * Math.pow(10, exponent);
+            else
+                value = -exponent < POW10.length ? value / POW10[-exponent] : value / Math.pow(10, -exponent);
+        }
+        return (float) (negative ? -value : value);
+    }
+
+    private int nextExponent() throws IOException {
+        int c = peek();
+        boolean negative = c == '-';
+        if (c == '-' || c == '+') {
+            mPos++;
+            c = peek();
+        }
+        if (c < '0' || c > '9')
+            throw new IOException("Bad exponent at offset " + position());
+        int value = 0;
+        while (c >= '0' && c <= '9') {
+            if (value < 10000)
+                value = value * 10 + (c - '0');
+            mPos++;
+            c = peek();
+        }
+        return negative ? -value : value;
+    }
+
+    private void require(int bytes) throws IOException {
+        while (mLimit - mPos < bytes) {
+            if (!fill())
+                throw new EOFException("Unexpected end of data at offset " + position());
+        }
+    }
+
+    public byte readByte() throws IOException {
+        require(1);
+        return mBytes[mPos++];
+    }
+
+    public short readShort(boolean bigEndian) throws IOException {
+        require(2);
+        int b0 = mBytes[mPos] & 0xFF, b1 = mBytes[mPos + 1] & 0xFF;
+        mPos += 2;
+        return (short) (bigEndian ? (b0 << 8) | b1 : (b1 << 8) | b0);
+    }
+
+    public int readInt(boolean bigEndian) throws IOException {
+        require(4);
+        int b0 = mBytes[mPos] & 0xFF, b1 = mBytes[mPos + 1] & 0xFF;
+        int b2 = mBytes[mPos + 2] & 0xFF, b3 = mBytes[mPos + 3] & 0xFF;
+        mPos += 4;
+        return bigEndian ? (b0 << 24) | (b1 << 16) | (b2 << 8) | b3
+                         : (b3 << 24) | (b2 << 16) | (b1 << 8) | b0;
+    }
+
+    public float readFloat(boolean bigEndian) throws IOException {
+        return Float.intBitsToFloat(readInt(bigEndian));
+    }
+
+    public double readDouble(boolean bigEndian) throws IOException {
+        long first = readInt(bigEndian) & 0xFFFFFFFFL;
+        long second = readInt(bigEndian) & 0xFFFFFFFFL;
+        return Double.longBitsToDouble(bigEndian ? (first << 32) | second : (second << 32) | first);
+    }
+}
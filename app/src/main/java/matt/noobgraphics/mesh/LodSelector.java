@@ -0,0 +1,75 @@
+package matt.noobgraphics.mesh;
+
+import matt.noobgraphics.math.Matrix4;
+
+/**
+ * Picks the coarsest level of detail whose error, projected to the screen, stays under a pixel
+ * threshold. Set the projection whenever it or the viewport changes; selecting is then a few
+ * multiplies per object.
+ */
+public class LodSelector {
+    private final float mMaxPixels;
+    private float mPixelsPerUnit;     // at a w of 1
+    private float mDepthToW;
+    private float mConstantW;
+
+    /**
+     * @param maxPixels largest screen error allowed, in pixels; 1 is visually lossless
+     */
+    public LodSelector(float maxPixels) {
+        mMaxPixels = maxPixels;
+    }
+
+    public void setProjection(Matrix4 projection, int viewportHeight) {
+        setProjection(projection.m, 0, viewportHeight);
+    }
+
+    /**
+     * @param projection column major, e.g. {@link Matrix4#perspective} or {@link Matrix4#ortho}
+     */
+    public void setProjection(float[] projection, int offset, int viewportHeight) {
+        mPixelsPerUnit = projection[offset + 5] * viewportHeight * 0.5f;
+        // clip w = -m[11] * view depth + m[15]: the depth for perspective, 1 for ortho
+        mDepthToW = -projection[offset + 11];
+        mConstantW = projection[offset + 15];
+    }
+
+    /**
+     * @param error object space error, already scaled by the object's transform
+     * @param depth view space distance in front of the camera, positive, to the nearest point
+     *              of the object's bounds so the whole object is covered
+     * @return the error's size on screen in pixels
+     */
+    public float projectedError(float error, float depth) {
+        float w = Math.max(depth * mDepthToW + mConstantW, 1e-6f);
+        return error * mPixelsPerUnit / w;
+    }
+
+    /**
+     * @param errors per level, increasing
+     * @param scale the object's world scale, which the errors are multiplied by
+     * @return the coarsest acceptable level, or -1 for the full mesh
+     */
+    public int select(float[] errors, int count, float scale, float depth) {
+        int level = -1;
+        for (int l = 0; l < count; l++) {
+            if (projectedError(errors[l] * scale, depth) > mMaxPixels)
+                break;
+            level = l;
+        }
+        return level;
+    }
+
+    /**
+     * @return the coarsest acceptable level of the mesh's LODs, or -1 for the full mesh
+     */
+    public int select(MappedMesh mesh, float scale, float depth) {
+        int level = -1;
+        for (int l = 0; l < mesh.getLodCount(); l++) {
+            if (projectedError(mesh.getLodError(l) * scale, depth) > mMaxPixels)
+                break;
+            level = l;
+        }
+        return level;
+    }
+}
@@ -0,0 +1,240 @@
+package matt.noobgraphics.mesh;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link MeshFile} opened with FileChannel.map. Nothing is copied or parsed apart from the
+ * header: the vertex and index accessors return views straight into the mapping, which the OS
+ * pages in on first use, and which can be passed to glVertexAttribPointer and glDrawElements.
+ */
+public class MappedMesh {
+    private final ByteBuffer mData;
+
+    private final int mVertexCount;
+    private final int mStride;
+    private final int mIndexCount;
+    private final int mIndexType;
+    private final float[] mBounds = new float[6];
+
+    private final VertexLayout mLayout;
+
+    private final int[] mLodFirst;
+    private final int[] mLodCount;
+    private final float[] mLodError;
+
+    private final ByteBuffer mVertices;
+    private final ByteBuffer mIndices;
+
+    public static MappedMesh open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            // the mapping stays valid after the channel is closed
+            return new MappedMesh(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads a mesh file that is already in memory, e.g. one from {@link MeshFile#encode}
+     */
+    public MappedMesh(ByteBuffer data) throws IOException {
+        mData = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer in = mData;
+        if (in.remaining() < MeshFile.HEADER_SIZE || in.getInt(0) != MeshFile.MAGIC)
+            throw new IOException("Not a mesh file");
+        in.position(4);
+        int version = in.getInt();
+        if (version != MeshFile.VERSION)
+            throw new IOException("Unsupported mesh file version " + version);
+
+        mVertexCount = in.getInt();
+        mStride = in.getInt();
+        int attributes = in.getInt();
+        mIndexCount = in.getInt();
+        mIndexType = in.getInt();
+        int lods = in.getInt();
+        for (int i = 0; i < 6; i++)
+            mBounds[i] = in.getFloat();
+        int vertexOffset = in.getInt();
+        int vertexSize = in.getInt();
+        int indexOffset = in.getInt();
+        int indexSize = in.getInt();
+
+        int indexBytes = mIndexType == MeshFile.TYPE_UNSIGNED_SHORT ? 2 : 4;
+        if (attributes < 1 || lods < 0 || vertexSize != mVertexCount * mStride
+                || indexSize != mIndexCount * indexBytes
+                || (long) indexOffset + indexSize > in.limit() || (long) vertexOffset + vertexSize > in.limit()
+                || in.position() + (long) attributes * MeshFile.ATTRIBUTE_SIZE + (long) lods * MeshFile.LOD_SIZE > vertexOffset)
+            throw new IOException("Corrupt mesh file");
+
+        int[] semantics = new int[attributes];
+        int[] components = new int[attributes];
+        int[] types = new int[attributes];
+        boolean[] normalized = new boolean[attributes];
+        int[] offsets = new int[attributes];
+        for (int a = 0; a < attributes; a++) {
+            semantics[a] = in.getInt();
+            components[a] = in.getInt();
+            types[a] = in.getInt();
+            normalized[a] = in.getInt() != 0;
+            offsets[a] = in.getInt();
+        }
+        mLayout = new VertexLayout(semantics, components, types, normalized, offsets, mStride);
+
+        mLodFirst = new int[lods];
+        mLodCount = new int[lods];
+        mLodError = new float[lods];
+        for (int l = 0; l < lods; l++) {
+            mLodFirst[l] = in.getInt();
+            mLodCount[l] = in.getInt();
+            mLodError[l] = in.getFloat();
+        }
+
+        mVertices = slice(vertexOffset, vertexSize);
+        mIndices = slice(indexOffset, indexSize);
+    }
+
+    private ByteBuffer slice(int offset, int size) {
+        ByteBuffer view = mData.duplicate();
+        view.limit(offset + size);
+        view.position(offset);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public int getVertexCount() { return mVertexCount; }
+
+    /** @return bytes per interleaved vertex */
+    public int getVertexStride() { return mStride; }
+
+    /** @return indices of the base mesh, not counting the LODs */
+    public int getIndexCount() {
+        return mLodFirst.length == 0 ? mIndexCount : mLodFirst[0];
+    }
+
+    /** @return MeshFile.TYPE_UNSIGNED_SHORT or MeshFile.TYPE_UNSIGNED_INT */
+    public int getIndexType() { return mIndexType; }
+
+    /**
+     * @param out receives [ minX minY minZ maxX maxY maxZ ]
+     * @return out
+     */
+    public float[] getBounds(float[] out) {
+        System.arraycopy(mBounds, 0, out, 0, 6);
+        return out;
+    }
+
+    /**
+     * @return whether positions are normalized unsigned shorts that need
+     *         {@link #getPositionDecodeMatrix} applied
+     */
+    public boolean hasQuantizedPositions() {
+        int position = findAttribute(MeshFile.POSITION);
+        return position >= 0 && mLayout.isNormalized(position);
+    }
+
+    /**
+     * @param out receives the column major matrix that takes quantized positions back to
+     *        mesh units, or identity if they are floats
+     * @return out
+     */
+    public float[] getPositionDecodeMatrix(float[] out, int offset) {
+        if (hasQuantizedPositions()) {
+            VertexCodec.positionDecodeMatrix(mBounds, out, offset);
+        } else {
+            for (int i = 0; i < 16; i++)
+                out[offset + i] = i % 5 == 0 ? 1 : 0;
+        }
+        return out;
+    }
+
+    /** @return the vertex format, one instance per mesh */
+    public VertexLayout getLayout() { return mLayout; }
+
+    public int getAttributeCount() { return mLayout.getAttributeCount(); }
+
+    /**
+     * @return the index of the attribute with the given MeshFile semantic, or -1
+     */
+    public int findAttribute(int semantic) {
+        return mLayout.find(semantic);
+    }
+
+    public int getAttributeSemantic(int attribute) { return mLayout.getSemantic(attribute); }
+    public int getAttributeComponents(int attribute) { return mLayout.getComponents(attribute); }
+    public int getAttributeType(int attribute) { return mLayout.getType(attribute); }
+    public boolean isAttributeNormalized(int attribute) { return mLayout.isNormalized(attribute); }
+    public int getAttributeOffset(int attribute) { return mLayout.getOffset(attribute); }
+
+    /**
+     * @return all vertex data; a new view each call
+     */
+    public ByteBuffer getVertexData() {
+        return mVertices.duplicate().order(mVertices.order());
+    }
+
+    /**
+     * @return a view of the vertex data starting at the attribute's first component, for
+     *         glVertexAttribPointer with {@link #getVertexStride()}
+     */
+    public ByteBuffer getAttributeData(int attribute) {
+        ByteBuffer view = getVertexData();
+        view.position(mLayout.getOffset(attribute));
+        return view;
+    }
+
+    /**
+     * @return the vertex data as floats; only meaningful if every attribute is TYPE_FLOAT
+     */
+    public FloatBuffer getVertexFloats() {
+        return getVertexData().asFloatBuffer();
+    }
+
+    /**
+     * @return all indices (base mesh, then LODs) as a ShortBuffer or IntBuffer, matching
+     *         {@link #getIndexType()}
+     */
+    public Buffer getIndices() {
+        ByteBuffer view = mIndices.duplicate().order(mIndices.order());
+        return mIndexType == MeshFile.TYPE_UNSIGNED_SHORT ? view.asShortBuffer() : view.asIntBuffer();
+    }
+
+    /**
+     * @return the indices as shorts
+     * @throws IllegalStateException if the file uses 32 bit indices
+     */
+    public ShortBuffer getShortIndices() {
+        if (mIndexType != MeshFile.TYPE_UNSIGNED_SHORT)
+            throw new IllegalStateException("Mesh has 32 bit indices");
+        return (ShortBuffer) getIndices();
+    }
+
+    /**
+     * @return the indices as ints
+     * @throws IllegalStateException if the file uses 16 bit indices
+     */
+    public IntBuffer getIntIndices() {
+        if (mIndexType != MeshFile.TYPE_UNSIGNED_INT)
+            throw new IllegalStateException("Mesh has 16 bit indices");
+        return (IntBuffer) getIndices();
+    }
+
+    public int getLodCount() { return mLodFirst.length; }
+
+    /** @return the position of the level's first index in {@link #getIndices()} */
+    public int getLodFirstIndex(int lod) { return mLodFirst[lod]; }
+
+    public int getLodIndexCount(int lod) { return mLodCount[lod]; }
+
+    public float getLodError(int lod) { return mLodError[lod]; }
+}
@@ -0,0 +1,109 @@
+package matt.noobgraphics.mesh;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import matt.noobgraphics.util.FloatList;
+import matt.noobgraphics.util.IntList;
+
+/**
+ * Indexed triangle mesh with separate attribute streams, as loaded from a file.
+ * An empty stream means the mesh doesn't have that attribute.
+ */
+public class Mesh {
+    public static final int POSITION_SIZE = 3;
+    public static final int NORMAL_SIZE = 3;
+    public static final int TEX_COORD_SIZE = 2;
+    public static final int COLOR_SIZE = 4;
+
+    public final FloatList positions;
+    public final FloatList normals;
+    public final FloatList texCoords;
+    public final FloatList colors;      // RGBA in [0, 1]
+    public final IntList indices;       // three per triangle
+
+    public Mesh() {
+        this(16, 16);
+    }
+
+    public Mesh(int vertexCapacity, int triangleCapacity) {
+        positions = new FloatList(vertexCapacity * POSITION_SIZE);
+        normals = new FloatList();
+        texCoords = new FloatList();
+        colors = new FloatList();
+        indices = new IntList(triangleCapacity * 3);
+    }
+
+    /**
+     * Wraps existing streams without copying them
+     */
+    public Mesh(FloatList positions, FloatList normals, FloatList texCoords, FloatList colors, IntList indices) {
+        this.positions = positions;
+        this.normals = normals;
+        this.texCoords = texCoords;
+        this.colors = colors;
+        this.indices = indices;
+    }
+
+    public int getVertexCount() { return positions.size() / POSITION_SIZE; }
+
+    public int getTriangleCount() { return indices.size() / 3; }
+
+    public boolean hasNormals() { return !normals.isEmpty(); }
+
+    public boolean hasTexCoords() { return !texCoords.isEmpty(); }
+
+    public boolean hasColors() { return !colors.isEmpty(); }
+
+    /**
+     * Axis aligned bounds of the positions
+     * @param out receives [ minX minY minZ maxX maxY maxZ ]; min &gt; max for an empty mesh
+     * @return out
+     */
+    public float[] computeBounds(float[] out) {
+        out[0] = out[1] = out[2] = Float.POSITIVE_INFINITY;
+        out[3] = out[4] = out[5] = Float.NEGATIVE_INFINITY;
+        float[] p = positions.array();
+        for (int i = 0; i < positions.size(); i += 3) {
+            for (int c = 0; c < 3; c++) {
+                out[c] = Math.min(out[c], p[i + c]);
+                out[3 + c] = Math.max(out[3 + c], p[i + c]);
+            }
+        }
+        return out;
+    }
+
+    /** @return the positions in a native order direct buffer, ready for glVertexAttribPointer */
+    public FloatBuffer getPositionBuffer() { return positions.toDirectBuffer(); }
+
+    /** @return the indices in a native order direct buffer */
+    public IntBuffer getIndexBuffer() { return indices.toDirectBuffer(); }
+
+    /**
+     * @return MeshFile.TYPE_UNSIGNED_SHORT if every vertex can be addressed with 16 bits,
+     *         otherwise MeshFile.TYPE_UNSIGNED_INT
+     */
+    public int getIndexType() {
+        return getVertexCount() <= 0x10000 ? MeshFile.TYPE_UNSIGNED_SHORT : MeshFile.TYPE_UNSIGNED_INT;
+    }
+
+    /**
+     * @return the indices in a native order direct buffer of the narrowest type that fits, a
+     *         ShortBuffer or IntBuffer matching {@link #getIndexType()}, positioned at 0
+     */
+    public Buffer createIndexBuffer() {
+        if (getIndexType() == MeshFile.TYPE_UNSIGNED_INT)
+            return getIndexBuffer();
+        int[] data = indices.array();
+        int count = indices.size();
+        ShortBuffer buffer = ByteBuffer.allocateDirect(count * 2)
+                .order(ByteOrder.nativeOrder()).asShortBuffer();
+        for (int i = 0; i < count; i++)
+            buffer.put(i, (short) data[i]);
+        return buffer;
+    }
+}
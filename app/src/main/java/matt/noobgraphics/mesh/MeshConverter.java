@@ -0,0 +1,35 @@
+package matt.noobgraphics.mesh;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Converts OBJ and PLY files to {@link MeshFile}s. The baker module's
+ * {@code matt.noobgraphics.baker.Baker} is the command line entry point.
+ */
+public final class MeshConverter {
+    private MeshConverter() {}
+
+    /**
+     * Loads an .obj or .ply file, picked by extension
+     */
+    public static Mesh load(File file) throws IOException {
+        String name = file.getName().toLowerCase();
+        InputStream in = new FileInputStream(file);
+        try {
+            if (name.endsWith(".obj"))
+                return ObjLoader.load(in);
+            if (name.endsWith(".ply"))
+                return PlyLoader.load(in);
+            throw new IOException("Don't know how to load " + file);
+        } finally {
+            in.close();
+        }
+    }
+
+    public static void convert(File in, File out) throws IOException {
+        MeshFile.write(load(in), out);
+    }
+}
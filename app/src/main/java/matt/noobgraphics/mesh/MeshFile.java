@@ -0,0 +1,205 @@
+package matt.noobgraphics.mesh;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import matt.noobgraphics.util.FloatList;
+import matt.noobgraphics.util.IntList;
+
+/**
+ * Binary mesh container, laid out so a memory mapped file can be handed to GL as is (see
+ * {@link MappedMesh}). Everything is little endian, the byte order of every Android device.
+ *
+ * <pre>
+ * header      magic "NGMF", version, vertex count, vertex stride, attribute count,
+ *             index count, index type, LOD count, bounds (6 floats),
+ *             vertex data offset and size, index data offset and size
+ * attributes  per attribute: semantic, components, GL type, normalized (0/1), byte offset
+ * LODs        per level: first index, index count, error (float)
+ * vertices    interleaved, 16 byte aligned; floats or quantized (see {@link #encode})
+ * indices     16 or 32 bit, 16 byte aligned; base mesh first, then each LOD's indices
+ * </pre>
+ */
+public final class MeshFile {
+    public static final int MAGIC = 0x464D474E;    // "NGMF" read as a little endian int
+    public static final int VERSION = 1;
+
+    // attribute semantics
+    public static final int POSITION = 0;
+    public static final int NORMAL = 1;
+    public static final int TEX_COORD = 2;
+    public static final int COLOR = 3;
+
+    // GL type codes, so descriptors can go straight to glVertexAttribPointer / glDrawElements
+    public static final int TYPE_BYTE = 0x1400;
+    public static final int TYPE_UNSIGNED_BYTE = 0x1401;
+    public static final int TYPE_SHORT = 0x1402;
+    public static final int TYPE_UNSIGNED_SHORT = 0x1403;
+    public static final int TYPE_UNSIGNED_INT = 0x1405;
+    public static final int TYPE_FLOAT = 0x1406;
+    /** GL_HALF_FLOAT_OES, from OES_vertex_half_float on GLES 2 */
+    public static final int TYPE_HALF_FLOAT = 0x8D61;
+
+    static final int HEADER_SIZE = 4 * 8 + 6 * 4 + 4 * 4;
+    static final int ATTRIBUTE_SIZE = 5 * 4;
+    static final int LOD_SIZE = 3 * 4;
+    static final int ALIGNMENT = 16;
+
+    private MeshFile() {}
+
+    /**
+     * Writes a mesh with its attributes as interleaved floats
+     */
+    public static void write(Mesh mesh, File file) throws IOException {
+        write(mesh, null, null, false, file);
+    }
+
+    public static void write(Mesh mesh, IntList[] lodIndices, float[] lodErrors, File file) throws IOException {
+        write(mesh, lodIndices, lodErrors, false, file);
+    }
+
+    /**
+     * Writes a mesh plus simplified versions of it, which share its vertices
+     * @param lodIndices per level of detail, triangle indices into the mesh's vertices
+     * @param lodErrors per level of detail, the error it was simplified to
+     * @param quantize whether to write compact attributes, see {@link #encode}
+     */
+    public static void write(Mesh mesh, IntList[] lodIndices, float[] lodErrors, boolean quantize, File file) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            FileChannel channel = out.getChannel();
+            ByteBuffer data = encode(mesh, lodIndices, lodErrors, quantize);
+            while (data.hasRemaining())
+                channel.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the whole file, with float attributes, in a heap buffer positioned at 0
+     */
+    public static ByteBuffer encode(Mesh mesh, IntList[] lodIndices, float[] lodErrors) {
+        return encode(mesh, lodIndices, lodErrors, false);
+    }
+
+    /**
+     * Encodes a mesh. Unquantized, every attribute is floats. Quantized, with {@link VertexCodec}:
+     *
+     * <pre>
+     * position   3 x TYPE_UNSIGNED_SHORT, normalized, relative to the bounds (2 bytes padding)
+     * normal     2 x TYPE_SHORT, normalized, octahedral
+     * tex coord  2 x TYPE_HALF_FLOAT
+     * color      4 x TYPE_UNSIGNED_BYTE, normalized
+     * </pre>
+     *
+     * which is 20 bytes a vertex instead of 48 with everything.
+     * @return the whole file in a heap buffer, positioned at 0
+     */
+    public static ByteBuffer encode(Mesh mesh, IntList[] lodIndices, float[] lodErrors, boolean quantize) {
+        int vertexCount = mesh.getVertexCount();
+        int lodCount = lodIndices == null ? 0 : lodIndices.length;
+
+        // attributes in a fixed order: position, normal, uv, color
+        VertexLayout layout = new VertexLayout();
+        FloatList[] streams = new FloatList[4];
+        layout.add(POSITION, Mesh.POSITION_SIZE, quantize ? TYPE_UNSIGNED_SHORT : TYPE_FLOAT, quantize);
+        streams[0] = mesh.positions;
+        if (mesh.hasNormals()) {
+            streams[layout.getAttributeCount()] = mesh.normals;
+            layout.add(NORMAL, quantize ? 2 : Mesh.NORMAL_SIZE, quantize ? TYPE_SHORT : TYPE_FLOAT, quantize);
+        }
+        if (mesh.hasTexCoords()) {
+            streams[layout.getAttributeCount()] = mesh.texCoords;
+            layout.add(TEX_COORD, Mesh.TEX_COORD_SIZE, quantize ? TYPE_HALF_FLOAT : TYPE_FLOAT, false);
+        }
+        if (mesh.hasColors()) {
+            streams[layout.getAttributeCount()] = mesh.colors;
+            layout.add(COLOR, Mesh.COLOR_SIZE, quantize ? TYPE_UNSIGNED_BYTE : TYPE_FLOAT, quantize);
+        }
+        int attributes = layout.getAttributeCount();
+        int stride = layout.getStride();
+
+        int indexCount = mesh.indices.size();
+        for (int l = 0; l < lodCount; l++)
+            indexCount += lodIndices[l].size();
+        boolean shortIndices = mesh.getIndexType() == TYPE_UNSIGNED_SHORT;
+        int indexSize = shortIndices ? 2 : 4;
+
+        int tableEnd = HEADER_SIZE + attributes * ATTRIBUTE_SIZE + lodCount * LOD_SIZE;
+        int vertexOffset = align(tableEnd);
+        int vertexSize = vertexCount * stride;
+        int indexOffset = align(vertexOffset + vertexSize);
+        int indexSizeBytes = indexCount * indexSize;
+
+        ByteBuffer out = ByteBuffer.allocate(indexOffset + indexSizeBytes).order(ByteOrder.LITTLE_ENDIAN);
+        float[] bounds = mesh.computeBounds(new float[6]);
+        out.putInt(MAGIC).putInt(VERSION).putInt(vertexCount).putInt(stride)
+                .putInt(attributes).putInt(indexCount)
+                .putInt(shortIndices ? TYPE_UNSIGNED_SHORT : TYPE_UNSIGNED_INT).putInt(lodCount);
+        for (float b : bounds)
+            out.putFloat(b);
+        out.putInt(vertexOffset).putInt(vertexSize).putInt(indexOffset).putInt(indexSizeBytes);
+
+        for (int a = 0; a < attributes; a++)
+            out.putInt(layout.getSemantic(a)).putInt(layout.getComponents(a)).putInt(layout.getType(a))
+                    .putInt(layout.isNormalized(a) ? 1 : 0).putInt(layout.getOffset(a));
+
+        int firstIndex = mesh.indices.size();
+        for (int l = 0; l < lodCount; l++) {
+            out.putInt(firstIndex).putInt(lodIndices[l].size()).putFloat(lodErrors[l]);
+            firstIndex += lodIndices[l].size();
+        }
+
+        for (int a = 0; a < attributes; a++) {
+            float[] stream = streams[a].array();
+            int offset = vertexOffset + layout.getOffset(a);
+            int components = layout.getComponents(a);
+            switch (layout.getType(a)) {
+                case TYPE_FLOAT:
+                    for (int v = 0, i = 0, o = offset; v < vertexCount; v++, o += stride)
+                        for (int c = 0; c < components; c++, i++)
+                            out.putFloat(o + c * 4, stream[i]);
+                    break;
+                case TYPE_UNSIGNED_SHORT:
+                    VertexCodec.encodePositions(stream, vertexCount, bounds, out, offset, stride);
+                    break;
+                case TYPE_SHORT:
+                    VertexCodec.encodeOctahedral(stream, vertexCount, out, offset, stride);
+                    break;
+                case TYPE_HALF_FLOAT:
+                    VertexCodec.encodeHalf(stream, components, vertexCount, out, offset, stride);
+                    break;
+                case TYPE_UNSIGNED_BYTE:
+                    VertexCodec.encodeUnorm8(stream, components, vertexCount, out, offset, stride);
+                    break;
+            }
+        }
+
+        out.position(indexOffset);
+        putIndices(out, mesh.indices, shortIndices);
+        for (int l = 0; l < lodCount; l++)
+            putIndices(out, lodIndices[l], shortIndices);
+
+        out.position(0);
+        return out;
+    }
+
+    private static void putIndices(ByteBuffer out, IntList indices, boolean asShort) {
+        int[] data = indices.array();
+        for (int i = 0; i < indices.size(); i++) {
+            if (asShort)
+                out.putShort((short) data[i]);
+            else
+                out.putInt(data[i]);
+        }
+    }
+
+    static int align(int offset) {
+        return (offset + ALIGNMENT - 1) & ~(ALIGNMENT - 1);
+    }
+}
@@ -0,0 +1,84 @@
+package matt.noobgraphics.mesh;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import matt.noobgraphics.util.IntList;
+
+/**
+ * A chain of simplified index buffers over one mesh's vertices, each made from the one before,
+ * ready for {@link MeshFile#write(Mesh, IntList[], float[], File)}
+ */
+public final class MeshLods {
+    /** Triangle ratios of the default chain, relative to the full mesh */
+    public static final float[] DEFAULT_RATIOS = { 0.5f, 0.25f, 0.125f, 0.0625f };
+
+    public final IntList[] indices;
+    /** Per level, the largest distance in mesh units the surface moved, never decreasing */
+    public final float[] errors;
+
+    private MeshLods(IntList[] indices, float[] errors) {
+        this.indices = indices;
+        this.errors = errors;
+    }
+
+    public int getLevelCount() { return indices.length; }
+
+    public static MeshLods generate(Mesh mesh) {
+        return generate(mesh, DEFAULT_RATIOS, Float.MAX_VALUE);
+    }
+
+    /**
+     * Simplifies the mesh to each ratio of its triangle count in turn. The chain stops early at
+     * a level that can't get within 10% of its target, because maxError or locked vertices got
+     * in the way, after keeping that level if it simplified at all.
+     *
+     * @param ratios decreasing triangle ratios, e.g. { 0.5, 0.25 }
+     * @param maxError largest error any level may have, in mesh units
+     */
+    public static MeshLods generate(Mesh mesh, float[] ratios, float maxError) {
+        MeshSimplifier simplifier = new MeshSimplifier(mesh);
+        List<IntList> levels = new ArrayList<>();
+        List<Float> errors = new ArrayList<>();
+        IntList previous = mesh.indices;
+        float error = 0;
+        for (float ratio : ratios) {
+            int target = (int) (mesh.getTriangleCount() * ratio) * 3;
+            if (target == 0)
+                break;
+            if (target >= previous.size())
+                continue;
+            IntList level = simplifier.simplify(previous, target, maxError);
+            if (level.size() >= previous.size())
+                break;
+            error = Math.max(error, simplifier.getError());
+
+            // the level shares the mesh's vertices, so only its triangle order can be optimized
+            Mesh view = new Mesh(mesh.positions, mesh.normals, mesh.texCoords, mesh.colors, level);
+            MeshOptimizer.optimizeVertexCache(view, MeshOptimizer.DEFAULT_CACHE_SIZE);
+            levels.add(level);
+            errors.add(error);
+            previous = level;
+            if (level.size() > target + target / 10)
+                break;
+        }
+
+        float[] errorArray = new float[errors.size()];
+        for (int i = 0; i < errorArray.length; i++)
+            errorArray[i] = errors.get(i);
+        return new MeshLods(levels.toArray(new IntList[levels.size()]), errorArray);
+    }
+
+    public void write(Mesh mesh, File file) throws IOException {
+        write(mesh, false, file);
+    }
+
+    /**
+     * @param quantize whether to write compact attributes, see {@link MeshFile#encode}
+     */
+    public void write(Mesh mesh, boolean quantize, File file) throws IOException {
+        MeshFile.write(mesh, indices, errors, quantize, file);
+    }
+}
@@ -0,0 +1,44 @@
+package matt.noobgraphics.mesh;
+
+import matt.noobgraphics.math.Vector3;
+
+/**
+ * Vertex normal generation
+ */
+public final class MeshNormals {
+    private MeshNormals() {}
+
+    /**
+     * Replaces the mesh's normals with smooth vertex normals: the sum of the face normals around
+     * each vertex, weighted by face area, normalized. Vertices not used by any triangle get a zero
+     * normal.
+     */
+    public static void compute(Mesh mesh) {
+        int vertexCount = mesh.getVertexCount();
+        mesh.normals.clear();
+        mesh.normals.ensureCapacity(vertexCount * 3);
+        for (int i = 0; i < vertexCount; i++)
+            mesh.normals.add(0, 0, 0);
+
+        float[] p = mesh.positions.array();
+        float[] n = mesh.normals.array();
+        int[] indices = mesh.indices.array();
+        float[] edges = new float[9];    // e1, e2, face normal
+        for (int t = 0; t < mesh.indices.size(); t += 3) {
+            int a = indices[t] * 3, b = indices[t + 1] * 3, c = indices[t + 2] * 3;
+            for (int k = 0; k < 3; k++) {
+                edges[k] = p[b + k] - p[a + k];
+                edges[3 + k] = p[c + k] - p[a + k];
+            }
+            // length of the cross product is twice the area, which is the weighting we want
+            Vector3.cross(edges, 6, edges, 0, edges, 3);
+            for (int k = 0; k < 3; k++) {
+                n[a + k] += edges[6 + k];
+                n[b + k] += edges[6 + k];
+                n[c + k] += edges[6 + k];
+            }
+        }
+        for (int i = 0; i < vertexCount; i++)
+            Vector3.normalize(n, i * 3);
+    }
+}
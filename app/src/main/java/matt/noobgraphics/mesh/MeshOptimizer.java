@@ -0,0 +1,261 @@
+package matt.noobgraphics.mesh;
+
+import java.util.Arrays;
+
+import matt.noobgraphics.math.Vector3;
+import matt.noobgraphics.util.FloatList;
+
+/**
+ * Index and vertex reordering for faster drawing. None of it changes what is drawn, only the
+ * order: triangles keep their winding, and vertices keep their attributes.
+ *
+ * The usual order is {@link #optimizeVertexCache}, then {@link #optimizeOverdraw} (which works
+ * on the cache optimized order), then {@link #optimizeVertexFetch}, as {@link #optimize} does.
+ */
+public final class MeshOptimizer {
+    /** Post-transform cache size assumed when none is given */
+    public static final int DEFAULT_CACHE_SIZE = 16;
+
+    /** How much ACMR optimizeOverdraw may give up, as a ratio */
+    public static final float DEFAULT_OVERDRAW_THRESHOLD = 1.05f;
+
+    private MeshOptimizer() {}
+
+    public static void optimize(Mesh mesh) {
+        optimizeVertexCache(mesh, DEFAULT_CACHE_SIZE);
+        optimizeOverdraw(mesh, DEFAULT_CACHE_SIZE, DEFAULT_OVERDRAW_THRESHOLD);
+        optimizeVertexFetch(mesh);
+    }
+
+    /**
+     * Reorders triangles so consecutive ones share vertices while they are still in a post
+     * transform cache of the given size. This is Tipsify (Sander, Nehab and Barczak, "Fast
+     * Triangle Reordering for Vertex Locality and Reduced Overdraw", 2007): it fans around a
+     * vertex, then moves to the neighbour that will still be cached after its own fan, which is
+     * linear time and within a few percent of slower methods.
+     */
+    public static void optimizeVertexCache(Mesh mesh, int cacheSize) {
+        if (cacheSize < 3)
+            throw new IllegalArgumentException("Cache size " + cacheSize);
+        int vertexCount = mesh.getVertexCount();
+        int triangleCount = mesh.getTriangleCount();
+        if (triangleCount == 0)
+            return;
+        int[] indices = mesh.indices.array();
+
+        // vertex -> triangles, compressed: triangles of v are adjacency[adjacencyStart[v] .. adjacencyStart[v + 1])
+        int[] live = new int[vertexCount];
+        for (int i = 0; i < triangleCount * 3; i++)
+            live[indices[i]]++;
+        int[] adjacencyStart = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++)
+            adjacencyStart[v + 1] = adjacencyStart[v] + live[v];
+        int[] fill = Arrays.copyOf(adjacencyStart, vertexCount);
+        int[] adjacency = new int[triangleCount * 3];
+        for (int i = 0; i < triangleCount * 3; i++)
+            adjacency[fill[indices[i]]++] = i / 3;
+
+        int[] cachedAt = new int[vertexCount];
+        boolean[] emitted = new boolean[triangleCount];
+        int[] deadEnds = new int[triangleCount * 3];
+        int deadEndCount = 0;
+        int[] candidates = new int[triangleCount * 3];
+        int[] out = new int[triangleCount * 3];
+        int outCount = 0;
+
+        int time = cacheSize + 1;
+        int cursor = 0;
+        int fan = 0;
+        while (fan >= 0) {
+            int candidateCount = 0;
+            for (int a = adjacencyStart[fan]; a < adjacencyStart[fan + 1]; a++) {
+                int t = adjacency[a];
+                if (emitted[t])
+                    continue;
+                emitted[t] = true;
+                for (int k = 0; k < 3; k++) {
+                    int v = indices[t * 3 + k];
+                    out[outCount++] = v;
+                    deadEnds[deadEndCount++] = v;
+                    candidates[candidateCount++] = v;
+                    live[v]--;
+                    if (time - cachedAt[v] > cacheSize)
+                        cachedAt[v] = time++;
+                }
+            }
+
+            // the candidate that will still be cached after its fan, and is oldest, wins
+            int next = -1, best = -1;
+            for (int c = 0; c < candidateCount; c++) {
+                int v = candidates[c];
+                if (live[v] <= 0)
+                    continue;
+                int priority = 0;
+                if (time - cachedAt[v] + 2 * live[v] <= cacheSize)
+                    priority = time - cachedAt[v];
+                if (priority > best) {
+                    best = priority;
+                    next = v;
+                }
+            }
+            if (next < 0) {
+                // dead end: back up through recently used vertices, then scan for any left
+                while (deadEndCount > 0 && next < 0) {
+                    int v = deadEnds[--deadEndCount];
+                    if (live[v] > 0)
+                        next = v;
+                }
+                while (next < 0 && cursor < vertexCount) {
+                    if (live[cursor] > 0)
+                        next = cursor;
+                    cursor++;
+                }
+            }
+            fan = next;
+        }
+        System.arraycopy(out, 0, indices, 0, outCount);
+    }
+
+    /**
+     * Reorders clusters of triangles so ones facing out from the mesh's center come first,
+     * which tends to draw occluders before what they hide.
+     *
+     * Clusters start wherever a triangle misses the cache on all three vertices (so moving
+     * them costs nothing), and are split further while the split-off part's ACMR stays within
+     * threshold times the whole mesh's.
+     */
+    public static void optimizeOverdraw(Mesh mesh, int cacheSize, float threshold) {
+        int triangleCount = mesh.getTriangleCount();
+        if (triangleCount < 2)
+            return;
+        int[] indices = mesh.indices.array();
+        float[] p = mesh.positions.array();
+
+        // cluster boundaries from a FIFO simulation of the current order
+        float acmr = VertexCacheStats.analyze(mesh, cacheSize, VertexCacheStats.FIFO).getAcmr();
+        int[] clusterStart = new int[triangleCount + 1];
+        int clusterCount = 0;
+        int[] addedAt = new int[mesh.getVertexCount()];
+        Arrays.fill(addedAt, Integer.MIN_VALUE / 2);
+        int misses = 0, clusterMisses = 0, clusterSize = 0;
+        for (int t = 0; t < triangleCount; t++) {
+            int triangleMisses = 0;
+            for (int k = 0; k < 3; k++) {
+                int v = indices[t * 3 + k];
+                if (misses - addedAt[v] > cacheSize) {
+                    addedAt[v] = misses++;
+                    triangleMisses++;
+                }
+            }
+            boolean hard = triangleMisses == 3;
+            boolean soft = clusterSize > 0 && clusterMisses <= threshold * acmr * clusterSize;
+            if (t == 0 || hard || soft) {
+                clusterStart[clusterCount++] = t;
+                clusterMisses = 0;
+                clusterSize = 0;
+            }
+            clusterMisses += triangleMisses;
+            clusterSize++;
+        }
+        clusterStart[clusterCount] = triangleCount;
+
+        // area weighted centroid and normal of each cluster and of the mesh
+        float[] clusters = new float[clusterCount * 6];
+        float[] scratch = new float[9];
+        float[] center = new float[3];
+        float totalArea = 0;
+        for (int c = 0; c < clusterCount; c++) {
+            float area = 0;
+            for (int t = clusterStart[c]; t < clusterStart[c + 1]; t++) {
+                int a = indices[t * 3] * 3, b = indices[t * 3 + 1] * 3, d = indices[t * 3 + 2] * 3;
+                for (int k = 0; k < 3; k++) {
+                    scratch[k] = p[b + k] - p[a + k];
+                    scratch[3 + k] = p[d + k] - p[a + k];
+                }
+                Vector3.cross(scratch, 6, scratch, 0, scratch, 3);
+                float triangleArea = (float) Math.sqrt(scratch[6] * scratch[6]
+                        + scratch[7] * scratch[7] + scratch[8] * scratch[8]);
+                for (int k = 0; k < 3; k++) {
+                    clusters[c * 6 + k] += (p[a + k] + p[b + k] + p[d + k]) * triangleArea / 3;
+                    clusters[c * 6 + 3 + k] += scratch[6 + k];
+                }
+                area += triangleArea;
+            }
+            for (int k = 0; k < 3; k++) {
+                center[k] += clusters[c * 6 + k];
+                if (area > 0)
+                    clusters[c * 6 + k] /= area;
+            }
+            totalArea += area;
+        }
+        if (totalArea > 0)
+            for (int k = 0; k < 3; k++)
+                center[k] /= totalArea;
+
+        // sort clusters by how far they face out, most first; the cluster number breaks ties
+        long[] keys = new long[clusterCount];
+        for (int c = 0; c < clusterCount; c++) {
+            Vector3.normalize(clusters, c * 6 + 3);
+            float facing = 0;
+            for (int k = 0; k < 3; k++)
+                facing += (clusters[c * 6 + k] - center[k]) * clusters[c * 6 + 3 + k];
+            keys[c] = ((long) sortable(-facing) << 32) | c;
+        }
+        Arrays.sort(keys);
+
+        int[] sorted = new int[triangleCount * 3];
+        int at = 0;
+        for (long key : keys) {
+            int c = (int) key;
+            int from = clusterStart[c] * 3, length = (clusterStart[c + 1] - clusterStart[c]) * 3;
+            System.arraycopy(indices, from, sorted, at, length);
+            at += length;
+        }
+        System.arraycopy(sorted, 0, indices, 0, at);
+    }
+
+    /**
+     * Maps a float to an int with the same ordering under signed comparison
+     */
+    private static int sortable(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits >= 0 ? bits : bits ^ 0x7FFFFFFF;
+    }
+
+    /**
+     * Renumbers vertices in the order the indices first use them, so vertex fetches walk
+     * memory forwards. Vertices no triangle uses are dropped.
+     * @return the new vertex count
+     */
+    public static int optimizeVertexFetch(Mesh mesh) {
+        int vertexCount = mesh.getVertexCount();
+        int[] remap = new int[vertexCount];
+        Arrays.fill(remap, -1);
+        int[] indices = mesh.indices.array();
+        int used = 0;
+        for (int i = 0; i < mesh.indices.size(); i++) {
+            int v = indices[i];
+            if (remap[v] < 0)
+                remap[v] = used++;
+            indices[i] = remap[v];
+        }
+
+        reorder(mesh.positions, remap, used, Mesh.POSITION_SIZE);
+        reorder(mesh.normals, remap, used, Mesh.NORMAL_SIZE);
+        reorder(mesh.texCoords, remap, used, Mesh.TEX_COORD_SIZE);
+        reorder(mesh.colors, remap, used, Mesh.COLOR_SIZE);
+        return used;
+    }
+
+    private static void reorder(FloatList stream, int[] remap, int used, int size) {
+        if (stream.isEmpty())
+            return;
+        float[] from = stream.array();
+        float[] to = new float[used * size];
+        for (int v = 0; v < remap.length; v++)
+            if (remap[v] >= 0)
+                System.arraycopy(from, v * size, to, remap[v] * size, size);
+        stream.clear();
+        stream.addAll(to, 0, to.length);
+    }
+}
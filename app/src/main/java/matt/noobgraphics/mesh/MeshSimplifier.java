@@ -0,0 +1,396 @@
+package matt.noobgraphics.mesh;
+
+import java.util.Arrays;
+
+import matt.noobgraphics.math.Vector3;
+import matt.noobgraphics.util.IntList;
+
+/**
+ * Quadric error metric simplification (Garland and Heckbert, "Surface Simplification Using
+ * Quadric Error Metrics", 1997) by edge collapses onto existing vertices, so simplified index
+ * buffers share the original vertex data, as {@link MeshFile} LODs do.
+ *
+ * Borders stay in place: border vertices only slide along their border, and carry extra
+ * quadrics that keep it straight. Vertices on attribute seams (one position, several vertices
+ * with different normals, UVs or colors) and non-manifold vertices never move.
+ *
+ * Collapses are done in passes: each pass sorts every allowed collapse by error and does the
+ * cheapest ones that don't touch a vertex already changed that pass, which keeps the work
+ * O(n log n) without a priority queue to update.
+ */
+public class MeshSimplifier {
+    private static final byte MANIFOLD = 0;
+    private static final byte BORDER = 1;
+    private static final byte LOCKED = 2;
+
+    private static final float BORDER_WEIGHT = 10;
+
+    // cost histogram buckets keep the exponent and 8 mantissa bits
+    private static final int HISTOGRAM_SHIFT = 15;
+
+    // 4x4 symmetric plane quadric (a2 b2 c2 ab ac bc ad bd cd d2) and its accumulated weight;
+    // doubles, as the d2 terms cancel down to errors far below float precision
+    private static final int QUADRIC_SIZE = 11;
+
+    private final int mVertexCount;
+    private final float[] mPositions;       // scaled into the unit cube, for float precision
+    private final float mScale;             // mesh units per unit cube unit
+    private final int[] mCanonical;         // vertex -> lowest vertex with the same position
+    private final boolean[] mSeam;          // per canonical vertex: has more than one vertex
+
+    private float mError;
+
+    public MeshSimplifier(Mesh mesh) {
+        mVertexCount = mesh.getVertexCount();
+        float[] bounds = mesh.computeBounds(new float[6]);
+        float extent = Math.max(bounds[3] - bounds[0], Math.max(bounds[4] - bounds[1], bounds[5] - bounds[2]));
+        mScale = extent > 0 ? extent : 1;
+        float[] p = mesh.positions.array();
+        mPositions = new float[mVertexCount * 3];
+        for (int i = 0; i < mVertexCount * 3; i++)
+            mPositions[i] = (p[i] - bounds[i % 3]) / mScale;
+
+        mCanonical = new int[mVertexCount];
+        mSeam = new boolean[mVertexCount];
+        int capacity = Integer.highestOneBit(Math.max(16, mVertexCount * 2) - 1) << 1;
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int v = 0; v < mVertexCount; v++) {
+            int h = Float.floatToIntBits(p[v * 3]);
+            h = h * 0x9E3779B1 + Float.floatToIntBits(p[v * 3 + 1]);
+            h = h * 0x9E3779B1 + Float.floatToIntBits(p[v * 3 + 2]);
+            h ^= h >>> 16;
+            int slot = (h * 0x85EBCA6B) & mask;
+            while (true) {
+                int entry = table[slot] - 1;
+                if (entry < 0) {
+                    table[slot] = v + 1;
+                    mCanonical[v] = v;
+                    break;
+                }
+                if (p[entry * 3] == p[v * 3] && p[entry * 3 + 1] == p[v * 3 + 1] && p[entry * 3 + 2] == p[v * 3 + 2]) {
+                    mCanonical[v] = entry;
+                    mSeam[entry] = true;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+    }
+
+    /**
+     * @return the largest error, in mesh units, of the last {@link #simplify}
+     */
+    public float getError() {
+        return mError;
+    }
+
+    /**
+     * Simplifies a triangle list over the mesh's vertices, which may itself be a simplified one
+     *
+     * @param targetIndexCount stop once there are this many indices or fewer
+     * @param maxError don't collapse edges that would move the surface further than this, in
+     *                 mesh units; Float.MAX_VALUE for no limit
+     * @return new indices, about targetIndexCount of them unless maxError or the locked
+     *         vertices stopped it first
+     */
+    public IntList simplify(IntList indices, int targetIndexCount, float maxError) {
+        int[] idx = indices.toArray();
+        int triangles = idx.length / 3;
+        int targetTriangles = targetIndexCount / 3;
+        float scaledError = maxError / mScale;
+        float limit = scaledError * scaledError;
+        float maxCost = 0;
+
+        byte[] kinds = new byte[mVertexCount];
+        boolean[] borderEdges = new boolean[idx.length];
+        int[] adjacencyStart = new int[mVertexCount + 1];
+        int[] adjacency = new int[idx.length];
+        buildAdjacency(idx, triangles, adjacencyStart, adjacency);
+        classify(idx, triangles, adjacencyStart, adjacency, kinds, borderEdges);
+        double[] quadrics = buildQuadrics(idx, triangles, borderEdges);
+
+        int[] sources = new int[idx.length * 2];
+        int[] targets = new int[idx.length * 2];
+        float[] costs = new float[idx.length * 2];
+        long[] order = new long[idx.length * 2];
+        int[] remap = new int[mVertexCount];
+        boolean[] touched = new boolean[mVertexCount];
+        int[] histogram = new int[1 << (31 - HISTOGRAM_SHIFT)];
+
+        while (triangles > targetTriangles) {
+            // candidates: each interior edge shows up once per direction, border edges once
+            int candidates = 0;
+            for (int i = 0; i < triangles * 3; i++) {
+                int a = idx[i], b = idx[i % 3 == 2 ? i - 2 : i + 1];
+                boolean border = borderEdges[i];
+                if (canCollapse(kinds, a, b, border)) {
+                    sources[candidates] = a;
+                    targets[candidates++] = b;
+                }
+                if (border && canCollapse(kinds, b, a, true)) {
+                    sources[candidates] = b;
+                    targets[candidates++] = a;
+                }
+            }
+            Arrays.fill(histogram, 0);
+            for (int c = 0; c < candidates; c++) {
+                costs[c] = cost(quadrics, sources[c], targets[c]);
+                histogram[Float.floatToIntBits(costs[c]) >>> HISTOGRAM_SHIFT]++;
+            }
+
+            // a collapse removes about two triangles; don't go far past the error the ones
+            // needed would cost, or cheap collapses blocked this pass lose to dear ones. Near
+            // the target, allow a few more than needed anyway (the loop stops at the target),
+            // or the last few collapses each take a whole pass. The histogram of cost bits
+            // finds the error to within a bucket without a full sort.
+            float passLimit = limit;
+            int goal = Math.max((triangles - targetTriangles) / 2, candidates / 16);
+            if (goal < candidates) {
+                int bucket = 0;
+                for (int seen = histogram[0]; seen <= goal; seen += histogram[++bucket]) { }
+                float goalError = Float.intBitsToFloat(((bucket + 1) << HISTOGRAM_SHIFT) - 1);
+                passLimit = Math.min(limit, goalError * 1.5f);
+            }
+
+            // only the collapses under the limit need sorting; costs are never negative, so
+            // their bits sort like the floats
+            int ordered = 0;
+            for (int c = 0; c < candidates; c++)
+                if (costs[c] <= passLimit)
+                    order[ordered++] = ((long) Float.floatToIntBits(costs[c]) << 32) | c;
+            Arrays.sort(order, 0, ordered);
+
+            for (int v = 0; v < mVertexCount; v++)
+                remap[v] = v;
+            Arrays.fill(touched, false);
+            int collapses = 0;
+            for (int o = 0; o < ordered && triangles > targetTriangles; o++) {
+                int c = (int) order[o];
+                int s = sources[c], t = targets[c];
+                if (touched[s] || touched[t])
+                    continue;
+                int removed = checkCollapse(idx, adjacencyStart, adjacency, s, t);
+                if (removed < 0)
+                    continue;
+
+                remap[s] = t;
+                for (int q = 0; q < QUADRIC_SIZE; q++)
+                    quadrics[t * QUADRIC_SIZE + q] += quadrics[s * QUADRIC_SIZE + q];
+                // source isn't on a seam, so its canonical vertex is itself; its neighbours
+                // mustn't move for the rest of the pass, or the flip checks above go stale
+                for (int a = adjacencyStart[s]; a < adjacencyStart[s + 1]; a++)
+                    for (int k = 0; k < 3; k++)
+                        touched[idx[adjacency[a] * 3 + k]] = true;
+                triangles -= removed;
+                maxCost = Math.max(maxCost, costs[c]);
+                collapses++;
+            }
+            if (collapses == 0)
+                break;
+
+            // apply the pass, dropping collapsed triangles, and redo the topology
+            int kept = 0;
+            for (int i = 0; i < idx.length; i += 3) {
+                int a = remap[idx[i]], b = remap[idx[i + 1]], d = remap[idx[i + 2]];
+                if (a == b || b == d || d == a)
+                    continue;
+                idx[kept++] = a;
+                idx[kept++] = b;
+                idx[kept++] = d;
+            }
+            idx = Arrays.copyOf(idx, kept);
+            triangles = kept / 3;
+            adjacency = new int[kept];
+            buildAdjacency(idx, triangles, adjacencyStart, adjacency);
+            // collapses can move a border edge to another triangle, so find them again; which
+            // vertices are on a border doesn't change
+            borderEdges = new boolean[kept];
+            findBorders(idx, triangles, adjacencyStart, adjacency, kinds, borderEdges, null, null);
+        }
+
+        mError = (float) Math.sqrt(maxCost) * mScale;
+        IntList out = new IntList(idx.length);
+        out.addAll(idx, 0, idx.length);
+        return out;
+    }
+
+    private static boolean canCollapse(byte[] kinds, int source, int target, boolean borderEdge) {
+        int kind = kinds[source];
+        if (kind == MANIFOLD)
+            return true;
+        // borders only slide along themselves, onto another border or locked vertex
+        return kind == BORDER && borderEdge && kinds[target] != MANIFOLD;
+    }
+
+    /**
+     * Triangles of canonical vertex c are adjacency[adjacencyStart[c] .. adjacencyStart[c + 1])
+     */
+    private void buildAdjacency(int[] idx, int triangles, int[] adjacencyStart, int[] adjacency) {
+        Arrays.fill(adjacencyStart, 0);
+        for (int i = 0; i < triangles * 3; i++)
+            adjacencyStart[mCanonical[idx[i]] + 1]++;
+        for (int v = 0; v < mVertexCount; v++)
+            adjacencyStart[v + 1] += adjacencyStart[v];
+        int[] fill = Arrays.copyOf(adjacencyStart, mVertexCount);
+        for (int i = 0; i < triangles * 3; i++)
+            adjacency[fill[mCanonical[idx[i]]]++] = i / 3;
+    }
+
+    /**
+     * Sorts vertices into manifold, border and locked, by canonical vertex and by vertex
+     */
+    private void classify(int[] idx, int triangles, int[] adjacencyStart, int[] adjacency,
+                          byte[] kinds, boolean[] borderEdges) {
+        int[] borderOut = new int[mVertexCount];
+        int[] borderIn = new int[mVertexCount];
+        findBorders(idx, triangles, adjacencyStart, adjacency, null, borderEdges, borderOut, borderIn);
+        for (int v = 0; v < mVertexCount; v++) {
+            int c = mCanonical[v];
+            if (mSeam[c])
+                kinds[v] = LOCKED;
+            else if (borderOut[c] == 0 && borderIn[c] == 0)
+                kinds[v] = MANIFOLD;
+            else if (borderOut[c] == 1 && borderIn[c] == 1)
+                kinds[v] = BORDER;
+            else
+                kinds[v] = LOCKED;
+        }
+    }
+
+    /**
+     * Flags border edges (corner k's edge runs to corner k + 1) by looking for the opposite
+     * edge among the other end's triangles, and optionally counts them per canonical vertex.
+     * Once vertices are classified, edges starting at manifold ones needn't be checked.
+     */
+    private void findBorders(int[] idx, int triangles, int[] adjacencyStart, int[] adjacency, byte[] kinds,
+                             boolean[] borderEdges, int[] borderOut, int[] borderIn) {
+        for (int i = 0; i < triangles * 3; i++) {
+            if (kinds != null && kinds[idx[i]] == MANIFOLD)
+                continue;
+            int a = mCanonical[idx[i]];
+            int b = mCanonical[idx[i % 3 == 2 ? i - 2 : i + 1]];
+            boolean opposite = false;
+            for (int j = adjacencyStart[b]; j < adjacencyStart[b + 1] && !opposite; j++) {
+                int t = adjacency[j];
+                for (int k = 0; k < 3; k++) {
+                    if (mCanonical[idx[t * 3 + k]] == b && mCanonical[idx[t * 3 + (k + 1) % 3]] == a) {
+                        opposite = true;
+                        break;
+                    }
+                }
+            }
+            if (!opposite) {
+                borderEdges[i] = true;
+                if (borderOut != null) {
+                    borderOut[a]++;
+                    borderIn[b]++;
+                }
+            }
+        }
+    }
+
+    private double[] buildQuadrics(int[] idx, int triangles, boolean[] borderEdges) {
+        double[] quadrics = new double[mVertexCount * QUADRIC_SIZE];
+        float[] p = mPositions;
+        float[] scratch = new float[12];   // edge 1, edge 2, normal, border plane normal
+        for (int t = 0; t < triangles; t++) {
+            int a = idx[t * 3], b = idx[t * 3 + 1], c = idx[t * 3 + 2];
+            for (int k = 0; k < 3; k++) {
+                scratch[k] = p[b * 3 + k] - p[a * 3 + k];
+                scratch[3 + k] = p[c * 3 + k] - p[a * 3 + k];
+            }
+            Vector3.cross(scratch, 6, scratch, 0, scratch, 3);
+            float area = (float) Math.sqrt(Vector3.dot(scratch, 6, scratch, 6)) * 0.5f;
+            Vector3.normalize(scratch, 6);
+            float d = -Vector3.dot(scratch, 6, p, a * 3);
+            addPlane(quadrics, a, scratch, 6, d, area);
+            addPlane(quadrics, b, scratch, 6, d, area);
+            addPlane(quadrics, c, scratch, 6, d, area);
+
+            for (int k = 0; k < 3; k++) {
+                if (!borderEdges[t * 3 + k])
+                    continue;
+                int from = idx[t * 3 + k], to = idx[t * 3 + (k + 1) % 3];
+                // plane through the edge, perpendicular to the face
+                for (int j = 0; j < 3; j++)
+                    scratch[j] = p[to * 3 + j] - p[from * 3 + j];
+                float lengthSq = Vector3.dot(scratch, 0, scratch, 0);
+                Vector3.cross(scratch, 9, scratch, 0, scratch, 6);
+                Vector3.normalize(scratch, 9);
+                float edgeD = -Vector3.dot(scratch, 9, p, from * 3);
+                addPlane(quadrics, from, scratch, 9, edgeD, lengthSq * BORDER_WEIGHT);
+                addPlane(quadrics, to, scratch, 9, edgeD, lengthSq * BORDER_WEIGHT);
+            }
+        }
+        return quadrics;
+    }
+
+    private static void addPlane(double[] quadrics, int vertex, float[] n, int offset, float d, float weight) {
+        double a = n[offset], b = n[offset + 1], c = n[offset + 2];
+        int q = vertex * QUADRIC_SIZE;
+        quadrics[q] += weight * a * a;
+        quadrics[q + 1] += weight * b * b;
+        quadrics[q + 2] += weight * c * c;
+        quadrics[q + 3] += weight * a * b;
+        quadrics[q + 4] += weight * a * c;
+        quadrics[q + 5] += weight * b * c;
+        quadrics[q + 6] += weight * a * d;
+        quadrics[q + 7] += weight * b * d;
+        quadrics[q + 8] += weight * c * d;
+        quadrics[q + 9] += weight * d * d;
+        quadrics[q + 10] += weight;
+    }
+
+    /**
+     * Mean squared distance from target's position to the planes of both quadrics
+     */
+    private float cost(double[] quadrics, int source, int target) {
+        int s = source * QUADRIC_SIZE, t = target * QUADRIC_SIZE;
+        double x = mPositions[target * 3], y = mPositions[target * 3 + 1], z = mPositions[target * 3 + 2];
+        double[] q = quadrics;
+        double error = (q[s] + q[t]) * x * x + (q[s + 1] + q[t + 1]) * y * y + (q[s + 2] + q[t + 2]) * z * z
+                + 2 * ((q[s + 3] + q[t + 3]) * x * y + (q[s + 4] + q[t + 4]) * x * z + (q[s + 5] + q[t + 5]) * y * z
+                + (q[s + 6] + q[t + 6]) * x + (q[s + 7] + q[t + 7]) * y + (q[s + 8] + q[t + 8]) * z)
+                + q[s + 9] + q[t + 9];
+        double weight = q[s + 10] + q[t + 10];
+        return weight > 0 ? (float) Math.max(0, error / weight) : 0;
+    }
+
+    /**
+     * @return how many triangles collapsing source onto target removes, or -1 if it would flip
+     *         a triangle or join two vertices of a seam
+     */
+    private int checkCollapse(int[] idx, int[] adjacencyStart, int[] adjacency, int source, int target) {
+        int cs = mCanonical[source], ct = mCanonical[target];
+        float[] p = mPositions;
+        int removed = 0;
+        for (int a = adjacencyStart[cs]; a < adjacencyStart[cs + 1]; a++) {
+            int t = adjacency[a];
+            int k = 0;
+            while (idx[t * 3 + k] != source)
+                k++;
+            int v1 = idx[t * 3 + (k + 1) % 3], v2 = idx[t * 3 + (k + 2) % 3];
+            if (v1 == target || v2 == target) {
+                removed++;
+                continue;
+            }
+            if (mCanonical[v1] == ct || mCanonical[v2] == ct)
+                return -1;
+
+            // normal before and after moving source to target
+            float e1x = p[v1 * 3] - p[source * 3], e1y = p[v1 * 3 + 1] - p[source * 3 + 1], e1z = p[v1 * 3 + 2] - p[source * 3 + 2];
+            float e2x = p[v2 * 3] - p[source * 3], e2y = p[v2 * 3 + 1] - p[source * 3 + 1], e2z = p[v2 * 3 + 2] - p[source * 3 + 2];
+            float f1x = p[v1 * 3] - p[target * 3], f1y = p[v1 * 3 + 1] - p[target * 3 + 1], f1z = p[v1 * 3 + 2] - p[target * 3 + 2];
+            float f2x = p[v2 * 3] - p[target * 3], f2y = p[v2 * 3 + 1] - p[target * 3 + 1], f2z = p[v2 * 3 + 2] - p[target * 3 + 2];
+            float nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+            float mx = f1y * f2z - f1z * f2y, my = f1z * f2x - f1x * f2z, mz = f1x * f2y - f1y * f2x;
+            float dot = nx * mx + ny * my + nz * mz;
+            float lengths = (float) Math.sqrt((nx * nx + ny * ny + nz * nz) * (mx * mx + my * my + mz * mz));
+            // reject flips and near flips, which would also make slivers
+            if (dot <= 0.25f * lengths)
+                return -1;
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,208 @@
+package matt.noobgraphics.mesh;
+
+import java.util.Arrays;
+
+/**
+ * Merges duplicate vertices of a mesh in place and rewrites its indices to match. A mesh with no
+ * indices is treated as a triangle soup, one triangle per three vertices, and gets an index
+ * buffer generated.
+ *
+ * Vertices are looked up in an open addressing hash table of ints holding vertex numbers, so a
+ * weld allocates nothing per vertex; the table and remap scratch are kept between calls and only
+ * grow.
+ */
+public class MeshWelder {
+    private static final int EMPTY = 0;     // table slots hold vertex + 1
+    // grid coordinates past this are beyond float precision and keyed by bits instead
+    private static final double MAX_GRID = 0x1p62;
+
+    private int[] mTable = new int[16];
+    private int[] mRemap = new int[16];
+
+    // the mesh being welded
+    private float[] mPositions;
+    private float[] mNormals;
+    private float[] mTexCoords;
+    private float[] mColors;
+    private double mInverseEpsilon;
+
+    /**
+     * Merges vertices whose attributes are all bit for bit identical
+     * @return the number of vertices left
+     */
+    public int weld(Mesh mesh) {
+        return weld(mesh, 0);
+    }
+
+    /**
+     * Merges vertices whose positions snap to the same point of a grid with the given spacing
+     * and whose other attributes are identical. The first vertex of each group is kept as is.
+     * Points closer than epsilon but either side of a grid line are not merged.
+     * Triangles that collapse to a line or point are removed.
+     *
+     * @param epsilon grid spacing; 0 compares positions bit for bit too
+     * @return the number of vertices left
+     */
+    public int weld(Mesh mesh, float epsilon) {
+        if (epsilon < 0)
+            throw new IllegalArgumentException("Negative epsilon " + epsilon);
+        int vertexCount = mesh.getVertexCount();
+        checkStream(mesh.normals.size(), vertexCount * Mesh.NORMAL_SIZE, "normals");
+        checkStream(mesh.texCoords.size(), vertexCount * Mesh.TEX_COORD_SIZE, "texture coordinates");
+        checkStream(mesh.colors.size(), vertexCount * Mesh.COLOR_SIZE, "colors");
+        boolean soup = mesh.indices.isEmpty();
+        if (soup && vertexCount % 3 != 0)
+            throw new IllegalArgumentException("Unindexed mesh has " + vertexCount + " vertices, not a multiple of 3");
+
+        mPositions = mesh.positions.array();
+        mNormals = mesh.hasNormals() ? mesh.normals.array() : null;
+        mTexCoords = mesh.hasTexCoords() ? mesh.texCoords.array() : null;
+        mColors = mesh.hasColors() ? mesh.colors.array() : null;
+        mInverseEpsilon = epsilon > 0 ? 1.0 / epsilon : 0;
+
+        // at most 3/4 full
+        int capacity = Integer.highestOneBit(Math.max(16, vertexCount + (vertexCount / 3)) - 1) << 1;
+        if (mTable.length < capacity)
+            mTable = new int[capacity];
+        else
+            Arrays.fill(mTable, 0, capacity, EMPTY);
+        if (mRemap.length < vertexCount)
+            mRemap = new int[vertexCount];
+        int[] table = mTable;
+        int[] remap = mRemap;
+        int mask = capacity - 1;
+
+        int unique = 0;
+        for (int v = 0; v < vertexCount; v++) {
+            int slot = hash(v) & mask;
+            while (true) {
+                int entry = table[slot];
+                if (entry == EMPTY) {
+                    // unique <= v, so this never overwrites a vertex that is still to be read
+                    move(v, unique);
+                    table[slot] = unique + 1;
+                    remap[v] = unique++;
+                    break;
+                }
+                if (equal(entry - 1, v)) {
+                    remap[v] = entry - 1;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        mesh.positions.truncate(unique * Mesh.POSITION_SIZE);
+        if (mNormals != null)
+            mesh.normals.truncate(unique * Mesh.NORMAL_SIZE);
+        if (mTexCoords != null)
+            mesh.texCoords.truncate(unique * Mesh.TEX_COORD_SIZE);
+        if (mColors != null)
+            mesh.colors.truncate(unique * Mesh.COLOR_SIZE);
+        mPositions = mNormals = mTexCoords = mColors = null;
+
+        if (soup) {
+            mesh.indices.ensureCapacity(vertexCount);
+            for (int v = 0; v < vertexCount; v += 3)
+                mesh.indices.add(v, v + 1, v + 2);
+        }
+        remapTriangles(mesh, remap);
+        return unique;
+    }
+
+    private static void checkStream(int size, int expected, String name) {
+        if (size != 0 && size != expected)
+            throw new IllegalArgumentException("Mesh has " + size + " floats of " + name + ", expected " + expected);
+    }
+
+    /**
+     * Rewrites the indices through remap, dropping triangles that use a vertex twice
+     */
+    private static void remapTriangles(Mesh mesh, int[] remap) {
+        int[] indices = mesh.indices.array();
+        int count = mesh.indices.size();
+        int kept = 0;
+        for (int i = 0; i + 2 < count; i += 3) {
+            int a = remap[indices[i]], b = remap[indices[i + 1]], c = remap[indices[i + 2]];
+            if (a == b || b == c || c == a)
+                continue;
+            indices[kept] = a;
+            indices[kept + 1] = b;
+            indices[kept + 2] = c;
+            kept += 3;
+        }
+        mesh.indices.truncate(kept);
+    }
+
+    /**
+     * @return the position component's grid coordinate; a long, since value / epsilon easily
+     *         passes 2^31 for large coordinates and a small epsilon
+     */
+    private long positionKey(int vertex, int component) {
+        float value = mPositions[vertex * 3 + component];
+        if (mInverseEpsilon == 0)
+            return Float.floatToIntBits(value);
+        double grid = value * mInverseEpsilon;
+        if (grid < MAX_GRID && grid > -MAX_GRID)
+            return Math.round(grid);
+        // outside every rounded key's range
+        return Long.MIN_VALUE + (Float.floatToIntBits(value) & 0xFFFFFFFFL);
+    }
+
+    private int hash(int vertex) {
+        int h = mix(0, positionKey(vertex, 0));
+        h = mix(h, positionKey(vertex, 1));
+        h = mix(h, positionKey(vertex, 2));
+        h = mix(h, mNormals, vertex * Mesh.NORMAL_SIZE, Mesh.NORMAL_SIZE);
+        h = mix(h, mTexCoords, vertex * Mesh.TEX_COORD_SIZE, Mesh.TEX_COORD_SIZE);
+        h = mix(h, mColors, vertex * Mesh.COLOR_SIZE, Mesh.COLOR_SIZE);
+        // spread the bits so nearby grid points don't land in neighbouring slots
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    private static int mix(int h, long key) {
+        h = h * 0x9E3779B1 + (int) key;
+        return h * 0x9E3779B1 + (int) (key >>> 32);
+    }
+
+    private static int mix(int h, float[] stream, int offset, int size) {
+        if (stream == null)
+            return h;
+        for (int i = 0; i < size; i++)
+            h = h * 0x9E3779B1 + Float.floatToIntBits(stream[offset + i]);
+        return h;
+    }
+
+    private boolean equal(int a, int b) {
+        for (int c = 0; c < 3; c++)
+            if (positionKey(a, c) != positionKey(b, c))
+                return false;
+        return same(mNormals, a, b, Mesh.NORMAL_SIZE)
+                && same(mTexCoords, a, b, Mesh.TEX_COORD_SIZE)
+                && same(mColors, a, b, Mesh.COLOR_SIZE);
+    }
+
+    private static boolean same(float[] stream, int a, int b, int size) {
+        if (stream == null)
+            return true;
+        for (int i = 0; i < size; i++)
+            if (Float.floatToIntBits(stream[a * size + i]) != Float.floatToIntBits(stream[b * size + i]))
+                return false;
+        return true;
+    }
+
+    private void move(int from, int to) {
+        if (from == to)
+            return;
+        System.arraycopy(mPositions, from * Mesh.POSITION_SIZE, mPositions, to * Mesh.POSITION_SIZE, Mesh.POSITION_SIZE);
+        if (mNormals != null)
+            System.arraycopy(mNormals, from * Mesh.NORMAL_SIZE, mNormals, to * Mesh.NORMAL_SIZE, Mesh.NORMAL_SIZE);
+        if (mTexCoords != null)
+            System.arraycopy(mTexCoords, from * Mesh.TEX_COORD_SIZE, mTexCoords, to * Mesh.TEX_COORD_SIZE, Mesh.TEX_COORD_SIZE);
+        if (mColors != null)
+            System.arraycopy(mColors, from * Mesh.COLOR_SIZE, mColors, to * Mesh.COLOR_SIZE, Mesh.COLOR_SIZE);
+    }
+}
@@ -0,0 +1,396 @@
+package matt.noobgraphics.mesh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import matt.noobgraphics.util.FloatList;
+import matt.noobgraphics.util.IntList;
+
+/**
+ * Streaming Wavefront OBJ loader. Reads v, vt, vn (and the common "v x y z r g b [a]" color
+ * extension; an optional w in "v x y z w" is ignored) and f records; polygons are triangulated
+ * as fans, negative (relative) indices are supported, everything else (groups, materials,
+ * smoothing) is skipped.
+ *
+ * OBJ indexes positions, texture coordinates and normals separately. When faces only reference
+ * positions the file's vertices are used as they are; otherwise every distinct
+ * position/uv/normal combination becomes one vertex.
+ *
+ * Large files can be parsed in parallel: the file is cut into chunks at line boundaries, each
+ * chunk is parsed on its own, and the chunks are stitched together in file order, so the result
+ * is the same as a serial load.
+ */
+public final class ObjLoader {
+    // parallel loading doesn't split below this many bytes per chunk
+    private static final int MIN_CHUNK_BYTES = 1 << 20;
+
+    // relative indices are kept as (chunk-local 0-based index - RELATIVE) until the chunk's
+    // offset in the file is known; the local index is negative if it points into an earlier chunk
+    private static final int RELATIVE = 1 << 30;
+
+    private ObjLoader() {}
+
+    public static Mesh load(InputStream in) throws IOException {
+        return load(Channels.newChannel(in));
+    }
+
+    public static Mesh load(ReadableByteChannel channel) throws IOException {
+        Chunk chunk = new Chunk();
+        chunk.parse(new ByteScanner(channel), Long.MAX_VALUE);
+        return assemble(new Chunk[] { chunk });
+    }
+
+    /**
+     * Parses a file in up to chunkCount pieces on the given pool
+     */
+    public static Mesh load(final FileChannel file, ForkJoinPool pool, int chunkCount) throws IOException {
+        final long size = file.size();
+        final int chunks = (int) Math.max(1, Math.min(chunkCount, size / MIN_CHUNK_BYTES));
+
+        List<Callable<Chunk>> tasks = new ArrayList<>(chunks);
+        for (int k = 0; k < chunks; k++) {
+            final long start = size * k / chunks;
+            final long end = size * (k + 1) / chunks;
+            tasks.add(new Callable<Chunk>() {
+                @Override
+                public Chunk call() throws IOException {
+                    Chunk chunk = new Chunk();
+                    ByteScanner scanner;
+                    if (start == 0) {
+                        scanner = new ByteScanner(file, 0, ByteScanner.DEFAULT_BUFFER_SIZE);
+                    } else {
+                        // the line straddling the boundary belongs to the previous chunk
+                        scanner = new ByteScanner(file, start - 1, ByteScanner.DEFAULT_BUFFER_SIZE);
+                        scanner.skipLine();
+                    }
+                    chunk.parse(scanner, end);
+                    return chunk;
+                }
+            });
+        }
+
+        Chunk[] results = new Chunk[chunks];
+        List<Future<Chunk>> futures = pool.invokeAll(tasks);
+        for (int k = 0; k < chunks; k++) {
+            try {
+                results[k] = futures.get(k).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                throw new IOException("Chunk failed to parse", e.getCause());
+            }
+        }
+        return assemble(results);
+    }
+
+    /**
+     * Raw records of part of a file. Face corners are stored as (v, vt, vn) triples, three
+     * triples per triangle, as written in the file (1-based, 0 meaning absent) except for
+     * relative indices, see {@link #RELATIVE}.
+     */
+    private static class Chunk {
+        final FloatList positions = new FloatList(1024);
+        final FloatList texCoords = new FloatList();
+        final FloatList normals = new FloatList();
+        final FloatList colors = new FloatList();
+        final IntList corners = new IntList(1024);
+
+        // scratch for the face being read: first, previous and current corner
+        private final int[] mFace = new int[9];
+
+        /**
+         * Parses the lines that start before the given offset
+         */
+        void parse(ByteScanner in, long end) throws IOException {
+            while (in.position() < end) {
+                in.skipSpaces();
+                int c = in.read();
+                if (c == -1)
+                    break;
+                if (c == '\n')
+                    continue;
+
+                if (c == 'v') {
+                    c = in.peek();
+                    if (c == ' ' || c == '\t') {
+                        positions.add(in.nextFloat(), in.nextFloat(), in.nextFloat());
+                        parseVertexExtras(in);
+                    } else if (c == 't') {
+                        in.read();
+                        float u = in.nextFloat();
+                        texCoords.add(u, in.atLineEnd() ? 0 : in.nextFloat());
+                    } else if (c == 'n') {
+                        in.read();
+                        normals.add(in.nextFloat(), in.nextFloat(), in.nextFloat());
+                    }
+                } else if (c == 'f') {
+                    parseFace(in);
+                }
+                in.skipLine();
+            }
+            if (!colors.isEmpty())
+                padColors(positions.size() / 3);
+        }
+
+        /**
+         * What follows x y z tells the forms apart by count: "w" (ignored), "r g b" or
+         * "r g b a"
+         */
+        private void parseVertexExtras(ByteScanner in) throws IOException {
+            if (in.atLineEnd())
+                return;
+            float r = in.nextFloat();
+            if (in.atLineEnd())
+                return;
+            float g = in.nextFloat();
+            float b = in.nextFloat();
+            addColor(r, g, b, in.atLineEnd() ? 1.0f : in.nextFloat());
+        }
+
+        private void addColor(float r, float g, float b, float a) {
+            // positions already has this vertex, colors doesn't yet
+            padColors(positions.size() / 3 - 1);
+            colors.add(r, g, b);
+            colors.add(a);
+        }
+
+        // vertices without a color get white
+        private void padColors(int vertices) {
+            while (colors.size() / 4 < vertices) {
+                colors.add(1, 1, 1);
+                colors.add(1);
+            }
+        }
+
+        private void parseFace(ByteScanner in) throws IOException {
+            int[] face = mFace;
+            int count = 0;
+            while (!in.atLineEnd()) {
+                int slot = count < 2 ? count * 3 : 6;
+                face[slot] = resolve(in.nextInt(), positions.size() / 3);
+                face[slot + 1] = 0;
+                face[slot + 2] = 0;
+                if (in.peek() == '/') {
+                    in.read();
+                    if (in.peek() != '/')
+                        face[slot + 1] = resolve(in.nextInt(), texCoords.size() / 2);
+                    if (in.peek() == '/') {
+                        in.read();
+                        face[slot + 2] = resolve(in.nextInt(), normals.size() / 3);
+                    }
+                }
+                if (count >= 2) {
+                    corners.addAll(face, 0, 9);
+                    // the current corner is the next triangle's previous corner
+                    face[3] = face[6];
+                    face[4] = face[7];
+                    face[5] = face[8];
+                }
+                count++;
+            }
+        }
+
+        private static int resolve(int index, int countSoFar) throws IOException {
+            if (index > 0)
+                return index;
+            if (index == 0)
+                throw new IOException("Index 0 in face");
+            return countSoFar + index - RELATIVE;
+        }
+    }
+
+    private static Mesh assemble(Chunk[] chunks) throws IOException {
+        int vertexCount = 0, texCoordCount = 0, normalCount = 0, triangleCount = 0;
+        boolean anyColors = false;
+        for (Chunk chunk : chunks) {
+            vertexCount += chunk.positions.size() / 3;
+            texCoordCount += chunk.texCoords.size() / 2;
+            normalCount += chunk.normals.size() / 3;
+            triangleCount += chunk.corners.size() / 9;
+            anyColors |= !chunk.colors.isEmpty();
+        }
+
+        // merge the raw streams; a single chunk is used as it is
+        FloatList positions, texCoords, normals, colors;
+        if (chunks.length == 1) {
+            positions = chunks[0].positions;
+            texCoords = chunks[0].texCoords;
+            normals = chunks[0].normals;
+            colors = chunks[0].colors;
+        } else {
+            positions = new FloatList(vertexCount * 3);
+            texCoords = new FloatList(texCoordCount * 2);
+            normals = new FloatList(normalCount * 3);
+            colors = new FloatList(anyColors ? vertexCount * 4 : 1);
+            for (Chunk chunk : chunks) {
+                positions.addAll(chunk.positions);
+                texCoords.addAll(chunk.texCoords);
+                normals.addAll(chunk.normals);
+                if (anyColors) {
+                    if (chunk.colors.isEmpty()) {
+                        for (int i = chunk.positions.size() / 3; i > 0; i--) {
+                            colors.add(1, 1, 1);
+                            colors.add(1);
+                        }
+                    } else {
+                        colors.addAll(chunk.colors);
+                    }
+                }
+            }
+        }
+
+        // make every corner index global and 0-based, in place
+        boolean usesTexCoords = false, usesNormals = false;
+        int vBase = 0, tBase = 0, nBase = 0;
+        for (Chunk chunk : chunks) {
+            int[] c = chunk.corners.array();
+            for (int i = 0; i < chunk.corners.size(); i += 3) {
+                c[i] = global(c[i], vBase, vertexCount);
+                c[i + 1] = global(c[i + 1], tBase, texCoordCount);
+                c[i + 2] = global(c[i + 2], nBase, normalCount);
+                if (c[i] < 0)
+                    throw new IOException("Face without a position index");
+                usesTexCoords |= c[i + 1] >= 0;
+                usesNormals |= c[i + 2] >= 0;
+            }
+            vBase += chunk.positions.size() / 3;
+            tBase += chunk.texCoords.size() / 2;
+            nBase += chunk.normals.size() / 3;
+        }
+
+        if (!usesTexCoords && !usesNormals) {
+            IntList indices = new IntList(triangleCount * 3);
+            for (Chunk chunk : chunks) {
+                int[] c = chunk.corners.array();
+                for (int i = 0; i < chunk.corners.size(); i += 3)
+                    indices.add(c[i]);
+            }
+            return new Mesh(positions, new FloatList(1), new FloatList(1), colors, indices);
+        }
+
+        // one vertex per distinct (v, vt, vn)
+        Mesh mesh = new Mesh(vertexCount, triangleCount);
+        CornerMap map = new CornerMap(vertexCount);
+        float[] p = positions.array(), t = texCoords.array(), n = normals.array(), col = colors.array();
+        for (Chunk chunk : chunks) {
+            int[] c = chunk.corners.array();
+            for (int i = 0; i < chunk.corners.size(); i += 3) {
+                int v = c[i], vt = c[i + 1], vn = c[i + 2];
+                int vertex = map.get(v, vt, vn);
+                if (vertex < 0) {
+                    vertex = mesh.getVertexCount();
+                    map.put(v, vt, vn, vertex);
+                    mesh.positions.add(p[v * 3], p[v * 3 + 1], p[v * 3 + 2]);
+                    if (anyColors) {
+                        mesh.colors.add(col[v * 4], col[v * 4 + 1], col[v * 4 + 2]);
+                        mesh.colors.add(col[v * 4 + 3]);
+                    }
+                    if (usesTexCoords) {
+                        if (vt >= 0)
+                            mesh.texCoords.add(t[vt * 2], t[vt * 2 + 1]);
+                        else
+                            mesh.texCoords.add(0, 0);
+                    }
+                    if (usesNormals) {
+                        if (vn >= 0)
+                            mesh.normals.add(n[vn * 3], n[vn * 3 + 1], n[vn * 3 + 2]);
+                        else
+                            mesh.normals.add(0, 0, 0);
+                    }
+                }
+                mesh.indices.add(vertex);
+            }
+        }
+        return mesh;
+    }
+
+    /**
+     * @return the 0-based global index, or -1 for an absent one
+     */
+    private static int global(int raw, int chunkBase, int count) throws IOException {
+        if (raw == 0)
+            return -1;
+        int index = raw > 0 ? raw - 1 : chunkBase + raw + RELATIVE;
+        if (index < 0 || index >= count)
+            throw new IOException("Index " + (index + 1) + " out of range, " + count + " defined");
+        return index;
+    }
+
+    /**
+     * Open addressing map from a (v, vt, vn) triple to a vertex index, keys and values in
+     * primitive arrays
+     */
+    private static class CornerMap {
+        private int[] mKeys;
+        private int[] mValues;
+        private int mMask;
+        private int mSize;
+
+        CornerMap(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            mKeys = new int[capacity * 3];
+            mValues = new int[capacity];
+            Arrays.fill(mValues, -1);
+            mMask = capacity - 1;
+        }
+
+        private static int hash(int a, int b, int c) {
+            int h = a * 0x9E3779B1 + b * 0x85EBCA77 + c * 0xC2B2AE3D;
+            return h ^ (h >>> 15);
+        }
+
+        int get(int a, int b, int c) {
+            for (int slot = hash(a, b, c) & mMask; ; slot = (slot + 1) & mMask) {
+                int value = mValues[slot];
+                if (value < 0)
+                    return -1;
+                int k = slot * 3;
+                if (mKeys[k] == a && mKeys[k + 1] == b && mKeys[k + 2] == c)
+                    return value;
+            }
+        }
+
+        void put(int a, int b, int c, int value) {
+            if ((mSize + 1) * 2 > mValues.length)
+                rehash();
+            insert(a, b, c, value);
+            mSize++;
+        }
+
+        private void insert(int a, int b, int c, int value) {
+            int slot = hash(a, b, c) & mMask;
+            while (mValues[slot] >= 0)
+                slot = (slot + 1) & mMask;
+            int k = slot * 3;
+            mKeys[k] = a;
+            mKeys[k + 1] = b;
+            mKeys[k + 2] = c;
+            mValues[slot] = value;
+        }
+
+        private void rehash() {
+            int[] keys = mKeys, values = mValues;
+            allocate(values.length * 2);
+            for (int slot = 0; slot < values.length; slot++)
+                if (values[slot] >= 0)
+                    insert(keys[slot * 3], keys[slot * 3 + 1], keys[slot * 3 + 2], values[slot]);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package matt.noobgraphics.mesh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming PLY loader for ascii, binary_little_endian and binary_big_endian files.
+ *
+ * Reads vertex positions (x y z), normals (nx ny nz), texture coordinates (u v, s t or
+ * texture_u texture_v) and colors (red green blue alpha; integer channels are normalized) and
+ * the vertex_indices / vertex_index list of faces, triangulated as fans. Unknown properties and
+ * elements are skipped.
+ */
+public final class PlyLoader {
+    // property types
+    private static final int INT8 = 0;
+    private static final int UINT8 = 1;
+    private static final int INT16 = 2;
+    private static final int UINT16 = 3;
+    private static final int INT32 = 4;
+    private static final int UINT32 = 5;
+    private static final int FLOAT32 = 6;
+    private static final int FLOAT64 = 7;
+
+    // where a vertex property goes
+    private static final int SKIP = -1;
+    private static final int X = 0, Y = 1, Z = 2;
+    private static final int NX = 3, NY = 4, NZ = 5;
+    private static final int U = 6, V = 7;
+    private static final int RED = 8, GREEN = 9, BLUE = 10, ALPHA = 11;
+
+    private static final int FORMAT_ASCII = 0;
+    private static final int FORMAT_LITTLE_ENDIAN = 1;
+    private static final int FORMAT_BIG_ENDIAN = 2;
+
+    private static class Property {
+        String name;
+        int type;
+        int countType = -1;     // list properties only
+    }
+
+    private static class Element {
+        String name;
+        int count;
+        final List<Property> properties = new ArrayList<>();
+    }
+
+    private PlyLoader() {}
+
+    public static Mesh load(InputStream in) throws IOException {
+        return load(Channels.newChannel(in));
+    }
+
+    public static Mesh load(ReadableByteChannel channel) throws IOException {
+        ByteScanner in = new ByteScanner(channel);
+        List<Element> elements = new ArrayList<>();
+        int format = readHeader(in, elements);
+
+        int vertexCount = 0, faceCount = 0;
+        for (Element element : elements) {
+            if (element.name.equals("vertex"))
+                vertexCount = element.count;
+            else if (element.name.equals("face"))
+                faceCount = element.count;
+        }
+        Mesh mesh = new Mesh(vertexCount, faceCount);
+
+        for (Element element : elements) {
+            if (element.name.equals("vertex"))
+                readVertices(in, format, element, mesh);
+            else if (element.name.equals("face"))
+                readFaces(in, format, element, mesh);
+            else
+                skipElement(in, format, element);
+        }
+        return mesh;
+    }
+
+    private static int readHeader(ByteScanner in, List<Element> elements) throws IOException {
+        if (!"ply".equals(in.readLine()))
+            throw new IOException("Not a PLY file");
+
+        int format = -1;
+        Element element = null;
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] tokens = line.trim().split("\\s+");
+            String keyword = tokens[0];
+            if (keyword.equals("end_header")) {
+                if (format < 0)
+                    throw new IOException("PLY header has no format");
+                return format;
+            } else if (keyword.equals("format") && tokens.length > 1) {
+                if (tokens[1].equals("ascii"))
+                    format = FORMAT_ASCII;
+                else if (tokens[1].equals("binary_little_endian"))
+                    format = FORMAT_LITTLE_ENDIAN;
+                else if (tokens[1].equals("binary_big_endian"))
+                    format = FORMAT_BIG_ENDIAN;
+                else
+                    throw new IOException("Unknown PLY format " + tokens[1]);
+            } else if (keyword.equals("element") && tokens.length > 2) {
+                element = new Element();
+                element.name = tokens[1];
+                element.count = Integer.parseInt(tokens[2]);
+                elements.add(element);
+            } else if (keyword.equals("property") && element != null) {
+                Property property = new Property();
+                if (tokens.length > 4 && tokens[1].equals("list")) {
+                    property.countType = type(tokens[2]);
+                    property.type = type(tokens[3]);
+                    property.name = tokens[4];
+                } else if (tokens.length > 2) {
+                    property.type = type(tokens[1]);
+                    property.name = tokens[2];
+                } else {
+                    throw new IOException("Bad PLY property: " + line);
+                }
+                element.properties.add(property);
+            }
+            // comment, obj_info: ignored
+        }
+        throw new IOException("PLY header has no end_header");
+    }
+
+    private static int type(String name) throws IOException {
+        if (name.equals("char") || name.equals("int8")) return INT8;
+        if (name.equals("uchar") || name.equals("uint8")) return UINT8;
+        if (name.equals("short") || name.equals("int16")) return INT16;
+        if (name.equals("ushort") || name.equals("uint16")) return UINT16;
+        if (name.equals("int") || name.equals("int32")) return INT32;
+        if (name.equals("uint") || name.equals("uint32")) return UINT32;
+        if (name.equals("float") || name.equals("float32")) return FLOAT32;
+        if (name.equals("double") || name.equals("float64")) return FLOAT64;
+        throw new IOException("Unknown PLY type " + name);
+    }
+
+    private static int target(String name) {
+        switch (name) {
+            case "x": return X;
+            case "y": return Y;
+            case "z": return Z;
+            case "nx": return NX;
+            case "ny": return NY;
+            case "nz": return NZ;
+            case "u": case "s": case "texture_u": return U;
+            case "v": case "t": case "texture_v": return V;
+            case "red": return RED;
+            case "green": return GREEN;
+            case "blue": return BLUE;
+            case "alpha": return ALPHA;
+            default: return SKIP;
+        }
+    }
+
+    /**
+     * Scale that maps an integer color channel to [0, 1]
+     */
+    private static float colorScale(int type) {
+        switch (type) {
+            case UINT8: return 1.0f / 255;
+            case UINT16: return 1.0f / 65535;
+            default: return 1.0f;
+        }
+    }
+
+    private static double readValue(ByteScanner in, int format, int type) throws IOException {
+        if (format == FORMAT_ASCII)
+            return in.nextFloat();
+        boolean bigEndian = format == FORMAT_BIG_ENDIAN;
+        switch (type) {
+            case INT8: return in.readByte();
+            case UINT8: return in.readByte() & 0xFF;
+            case INT16: return in.readShort(bigEndian);
+            case UINT16: return in.readShort(bigEndian) & 0xFFFF;
+            case INT32: return in.readInt(bigEndian);
+            case UINT32: return in.readInt(bigEndian) & 0xFFFFFFFFL;
+            case FLOAT32: return in.readFloat(bigEndian);
+            default: return in.readDouble(bigEndian);
+        }
+    }
+
+    private static int readCount(ByteScanner in, int format, int type) throws IOException {
+        if (format == FORMAT_ASCII)
+            return in.nextInt();
+        return (int) readValue(in, format, type);
+    }
+
+    private static void readVertices(ByteScanner in, int format, Element element, Mesh mesh) throws IOException {
+        int propertyCount = element.properties.size();
+        int[] targets = new int[propertyCount];
+        int[] types = new int[propertyCount];
+        float[] scales = new float[propertyCount];
+        boolean normals = false, texCoords = false, colors = false;
+        for (int i = 0; i < propertyCount; i++) {
+            Property property = element.properties.get(i);
+            types[i] = property.type;
+            targets[i] = property.countType >= 0 ? SKIP : target(property.name);
+            scales[i] = targets[i] >= RED ? colorScale(property.type) : 1.0f;
+            normals |= targets[i] >= NX && targets[i] <= NZ;
+            texCoords |= targets[i] == U || targets[i] == V;
+            colors |= targets[i] >= RED;
+        }
+
+        float[] vertex = new float[12];
+        for (int v = 0; v < element.count; v++) {
+            vertex[X] = vertex[Y] = vertex[Z] = 0;
+            vertex[NX] = vertex[NY] = vertex[NZ] = 0;
+            vertex[U] = vertex[V] = 0;
+            vertex[RED] = vertex[GREEN] = vertex[BLUE] = vertex[ALPHA] = 1;
+            for (int i = 0; i < propertyCount; i++) {
+                if (targets[i] == SKIP && element.properties.get(i).countType >= 0) {
+                    skipList(in, format, element.properties.get(i));
+                    continue;
+                }
+                float value = (float) readValue(in, format, types[i]);
+                if (targets[i] != SKIP)
+                    vertex[targets[i]] = value * scales[i];
+            }
+            if (format == FORMAT_ASCII)
+                in.skipLine();
+
+            mesh.positions.add(vertex[X], vertex[Y], vertex[Z]);
+            if (normals)
+                mesh.normals.add(vertex[NX], vertex[NY], vertex[NZ]);
+            if (texCoords)
+                mesh.texCoords.add(vertex[U], vertex[V]);
+            if (colors) {
+                mesh.colors.add(vertex[RED], vertex[GREEN], vertex[BLUE]);
+                mesh.colors.add(vertex[ALPHA]);
+            }
+        }
+    }
+
+    private static void readFaces(ByteScanner in, int format, Element element, Mesh mesh) throws IOException {
+        int vertexCount = mesh.getVertexCount();
+        for (int f = 0; f < element.count; f++) {
+            for (Property property : element.properties) {
+                boolean indices = property.countType >= 0
+                        && (property.name.equals("vertex_indices") || property.name.equals("vertex_index"));
+                if (!indices) {
+                    if (property.countType >= 0)
+                        skipList(in, format, property);
+                    else
+                        readValue(in, format, property.type);
+                    continue;
+                }
+
+                int count = readCount(in, format, property.countType);
+                int first = 0, previous = 0;
+                for (int i = 0; i < count; i++) {
+                    int index = (int) readValue(in, format, property.type);
+                    if (index < 0 || index >= vertexCount)
+                        throw new IOException("Face " + f + " references vertex " + index + " of " + vertexCount);
+                    if (i == 0)
+                        first = index;
+                    else if (i >= 2)
+                        mesh.indices.add(first, previous, index);
+                    previous = index;
+                }
+            }
+            if (format == FORMAT_ASCII)
+                in.skipLine();
+        }
+    }
+
+    private static void skipList(ByteScanner in, int format, Property property) throws IOException {
+        int count = readCount(in, format, property.countType);
+        for (int i = 0; i < count; i++)
+            readValue(in, format, property.type);
+    }
+
+    private static void skipElement(ByteScanner in, int format, Element element) throws IOException {
+        for (int e = 0; e < element.count; e++) {
+            if (format == FORMAT_ASCII) {
+                in.skipLine();
+                continue;
+            }
+            for (Property property : element.properties) {
+                if (property.countType >= 0)
+                    skipList(in, format, property);
+                else
+                    readValue(in, format, property.type);
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package matt.noobgraphics.mesh;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes interleaved vertices of a {@link VertexLayout} straight into a native order direct
+ * ByteBuffer, converting floats to each attribute's type as they go: normalized integer types
+ * map [0, 1] or [-1, 1] onto their range, half floats go through {@link VertexCodec#toHalf}.
+ *
+ * <pre>
+ * builder.put(position, x, y, z).put(uv, u, v).next();
+ * </pre>
+ *
+ * Attributes are addressed by their index in the layout, so look them up once with
+ * {@link VertexLayout#find}. The buffer doubles when full, one copy; {@link #clear} keeps it.
+ */
+public class VertexBuilder {
+    private final VertexLayout mLayout;
+    private final int mStride;
+    private ByteBuffer mBuffer;
+    private int mVertexCount;
+
+    public VertexBuilder(VertexLayout layout, int vertexCapacity) {
+        mLayout = layout;
+        mStride = layout.getStride();
+        mBuffer = allocate(Math.max(1, vertexCapacity) * mStride);
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    public VertexLayout getLayout() { return mLayout; }
+
+    public int getVertexCount() { return mVertexCount; }
+
+    public VertexBuilder put(int attribute, float x) {
+        int at = start(attribute, 1);
+        putComponent(attribute, at, 0, x);
+        return this;
+    }
+
+    public VertexBuilder put(int attribute, float x, float y) {
+        int at = start(attribute, 2);
+        putComponent(attribute, at, 0, x);
+        putComponent(attribute, at, 1, y);
+        return this;
+    }
+
+    public VertexBuilder put(int attribute, float x, float y, float z) {
+        int at = start(attribute, 3);
+        putComponent(attribute, at, 0, x);
+        putComponent(attribute, at, 1, y);
+        putComponent(attribute, at, 2, z);
+        return this;
+    }
+
+    public VertexBuilder put(int attribute, float x, float y, float z, float w) {
+        int at = start(attribute, 4);
+        putComponent(attribute, at, 0, x);
+        putComponent(attribute, at, 1, y);
+        putComponent(attribute, at, 2, z);
+        putComponent(attribute, at, 3, w);
+        return this;
+    }
+
+    /**
+     * Puts all of the current vertex's attribute from an array
+     */
+    public VertexBuilder put(int attribute, float[] values, int offset) {
+        int components = mLayout.getComponents(attribute);
+        int at = start(attribute, components);
+        for (int c = 0; c < components; c++)
+            putComponent(attribute, at, c, values[offset + c]);
+        return this;
+    }
+
+    /**
+     * Finishes the current vertex; attributes that weren't put keep whatever the buffer held
+     */
+    public VertexBuilder next() {
+        mVertexCount++;
+        return this;
+    }
+
+    private int start(int attribute, int components) {
+        if (components != mLayout.getComponents(attribute))
+            throw new IllegalArgumentException("Attribute " + attribute + " has "
+                    + mLayout.getComponents(attribute) + " components, not " + components);
+        int end = (mVertexCount + 1) * mStride;
+        if (end > mBuffer.capacity()) {
+            ByteBuffer grown = allocate(Math.max(end, mBuffer.capacity() * 2));
+            mBuffer.clear();
+            mBuffer.limit(mVertexCount * mStride);
+            grown.put(mBuffer);
+            mBuffer = grown;
+        }
+        // getBuffer() may have pulled the limit in
+        mBuffer.limit(mBuffer.capacity());
+        return mVertexCount * mStride + mLayout.getOffset(attribute);
+    }
+
+    private void putComponent(int attribute, int at, int component, float value) {
+        int type = mLayout.getType(attribute);
+        boolean normalized = mLayout.isNormalized(attribute);
+        switch (type) {
+            case MeshFile.TYPE_FLOAT:
+                mBuffer.putFloat(at + component * 4, value);
+                break;
+            case MeshFile.TYPE_HALF_FLOAT:
+                mBuffer.putShort(at + component * 2, VertexCodec.toHalf(value));
+                break;
+            case MeshFile.TYPE_UNSIGNED_SHORT:
+                if (normalized)
+                    value = Math.max(0, Math.min(1, value)) * 65535 + 0.5f;
+                mBuffer.putShort(at + component * 2, (short) (int) value);
+                break;
+            case MeshFile.TYPE_SHORT:
+                if (normalized)
+                    value = Math.round(Math.max(-1, Math.min(1, value)) * 32767);
+                mBuffer.putShort(at + component * 2, (short) value);
+                break;
+            case MeshFile.TYPE_UNSIGNED_BYTE:
+                if (normalized)
+                    value = Math.max(0, Math.min(1, value)) * 255 + 0.5f;
+                mBuffer.put(at + component, (byte) (int) value);
+                break;
+            case MeshFile.TYPE_BYTE:
+                if (normalized)
+                    value = Math.round(Math.max(-1, Math.min(1, value)) * 127);
+                mBuffer.put(at + component, (byte) value);
+                break;
+            default:
+                throw new IllegalStateException("Can't write type 0x" + Integer.toHexString(type));
+        }
+    }
+
+    /**
+     * @return the vertices written so far, positioned at 0 with the limit at the last one; the
+     *         builder's own buffer, so valid until the next put or clear
+     */
+    public ByteBuffer getBuffer() {
+        mBuffer.clear();
+        mBuffer.limit(mVertexCount * mStride);
+        return mBuffer;
+    }
+
+    /**
+     * Starts over, keeping the buffer
+     */
+    public void clear() {
+        mVertexCount = 0;
+    }
+}
@@ -0,0 +1,100 @@
+package matt.noobgraphics.mesh;
+
+import matt.noobgraphics.util.IntList;
+
+/**
+ * Post-transform vertex cache behaviour of an index buffer, from a simulated cache, so index
+ * orders can be compared without a GPU.
+ *
+ * ACMR is vertex shader invocations per triangle: 3 with no reuse, about 0.5 at best for a
+ * regular grid. ATVR is invocations per distinct vertex, 1 at best, so it doesn't depend on the
+ * mesh's connectivity the way ACMR does.
+ */
+public class VertexCacheStats {
+    /** Entries leave in the order they came in; hits don't refresh them. Most GPUs. */
+    public static final int FIFO = 0;
+    /** Hits move an entry to the front */
+    public static final int LRU = 1;
+
+    public final int misses;
+    public final int triangles;
+    public final int vertices;      // distinct vertices referenced
+
+    private VertexCacheStats(int misses, int triangles, int vertices) {
+        this.misses = misses;
+        this.triangles = triangles;
+        this.vertices = vertices;
+    }
+
+    /** @return average cache miss ratio: misses per triangle */
+    public float getAcmr() {
+        return triangles == 0 ? 0 : (float) misses / triangles;
+    }
+
+    /** @return average transform to vertex ratio: misses per referenced vertex */
+    public float getAtvr() {
+        return vertices == 0 ? 0 : (float) misses / vertices;
+    }
+
+    public static VertexCacheStats analyze(Mesh mesh, int cacheSize, int policy) {
+        return analyze(mesh.indices, mesh.getVertexCount(), cacheSize, policy);
+    }
+
+    /**
+     * Runs the indices through a cache of the given size and policy
+     */
+    public static VertexCacheStats analyze(IntList indices, int vertexCount, int cacheSize, int policy) {
+        if (cacheSize < 1)
+            throw new IllegalArgumentException("Cache size " + cacheSize);
+        int[] data = indices.array();
+        int count = indices.size() - indices.size() % 3;
+        boolean[] used = new boolean[vertexCount];
+        int vertices = 0;
+        int misses = 0;
+
+        if (policy == FIFO) {
+            // a vertex is still cached if it was one of the last cacheSize misses
+            int[] addedAt = new int[vertexCount];
+            for (int i = 0; i < count; i++) {
+                int v = data[i];
+                if (!used[v]) {
+                    used[v] = true;
+                    vertices++;
+                } else if (misses - addedAt[v] <= cacheSize) {
+                    continue;
+                }
+                addedAt[v] = misses++;
+            }
+        } else if (policy == LRU) {
+            int[] cache = new int[cacheSize];
+            int cached = 0;
+            for (int i = 0; i < count; i++) {
+                int v = data[i];
+                if (!used[v]) {
+                    used[v] = true;
+                    vertices++;
+                }
+                int at = 0;
+                while (at < cached && cache[at] != v)
+                    at++;
+                if (at == cached) {
+                    misses++;
+                    if (cached < cacheSize)
+                        cached++;
+                    at = cached - 1;
+                }
+                // move to front
+                System.arraycopy(cache, 0, cache, 1, at);
+                cache[0] = v;
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown cache policy " + policy);
+        }
+        return new VertexCacheStats(misses, count / 3, vertices);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ACMR %.3f, ATVR %.3f", getAcmr(), getAtvr());
+    }
+}
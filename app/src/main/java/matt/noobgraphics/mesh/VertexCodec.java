@@ -0,0 +1,207 @@
+package matt.noobgraphics.mesh;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Batch encode and decode kernels for compact vertex attributes, reading and writing one
+ * attribute of interleaved vertices in a ByteBuffer (at offset, every stride bytes), with
+ * absolute puts and gets so the buffer's position is left alone. Use a little endian buffer
+ * for anything GL or {@link MeshFile} will read.
+ *
+ * <ul>
+ * <li>positions: 16 bit unorm relative to the mesh bounds; undo with
+ *     {@link #positionDecodeMatrix}</li>
+ * <li>unit vectors (normals, tangents): octahedral, two 16 bit snorm; decode in the shader</li>
+ * <li>texture coordinates: half floats</li>
+ * <li>colors: 8 bit unorm</li>
+ * </ul>
+ */
+public final class VertexCodec {
+    private VertexCodec() {}
+
+    /**
+     * Positions as three unsigned shorts, 0 at the bounds' minimum and 65535 at its maximum
+     * @param bounds [ minX minY minZ maxX maxY maxZ ], e.g. from {@link Mesh#computeBounds}
+     */
+    public static void encodePositions(float[] src, int count, float[] bounds, ByteBuffer out, int offset, int stride) {
+        float sx = scale(bounds, 0), sy = scale(bounds, 1), sz = scale(bounds, 2);
+        float minX = bounds[0], minY = bounds[1], minZ = bounds[2];
+        for (int v = 0, i = 0, o = offset; v < count; v++, i += 3, o += stride) {
+            out.putShort(o, (short) (int) ((src[i] - minX) * sx + 0.5f));
+            out.putShort(o + 2, (short) (int) ((src[i + 1] - minY) * sy + 0.5f));
+            out.putShort(o + 4, (short) (int) ((src[i + 2] - minZ) * sz + 0.5f));
+        }
+    }
+
+    private static float scale(float[] bounds, int axis) {
+        float extent = bounds[axis + 3] - bounds[axis];
+        return extent > 0 ? 65535 / extent : 0;
+    }
+
+    public static void decodePositions(ByteBuffer in, int offset, int stride, int count, float[] bounds, float[] dst) {
+        float sx = (bounds[3] - bounds[0]) / 65535, sy = (bounds[4] - bounds[1]) / 65535, sz = (bounds[5] - bounds[2]) / 65535;
+        for (int v = 0, i = 0, o = offset; v < count; v++, i += 3, o += stride) {
+            dst[i] = bounds[0] + (in.getShort(o) & 0xFFFF) * sx;
+            dst[i + 1] = bounds[1] + (in.getShort(o + 2) & 0xFFFF) * sy;
+            dst[i + 2] = bounds[2] + (in.getShort(o + 4) & 0xFFFF) * sz;
+        }
+    }
+
+    /**
+     * The model matrix that maps positions GL reads as normalized unsigned shorts, [0, 1] per
+     * axis, back onto the bounds: multiply it in after the mesh's own model matrix.
+     * @param out receives a column major 4x4 matrix
+     */
+    public static void positionDecodeMatrix(float[] bounds, float[] out, int offset) {
+        for (int i = 0; i < 16; i++)
+            out[offset + i] = 0;
+        out[offset] = bounds[3] - bounds[0];
+        out[offset + 5] = bounds[4] - bounds[1];
+        out[offset + 10] = bounds[5] - bounds[2];
+        out[offset + 12] = bounds[0];
+        out[offset + 13] = bounds[1];
+        out[offset + 14] = bounds[2];
+        out[offset + 15] = 1;
+    }
+
+    /**
+     * Unit vectors, 3 floats each, as two snorm shorts: the vector is projected onto an
+     * octahedron and the lower half folded over the upper (Cigolle et al., "A Survey of
+     * Efficient Representations for Independent Unit Vectors", 2014). Error is under 0.01
+     * degrees. Zero vectors come out as (0, 0, 1).
+     */
+    public static void encodeOctahedral(float[] src, int count, ByteBuffer out, int offset, int stride) {
+        for (int v = 0, i = 0, o = offset; v < count; v++, i += 3, o += stride) {
+            float x = src[i], y = src[i + 1], z = src[i + 2];
+            float sum = Math.abs(x) + Math.abs(y) + Math.abs(z);
+            if (sum == 0) {
+                out.putShort(o, (short) 0);
+                out.putShort(o + 2, (short) 0);
+                continue;
+            }
+            x /= sum;
+            y /= sum;
+            if (z < 0) {
+                float fx = (1 - Math.abs(y)) * (x >= 0 ? 1 : -1);
+                float fy = (1 - Math.abs(x)) * (y >= 0 ? 1 : -1);
+                x = fx;
+                y = fy;
+            }
+            out.putShort(o, toSnorm16(x));
+            out.putShort(o + 2, toSnorm16(y));
+        }
+    }
+
+    public static void decodeOctahedral(ByteBuffer in, int offset, int stride, int count, float[] dst) {
+        for (int v = 0, i = 0, o = offset; v < count; v++, i += 3, o += stride) {
+            float x = fromSnorm16(in.getShort(o));
+            float y = fromSnorm16(in.getShort(o + 2));
+            float z = 1 - Math.abs(x) - Math.abs(y);
+            if (z < 0) {
+                float fx = (1 - Math.abs(y)) * (x >= 0 ? 1 : -1);
+                float fy = (1 - Math.abs(x)) * (y >= 0 ? 1 : -1);
+                x = fx;
+                y = fy;
+            }
+            float inverse = 1 / (float) Math.sqrt(x * x + y * y + z * z);
+            dst[i] = x * inverse;
+            dst[i + 1] = y * inverse;
+            dst[i + 2] = z * inverse;
+        }
+    }
+
+    private static short toSnorm16(float value) {
+        return (short) Math.round(Math.max(-1, Math.min(1, value)) * 32767);
+    }
+
+    private static float fromSnorm16(short value) {
+        // as GL does it: -32768 and -32767 are both -1
+        return Math.max(value / 32767.0f, -1);
+    }
+
+    /**
+     * Floats, components per vertex, as half floats
+     */
+    public static void encodeHalf(float[] src, int components, int count, ByteBuffer out, int offset, int stride) {
+        for (int v = 0, i = 0, o = offset; v < count; v++, o += stride)
+            for (int c = 0; c < components; c++, i++)
+                out.putShort(o + c * 2, toHalf(src[i]));
+    }
+
+    public static void decodeHalf(ByteBuffer in, int offset, int stride, int components, int count, float[] dst) {
+        for (int v = 0, i = 0, o = offset; v < count; v++, o += stride)
+            for (int c = 0; c < components; c++, i++)
+                dst[i] = fromHalf(in.getShort(o + c * 2));
+    }
+
+    /**
+     * Floats in [0, 1], components per vertex, as unsigned bytes; values outside are clamped
+     */
+    public static void encodeUnorm8(float[] src, int components, int count, ByteBuffer out, int offset, int stride) {
+        for (int v = 0, i = 0, o = offset; v < count; v++, o += stride) {
+            for (int c = 0; c < components; c++, i++) {
+                float value = Math.max(0, Math.min(1, src[i]));
+                out.put(o + c, (byte) (int) (value * 255 + 0.5f));
+            }
+        }
+    }
+
+    public static void decodeUnorm8(ByteBuffer in, int offset, int stride, int components, int count, float[] dst) {
+        for (int v = 0, i = 0, o = offset; v < count; v++, o += stride)
+            for (int c = 0; c < components; c++, i++)
+                dst[i] = (in.get(o + c) & 0xFF) / 255.0f;
+    }
+
+    /**
+     * IEEE 754 binary16, rounding to nearest even. Overflow goes to infinity and tiny values
+     * to subnormals or zero.
+     */
+    public static short toHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = (bits >>> 23) & 0xFF;
+        int mantissa = bits & 0x7FFFFF;
+
+        if (exponent == 0xFF)     // infinity or NaN, keeping NaNs NaN
+            return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 | (mantissa >>> 13) : 0));
+        int halfExponent = exponent - 127 + 15;
+        if (halfExponent >= 0x1F)
+            return (short) (sign | 0x7C00);
+        if (halfExponent <= 0) {
+            if (halfExponent < -10)
+                return (short) sign;
+            // subnormal: shift the mantissa, with its implicit 1, into place
+            mantissa |= 0x800000;
+            int shift = 14 - halfExponent;
+            int half = mantissa >>> shift;
+            int rest = mantissa & ((1 << shift) - 1);
+            int halfway = 1 << (shift - 1);
+            if (rest > halfway || (rest == halfway && (half & 1) != 0))
+                half++;
+            return (short) (sign | half);
+        }
+        int half = (halfExponent << 10) | (mantissa >>> 13);
+        int rest = mantissa & 0x1FFF;
+        // a carry out of the mantissa correctly bumps the exponent, up to infinity
+        if (rest > 0x1000 || (rest == 0x1000 && (half & 1) != 0))
+            half++;
+        return (short) (sign | half);
+    }
+
+    public static float fromHalf(short half) {
+        int bits = half & 0xFFFF;
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1F;
+        int mantissa = bits & 0x3FF;
+        if (exponent == 0x1F)
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        if (exponent == 0) {
+            if (mantissa == 0)
+                return Float.intBitsToFloat(sign);
+            // subnormal: 2^-14 * mantissa / 1024
+            float value = mantissa * (1.0f / (1 << 24));
+            return sign != 0 ? -value : value;
+        }
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+    }
+}
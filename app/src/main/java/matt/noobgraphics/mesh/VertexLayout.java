@@ -0,0 +1,133 @@
+package matt.noobgraphics.mesh;
+
+import java.util.Arrays;
+
+/**
+ * Describes one interleaved vertex: per attribute its semantic (a {@link MeshFile} semantic),
+ * shader attribute name, component count, GL type, normalization and byte offset, plus the
+ * stride. Everything glVertexAttribPointer needs.
+ *
+ * Attributes are appended with {@link #add}, each at the next 4 byte aligned offset, as GL ES
+ * wants. Binding caches key on the layout object, so share one instance per vertex format
+ * rather than building equal ones.
+ */
+public final class VertexLayout {
+    public static final int ALIGNMENT = 4;
+
+    /** Shader attribute names used when none is given, by semantic */
+    private static final String[] DEFAULT_NAMES = { "vPosition", "vNormal", "vTexCoord", "vVertexColor" };
+
+    private int mCount;
+    private int[] mSemantics = new int[4];
+    private String[] mNames = new String[4];
+    private int[] mComponents = new int[4];
+    private int[] mTypes = new int[4];
+    private boolean[] mNormalized = new boolean[4];
+    private int[] mOffsets = new int[4];
+    private int mStride;
+
+    public VertexLayout() {}
+
+    /**
+     * A layout with explicit offsets and stride, e.g. as read from a file
+     */
+    public VertexLayout(int[] semantics, int[] components, int[] types, boolean[] normalized, int[] offsets, int stride) {
+        mCount = semantics.length;
+        mSemantics = semantics.clone();
+        mComponents = components.clone();
+        mTypes = types.clone();
+        mNormalized = normalized.clone();
+        mOffsets = offsets.clone();
+        mNames = new String[mCount];
+        for (int a = 0; a < mCount; a++)
+            mNames[a] = defaultName(semantics[a]);
+        mStride = stride;
+    }
+
+    /**
+     * Appends an attribute named after its semantic: vPosition, vNormal, vTexCoord or
+     * vVertexColor
+     * @return this
+     */
+    public VertexLayout add(int semantic, int components, int type, boolean normalized) {
+        return add(defaultName(semantic), semantic, components, type, normalized);
+    }
+
+    /**
+     * @param name the attribute's name in vertex shaders
+     * @return this
+     */
+    public VertexLayout add(String name, int semantic, int components, int type, boolean normalized) {
+        if (components < 1 || components > 4)
+            throw new IllegalArgumentException("Components " + components);
+        if (mCount == mSemantics.length) {
+            int capacity = mCount * 2;
+            mSemantics = Arrays.copyOf(mSemantics, capacity);
+            mNames = Arrays.copyOf(mNames, capacity);
+            mComponents = Arrays.copyOf(mComponents, capacity);
+            mTypes = Arrays.copyOf(mTypes, capacity);
+            mNormalized = Arrays.copyOf(mNormalized, capacity);
+            mOffsets = Arrays.copyOf(mOffsets, capacity);
+        }
+        int offset = align(mStride);
+        mSemantics[mCount] = semantic;
+        mNames[mCount] = name;
+        mComponents[mCount] = components;
+        mTypes[mCount] = type;
+        mNormalized[mCount] = normalized;
+        mOffsets[mCount] = offset;
+        mCount++;
+        mStride = align(offset + components * typeSize(type));
+        return this;
+    }
+
+    private static String defaultName(int semantic) {
+        return semantic >= 0 && semantic < DEFAULT_NAMES.length ? DEFAULT_NAMES[semantic] : "vAttribute" + semantic;
+    }
+
+    static int align(int offset) {
+        return (offset + ALIGNMENT - 1) & ~(ALIGNMENT - 1);
+    }
+
+    /** @return bytes per vertex */
+    public int getStride() { return mStride; }
+
+    public int getAttributeCount() { return mCount; }
+
+    /**
+     * @return the index of the first attribute with the given semantic, or -1
+     */
+    public int find(int semantic) {
+        for (int a = 0; a < mCount; a++)
+            if (mSemantics[a] == semantic)
+                return a;
+        return -1;
+    }
+
+    public int getSemantic(int attribute) { return mSemantics[attribute]; }
+    public String getName(int attribute) { return mNames[attribute]; }
+    public int getComponents(int attribute) { return mComponents[attribute]; }
+    public int getType(int attribute) { return mTypes[attribute]; }
+    public boolean isNormalized(int attribute) { return mNormalized[attribute]; }
+    public int getOffset(int attribute) { return mOffsets[attribute]; }
+
+    /**
+     * @return bytes per component of a MeshFile / GL type
+     */
+    public static int typeSize(int type) {
+        switch (type) {
+            case MeshFile.TYPE_BYTE:
+            case MeshFile.TYPE_UNSIGNED_BYTE:
+                return 1;
+            case MeshFile.TYPE_SHORT:
+            case MeshFile.TYPE_UNSIGNED_SHORT:
+            case MeshFile.TYPE_HALF_FLOAT:
+                return 2;
+            case MeshFile.TYPE_UNSIGNED_INT:
+            case MeshFile.TYPE_FLOAT:
+                return 4;
+            default:
+                throw new IllegalArgumentException("Unknown type 0x" + Integer.toHexString(type));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package matt.noobgraphics.scene;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel version of {@link TransformStore#update()} for big refreshes, e.g. after a level
+ * load or rebasing everything around the camera.
+ *
+ * Local matrices don't depend on each other, so {@link TransformStore#composeTRS} is split over
+ * the whole dense range at once. Parent multiplies go one hierarchy depth level at a time: every
+ * node in a level only reads world matrices of the previous level, so a level can be split
+ * freely, and the join at the end of each level is the only synchronization needed. Levels
+ * smaller than the grain size run on the calling thread.
+ *
+ * Every matrix is computed by the same kernel code from the same inputs as the serial update and
+ * nothing is accumulated across threads, so the result is bit-for-bit identical to it.
+ *
+ * Forking allocates a task per split, so prefer the serial update for small stores.
+ */
+public class ParallelTransformUpdater {
+    public static final int DEFAULT_GRAIN = 2048;
+
+    private final ForkJoinPool mPool;
+    private final int mGrain;
+
+    public ParallelTransformUpdater(ForkJoinPool pool) {
+        this(pool, DEFAULT_GRAIN);
+    }
+
+    /**
+     * @param pool the threads to run on
+     * @param grain the most slots one task processes without splitting further
+     */
+    public ParallelTransformUpdater(ForkJoinPool pool, int grain) {
+        if (grain < 1)
+            throw new IllegalArgumentException("Grain must be positive");
+        mPool = pool;
+        mGrain = grain;
+    }
+
+    /**
+     * Recomputes every world matrix in the store, like {@link TransformStore#update()}
+     */
+    public void update(TransformStore store) {
+        store.prepare();
+        int count = store.size();
+        run(new Compose(store, 0, count), count);
+
+        int[] levelStart = store.getLevelStarts();
+        for (int level = 0; level < store.getLevelCount(); level++) {
+            int from = levelStart[level], to = levelStart[level + 1];
+            run(new Multiply(store, from, to), to - from);
+        }
+    }
+
+    private void run(RangeTask task, int size) {
+        if (size <= mGrain)
+            task.compute();
+        else
+            mPool.invoke(task);
+    }
+
+    private abstract class RangeTask extends RecursiveAction {
+        final TransformStore mStore;
+        final int mFrom;
+        final int mTo;
+
+        RangeTask(TransformStore store, int from, int to) {
+            mStore = store;
+            mFrom = from;
+            mTo = to;
+        }
+
+        abstract RangeTask split(int from, int to);
+
+        abstract void process();
+
+        @Override
+        protected void compute() {
+            if (mTo - mFrom <= mGrain) {
+                process();
+                return;
+            }
+            int mid = (mFrom + mTo) >>> 1;
+            invokeAll(split(mFrom, mid), split(mid, mTo));
+        }
+    }
+
+    private class Compose extends RangeTask {
+        Compose(TransformStore store, int from, int to) {
+            super(store, from, to);
+        }
+
+        @Override
+        RangeTask split(int from, int to) {
+            return new Compose(mStore, from, to);
+        }
+
+        @Override
+        void process() {
+            TransformStore.composeTRS(mStore.getPositions(), mStore.getRotations(), mStore.getScales(),
+                    mStore.getLocalMatrices(), mFrom, mTo);
+        }
+    }
+
+    private class Multiply extends RangeTask {
+        Multiply(TransformStore store, int from, int to) {
+            super(store, from, to);
+        }
+
+        @Override
+        RangeTask split(int from, int to) {
+            return new Multiply(mStore, from, to);
+        }
+
+        @Override
+        void process() {
+            TransformStore.multiplyParents(mStore.getLocalMatrices(), mStore.getWorldMatrices(),
+                    mStore.getParentIndices(), mStore.getOrder(), mFrom, mTo);
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package matt.noobgraphics.scene;
+
+import java.util.Arrays;
+
+import matt.noobgraphics.math.Matrix4;
+
+/**
+ * Transform hierarchy with cached world matrices that only recomputes what changed.
+ *
+ * Nodes are plain int ids and everything about them lives in primitive arrays indexed by id:
+ * the local transform packed as [ tx ty tz qx qy qz qw sx sy sz ], the column-major world matrix
+ * (16 floats, the same layout as {@link Matrix4}, so a range can be uploaded as is), parent
+ * links and flags.
+ *
+ * Changing a local transform marks the node dirty and flags its ancestors as having a dirty
+ * descendant. {@link #update()} walks a depth-first flattened order of the tree, skips every
+ * subtree with nothing dirty in it in one jump, and recomputes world = parentWorld * local for
+ * dirty nodes and everything below them.
+ *
+ * Bounds are lazy: a change only marks the subtree bounds of the node and its ancestors stale,
+ * and they are recomputed when someone asks for them.
+ *
+ * Not thread safe.
+ */
+public class SceneGraph {
+    public static final int NO_PARENT = -1;
+
+    public static final int LOCAL_STRIDE = 10;
+    public static final int MATRIX_STRIDE = Matrix4.MATRIX_SIZE;
+    public static final int BOUNDS_STRIDE = 6;
+
+    // flags
+    private static final byte LOCAL_DIRTY = 1;
+    private static final byte DESCENDANT_DIRTY = 2;
+    private static final byte BOUNDS_DIRTY = 4;
+
+    private int mCount;
+    private int mCapacity;
+
+    private float[] mLocal;
+    private float[] mWorld;
+    private float[] mLocalBounds;   // own geometry, in local space; min > max means none
+    private float[] mWorldBounds;   // whole subtree, in world space
+    private byte[] mFlags;
+
+    private int[] mParent;
+    private int[] mFirstChild;
+    private int[] mLastChild;
+    private int[] mNextSibling;
+
+    // depth-first order: mOrder[pos] is a node, mSubtreeEnd[pos] the position after its subtree
+    private int[] mOrder;
+    private int[] mSubtreeEnd;
+    private int[] mStack;
+    private boolean mOrderDirty;
+
+    // mChangedPass[node] == mPass marks a node whose world matrix changed in the current update
+    private int[] mChangedPass;
+    private int mPass;
+
+    private final float[] mScratch = new float[MATRIX_STRIDE];
+
+    public SceneGraph() {
+        this(64);
+    }
+
+    public SceneGraph(int initialCapacity) {
+        allocate(Math.max(initialCapacity, 1));
+    }
+
+    private void allocate(int capacity) {
+        mCapacity = capacity;
+        mLocal = grow(mLocal, capacity * LOCAL_STRIDE);
+        mWorld = grow(mWorld, capacity * MATRIX_STRIDE);
+        mLocalBounds = grow(mLocalBounds, capacity * BOUNDS_STRIDE);
+        mWorldBounds = grow(mWorldBounds, capacity * BOUNDS_STRIDE);
+        mFlags = mFlags == null ? new byte[capacity] : Arrays.copyOf(mFlags, capacity);
+        mParent = grow(mParent, capacity);
+        mFirstChild = grow(mFirstChild, capacity);
+        mLastChild = grow(mLastChild, capacity);
+        mNextSibling = grow(mNextSibling, capacity);
+        mOrder = grow(mOrder, capacity);
+        mSubtreeEnd = grow(mSubtreeEnd, capacity);
+        mStack = grow(mStack, capacity);
+        mChangedPass = grow(mChangedPass, capacity);
+    }
+
+    private static float[] grow(float[] a, int size) {
+        return a == null ? new float[size] : Arrays.copyOf(a, size);
+    }
+
+    private static int[] grow(int[] a, int size) {
+        return a == null ? new int[size] : Arrays.copyOf(a, size);
+    }
+
+    /**
+     * Adds a node with an identity local transform and no geometry bounds
+     * @param parent the parent node, or {@link #NO_PARENT} for a root
+     * @return the new node's id
+     */
+    public int createNode(int parent) {
+        if (mCount == mCapacity)
+            allocate(mCapacity * 2);
+
+        int node = mCount++;
+        int l = node * LOCAL_STRIDE;
+        mLocal[l + 6] = 1.0f;                                       // qw
+        mLocal[l + 7] = mLocal[l + 8] = mLocal[l + 9] = 1.0f;       // scale
+        setLocalBounds(node, 1, 1, 1, -1, -1, -1);
+
+        mParent[node] = NO_PARENT;
+        mFirstChild[node] = mLastChild[node] = mNextSibling[node] = NO_PARENT;
+        mChangedPass[node] = -1;
+        link(node, parent);
+
+        mOrderDirty = true;
+        markDirty(node);
+        return node;
+    }
+
+    /**
+     * Moves a node, with its subtree, under a new parent. Its local transform is kept.
+     * @param parent the new parent, or {@link #NO_PARENT} to make it a root
+     */
+    public void setParent(int node, int parent) {
+        for (int p = parent; p != NO_PARENT; p = mParent[p])
+            if (p == node)
+                throw new IllegalArgumentException("Node " + node + " can't be parented under its own subtree");
+
+        unlink(node);
+        link(node, parent);
+        mOrderDirty = true;
+        markDirty(node);
+    }
+
+    private void link(int node, int parent) {
+        mParent[node] = parent;
+        mNextSibling[node] = NO_PARENT;
+        if (parent == NO_PARENT)
+            return;
+        if (mLastChild[parent] == NO_PARENT)
+            mFirstChild[parent] = node;
+        else
+            mNextSibling[mLastChild[parent]] = node;
+        mLastChild[parent] = node;
+        // the node may already be flagged, which would stop markBoundsDirty before the new parent
+        markBoundsDirty(parent);
+    }
+
+    private void unlink(int node) {
+        int parent = mParent[node];
+        if (parent == NO_PARENT)
+            return;
+        // the old parent's bounds no longer include this subtree
+        markBoundsDirty(parent);
+
+        int prev = NO_PARENT;
+        for (int c = mFirstChild[parent]; c != node; c = mNextSibling[c])
+            prev = c;
+        if (prev == NO_PARENT)
+            mFirstChild[parent] = mNextSibling[node];
+        else
+            mNextSibling[prev] = mNextSibling[node];
+        if (mLastChild[parent] == node)
+            mLastChild[parent] = prev;
+    }
+
+    public void setTranslation(int node, float x, float y, float z) {
+        int l = node * LOCAL_STRIDE;
+        mLocal[l] = x;
+        mLocal[l + 1] = y;
+        mLocal[l + 2] = z;
+        markDirty(node);
+    }
+
+    /**
+     * @param x, y, z, w a unit quaternion
+     */
+    public void setRotation(int node, float x, float y, float z, float w) {
+        int l = node * LOCAL_STRIDE;
+        mLocal[l + 3] = x;
+        mLocal[l + 4] = y;
+        mLocal[l + 5] = z;
+        mLocal[l + 6] = w;
+        markDirty(node);
+    }
+
+    public void setScale(int node, float x, float y, float z) {
+        int l = node * LOCAL_STRIDE;
+        mLocal[l + 7] = x;
+        mLocal[l + 8] = y;
+        mLocal[l + 9] = z;
+        markDirty(node);
+    }
+
+    /**
+     * Sets the bounds of the node's own geometry, in its local space
+     */
+    public void setLocalBounds(int node, float minX, float minY, float minZ,
+                               float maxX, float maxY, float maxZ) {
+        int b = node * BOUNDS_STRIDE;
+        mLocalBounds[b] = minX;
+        mLocalBounds[b + 1] = minY;
+        mLocalBounds[b + 2] = minZ;
+        mLocalBounds[b + 3] = maxX;
+        mLocalBounds[b + 4] = maxY;
+        mLocalBounds[b + 5] = maxZ;
+        markBoundsDirty(node);
+    }
+
+    private void markDirty(int node) {
+        mFlags[node] |= LOCAL_DIRTY;
+        for (int p = mParent[node]; p != NO_PARENT; p = mParent[p]) {
+            if ((mFlags[p] & DESCENDANT_DIRTY) != 0)
+                break;
+            mFlags[p] |= DESCENDANT_DIRTY;
+        }
+    }
+
+    private void markBoundsDirty(int node) {
+        for (int n = node; n != NO_PARENT; n = mParent[n]) {
+            if ((mFlags[n] & BOUNDS_DIRTY) != 0)
+                break;
+            mFlags[n] |= BOUNDS_DIRTY;
+        }
+    }
+
+    /**
+     * Marks every node dirty, so the next update recomputes everything
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < mCount; i++)
+            mFlags[i] |= LOCAL_DIRTY | DESCENDANT_DIRTY | BOUNDS_DIRTY;
+    }
+
+    private void rebuildOrder() {
+        int pos = 0;
+        for (int root = 0; root < mCount; root++) {
+            if (mParent[root] != NO_PARENT)
+                continue;
+
+            // iterative preorder; mStack holds the positions whose subtree is still open
+            int depth = 0;
+            int node = root;
+            while (true) {
+                mOrder[pos] = node;
+                mStack[depth++] = pos;
+                pos++;
+
+                if (mFirstChild[node] != NO_PARENT) {
+                    node = mFirstChild[node];
+                    continue;
+                }
+                // close finished subtrees until one has a next sibling
+                while (depth > 0) {
+                    int open = mStack[--depth];
+                    mSubtreeEnd[open] = pos;
+                    int sibling = mNextSibling[mOrder[open]];
+                    if (sibling != NO_PARENT && depth > 0) {
+                        node = sibling;
+                        break;
+                    }
+                }
+                if (depth == 0)
+                    break;
+            }
+        }
+        mOrderDirty = false;
+    }
+
+    /**
+     * Recomputes the world matrices of dirty nodes and their descendants
+     * @return the number of world matrices recomputed
+     */
+    public int update() {
+        if (mOrderDirty)
+            rebuildOrder();
+
+        mPass++;
+        int updated = 0;
+        final int[] order = mOrder;
+        final int[] parents = mParent;
+        final byte[] flags = mFlags;
+
+        int pos = 0;
+        while (pos < mCount) {
+            int node = order[pos];
+            int parent = parents[node];
+            byte f = flags[node];
+            boolean parentChanged = parent != NO_PARENT && mChangedPass[parent] == mPass;
+
+            if ((f & LOCAL_DIRTY) != 0 || parentChanged) {
+                computeWorld(node, parent);
+                mChangedPass[node] = mPass;
+                markBoundsDirty(node);
+                updated++;
+            } else if ((f & DESCENDANT_DIRTY) == 0) {
+                // nothing in this subtree changed
+                pos = mSubtreeEnd[pos];
+                continue;
+            }
+            flags[node] &= ~(LOCAL_DIRTY | DESCENDANT_DIRTY);
+            pos++;
+        }
+        return updated;
+    }
+
+    private void computeWorld(int node, int parent) {
+        int l = node * LOCAL_STRIDE;
+        float[] local = mLocal;
+        if (parent == NO_PARENT) {
+            Matrix4.setTRS(mWorld, node * MATRIX_STRIDE,
+                    local[l], local[l + 1], local[l + 2],
+                    local[l + 3], local[l + 4], local[l + 5], local[l + 6],
+                    local[l + 7], local[l + 8], local[l + 9]);
+        } else {
+            Matrix4.setTRS(mScratch, 0,
+                    local[l], local[l + 1], local[l + 2],
+                    local[l + 3], local[l + 4], local[l + 5], local[l + 6],
+                    local[l + 7], local[l + 8], local[l + 9]);
+            Matrix4.multiplyMM(mWorld, node * MATRIX_STRIDE, mWorld, parent * MATRIX_STRIDE, mScratch, 0);
+        }
+    }
+
+    /**
+     * World space bounds of the node and its whole subtree, recomputed on demand if anything in
+     * it moved. World matrices must be up to date, i.e. call after {@link #update()}.
+     * @param out receives [ minX minY minZ maxX maxY maxZ ]; min > max if the subtree has no
+     *            geometry
+     * @return out
+     */
+    public float[] getWorldBounds(int node, float[] out) {
+        refreshBounds(node);
+        System.arraycopy(mWorldBounds, node * BOUNDS_STRIDE, out, 0, BOUNDS_STRIDE);
+        return out;
+    }
+
+    private void refreshBounds(int node) {
+        if ((mFlags[node] & BOUNDS_DIRTY) == 0)
+            return;
+
+        int b = node * BOUNDS_STRIDE;
+        transformBounds(mLocalBounds, b, mWorld, node * MATRIX_STRIDE, mWorldBounds, b);
+        for (int c = mFirstChild[node]; c != NO_PARENT; c = mNextSibling[c]) {
+            refreshBounds(c);
+            union(mWorldBounds, b, mWorldBounds, c * BOUNDS_STRIDE);
+        }
+        mFlags[node] &= ~BOUNDS_DIRTY;
+    }
+
+    /**
+     * Box enclosing the transformed box (Arvo's method)
+     */
+    private static void transformBounds(float[] in, int inOffset, float[] m, int mOffset,
+                                        float[] out, int outOffset) {
+        if (in[inOffset] > in[inOffset + 3]) {
+            out[outOffset] = out[outOffset + 1] = out[outOffset + 2] = 1;
+            out[outOffset + 3] = out[outOffset + 4] = out[outOffset + 5] = -1;
+            return;
+        }
+        for (int row = 0; row < 3; row++) {
+            float min = m[mOffset + 12 + row];
+            float max = min;
+            for (int col = 0; col < 3; col++) {
+                float e = m[mOffset + col * 4 + row];
+                float a = e * in[inOffset + col];
+                float b = e * in[inOffset + 3 + col];
+                min += Math.min(a, b);
+                max += Math.max(a, b);
+            }
+            out[outOffset + row] = min;
+            out[outOffset + 3 + row] = max;
+        }
+    }
+
+    private static void union(float[] a, int aOffset, float[] b, int bOffset) {
+        if (b[bOffset] > b[bOffset + 3])
+            return;
+        if (a[aOffset] > a[aOffset + 3]) {
+            System.arraycopy(b, bOffset, a, aOffset, BOUNDS_STRIDE);
+            return;
+        }
+        for (int i = 0; i < 3; i++) {
+            a[aOffset + i] = Math.min(a[aOffset + i], b[bOffset + i]);
+            a[aOffset + 3 + i] = Math.max(a[aOffset + 3 + i], b[bOffset + 3 + i]);
+        }
+    }
+
+    public int getNodeCount() { return mCount; }
+
+    public int getParent(int node) { return mParent[node]; }
+
+    /**
+     * All world matrices, node i at {@link #getMatrixOffset(int)}. Valid after {@link #update()}.
+     */
+    public float[] getWorldMatrices() { return mWorld; }
+
+    public int getMatrixOffset(int node) { return node * MATRIX_STRIDE; }
+
+    /**
+     * Copies a node's world matrix. Valid after {@link #update()}.
+     * @return out
+     */
+    public Matrix4 getWorldMatrix(int node, Matrix4 out) {
+        System.arraycopy(mWorld, node * MATRIX_STRIDE, out.m, 0, MATRIX_STRIDE);
+        return out;
+    }
+}
@@ -0,0 +1,338 @@
+package matt.noobgraphics.scene;
+
+import java.util.Arrays;
+
+import matt.noobgraphics.math.Matrix4;
+
+/**
+ * Transforms for large numbers of entities, stored as parallel primitive arrays instead of an
+ * object (and a float[16]) per entity.
+ *
+ * Entities are int ids handed out by a sparse set: the sparse array maps an id to its slot in the
+ * dense arrays, which are always packed, so systems can loop over 0..size() with no holes.
+ * Destroying an entity moves the last one into its slot. Ids of destroyed entities are reused.
+ *
+ * Per dense slot there are a position (3 floats), a rotation quaternion (4, x y z w), a scale (3)
+ * and a world matrix (16, column-major like {@link Matrix4}, so a range can be uploaded as is).
+ * The dense arrays may be reallocated when entities are created; don't hold on to them across
+ * {@link #create()}.
+ *
+ * {@link #update()} runs two bulk kernels: {@link #composeTRS} turns every local transform into
+ * a matrix, then {@link #multiplyParents} multiplies in parent world matrices, walking entities in
+ * an order sorted by hierarchy depth so parents are always done before their children.
+ *
+ * Not thread safe.
+ */
+public class TransformStore {
+    public static final int NONE = -1;
+
+    // sparse set
+    private int[] mSparse;          // entity -> dense index, NONE if not alive
+    private int[] mDense;           // dense index -> entity
+    private int mCount;
+    private int mIdCount;
+    private int[] mFreeIds;
+    private int mFreeCount;
+
+    // dense data
+    private float[] mPositions;
+    private float[] mRotations;
+    private float[] mScales;
+    private float[] mLocal;
+    private float[] mWorld;
+    private int[] mParent;          // parent entity, or NONE
+    private int[] mChildCount;
+
+    // dense indices sorted by depth, level d spanning mOrder[mLevelStart[d]..mLevelStart[d+1])
+    private int[] mOrder;
+    private int[] mParentIndex;     // parent's dense index, or NONE
+    private int[] mDepth;
+    private int[] mLevelStart = new int[2];
+    private int mLevelCount;
+    private boolean mHierarchyDirty;
+
+    public TransformStore() {
+        this(64);
+    }
+
+    public TransformStore(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        mSparse = new int[capacity];
+        mFreeIds = new int[capacity];
+        allocateDense(capacity);
+    }
+
+    private void allocateDense(int capacity) {
+        mDense = grow(mDense, capacity);
+        mPositions = grow(mPositions, capacity * 3);
+        mRotations = grow(mRotations, capacity * 4);
+        mScales = grow(mScales, capacity * 3);
+        mLocal = grow(mLocal, capacity * Matrix4.MATRIX_SIZE);
+        mWorld = grow(mWorld, capacity * Matrix4.MATRIX_SIZE);
+        mParent = grow(mParent, capacity);
+        mChildCount = grow(mChildCount, capacity);
+        mOrder = grow(mOrder, capacity);
+        mParentIndex = grow(mParentIndex, capacity);
+        mDepth = grow(mDepth, capacity);
+    }
+
+    private static float[] grow(float[] a, int size) {
+        return a == null ? new float[size] : Arrays.copyOf(a, size);
+    }
+
+    private static int[] grow(int[] a, int size) {
+        return a == null ? new int[size] : Arrays.copyOf(a, size);
+    }
+
+    /**
+     * Adds an entity with an identity transform and no parent
+     * @return the entity id
+     */
+    public int create() {
+        int entity;
+        if (mFreeCount > 0) {
+            entity = mFreeIds[--mFreeCount];
+        } else {
+            entity = mIdCount++;
+            if (entity == mSparse.length) {
+                mSparse = Arrays.copyOf(mSparse, entity * 2);
+                mFreeIds = Arrays.copyOf(mFreeIds, entity * 2);
+            }
+        }
+        if (mCount == mDense.length)
+            allocateDense(mCount * 2);
+
+        int i = mCount++;
+        mSparse[entity] = i;
+        mDense[i] = entity;
+        mPositions[i * 3] = mPositions[i * 3 + 1] = mPositions[i * 3 + 2] = 0;
+        mRotations[i * 4] = mRotations[i * 4 + 1] = mRotations[i * 4 + 2] = 0;
+        mRotations[i * 4 + 3] = 1;
+        mScales[i * 3] = mScales[i * 3 + 1] = mScales[i * 3 + 2] = 1;
+        Matrix4.setTRS(mWorld, i * Matrix4.MATRIX_SIZE, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1);
+        mParent[i] = NONE;
+        mChildCount[i] = 0;
+        mHierarchyDirty = true;
+        return entity;
+    }
+
+    /**
+     * Removes an entity. The last entity in the dense arrays takes its slot.
+     * @throws IllegalStateException if the entity still has children
+     */
+    public void destroy(int entity) {
+        int i = indexOf(entity);
+        if (mChildCount[i] != 0)
+            throw new IllegalStateException("Entity " + entity + " still has children");
+        if (mParent[i] != NONE)
+            mChildCount[indexOf(mParent[i])]--;
+
+        int last = --mCount;
+        if (i != last) {
+            int moved = mDense[last];
+            mDense[i] = moved;
+            mSparse[moved] = i;
+            System.arraycopy(mPositions, last * 3, mPositions, i * 3, 3);
+            System.arraycopy(mRotations, last * 4, mRotations, i * 4, 4);
+            System.arraycopy(mScales, last * 3, mScales, i * 3, 3);
+            System.arraycopy(mWorld, last * Matrix4.MATRIX_SIZE, mWorld, i * Matrix4.MATRIX_SIZE, Matrix4.MATRIX_SIZE);
+            mParent[i] = mParent[last];
+            mChildCount[i] = mChildCount[last];
+        }
+        mSparse[entity] = NONE;
+        mFreeIds[mFreeCount++] = entity;
+        mHierarchyDirty = true;
+    }
+
+    public boolean contains(int entity) {
+        return entity >= 0 && entity < mIdCount && mSparse[entity] != NONE;
+    }
+
+    /**
+     * @return the entity's slot in the dense arrays
+     * @throws IllegalArgumentException if the entity isn't alive
+     */
+    public int indexOf(int entity) {
+        if (!contains(entity))
+            throw new IllegalArgumentException("No entity " + entity);
+        return mSparse[entity];
+    }
+
+    public int entityAt(int index) { return mDense[index]; }
+
+    /** @return the number of live entities, which is also the length of the dense range */
+    public int size() { return mCount; }
+
+    public void setPosition(int entity, float x, float y, float z) {
+        int o = indexOf(entity) * 3;
+        mPositions[o] = x;
+        mPositions[o + 1] = y;
+        mPositions[o + 2] = z;
+    }
+
+    /**
+     * @param x, y, z, w a unit quaternion
+     */
+    public void setRotation(int entity, float x, float y, float z, float w) {
+        int o = indexOf(entity) * 4;
+        mRotations[o] = x;
+        mRotations[o + 1] = y;
+        mRotations[o + 2] = z;
+        mRotations[o + 3] = w;
+    }
+
+    public void setScale(int entity, float x, float y, float z) {
+        int o = indexOf(entity) * 3;
+        mScales[o] = x;
+        mScales[o + 1] = y;
+        mScales[o + 2] = z;
+    }
+
+    /**
+     * @param parent the new parent, or {@link #NONE}
+     */
+    public void setParent(int entity, int parent) {
+        int i = indexOf(entity);
+        if (parent != NONE) {
+            for (int p = parent; p != NONE; p = mParent[indexOf(p)])
+                if (p == entity)
+                    throw new IllegalArgumentException("Entity " + entity + " can't be parented under itself");
+            mChildCount[indexOf(parent)]++;
+        }
+        if (mParent[i] != NONE)
+            mChildCount[indexOf(mParent[i])]--;
+        mParent[i] = parent;
+        mHierarchyDirty = true;
+    }
+
+    public int getParent(int entity) {
+        return mParent[indexOf(entity)];
+    }
+
+    /**
+     * Recomputes every world matrix from the local transforms
+     */
+    public void update() {
+        prepare();
+        composeTRS(mPositions, mRotations, mScales, mLocal, 0, mCount);
+        multiplyParents(mLocal, mWorld, mParentIndex, mOrder, 0, mCount);
+    }
+
+    /**
+     * Brings the depth-sorted order up to date after hierarchy changes
+     */
+    void prepare() {
+        if (mHierarchyDirty)
+            rebuildOrder();
+    }
+
+    /**
+     * Sorts the dense indices by depth (counting sort), so every parent comes before its children
+     */
+    private void rebuildOrder() {
+        int count = mCount;
+        int[] depth = mDepth;
+        Arrays.fill(depth, 0, count, NONE);
+
+        int maxDepth = 0;
+        for (int i = 0; i < count; i++) {
+            mParentIndex[i] = mParent[i] == NONE ? NONE : mSparse[mParent[i]];
+
+            // walk up to the first ancestor with a known depth, then fill in on the way down
+            int top = i, steps = 0;
+            while (depth[top] == NONE) {
+                int p = mParent[top] == NONE ? NONE : mSparse[mParent[top]];
+                if (p == NONE) {
+                    depth[top] = 0;
+                    break;
+                }
+                top = p;
+                steps++;
+            }
+            int d = depth[top] + steps;
+            for (int n = i; n != top; n = mSparse[mParent[n]])
+                depth[n] = d--;
+            maxDepth = Math.max(maxDepth, depth[i]);
+        }
+
+        mLevelCount = maxDepth + 1;
+        if (mLevelStart.length < mLevelCount + 1)
+            mLevelStart = new int[Math.max(mLevelCount + 1, mLevelStart.length * 2)];
+        int[] start = mLevelStart;
+        Arrays.fill(start, 0, mLevelCount + 1, 0);
+        for (int i = 0; i < count; i++)
+            start[depth[i] + 1]++;
+        for (int d = 0; d < mLevelCount; d++)
+            start[d + 1] += start[d];
+        // fill using start[d] as a cursor, then shift the cursors back into level starts
+        for (int i = 0; i < count; i++)
+            mOrder[start[depth[i]]++] = i;
+        for (int d = mLevelCount; d > 0; d--)
+            start[d] = start[d - 1];
+        start[0] = 0;
+
+        mHierarchyDirty = false;
+    }
+
+    /**
+     * Bulk kernel: writes T * R * S for slots [from, to) into out, 16 floats per slot
+     */
+    public static void composeTRS(float[] positions, float[] rotations, float[] scales, float[] out,
+                                  int from, int to) {
+        for (int i = from; i < to; i++) {
+            int p = i * 3, r = i * 4;
+            Matrix4.setTRS(out, i * Matrix4.MATRIX_SIZE,
+                    positions[p], positions[p + 1], positions[p + 2],
+                    rotations[r], rotations[r + 1], rotations[r + 2], rotations[r + 3],
+                    scales[p], scales[p + 1], scales[p + 2]);
+        }
+    }
+
+    /**
+     * Bulk kernel: world = parentWorld * local for the slots order[from..to). A parent's world
+     * matrix must already be final, i.e. parents come earlier in order or in a previous call.
+     * @param parentIndex parent slot per slot, or {@link #NONE} for roots, whose world is local
+     */
+    public static void multiplyParents(float[] local, float[] world, int[] parentIndex, int[] order,
+                                       int from, int to) {
+        for (int k = from; k < to; k++) {
+            int i = order[k];
+            int parent = parentIndex[i];
+            int o = i * Matrix4.MATRIX_SIZE;
+            if (parent == NONE)
+                System.arraycopy(local, o, world, o, Matrix4.MATRIX_SIZE);
+            else
+                Matrix4.multiplyMM(world, o, world, parent * Matrix4.MATRIX_SIZE, local, o);
+        }
+    }
+
+    // hierarchy order, for ParallelTransformUpdater; valid after prepare()
+    float[] getLocalMatrices() { return mLocal; }
+    int[] getOrder() { return mOrder; }
+    int[] getParentIndices() { return mParentIndex; }
+    int[] getLevelStarts() { return mLevelStart; }
+
+    /** @return the number of hierarchy depth levels, roots being level 0. Valid after {@link #update()}. */
+    public int getLevelCount() { return mLevelCount; }
+
+    /** Dense positions, 3 floats per slot */
+    public float[] getPositions() { return mPositions; }
+
+    /** Dense rotations, 4 floats per slot */
+    public float[] getRotations() { return mRotations; }
+
+    /** Dense scales, 3 floats per slot */
+    public float[] getScales() { return mScales; }
+
+    /** Dense world matrices, 16 floats per slot. Valid after {@link #update()}. */
+    public float[] getWorldMatrices() { return mWorld; }
+
+    /**
+     * Copies an entity's world matrix. Valid after {@link #update()}.
+     * @return out
+     */
+    public Matrix4 getWorldMatrix(int entity, Matrix4 out) {
+        System.arraycopy(mWorld, indexOf(entity) * Matrix4.MATRIX_SIZE, out.m, 0, Matrix4.MATRIX_SIZE);
+        return out;
+    }
+}
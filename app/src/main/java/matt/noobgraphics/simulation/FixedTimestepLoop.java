@@ -0,0 +1,205 @@
+package matt.noobgraphics.simulation;
+
+import java.util.concurrent.locks.LockSupport;
+
+import matt.noobgraphics.concurrent.TripleBuffer;
+import matt.noobgraphics.timing.Clock;
+
+/**
+ * Runs a {@link Simulation} at a fixed tick rate on its own thread, independent of how fast
+ * frames are drawn. After each batch of ticks the two most recent states are published through
+ * a {@link TripleBuffer}, and the renderer draws a state interpolated between them, so motion is
+ * smooth at any refresh rate while simulation cost only depends on the tick rate.
+ *
+ * Rendering shows the simulation one tick in the past: a frame at time t shows the state at
+ * t - dt, blended from the previous and current tick.
+ *
+ * If the loop falls behind by more than the catch-up limit (a long GC, the app being paused),
+ * the missed time is dropped instead of running a burst of ticks to make it up.
+ *
+ * {@link #advance()} can also be called directly, which is how tests drive it with a fake clock.
+ */
+public class FixedTimestepLoop implements Runnable {
+
+    /**
+     * The last two simulation states and when the newer one is valid
+     */
+    public static class Snapshot {
+        public final SimulationState previous;
+        public final SimulationState current;
+        public long currentTimeNanos;
+
+        Snapshot(int capacity) {
+            previous = new SimulationState(capacity);
+            current = new SimulationState(capacity);
+        }
+    }
+
+    private final Simulation mSimulation;
+    private final Clock mClock;
+    private final long mTickNanos;
+    private final float mTickSeconds;
+    private final int mMaxCatchUpTicks;
+
+    // owned by the simulation thread
+    private final SimulationState mPrevious;
+    private final SimulationState mCurrent;
+    private long mSimTimeNanos;
+
+    private final TripleBuffer<Snapshot> mChannel;
+
+    private volatile Thread mThread;
+    private volatile boolean mRunning;
+
+    private volatile long mTicks;
+    private volatile long mDroppedTicks;
+    private volatile long mLastTickCostNanos;
+    private volatile double mAverageTickCostNanos;
+
+    /**
+     * @param simulation the logic to run
+     * @param initial starting state; copied, the loop keeps its own
+     * @param clock time source
+     * @param ticksPerSecond simulation rate
+     * @param maxCatchUpTicks most ticks run in one go to catch up after falling behind
+     */
+    public FixedTimestepLoop(Simulation simulation, SimulationState initial, Clock clock,
+                             float ticksPerSecond, int maxCatchUpTicks) {
+        if (ticksPerSecond <= 0 || maxCatchUpTicks < 1)
+            throw new IllegalArgumentException("Need a positive tick rate and catch-up limit");
+
+        mSimulation = simulation;
+        mClock = clock;
+        mTickNanos = (long) (1e9 / ticksPerSecond);
+        mTickSeconds = mTickNanos / 1e9f;
+        mMaxCatchUpTicks = maxCatchUpTicks;
+
+        int capacity = initial.capacity;
+        mPrevious = new SimulationState(capacity);
+        mCurrent = new SimulationState(capacity);
+        mPrevious.copyFrom(initial);
+        mCurrent.copyFrom(initial);
+
+        Snapshot first = new Snapshot(capacity);
+        first.previous.copyFrom(initial);
+        first.current.copyFrom(initial);
+        mChannel = new TripleBuffer<>(first, new Snapshot(capacity), new Snapshot(capacity));
+
+        mSimTimeNanos = clock.nanoTime();
+        first.currentTimeNanos = mSimTimeNanos;
+    }
+
+    /**
+     * Runs every tick that is due, up to the catch-up limit, and publishes the result.
+     * Simulation thread only.
+     * @return number of ticks run
+     */
+    public int advance() {
+        long now = mClock.nanoTime();
+
+        long behind = now - mSimTimeNanos;
+        long maxBehind = mTickNanos * mMaxCatchUpTicks;
+        if (behind > maxBehind + mTickNanos) {
+            long skipped = (behind - maxBehind) / mTickNanos;
+            mSimTimeNanos += skipped * mTickNanos;
+            mDroppedTicks = mDroppedTicks + skipped;
+        }
+
+        int ticks = 0;
+        while (mSimTimeNanos + mTickNanos <= now && ticks < mMaxCatchUpTicks) {
+            long start = mClock.nanoTime();
+
+            mPrevious.copyFrom(mCurrent);
+            mSimulation.step(mCurrent, mTickSeconds);
+            mCurrent.tick++;
+            mSimTimeNanos += mTickNanos;
+            ticks++;
+
+            long cost = mClock.nanoTime() - start;
+            mLastTickCostNanos = cost;
+            mAverageTickCostNanos = mTicks == 0 ? cost : mAverageTickCostNanos + 0.05 * (cost - mAverageTickCostNanos);
+            mTicks = mTicks + 1;
+        }
+
+        if (ticks > 0) {
+            Snapshot out = mChannel.beginWrite();
+            out.previous.copyFrom(mPrevious);
+            out.current.copyFrom(mCurrent);
+            out.currentTimeNanos = mSimTimeNanos;
+            mChannel.publish();
+        }
+        return ticks;
+    }
+
+    /**
+     * Fills out with the state to draw at the given time. Render thread only.
+     * @param nowNanos the frame time, on this loop's clock
+     * @param out receives the interpolated state
+     * @return the blend factor used between the previous and current tick, in [0, 1]
+     */
+    public float interpolate(long nowNanos, SimulationState out) {
+        Snapshot snapshot = mChannel.acquire();
+        float alpha = (float) (nowNanos - snapshot.currentTimeNanos) / mTickNanos;
+        if (alpha < 0) alpha = 0;
+        if (alpha > 1) alpha = 1;
+        out.interpolate(snapshot.previous, snapshot.current, alpha);
+        return alpha;
+    }
+
+    /**
+     * Starts the simulation thread. Time that passed while stopped is skipped, not simulated.
+     */
+    public synchronized void start() {
+        if (mThread != null)
+            return;
+        mRunning = true;
+        mThread = new Thread(this, "Simulation");
+        mThread.start();
+    }
+
+    /**
+     * Stops the simulation thread and waits for it to finish its current tick
+     */
+    public synchronized void stop() {
+        Thread thread = mThread;
+        if (thread == null)
+            return;
+        mRunning = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mThread = null;
+    }
+
+    @Override
+    public void run() {
+        // don't try to simulate the time we were stopped for
+        mSimTimeNanos = Math.max(mSimTimeNanos, mClock.nanoTime() - mTickNanos);
+
+        while (mRunning) {
+            advance();
+            long wait = mSimTimeNanos + mTickNanos - mClock.nanoTime();
+            if (wait > 0)
+                LockSupport.parkNanos(this, wait);
+        }
+    }
+
+    public boolean isRunning() { return mThread != null; }
+
+    public int getCapacity() { return mCurrent.capacity; }
+    public long getTickNanos() { return mTickNanos; }
+
+    /** @return ticks simulated so far */
+    public long getTickCount() { return mTicks; }
+
+    /** @return ticks skipped because the loop fell further behind than the catch-up limit */
+    public long getDroppedTickCount() { return mDroppedTicks; }
+
+    public long getLastTickCostNanos() { return mLastTickCostNanos; }
+
+    /** @return moving average of the time one tick takes, including bookkeeping */
+    public double getAverageTickCostNanos() { return mAverageTickCostNanos; }
+}
@@ -0,0 +1,13 @@
+package matt.noobgraphics.simulation;
+
+/**
+ * Game/scene logic advanced in fixed steps by a {@link FixedTimestepLoop}
+ */
+public interface Simulation {
+    /**
+     * Advances the state in place by exactly one tick. Runs on the simulation thread.
+     * @param state the state to update
+     * @param dtSeconds the fixed tick length
+     */
+    void step(SimulationState state, float dtSeconds);
+}
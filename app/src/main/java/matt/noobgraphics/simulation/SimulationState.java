@@ -0,0 +1,60 @@
+package matt.noobgraphics.simulation;
+
+import java.util.Arrays;
+
+import matt.noobgraphics.math.Quaternion;
+
+/**
+ * Positions and rotations of every simulated entity at one tick, packed into flat arrays:
+ * entity i's position is positions[3i..3i+2] and its rotation quaternion rotations[4i..4i+3].
+ */
+public class SimulationState {
+    public final int capacity;
+    public final float[] positions;
+    public final float[] rotations;
+
+    /** Simulation tick this state belongs to */
+    public long tick;
+
+    public SimulationState(int capacity) {
+        this.capacity = capacity;
+        positions = new float[capacity * 3];
+        rotations = new float[capacity * Quaternion.SIZE];
+        for (int i = 0; i < capacity; i++)
+            rotations[i * Quaternion.SIZE + 3] = 1.0f;
+    }
+
+    public void copyFrom(SimulationState other) {
+        System.arraycopy(other.positions, 0, positions, 0, positions.length);
+        System.arraycopy(other.rotations, 0, rotations, 0, rotations.length);
+        tick = other.tick;
+    }
+
+    /**
+     * Sets this to the state between a and b. Positions are lerped, rotations slerped.
+     * @param t 0 gives a, 1 gives b
+     */
+    public void interpolate(SimulationState a, SimulationState b, float t) {
+        float[] pa = a.positions, pb = b.positions;
+        for (int i = 0; i < positions.length; i++)
+            positions[i] = pa[i] + (pb[i] - pa[i]) * t;
+
+        for (int i = 0; i < rotations.length; i += Quaternion.SIZE)
+            Quaternion.slerp(rotations, i, a.rotations, i, b.rotations, i, t);
+
+        tick = t < 0.5f ? a.tick : b.tick;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SimulationState)) return false;
+        SimulationState rhs = (SimulationState) o;
+        return tick == rhs.tick && Arrays.equals(positions, rhs.positions)
+                && Arrays.equals(rotations, rhs.rotations);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Long.valueOf(tick).hashCode() + Arrays.hashCode(positions)) + Arrays.hashCode(rotations);
+    }
+}
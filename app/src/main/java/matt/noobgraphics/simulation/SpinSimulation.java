@@ -0,0 +1,36 @@
+package matt.noobgraphics.simulation;
+
+import matt.noobgraphics.math.Quaternion;
+
+/**
+ * Spins every entity around its own z axis at a constant rate. The demo scene and the benchmark
+ * use it; it is also a template for real simulations.
+ */
+public class SpinSimulation implements Simulation {
+    private final float mRadiansPerSecond;
+    private final float[] mStepRotation = new float[Quaternion.SIZE];
+    private float mStepSeconds;
+
+    public SpinSimulation(float radiansPerSecond) {
+        mRadiansPerSecond = radiansPerSecond;
+    }
+
+    @Override
+    public void step(SimulationState state, float dtSeconds) {
+        if (dtSeconds != mStepSeconds) {
+            float half = mRadiansPerSecond * dtSeconds / 2;
+            mStepRotation[0] = mStepRotation[1] = 0;
+            mStepRotation[2] = (float) Math.sin(half);
+            mStepRotation[3] = (float) Math.cos(half);
+            mStepSeconds = dtSeconds;
+        }
+
+        float[] rotations = state.rotations;
+        for (int i = 0; i < rotations.length; i += Quaternion.SIZE) {
+            Quaternion.multiply(rotations, i, rotations, i, mStepRotation, 0);
+            // renormalize now and then so error doesn't accumulate
+            if ((state.tick & 0xff) == 0)
+                Quaternion.normalize(rotations, i);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package matt.noobgraphics.texture;
+
+import java.util.Arrays;
+
+/**
+ * Packs small images (glyphs, icons, sprites) into one texture so they can be drawn in a batch.
+ *
+ * Rectangles go in with a skyline bottom-left packer: the packed area's top edge is kept as a
+ * list of horizontal segments, and each rectangle takes the spot where its top ends up lowest.
+ * That makes online insertion cheap, O(segments) per try, at slightly lower occupancy than
+ * MaxRects. {@link #insertAll} packs a known set offline, largest first, which fills much better
+ * than the same images in arbitrary order.
+ *
+ * Images are kept padding pixels apart, against filtering bleeding between neighbours, and may
+ * be turned 90 degrees clockwise if that fits better. {@link #writeTexCoords} and {@link #blit}
+ * take care of rotated images.
+ */
+public class AtlasPacker {
+    private final int mWidth;
+    private final int mHeight;
+    private final int mPadding;
+    private final boolean mAllowRotation;
+
+    // skyline segments, left to right: x, top y and width
+    private int[] mSkyX = new int[16];
+    private int[] mSkyY = new int[16];
+    private int[] mSkyWidth = new int[16];
+    private int mSkyCount;
+
+    // packed rectangles: x, y, width, height in the atlas (turned if rotated), rotated flag
+    private int[] mRects = new int[16 * 5];
+    private int mCount;
+    private long mPackedArea;
+    private int mUsedHeight;
+
+    // result of the last fit
+    private int mFitY;
+    private int mFitWaste;
+
+    /**
+     * @param padding pixels kept free between images
+     * @param allowRotation whether images may be stored turned 90 degrees
+     */
+    public AtlasPacker(int width, int height, int padding, boolean allowRotation) {
+        if (width < 1 || height < 1 || padding < 0)
+            throw new IllegalArgumentException("Bad atlas " + width + "x" + height + " padding " + padding);
+        mWidth = width;
+        mHeight = height;
+        mPadding = padding;
+        mAllowRotation = allowRotation;
+        clear();
+    }
+
+    /**
+     * Packs one image where it fits best right now
+     * @return the rectangle's index, or -1 if there is no room for it
+     */
+    public int insert(int width, int height) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Bad image " + width + "x" + height);
+        // padding on the right and bottom, except where the image meets the atlas edge
+        int paddedWidth = width + mPadding, paddedHeight = height + mPadding;
+
+        int best = -1, bestTop = Integer.MAX_VALUE, bestWaste = Integer.MAX_VALUE, bestY = 0;
+        boolean bestRotated = false;
+        for (int turn = 0; turn < (mAllowRotation && width != height ? 2 : 1); turn++) {
+            int w = turn == 0 ? paddedWidth : paddedHeight;
+            int h = turn == 0 ? paddedHeight : paddedWidth;
+            for (int i = 0; i < mSkyCount; i++) {
+                if (!fit(i, w, h))
+                    continue;
+                int top = mFitY + h;
+                if (top < bestTop || (top == bestTop && mFitWaste < bestWaste)) {
+                    best = i;
+                    bestTop = top;
+                    bestWaste = mFitWaste;
+                    bestY = mFitY;
+                    bestRotated = turn == 1;
+                }
+            }
+        }
+        if (best < 0)
+            return -1;
+
+        int w = bestRotated ? paddedHeight : paddedWidth;
+        int h = bestRotated ? paddedWidth : paddedHeight;
+        int x = mSkyX[best];
+        addLevel(best, x, bestY + h, w);
+
+        if (mCount * 5 == mRects.length)
+            mRects = Arrays.copyOf(mRects, mRects.length * 2);
+        int r = mCount * 5;
+        mRects[r] = x;
+        mRects[r + 1] = bestY;
+        mRects[r + 2] = bestRotated ? height : width;
+        mRects[r + 3] = bestRotated ? width : height;
+        mRects[r + 4] = bestRotated ? 1 : 0;
+        mPackedArea += (long) width * height;
+        mUsedHeight = Math.max(mUsedHeight, bestY + mRects[r + 3]);
+        return mCount++;
+    }
+
+    /**
+     * Whether a w x h block fits with its left edge at segment i; sets mFitY to the height it
+     * would sit at and mFitWaste to the area left unusable below it
+     */
+    private boolean fit(int i, int w, int h) {
+        int x = mSkyX[i];
+        // the padding past the atlas edge isn't needed
+        if (x + w - mPadding > mWidth)
+            return false;
+        // past the last segment there is at most the padding left, which may hang over
+        int y = 0, left = w;
+        for (int j = i; left > 0 && j < mSkyCount; j++) {
+            y = Math.max(y, mSkyY[j]);
+            left -= mSkyWidth[j];
+        }
+        if (y + h - mPadding > mHeight)
+            return false;
+
+        int waste = 0;
+        left = w;
+        for (int k = i; left > 0 && k < mSkyCount; k++) {
+            int span = Math.min(left, mSkyWidth[k]);
+            waste += span * (y - mSkyY[k]);
+            left -= span;
+        }
+        mFitY = y;
+        mFitWaste = waste;
+        return true;
+    }
+
+    /**
+     * Raises the skyline to top over x .. x + width, starting at segment index
+     */
+    private void addLevel(int index, int x, int top, int width) {
+        if (mSkyCount == mSkyX.length) {
+            int capacity = mSkyCount * 2;
+            mSkyX = Arrays.copyOf(mSkyX, capacity);
+            mSkyY = Arrays.copyOf(mSkyY, capacity);
+            mSkyWidth = Arrays.copyOf(mSkyWidth, capacity);
+        }
+        int end = Math.min(x + width, mWidth);
+        insertSegment(index, x, top, end - x);
+
+        // cut away what the new segment covers
+        int i = index + 1;
+        while (i < mSkyCount && mSkyX[i] < end) {
+            int segmentEnd = mSkyX[i] + mSkyWidth[i];
+            if (segmentEnd <= end) {
+                removeSegment(i);
+            } else {
+                mSkyWidth[i] = segmentEnd - end;
+                mSkyX[i] = end;
+                break;
+            }
+        }
+
+        // merge neighbours at the same height
+        for (i = Math.max(index - 1, 0); i + 1 < mSkyCount && i <= index + 1; ) {
+            if (mSkyY[i] == mSkyY[i + 1]) {
+                mSkyWidth[i] += mSkyWidth[i + 1];
+                removeSegment(i + 1);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private void insertSegment(int at, int x, int y, int width) {
+        int move = mSkyCount - at;
+        System.arraycopy(mSkyX, at, mSkyX, at + 1, move);
+        System.arraycopy(mSkyY, at, mSkyY, at + 1, move);
+        System.arraycopy(mSkyWidth, at, mSkyWidth, at + 1, move);
+        mSkyX[at] = x;
+        mSkyY[at] = y;
+        mSkyWidth[at] = width;
+        mSkyCount++;
+    }
+
+    private void removeSegment(int at) {
+        int move = mSkyCount - at - 1;
+        System.arraycopy(mSkyX, at + 1, mSkyX, at, move);
+        System.arraycopy(mSkyY, at + 1, mSkyY, at, move);
+        System.arraycopy(mSkyWidth, at + 1, mSkyWidth, at, move);
+        mSkyCount--;
+    }
+
+    /**
+     * Packs a known set of images at once, tallest and widest first
+     * @param out receives each image's rectangle index, or -1 for those that didn't fit
+     * @return how many were packed
+     */
+    public int insertAll(int[] widths, int[] heights, int count, int[] out) {
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            // longest side, then area, descending
+            int longest = Math.max(widths[i], heights[i]);
+            long key = (long) longest << 20 | Math.min((long) widths[i] * heights[i] >> 4, 0xFFFFF);
+            order[i] = ~key << 24 | i;
+        }
+        Arrays.sort(order);
+        int packed = 0;
+        for (long entry : order) {
+            int i = (int) (entry & 0xFFFFFF);
+            out[i] = insert(widths[i], heights[i]);
+            if (out[i] >= 0)
+                packed++;
+        }
+        return packed;
+    }
+
+    /**
+     * Forgets every rectangle
+     */
+    public void clear() {
+        mSkyCount = 1;
+        mSkyX[0] = 0;
+        mSkyY[0] = 0;
+        mSkyWidth[0] = mWidth;
+        mCount = 0;
+        mPackedArea = 0;
+        mUsedHeight = 0;
+    }
+
+    public int getWidth() { return mWidth; }
+    public int getHeight() { return mHeight; }
+    public int getCount() { return mCount; }
+
+    /** @return left edge of the rectangle in the atlas */
+    public int getX(int rect) { return mRects[rect * 5]; }
+    /** @return top edge of the rectangle in the atlas, rows counting down */
+    public int getY(int rect) { return mRects[rect * 5 + 1]; }
+    /** @return width the image takes in the atlas; its height if rotated */
+    public int getPackedWidth(int rect) { return mRects[rect * 5 + 2]; }
+    /** @return height the image takes in the atlas; its width if rotated */
+    public int getPackedHeight(int rect) { return mRects[rect * 5 + 3]; }
+    /** @return whether the image is stored turned 90 degrees clockwise */
+    public boolean isRotated(int rect) { return mRects[rect * 5 + 4] != 0; }
+
+    /** @return rows down to the bottom of the lowest image */
+    public int getUsedHeight() { return mUsedHeight; }
+
+    /**
+     * @return image pixels over the atlas area down to {@link #getUsedHeight()}, 0 to 1
+     */
+    public double getOccupancy() {
+        return mUsedHeight == 0 ? 0 : (double) mPackedArea / ((long) mWidth * mUsedHeight);
+    }
+
+    /**
+     * Writes the rectangle as u0, v0, u1, v1, with v0 at its first row
+     * @return out
+     */
+    public float[] getUVRect(int rect, float[] out, int offset) {
+        int r = rect * 5;
+        out[offset] = (float) mRects[r] / mWidth;
+        out[offset + 1] = (float) mRects[r + 1] / mHeight;
+        out[offset + 2] = (float) (mRects[r] + mRects[r + 2]) / mWidth;
+        out[offset + 3] = (float) (mRects[r + 1] + mRects[r + 3]) / mHeight;
+        return out;
+    }
+
+    /**
+     * Writes texture coordinates for the image's corners in the order {@link
+     * matt.noobgraphics.graphics.Square} lists its vertices: top left, bottom left, bottom
+     * right, top right, two floats each. The image's top row is its first one in the atlas,
+     * as uploaded by {@link #blit}; rotation is undone.
+     * @return out
+     */
+    public float[] writeTexCoords(int rect, float[] out, int offset) {
+        int r = rect * 5;
+        float u0 = (float) mRects[r] / mWidth;
+        float v0 = (float) mRects[r + 1] / mHeight;
+        float u1 = (float) (mRects[r] + mRects[r + 2]) / mWidth;
+        float v1 = (float) (mRects[r + 1] + mRects[r + 3]) / mHeight;
+        if (mRects[r + 4] == 0) {
+            set(out, offset, u0, v0, u0, v1, u1, v1, u1, v0);
+        } else {
+            // turned clockwise: the image's left edge is the rectangle's top
+            set(out, offset, u1, v0, u0, v0, u0, v1, u1, v1);
+        }
+        return out;
+    }
+
+    private static void set(float[] out, int offset, float a, float b, float c, float d,
+                            float e, float f, float g, float h) {
+        out[offset] = a;
+        out[offset + 1] = b;
+        out[offset + 2] = c;
+        out[offset + 3] = d;
+        out[offset + 4] = e;
+        out[offset + 5] = f;
+        out[offset + 6] = g;
+        out[offset + 7] = h;
+    }
+
+    /**
+     * Copies an image's pixels into its rectangle of the atlas, turning them if the rectangle
+     * is rotated
+     * @param image row-major pixels, width x height as given to insert
+     * @param atlas row-major pixels, {@link #getWidth()} per row
+     */
+    public void blit(int rect, int[] image, int[] atlas) {
+        int r = rect * 5;
+        int x = mRects[r], y = mRects[r + 1], packedWidth = mRects[r + 2], packedHeight = mRects[r + 3];
+        if (mRects[r + 4] == 0) {
+            for (int row = 0; row < packedHeight; row++)
+                System.arraycopy(image, row * packedWidth, atlas, (y + row) * mWidth + x, packedWidth);
+            return;
+        }
+        // image pixel (ix, iy) goes to column packedWidth - 1 - iy, row ix
+        int imageWidth = packedHeight;
+        for (int iy = 0; iy < packedWidth; iy++) {
+            int column = x + packedWidth - 1 - iy;
+            for (int ix = 0; ix < imageWidth; ix++)
+                atlas[(y + ix) * mWidth + column] = image[iy * imageWidth + ix];
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package matt.noobgraphics.texture;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A texture's full mip chain, every level in one native order direct buffer, in the form
+ * glTexImage2D takes: level l is {@link #getWidth(int)} x {@link #getHeight(int)} pixels of
+ * {@link #getGLFormat()} / {@link #getGLType()}, rows tightly packed from the top. Rows of the
+ * 16 bit formats with odd widths are only 2 byte aligned, so upload those with
+ * GL_UNPACK_ALIGNMENT 2.
+ */
+public class MipChain {
+    public static final int RGBA8888 = 0;
+    public static final int RGB565 = 1;
+    public static final int RGBA4444 = 2;
+
+    // GL ES 2.0 values, so this package doesn't need android.opengl
+    public static final int GL_RGB = 0x1907;
+    public static final int GL_RGBA = 0x1908;
+    public static final int GL_UNSIGNED_BYTE = 0x1401;
+    public static final int GL_UNSIGNED_SHORT_4_4_4_4 = 0x8033;
+    public static final int GL_UNSIGNED_SHORT_5_6_5 = 0x8363;
+
+    private final int mFormat;
+    private final int[] mWidths;
+    private final int[] mHeights;
+    private final int[] mOffsets;
+    private final ByteBuffer mData;
+
+    MipChain(int format, int[] widths, int[] heights, int[] offsets, ByteBuffer data) {
+        mFormat = format;
+        mWidths = widths;
+        mHeights = heights;
+        mOffsets = offsets;
+        mData = data;
+    }
+
+    /**
+     * @return the level count of a full chain down to 1 x 1
+     */
+    public static int levelCount(int width, int height) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+    }
+
+    /** @return bytes per pixel of a format */
+    public static int bytesPerPixel(int format) {
+        return format == RGBA8888 ? 4 : 2;
+    }
+
+    /** @return {@link #RGBA8888}, {@link #RGB565} or {@link #RGBA4444} */
+    public int getFormat() { return mFormat; }
+
+    public int getGLFormat() { return mFormat == RGB565 ? GL_RGB : GL_RGBA; }
+
+    public int getGLType() {
+        switch (mFormat) {
+            case RGB565:
+                return GL_UNSIGNED_SHORT_5_6_5;
+            case RGBA4444:
+                return GL_UNSIGNED_SHORT_4_4_4_4;
+            default:
+                return GL_UNSIGNED_BYTE;
+        }
+    }
+
+    public int getLevelCount() { return mWidths.length; }
+    public int getWidth(int level) { return mWidths[level]; }
+    public int getHeight(int level) { return mHeights[level]; }
+
+    /**
+     * @return the level's pixels; a new view each call, positioned at 0
+     */
+    public ByteBuffer getLevel(int level) {
+        ByteBuffer view = mData.duplicate();
+        view.limit(mOffsets[level + 1]).position(mOffsets[level]);
+        return view.slice().order(mData.order());
+    }
+
+    /** @return bytes of every level together */
+    public int getBytes() { return mOffsets[mWidths.length]; }
+}
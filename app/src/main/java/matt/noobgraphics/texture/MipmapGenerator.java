@@ -0,0 +1,449 @@
+package matt.noobgraphics.texture;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Builds full mip chains on the CPU at load time, so the GL thread doesn't stall in
+ * glGenerateMipmap, with filtering done right:
+ * <ul>
+ *   <li>in linear light: sRGB texels are decoded before averaging and encoded after, so
+ *       small levels don't darken ({@link #setGammaCorrect})</li>
+ *   <li>on premultiplied alpha, so transparent texels don't bleed their color into edges; the
+ *       output is premultiplied too, for GL_ONE, GL_ONE_MINUS_SRC_ALPHA blending</li>
+ *   <li>with a 2x2 box (3 taps along odd sizes, so no texel is dropped) or a 6 tap Kaiser
+ *       windowed sinc, which keeps small levels sharper ({@link #setFilter})</li>
+ * </ul>
+ * Levels can be stored as RGBA8888, or as RGB565 / RGBA4444 for half the memory.
+ *
+ * Each level is computed from the previous one, kept at 16 bits per channel so rounding doesn't
+ * pile up. A level's rows are split over the pool; every row is computed the same way whatever
+ * the split, so the result doesn't depend on the thread count. Row buffers are sized for the
+ * largest level and shared by the tasks of a call, one set per thread working at a time.
+ */
+public class MipmapGenerator {
+    public static final int FILTER_BOX = 0;
+    public static final int FILTER_KAISER = 1;
+
+    /** Fewest output rows one task processes */
+    public static final int DEFAULT_GRAIN = 8;
+
+    private static final float[] BOX = { 0.5f, 0.5f };
+    private static final float[] KAISER = kaiserWeights(3, 4);
+
+    // sRGB byte -> linear, and linear at 16 bits -> sRGB byte
+    private static final float[] SRGB_TO_LINEAR = new float[256];
+    private static final byte[] LINEAR_TO_SRGB = new byte[65536];
+    private static final float[] BYTE_TO_UNIT = new float[256];
+    private static final byte[] UNIT_TO_BYTE = new byte[65536];
+    static {
+        for (int i = 0; i < 256; i++) {
+            double c = i / 255.0;
+            SRGB_TO_LINEAR[i] = (float) (c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4));
+            BYTE_TO_UNIT[i] = i / 255f;
+        }
+        for (int i = 0; i < 65536; i++) {
+            double l = i / 65535.0;
+            double s = l <= 0.0031308 ? l * 12.92 : 1.055 * Math.pow(l, 1 / 2.4) - 0.055;
+            LINEAR_TO_SRGB[i] = (byte) (int) (s * 255 + 0.5);
+            UNIT_TO_BYTE[i] = (byte) (int) (l * 255 + 0.5);
+        }
+    }
+
+    private final ForkJoinPool mPool;
+    private final int mGrain;
+    private int mFilter = FILTER_BOX;
+    private boolean mGammaCorrect = true;
+    private int mFormat = MipChain.RGBA8888;
+
+    public MipmapGenerator(ForkJoinPool pool) {
+        this(pool, DEFAULT_GRAIN);
+    }
+
+    /**
+     * @param pool the threads to run on
+     * @param grain the fewest rows one task processes
+     */
+    public MipmapGenerator(ForkJoinPool pool, int grain) {
+        if (grain < 1)
+            throw new IllegalArgumentException("Grain must be positive");
+        mPool = pool;
+        mGrain = grain;
+    }
+
+    /** @param filter {@link #FILTER_BOX} (default) or {@link #FILTER_KAISER} */
+    public MipmapGenerator setFilter(int filter) {
+        mFilter = filter;
+        return this;
+    }
+
+    /**
+     * @param gammaCorrect whether texels are sRGB (default) rather than linear values, e.g. for
+     *                     normal maps or masks
+     */
+    public MipmapGenerator setGammaCorrect(boolean gammaCorrect) {
+        mGammaCorrect = gammaCorrect;
+        return this;
+    }
+
+    /** @param format {@link MipChain#RGBA8888} (default), RGB565 or RGBA4444 */
+    public MipmapGenerator setFormat(int format) {
+        mFormat = format;
+        return this;
+    }
+
+    /**
+     * @param argb non-premultiplied pixels as from Bitmap.getPixels, row-major from the top
+     * @return the image and every smaller level, premultiplied
+     */
+    public MipChain generate(int[] argb, int width, int height) {
+        if (width < 1 || height < 1 || argb.length < width * height)
+            throw new IllegalArgumentException("Bad image " + width + "x" + height);
+        int levels = MipChain.levelCount(width, height);
+        int[] widths = new int[levels], heights = new int[levels], offsets = new int[levels + 1];
+        int bpp = MipChain.bytesPerPixel(mFormat);
+        for (int l = 0, w = width, h = height; l < levels; l++, w = Math.max(1, w / 2), h = Math.max(1, h / 2)) {
+            widths[l] = w;
+            heights[l] = h;
+            offsets[l + 1] = offsets[l] + w * h * bpp;
+        }
+        ByteBuffer data = ByteBuffer.allocateDirect(offsets[levels]).order(ByteOrder.nativeOrder());
+        MipChain chain = new MipChain(mFormat, widths, heights, offsets, data);
+
+        Job job = new Job(argb, chain);
+        run(new EncodeTask(job, 0, height));
+        short[] previous = null;
+        for (int l = 1; l < levels; l++) {
+            short[] level = l + 1 < levels ? new short[widths[l] * heights[l] * 4] : null;
+            job.startLevel(l, previous, level);
+            run(new FilterTask(job, 0, heights[l]));
+            previous = level;
+        }
+        return chain;
+    }
+
+    private void run(RangeTask task) {
+        if (task.mTo - task.mFrom <= mGrain)
+            task.compute();
+        else
+            mPool.invoke(task);
+    }
+
+    /** Everything the tasks of one generate call share */
+    private class Job {
+        final int[] mSource;
+        final MipChain mChain;
+        final float[] mDecode = mGammaCorrect ? SRGB_TO_LINEAR : BYTE_TO_UNIT;
+        final byte[] mEncode = mGammaCorrect ? LINEAR_TO_SRGB : UNIT_TO_BYTE;
+        final float[] mWeights = mFilter == FILTER_KAISER ? KAISER : BOX;
+        final int mFormat = MipmapGenerator.this.mFormat;
+        final int mMaxTaps = Math.max(3, mWeights.length);
+        final ConcurrentLinkedQueue<Scratch> mScratch = new ConcurrentLinkedQueue<>();
+
+        int mLevel;
+        short[] mPrevious;      // level - 1 as linear premultiplied 16 bit, null for the source
+        short[] mCurrent;       // where to keep this level for the next, null for the last
+        // horizontal taps, the same for every row of the level
+        final int[] mXTaps;
+        final float[] mXWeights;
+
+        Job(int[] source, MipChain chain) {
+            mSource = source;
+            mChain = chain;
+            int width = chain.getLevelCount() > 1 ? chain.getWidth(1) : 0;
+            mXTaps = new int[width];
+            mXWeights = new float[width * mMaxTaps];
+        }
+
+        void startLevel(int level, short[] previous, short[] current) {
+            mLevel = level;
+            mPrevious = previous;
+            mCurrent = current;
+            int sourceWidth = mChain.getWidth(level - 1), width = mChain.getWidth(level);
+            float[] weights = new float[mMaxTaps];
+            for (int x = 0; x < width; x++) {
+                mXTaps[x] = taps(x, sourceWidth, width, weights);
+                System.arraycopy(weights, 0, mXWeights, x * mMaxTaps, mXTaps[x]);
+            }
+        }
+
+        /** @return row buffers no other task is using, back with {@link #release} */
+        Scratch acquire() {
+            Scratch scratch = mScratch.poll();
+            return scratch != null ? scratch : new Scratch(mMaxTaps, mChain.getWidth(0));
+        }
+
+        void release(Scratch scratch) {
+            mScratch.offer(scratch);
+        }
+
+        /**
+         * Weights of output texel i along an axis. Taps start at source texel 2i + 1 - taps / 2.
+         * A box over an odd size (but 1) would miss the last texel, so it spans 3 texels instead,
+         * each output taking an equal 1 / size share of the 2 * size + 1 source texels.
+         * @return the number of taps
+         */
+        int taps(int i, int sourceSize, int size, float[] out) {
+            if (mWeights == BOX && sourceSize > 1 && (sourceSize & 1) != 0) {
+                float scale = 1.0f / sourceSize;
+                out[0] = (size - i) * scale;
+                out[1] = size * scale;
+                out[2] = (i + 1) * scale;
+                return 3;
+            }
+            System.arraycopy(mWeights, 0, out, 0, mWeights.length);
+            return mWeights.length;
+        }
+
+        /** Decodes source row y of the previous level into linear premultiplied floats */
+        void fetchRow(int y, float[] out) {
+            int width = mChain.getWidth(mLevel - 1);
+            if (mPrevious == null) {
+                int[] source = mSource;
+                float[] decode = mDecode;
+                for (int x = 0, i = y * width, o = 0; x < width; x++, i++, o += 4) {
+                    int p = source[i];
+                    float a = (p >>> 24) * (1 / 255f);
+                    out[o] = decode[(p >> 16) & 0xFF] * a;
+                    out[o + 1] = decode[(p >> 8) & 0xFF] * a;
+                    out[o + 2] = decode[p & 0xFF] * a;
+                    out[o + 3] = a;
+                }
+            } else {
+                short[] previous = mPrevious;
+                for (int i = y * width * 4, o = 0, end = width * 4; o < end; i++, o++)
+                    out[o] = (previous[i] & 0xFFFF) * (1 / 65535f);
+            }
+        }
+    }
+
+    /** One task's working memory, big enough for any level */
+    private static class Scratch {
+        // source rows, cached by row number modulo the slot count
+        final float[][] mRows;
+        final int[] mCached;
+        final float[] mColumn;
+        final float[] mWeights;
+        final float[] mPixel = new float[4];
+
+        Scratch(int slots, int width) {
+            mRows = new float[slots][width * 4];
+            mCached = new int[slots];
+            mColumn = new float[width * 4];
+            mWeights = new float[slots];
+        }
+    }
+
+    private abstract class RangeTask extends RecursiveAction {
+        final Job mJob;
+        final int mFrom;
+        final int mTo;
+
+        RangeTask(Job job, int from, int to) {
+            mJob = job;
+            mFrom = from;
+            mTo = to;
+        }
+
+        abstract RangeTask split(int from, int to);
+
+        abstract void process();
+
+        @Override
+        protected void compute() {
+            if (mTo - mFrom <= mGrain) {
+                process();
+                return;
+            }
+            int mid = (mFrom + mTo) >>> 1;
+            invokeAll(split(mFrom, mid), split(mid, mTo));
+        }
+    }
+
+    /** Level 0: premultiplies and converts the source rows */
+    private class EncodeTask extends RangeTask {
+        EncodeTask(Job job, int from, int to) {
+            super(job, from, to);
+        }
+
+        @Override
+        RangeTask split(int from, int to) {
+            return new EncodeTask(mJob, from, to);
+        }
+
+        @Override
+        void process() {
+            int width = mJob.mChain.getWidth(0);
+            ByteBuffer out = mJob.mChain.getLevel(0);
+            int bpp = MipChain.bytesPerPixel(mJob.mFormat);
+            int[] source = mJob.mSource;
+            for (int y = mFrom; y < mTo; y++) {
+                for (int x = 0, i = y * width; x < width; x++, i++) {
+                    int p = source[i];
+                    int a = p >>> 24;
+                    // already in the stored space: premultiplying is all there is to do
+                    int r = (((p >> 16) & 0xFF) * a + 127) / 255;
+                    int g = (((p >> 8) & 0xFF) * a + 127) / 255;
+                    int b = ((p & 0xFF) * a + 127) / 255;
+                    put(out, mJob.mFormat, i * bpp, r, g, b, a);
+                }
+            }
+        }
+    }
+
+    /** Levels 1 and up: filters the previous level's rows down */
+    private class FilterTask extends RangeTask {
+        FilterTask(Job job, int from, int to) {
+            super(job, from, to);
+        }
+
+        @Override
+        RangeTask split(int from, int to) {
+            return new FilterTask(mJob, from, to);
+        }
+
+        @Override
+        void process() {
+            Job job = mJob;
+            MipChain chain = job.mChain;
+            int level = job.mLevel;
+            int sourceWidth = chain.getWidth(level - 1), sourceHeight = chain.getHeight(level - 1);
+            int width = chain.getWidth(level), height = chain.getHeight(level);
+            int maxTaps = job.mMaxTaps;
+            int[] xTaps = job.mXTaps;
+            float[] xWeights = job.mXWeights;
+
+            Scratch scratch = job.acquire();
+            // consecutive output rows share most source rows; rows cached for another level or
+            // range are stale
+            float[][] rows = scratch.mRows;
+            int[] cached = scratch.mCached;
+            Arrays.fill(cached, -1);
+            float[] column = scratch.mColumn;
+            int columnLength = sourceWidth * 4;
+            float[] weights = scratch.mWeights;
+            float[] pixel = scratch.mPixel;
+            ByteBuffer out = chain.getLevel(level);
+            int bpp = MipChain.bytesPerPixel(job.mFormat);
+            short[] keep = job.mCurrent;
+
+            for (int y = mFrom; y < mTo; y++) {
+                // vertical pass over whole source rows
+                Arrays.fill(column, 0, columnLength, 0);
+                int taps = job.taps(y, sourceHeight, height, weights);
+                int first = 2 * y + 1 - taps / 2;
+                for (int t = 0; t < taps; t++) {
+                    int sy = clamp(first + t, sourceHeight);
+                    int slot = sy % maxTaps;
+                    if (cached[slot] != sy) {
+                        job.fetchRow(sy, rows[slot]);
+                        cached[slot] = sy;
+                    }
+                    float w = weights[t];
+                    float[] row = rows[slot];
+                    for (int i = 0; i < columnLength; i++)
+                        column[i] += w * row[i];
+                }
+
+                // horizontal pass, then store
+                for (int x = 0; x < width; x++) {
+                    pixel[0] = pixel[1] = pixel[2] = pixel[3] = 0;
+                    taps = xTaps[x];
+                    first = 2 * x + 1 - taps / 2;
+                    for (int t = 0; t < taps; t++) {
+                        int c = clamp(first + t, sourceWidth) * 4;
+                        float w = xWeights[x * maxTaps + t];
+                        pixel[0] += w * column[c];
+                        pixel[1] += w * column[c + 1];
+                        pixel[2] += w * column[c + 2];
+                        pixel[3] += w * column[c + 3];
+                    }
+                    store(pixel, out, (y * width + x) * bpp, keep, (y * width + x) * 4);
+                }
+            }
+            job.release(scratch);
+        }
+
+        private void store(float[] pixel, ByteBuffer out, int at, short[] keep, int keepAt) {
+            // sinc lobes can overshoot; premultiplied color never exceeds alpha
+            float a = Math.max(0, Math.min(1, pixel[3]));
+            float r = Math.max(0, Math.min(a, pixel[0]));
+            float g = Math.max(0, Math.min(a, pixel[1]));
+            float b = Math.max(0, Math.min(a, pixel[2]));
+            if (keep != null) {
+                keep[keepAt] = (short) (int) (r * 65535 + 0.5f);
+                keep[keepAt + 1] = (short) (int) (g * 65535 + 0.5f);
+                keep[keepAt + 2] = (short) (int) (b * 65535 + 0.5f);
+                keep[keepAt + 3] = (short) (int) (a * 65535 + 0.5f);
+            }
+            if (a <= 0) {
+                put(out, mJob.mFormat, at, 0, 0, 0, 0);
+                return;
+            }
+            // encode the unpremultiplied color, then premultiply in the stored space
+            byte[] encode = mJob.mEncode;
+            float scale = 65535 / a;
+            float alpha = a * 255;
+            int r8 = (int) ((encode[(int) (r * scale + 0.5f)] & 0xFF) * a + 0.5f);
+            int g8 = (int) ((encode[(int) (g * scale + 0.5f)] & 0xFF) * a + 0.5f);
+            int b8 = (int) ((encode[(int) (b * scale + 0.5f)] & 0xFF) * a + 0.5f);
+            put(out, mJob.mFormat, at, r8, g8, b8, (int) (alpha + 0.5f));
+        }
+    }
+
+    private static int clamp(int i, int size) {
+        return i < 0 ? 0 : i >= size ? size - 1 : i;
+    }
+
+    private static void put(ByteBuffer out, int format, int at, int r, int g, int b, int a) {
+        switch (format) {
+            case MipChain.RGB565:
+                out.putShort(at, (short) ((r * 31 + 127) / 255 << 11 | (g * 63 + 127) / 255 << 5 | (b * 31 + 127) / 255));
+                break;
+            case MipChain.RGBA4444:
+                out.putShort(at, (short) ((r * 15 + 127) / 255 << 12 | (g * 15 + 127) / 255 << 8
+                        | (b * 15 + 127) / 255 << 4 | (a * 15 + 127) / 255));
+                break;
+            default:
+                out.put(at, (byte) r);
+                out.put(at + 1, (byte) g);
+                out.put(at + 2, (byte) b);
+                out.put(at + 3, (byte) a);
+        }
+    }
+
+    /**
+     * Weights of a 2:1 downsampling sinc filter with a Kaiser window, for the 2 * radius source
+     * texels around each output texel
+     */
+    static float[] kaiserWeights(int radius, double beta) {
+        float[] weights = new float[radius * 2];
+        double sum = 0;
+        for (int t = 0; t < weights.length; t++) {
+            // distance from the output texel's centre in source texels: +-0.5, +-1.5 ...
+            double d = t - radius + 0.5;
+            double x = d / 2;
+            double sinc = x == 0 ? 1 : Math.sin(Math.PI * x) / (Math.PI * x);
+            double r = d / radius;
+            double window = besselI0(beta * Math.sqrt(Math.max(0, 1 - r * r))) / besselI0(beta);
+            weights[t] = (float) (sinc * window);
+            sum += weights[t];
+        }
+        for (int t = 0; t < weights.length; t++)
+            weights[t] /= sum;
+        return weights;
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1, term = 1;
+        for (int k = 1; k < 30; k++) {
+            term *= (x / (2 * k)) * (x / (2 * k));
+            sum += term;
+        }
+        return sum;
+    }
+}
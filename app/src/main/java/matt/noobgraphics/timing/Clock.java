@@ -0,0 +1,23 @@
+package matt.noobgraphics.timing;
+
+/**
+ * Monotonic time source. Everything that paces or measures frames reads time through one of
+ * these so tests can substitute a clock they step by hand.
+ */
+public interface Clock {
+    /**
+     * The real clock. System.nanoTime() is CLOCK_MONOTONIC on Android, the same time base as
+     * SystemClock.uptimeMillis(), Choreographer and MotionEvent timestamps.
+     */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * @return current time in nanoseconds. Only differences are meaningful.
+     */
+    long nanoTime();
+}
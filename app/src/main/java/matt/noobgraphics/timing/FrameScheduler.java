@@ -0,0 +1,189 @@
+package matt.noobgraphics.timing;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decides on which vsyncs a frame gets rendered. The view calls {@link #shouldRenderFrame()}
+ * once per display refresh and requests a render when it says so; the renderer calls
+ * {@link #onFrameStarted()} at the top of every frame so pacing and statistics follow what was
+ * actually drawn.
+ *
+ * Modes:
+ * <ul>
+ *   <li>{@link #MODE_ON_DEMAND}: only after {@link #requestFrame()}</li>
+ *   <li>{@link #MODE_CONTINUOUS}: every vsync</li>
+ *   <li>{@link #MODE_CAPPED}: continuously, but no faster than the target rate</li>
+ *   <li>{@link #MODE_ADAPTIVE}: at the target rate while there is input or animation, dropping
+ *       to the idle rate once nothing has changed for the idle timeout</li>
+ * </ul>
+ *
+ * All time comes from the injected {@link Clock}. requestFrame() and setAnimating() may be
+ * called from any thread; the rest belongs to the thread driving vsyncs and the GL thread.
+ */
+public class FrameScheduler {
+    public static final int MODE_ON_DEMAND = 0;
+    public static final int MODE_CONTINUOUS = 1;
+    public static final int MODE_CAPPED = 2;
+    public static final int MODE_ADAPTIVE = 3;
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private final Clock mClock;
+    private final FrameStats mStats = new FrameStats();
+    private final AtomicBoolean mDirty = new AtomicBoolean();
+    private volatile boolean mAnimating;
+
+    private int mMode = MODE_ON_DEMAND;
+    private long mVsyncNanos = NANOS_PER_SECOND / 60;
+    private long mTargetIntervalNanos = NANOS_PER_SECOND / 30;
+    private long mIdleIntervalNanos = NANOS_PER_SECOND / 4;
+    private long mIdleTimeoutNanos = NANOS_PER_SECOND / 2;
+
+    private long mNextFrameNanos;
+    private long mLastActivityNanos;
+    // written on the vsync thread, read by onFrameStarted() on the GL thread
+    private volatile long mExpectedIntervalNanos;
+
+    public FrameScheduler(Clock clock) {
+        mClock = clock;
+        mLastActivityNanos = clock.nanoTime();
+    }
+
+    public void setMode(int mode) {
+        if (mode < MODE_ON_DEMAND || mode > MODE_ADAPTIVE)
+            throw new IllegalArgumentException("Unknown frame scheduler mode " + mode);
+        mMode = mode;
+        mNextFrameNanos = 0;
+        mLastActivityNanos = mClock.nanoTime();
+    }
+
+    public int getMode() { return mMode; }
+
+    /**
+     * @param fps the display refresh rate. Intervals within half a refresh of the target count
+     *            as on time, since frames can only start on a vsync anyway.
+     */
+    public void setDisplayRate(float fps) {
+        mVsyncNanos = (long) (NANOS_PER_SECOND / fps);
+    }
+
+    /**
+     * @param fps frame rate for {@link #MODE_CAPPED} and the active phase of
+     *            {@link #MODE_ADAPTIVE}. 0 means as fast as the display goes.
+     */
+    public void setTargetRate(float fps) {
+        mTargetIntervalNanos = fps <= 0 ? 0 : (long) (NANOS_PER_SECOND / fps);
+    }
+
+    /**
+     * @param fps frame rate of {@link #MODE_ADAPTIVE} while idle. 0 means no frames at all.
+     */
+    public void setIdleRate(float fps) {
+        mIdleIntervalNanos = fps <= 0 ? Long.MAX_VALUE : (long) (NANOS_PER_SECOND / fps);
+    }
+
+    /**
+     * @param nanos how long {@link #MODE_ADAPTIVE} keeps the target rate after the last change
+     */
+    public void setIdleTimeout(long nanos) {
+        mIdleTimeoutNanos = nanos;
+    }
+
+    /**
+     * Something changed (input, new data): render a frame at the next opportunity. Any thread.
+     */
+    public void requestFrame() {
+        mDirty.set(true);
+    }
+
+    /**
+     * An animation is running, so adaptive mode should stay at its target rate. Any thread.
+     */
+    public void setAnimating(boolean animating) {
+        mAnimating = animating;
+    }
+
+    /**
+     * @return false if no future vsync can produce a frame until requestFrame() is called, so
+     * the caller can stop listening for vsync
+     */
+    public boolean needsVsync() {
+        return mMode != MODE_ON_DEMAND || mDirty.get();
+    }
+
+    /**
+     * Called once per vsync.
+     * @return true if a frame should be rendered for this vsync
+     */
+    public boolean shouldRenderFrame() {
+        long now = mClock.nanoTime();
+        boolean dirty = mDirty.get();
+        long interval;
+
+        switch (mMode) {
+            case MODE_ON_DEMAND:
+                interval = 0;
+                if (!dirty) return false;
+                break;
+
+            case MODE_CONTINUOUS:
+                interval = mVsyncNanos;
+                break;
+
+            case MODE_CAPPED:
+                interval = Math.max(mTargetIntervalNanos, mVsyncNanos);
+                if (!isDue(now)) return false;
+                break;
+
+            case MODE_ADAPTIVE:
+                if (dirty || mAnimating)
+                    mLastActivityNanos = now;
+                boolean active = now - mLastActivityNanos < mIdleTimeoutNanos;
+                interval = Math.max(active ? mTargetIntervalNanos : mIdleIntervalNanos, mVsyncNanos);
+                // ramping up: don't sit out the rest of a longer idle interval
+                if (mNextFrameNanos - now > interval)
+                    mNextFrameNanos = now;
+                // fresh input always gets a frame right away
+                if (!dirty && !isDue(now)) return false;
+                break;
+
+            default:
+                return false;
+        }
+
+        mDirty.set(false);
+        mExpectedIntervalNanos = interval;
+        scheduleNext(now, interval);
+        return true;
+    }
+
+    private boolean isDue(long now) {
+        // frames can only start on a vsync, so allow half a refresh of slack
+        return mNextFrameNanos == 0 || now >= mNextFrameNanos - mVsyncNanos / 2;
+    }
+
+    private void scheduleNext(long now, long interval) {
+        if (interval == Long.MAX_VALUE) {
+            mNextFrameNanos = Long.MAX_VALUE;
+            return;
+        }
+        // keep a steady cadence, unless this frame came early (input woke us up) or late by
+        // more than a frame (a stall we shouldn't try to catch up on)
+        boolean early = mNextFrameNanos - now > mVsyncNanos / 2;
+        long next = mNextFrameNanos == 0 || early ? now + interval : mNextFrameNanos + interval;
+        if (next < now)
+            next = now + interval;
+        mNextFrameNanos = next;
+    }
+
+    /**
+     * GL thread, at the start of each frame.
+     */
+    public void onFrameStarted() {
+        mStats.onFrame(mClock.nanoTime(), mExpectedIntervalNanos);
+    }
+
+    public FrameStats getStats() { return mStats; }
+
+    public Clock getClock() { return mClock; }
+}
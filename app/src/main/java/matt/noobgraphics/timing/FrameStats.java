@@ -0,0 +1,62 @@
+package matt.noobgraphics.timing;
+
+/**
+ * Frame-to-frame interval statistics. Written by the GL thread; readable from any thread,
+ * values may be slightly out of step with each other.
+ */
+public class FrameStats {
+    // weight of the newest frame in the moving average
+    private static final double SMOOTHING = 0.05;
+    // an interval this much longer than expected counts as a janky frame
+    private static final double JANK_FACTOR = 1.5;
+
+    private volatile long mFrames;
+    private volatile long mLastIntervalNanos;
+    private volatile long mMinIntervalNanos = Long.MAX_VALUE;
+    private volatile long mMaxIntervalNanos;
+    private volatile double mAverageIntervalNanos;
+    private volatile long mJankyFrames;
+
+    private long mLastFrameNanos;
+
+    /**
+     * @param nowNanos when the frame started
+     * @param expectedIntervalNanos what the interval should have been, 0 if there is no
+     *                              expectation (e.g. on demand rendering)
+     */
+    void onFrame(long nowNanos, long expectedIntervalNanos) {
+        if (mFrames > 0) {
+            long interval = nowNanos - mLastFrameNanos;
+            mLastIntervalNanos = interval;
+            if (interval < mMinIntervalNanos) mMinIntervalNanos = interval;
+            if (interval > mMaxIntervalNanos) mMaxIntervalNanos = interval;
+            mAverageIntervalNanos = mFrames == 1 ? interval
+                    : mAverageIntervalNanos + SMOOTHING * (interval - mAverageIntervalNanos);
+            if (expectedIntervalNanos > 0 && interval > expectedIntervalNanos * JANK_FACTOR)
+                mJankyFrames = mJankyFrames + 1;
+        }
+        mLastFrameNanos = nowNanos;
+        mFrames = mFrames + 1;
+    }
+
+    public void reset() {
+        mFrames = 0;
+        mLastIntervalNanos = mMaxIntervalNanos = mJankyFrames = 0;
+        mMinIntervalNanos = Long.MAX_VALUE;
+        mAverageIntervalNanos = 0;
+    }
+
+    public long getFrameCount() { return mFrames; }
+    public long getLastIntervalNanos() { return mLastIntervalNanos; }
+    public long getMinIntervalNanos() { return mFrames > 1 ? mMinIntervalNanos : 0; }
+    public long getMaxIntervalNanos() { return mMaxIntervalNanos; }
+    public double getAverageIntervalNanos() { return mAverageIntervalNanos; }
+
+    /** @return frames that came later than 1.5x the interval the scheduler aimed for */
+    public long getJankyFrameCount() { return mJankyFrames; }
+
+    /** @return frames per second from the moving average interval */
+    public double getFps() {
+        return mAverageIntervalNanos > 0 ? 1e9 / mAverageIntervalNanos : 0;
+    }
+}
@@ -0,0 +1,163 @@
+package matt.noobgraphics.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Growable byte array, e.g. for packed colors or quantized attributes, without boxing every
+ * element in an ArrayList&lt;Byte&gt;.
+ */
+public class ByteList {
+    private byte[] mData;
+    private int mSize;
+
+    public ByteList() {
+        this(16);
+    }
+
+    public ByteList(int initialCapacity) {
+        mData = new byte[Math.max(initialCapacity, 1)];
+    }
+
+    public void add(byte value) {
+        if (mSize == mData.length)
+            grow(mSize + 1);
+        mData[mSize++] = value;
+    }
+
+    public void add(byte x, byte y) {
+        if (mSize + 2 > mData.length)
+            grow(mSize + 2);
+        mData[mSize] = x;
+        mData[mSize + 1] = y;
+        mSize += 2;
+    }
+
+    public void add(byte x, byte y, byte z) {
+        if (mSize + 3 > mData.length)
+            grow(mSize + 3);
+        mData[mSize] = x;
+        mData[mSize + 1] = y;
+        mData[mSize + 2] = z;
+        mSize += 3;
+    }
+
+    public void add(byte x, byte y, byte z, byte w) {
+        if (mSize + 4 > mData.length)
+            grow(mSize + 4);
+        mData[mSize] = x;
+        mData[mSize + 1] = y;
+        mData[mSize + 2] = z;
+        mData[mSize + 3] = w;
+        mSize += 4;
+    }
+
+    public void addAll(byte[] values, int offset, int length) {
+        ensureCapacity(mSize + length);
+        System.arraycopy(values, offset, mData, mSize, length);
+        mSize += length;
+    }
+
+    public void addAll(ByteList other) {
+        addAll(other.mData, 0, other.mSize);
+    }
+
+    /**
+     * Appends the buffer's remaining elements, advancing its position
+     */
+    public void addAll(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        ensureCapacity(mSize + length);
+        buffer.get(mData, mSize, length);
+        mSize += length;
+    }
+
+    public byte get(int index) {
+        if (index >= mSize)
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+        return mData[index];
+    }
+
+    public void set(int index, byte value) {
+        if (index >= mSize)
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+        mData[index] = value;
+    }
+
+    public int size() { return mSize; }
+
+    public boolean isEmpty() { return mSize == 0; }
+
+    /**
+     * Empties the list but keeps its capacity
+     */
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Drops every element from size on, keeping the capacity
+     */
+    public void truncate(int size) {
+        if (size < 0 || size > mSize)
+            throw new IndexOutOfBoundsException("Size " + size + ", was " + mSize);
+        mSize = size;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > mData.length)
+            grow(capacity);
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, mData.length + (mData.length >> 1) + 1);
+        mData = Arrays.copyOf(mData, capacity);
+    }
+
+    /**
+     * The backing array; elements past size() are garbage. Replaced whenever the list grows.
+     */
+    public byte[] array() { return mData; }
+
+    public byte[] toArray() {
+        return Arrays.copyOf(mData, mSize);
+    }
+
+    /**
+     * @return a heap buffer over the elements, positioned at 0, without copying; sees later
+     *         sets but not growth. Good for glBufferData, which takes heap buffers.
+     */
+    public ByteBuffer asBuffer() {
+        return ByteBuffer.wrap(mData, 0, mSize);
+    }
+
+    /**
+     * @return a new native order direct buffer holding the elements, positioned at 0
+     */
+    public ByteBuffer toDirectBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(mSize).order(ByteOrder.nativeOrder());
+        buffer.put(mData, 0, mSize);
+        buffer.position(0);
+        return buffer;
+    }
+
+    /**
+     * Copies the elements into a native order direct buffer, reusing target when it is big
+     * enough, so a list refilled every frame can be exported without a new buffer
+     * @param target the buffer from an earlier call, or null
+     * @return target, or a new buffer with room to spare; positioned at 0 with the limit at
+     *         size() bytes
+     */
+    public ByteBuffer toDirectBuffer(ByteBuffer target) {
+        if (target == null || target.capacity() < mSize) {
+            int capacity = target == null ? mSize : Math.max(mSize, target.capacity() * 2);
+            target = ByteBuffer.allocateDirect(capacity);
+        }
+        target.clear();
+        target.order(ByteOrder.nativeOrder());
+        target.put(mData, 0, mSize);
+        target.flip();
+        return target;
+    }
+}
@@ -0,0 +1,175 @@
+package matt.noobgraphics.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable int array, for building geometry without boxing every element in an
+ * ArrayList&lt;Integer&gt;.
+ */
+public class IntList {
+    private int[] mData;
+    private int mSize;
+
+    // the last toDirectBuffer(ByteBuffer) target and its int view
+    private ByteBuffer mExportTarget;
+    private IntBuffer mExportView;
+
+    public IntList() {
+        this(16);
+    }
+
+    public IntList(int initialCapacity) {
+        mData = new int[Math.max(initialCapacity, 1)];
+    }
+
+    public void add(int value) {
+        if (mSize == mData.length)
+            grow(mSize + 1);
+        mData[mSize++] = value;
+    }
+
+    public void add(int x, int y) {
+        if (mSize + 2 > mData.length)
+            grow(mSize + 2);
+        mData[mSize] = x;
+        mData[mSize + 1] = y;
+        mSize += 2;
+    }
+
+    public void add(int x, int y, int z) {
+        if (mSize + 3 > mData.length)
+            grow(mSize + 3);
+        mData[mSize] = x;
+        mData[mSize + 1] = y;
+        mData[mSize + 2] = z;
+        mSize += 3;
+    }
+
+    public void add(int x, int y, int z, int w) {
+        if (mSize + 4 > mData.length)
+            grow(mSize + 4);
+        mData[mSize] = x;
+        mData[mSize + 1] = y;
+        mData[mSize + 2] = z;
+        mData[mSize + 3] = w;
+        mSize += 4;
+    }
+
+    public void addAll(int[] values, int offset, int length) {
+        ensureCapacity(mSize + length);
+        System.arraycopy(values, offset, mData, mSize, length);
+        mSize += length;
+    }
+
+    public void addAll(IntList other) {
+        addAll(other.mData, 0, other.mSize);
+    }
+
+    /**
+     * Appends the buffer's remaining elements, advancing its position
+     */
+    public void addAll(IntBuffer buffer) {
+        int length = buffer.remaining();
+        ensureCapacity(mSize + length);
+        buffer.get(mData, mSize, length);
+        mSize += length;
+    }
+
+    public int get(int index) {
+        if (index >= mSize)
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+        return mData[index];
+    }
+
+    public void set(int index, int value) {
+        if (index >= mSize)
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+        mData[index] = value;
+    }
+
+    public int size() { return mSize; }
+
+    public boolean isEmpty() { return mSize == 0; }
+
+    /**
+     * Empties the list but keeps its capacity
+     */
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Drops every element from size on, keeping the capacity
+     */
+    public void truncate(int size) {
+        if (size < 0 || size > mSize)
+            throw new IndexOutOfBoundsException("Size " + size + ", was " + mSize);
+        mSize = size;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > mData.length)
+            grow(capacity);
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, mData.length + (mData.length >> 1) + 1);
+        mData = Arrays.copyOf(mData, capacity);
+    }
+
+    /**
+     * The backing array; elements past size() are garbage. Replaced whenever the list grows.
+     */
+    public int[] array() { return mData; }
+
+    public int[] toArray() {
+        return Arrays.copyOf(mData, mSize);
+    }
+
+    /**
+     * @return a heap buffer over the elements, positioned at 0, without copying; sees later
+     *         sets but not growth. Good for glBufferData, which takes heap buffers.
+     */
+    public IntBuffer asBuffer() {
+        return IntBuffer.wrap(mData, 0, mSize);
+    }
+
+    /**
+     * @return a new native order direct buffer holding the elements, positioned at 0
+     */
+    public IntBuffer toDirectBuffer() {
+        IntBuffer buffer = ByteBuffer.allocateDirect(mSize * 4)
+                .order(ByteOrder.nativeOrder()).asIntBuffer();
+        buffer.put(mData, 0, mSize);
+        buffer.position(0);
+        return buffer;
+    }
+
+    /**
+     * Copies the elements into a native order direct buffer, reusing target when it is big
+     * enough, so a list refilled every frame can be exported without a new buffer
+     * @param target the buffer from an earlier call, or null
+     * @return target, or a new buffer with room to spare; positioned at 0 with the limit at
+     *         size() * 4 bytes
+     */
+    public ByteBuffer toDirectBuffer(ByteBuffer target) {
+        int bytes = mSize * 4;
+        if (target == null || target.capacity() < bytes) {
+            int capacity = target == null ? bytes : Math.max(bytes, target.capacity() * 2);
+            target = ByteBuffer.allocateDirect(capacity);
+        }
+        // the typed view is kept with its target, so exporting every frame allocates nothing
+        if (target != mExportTarget) {
+            mExportView = target.order(ByteOrder.nativeOrder()).asIntBuffer();
+            mExportTarget = target;
+        }
+        mExportView.clear();
+        mExportView.put(mData, 0, mSize);
+        target.clear();
+        target.limit(bytes);
+        return target;
+    }
+}
@@ -0,0 +1,114 @@
+package matt.noobgraphics.util;
+
+import java.util.Arrays;
+
+/**
+ * Recency order of small int ids, e.g. cache slots: an intrusive doubly linked list over arrays
+ * indexed by id, so touching, adding and removing are O(1) and allocate nothing unless an id
+ * beyond the capacity shows up. Each entry also remembers when it was last touched.
+ */
+public class LruList {
+    private static final int NONE = -1;
+
+    private int[] mPrev;
+    private int[] mNext;
+    private long[] mLastUsed;
+    private boolean[] mContained;
+    private int mHead = NONE;       // most recently used
+    private int mTail = NONE;       // least recently used
+    private int mSize;
+
+    public LruList() {
+        this(16);
+    }
+
+    public LruList(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        mPrev = new int[capacity];
+        mNext = new int[capacity];
+        mLastUsed = new long[capacity];
+        mContained = new boolean[capacity];
+    }
+
+    /**
+     * Makes id the most recently used, adding it if needed
+     * @param time when it was used, e.g. the frame number
+     */
+    public void touch(int id, long time) {
+        if (id >= mContained.length)
+            grow(id + 1);
+        if (mContained[id]) {
+            if (id != mHead) {
+                unlink(id);
+                linkFirst(id);
+            }
+        } else {
+            mContained[id] = true;
+            mSize++;
+            linkFirst(id);
+        }
+        mLastUsed[id] = time;
+    }
+
+    public void remove(int id) {
+        if (id >= mContained.length || !mContained[id])
+            return;
+        unlink(id);
+        mContained[id] = false;
+        mSize--;
+    }
+
+    public boolean contains(int id) {
+        return id < mContained.length && mContained[id];
+    }
+
+    /** @return the least recently used id, or -1 if empty */
+    public int leastRecent() { return mTail; }
+
+    /** @return the most recently used id, or -1 if empty */
+    public int mostRecent() { return mHead; }
+
+    /** @return the id used just before this one, or -1 */
+    public int older(int id) { return mNext[id]; }
+
+    /** @return when id was last touched */
+    public long lastUsed(int id) { return mLastUsed[id]; }
+
+    public int size() { return mSize; }
+
+    public void clear() {
+        Arrays.fill(mContained, false);
+        mHead = mTail = NONE;
+        mSize = 0;
+    }
+
+    private void linkFirst(int id) {
+        mPrev[id] = NONE;
+        mNext[id] = mHead;
+        if (mHead != NONE)
+            mPrev[mHead] = id;
+        mHead = id;
+        if (mTail == NONE)
+            mTail = id;
+    }
+
+    private void unlink(int id) {
+        int prev = mPrev[id], next = mNext[id];
+        if (prev != NONE)
+            mNext[prev] = next;
+        else
+            mHead = next;
+        if (next != NONE)
+            mPrev[next] = prev;
+        else
+            mTail = prev;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, mContained.length * 2);
+        mPrev = Arrays.copyOf(mPrev, capacity);
+        mNext = Arrays.copyOf(mNext, capacity);
+        mLastUsed = Arrays.copyOf(mLastUsed, capacity);
+        mContained = Arrays.copyOf(mContained, capacity);
+    }
+}
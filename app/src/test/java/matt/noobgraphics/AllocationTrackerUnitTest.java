@@ -0,0 +1,91 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import matt.noobgraphics.debug.AllocationCounter;
+import matt.noobgraphics.debug.AllocationTracker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class AllocationTrackerUnitTest {
+    public static final double DELTA = 0.0000001;
+
+    /**
+     * Counter whose value the test sets by hand
+     */
+    private static class ManualCounter implements AllocationCounter {
+        long bytes;
+        @Override public boolean isSupported() { return true; }
+        @Override public long allocatedBytes() { return bytes; }
+    }
+
+    @Test
+    public void testScopeAttribution() {
+        ManualCounter counter = new ManualCounter();
+        AllocationTracker tracker = new AllocationTracker(counter);
+        int outer = tracker.registerScope("outer");
+        int inner = tracker.registerScope("inner");
+
+        tracker.beginFrame();
+        counter.bytes += 8;             // unscoped
+        tracker.begin(outer);
+        counter.bytes += 16;            // outer
+        tracker.begin(inner);
+        counter.bytes += 100;           // inner
+        tracker.end(inner);
+        counter.bytes += 4;             // outer again
+        tracker.end(outer);
+        tracker.endFrame();
+
+        assertEquals(8, tracker.getScopeBytes(AllocationTracker.UNSCOPED));
+        assertEquals(20, tracker.getScopeBytes(outer));
+        assertEquals(100, tracker.getScopeBytes(inner));
+        assertEquals(128, tracker.getLastFrameBytes());
+        assertArrayEquals(new int[]{inner, outer}, tracker.getTopScopes(2));
+    }
+
+    @Test
+    public void testFrameStatistics() {
+        ManualCounter counter = new ManualCounter();
+        AllocationTracker tracker = new AllocationTracker(counter);
+
+        long[] frames = {10, 30, 20};
+        for (long bytes : frames) {
+            tracker.beginFrame();
+            counter.bytes += bytes;
+            tracker.endFrame();
+        }
+
+        assertEquals(3, tracker.getFrameCount());
+        assertEquals(20, tracker.getLastFrameBytes());
+        assertEquals(30, tracker.getMaxFrameBytes());
+        assertEquals(20.0, tracker.getAverageFrameBytes(), DELTA);
+
+        tracker.reset();
+        assertEquals(0, tracker.getFrameCount());
+        assertEquals(0.0, tracker.getAverageFrameBytes(), DELTA);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnbalancedScopes() {
+        AllocationTracker tracker = new AllocationTracker(new ManualCounter());
+        int a = tracker.registerScope("a");
+        int b = tracker.registerScope("b");
+        tracker.beginFrame();
+        tracker.begin(a);
+        tracker.end(b);
+    }
+
+    @Test
+    public void testDisabled() {
+        AllocationTracker tracker = AllocationTracker.disabled();
+        assertFalse(tracker.isEnabled());
+        int a = tracker.registerScope("a");
+        tracker.beginFrame();
+        tracker.begin(a);
+        tracker.endFrame();
+        assertEquals(0, tracker.getFrameCount());
+    }
+}
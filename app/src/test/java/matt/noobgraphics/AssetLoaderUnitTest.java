@@ -0,0 +1,334 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import android.opengl.GLES20;
+
+import matt.noobgraphics.assets.AssetCallback;
+import matt.noobgraphics.assets.AssetJob;
+import matt.noobgraphics.assets.AssetLoader;
+import matt.noobgraphics.assets.AssetRequest;
+import matt.noobgraphics.assets.MeshBuffers;
+import matt.noobgraphics.assets.MeshUploadJob;
+import matt.noobgraphics.graphics.GLResources;
+import matt.noobgraphics.graphics.gl.GLBackend;
+import matt.noobgraphics.mesh.MeshFile;
+import matt.noobgraphics.mesh.ObjLoader;
+
+import static org.junit.Assert.*;
+
+public class AssetLoaderUnitTest {
+
+    /** Runs decodes only when the test says so */
+    private static class ManualExecutor implements Executor {
+        final ArrayDeque<Runnable> mQueue = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mQueue.add(command);
+        }
+
+        void runAll() {
+            while (!mQueue.isEmpty())
+                mQueue.poll().run();
+        }
+    }
+
+    private static class FakeJob implements AssetJob<String> {
+        final String mName;
+        final int mBytes;
+        final FakeClock mClock;
+        boolean mDecoded;
+        boolean mFailDecode;
+        Error mUploadError;
+
+        FakeJob(String name, int bytes, FakeClock clock) {
+            mName = name;
+            mBytes = bytes;
+            mClock = clock;
+        }
+
+        @Override
+        public void decode() throws IOException {
+            if (mFailDecode)
+                throw new IOException("corrupt " + mName);
+            mDecoded = true;
+        }
+
+        @Override
+        public int getUploadBytes() { return mBytes; }
+
+        @Override
+        public String upload(GLBackend gl) {
+            assertTrue(mDecoded);
+            if (mUploadError != null)
+                throw mUploadError;
+            mClock.advance(1000000);    // each upload takes 1 ms
+            return mName;
+        }
+    }
+
+    private static class Log implements AssetCallback<String> {
+        final List<String> mEvents = new ArrayList<>();
+
+        @Override
+        public void onLoaded(String asset) {
+            mEvents.add("loaded " + asset);
+        }
+
+        @Override
+        public void onFailed(Throwable error) {
+            mEvents.add("failed " + error.getMessage());
+        }
+    }
+
+    @Test
+    public void testDecodesOnWorkersAndCompletesOnDrain() throws Exception {
+        FakeClock clock = new FakeClock();
+        ManualExecutor workers = new ManualExecutor();
+        AssetLoader loader = new AssetLoader(new FakeGLBackend(), workers, clock);
+        Log log = new Log();
+
+        AssetRequest<String> request = loader.load(new FakeJob("a", 10, clock), log);
+        assertEquals(1, loader.getDecodeQueueDepth());
+        assertEquals(0, loader.drainUploads(Long.MAX_VALUE, Long.MAX_VALUE));
+
+        clock.advance(5000000);
+        workers.runAll();
+        assertEquals(0, loader.getDecodeQueueDepth());
+        assertEquals(1, loader.getUploadQueueDepth());
+        assertFalse(request.isDone());
+
+        clock.advance(2000000);
+        assertEquals(1, loader.drainUploads(Long.MAX_VALUE, Long.MAX_VALUE));
+        assertEquals(0, loader.getUploadQueueDepth());
+        assertTrue(request.isLoaded());
+        assertEquals("a", request.get());
+        assertEquals(Arrays.asList("loaded a"), log.mEvents);
+
+        assertEquals(8000000, loader.getLoadLatency().getLastNanos());
+        assertEquals(2000000, loader.getUploadWait().getLastNanos());
+        assertEquals(1000000, loader.getLastDrainNanos());
+        assertEquals(1, loader.getLoadedCount());
+        assertEquals(10, loader.getBytesUploaded());
+    }
+
+    @Test
+    public void testByteBudget() {
+        FakeClock clock = new FakeClock();
+        ManualExecutor workers = new ManualExecutor();
+        AssetLoader loader = new AssetLoader(new FakeGLBackend(), workers, clock);
+        for (int i = 0; i < 3; i++)
+            loader.load(new FakeJob("small" + i, 100, clock), null);
+        loader.load(new FakeJob("big", 1000, clock), null);
+        workers.runAll();
+
+        assertEquals(2, loader.drainUploads(Long.MAX_VALUE, 250));
+        assertEquals(1, loader.drainUploads(Long.MAX_VALUE, 250));
+        // over the budget on its own, still uploaded rather than stuck forever
+        assertEquals(1, loader.drainUploads(Long.MAX_VALUE, 250));
+        assertEquals(0, loader.drainUploads(Long.MAX_VALUE, 250));
+        assertEquals(1300, loader.getBytesUploaded());
+    }
+
+    @Test
+    public void testTimeBudget() {
+        FakeClock clock = new FakeClock();
+        ManualExecutor workers = new ManualExecutor();
+        AssetLoader loader = new AssetLoader(new FakeGLBackend(), workers, clock);
+        for (int i = 0; i < 5; i++)
+            loader.load(new FakeJob("" + i, 1, clock), null);
+        workers.runAll();
+
+        assertEquals(3, loader.drainUploads(2500000, Long.MAX_VALUE));
+        assertEquals(3000000, loader.getLastDrainNanos());
+        assertEquals(2, loader.getUploadQueueDepth());
+        assertEquals(2, loader.drainUploads(2500000, Long.MAX_VALUE));
+        assertEquals(5, loader.getLoadedCount());
+    }
+
+    @Test
+    public void testFailureAndCancel() throws Exception {
+        FakeClock clock = new FakeClock();
+        ManualExecutor workers = new ManualExecutor();
+        AssetLoader loader = new AssetLoader(new FakeGLBackend(), workers, clock);
+        Log log = new Log();
+
+        FakeJob broken = new FakeJob("b", 1, clock);
+        broken.mFailDecode = true;
+        AssetRequest<String> failed = loader.load(broken, log);
+        FakeJob skipped = new FakeJob("c", 1, clock);
+        AssetRequest<String> cancelled = loader.load(skipped, log);
+        assertTrue(cancelled.cancel(false));
+        workers.runAll();
+        assertFalse(skipped.mDecoded);
+
+        assertEquals(1, loader.drainUploads(Long.MAX_VALUE, Long.MAX_VALUE));
+        assertEquals(Arrays.asList("failed corrupt b"), log.mEvents);
+        assertEquals(1, loader.getFailedCount());
+        assertEquals(0, loader.getLoadedCount());
+        assertEquals(0, loader.getUploadQueueDepth());
+
+        try {
+            failed.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertTrue(cancelled.isDone());
+        try {
+            cancelled.get();
+            fail();
+        } catch (CancellationException expected) {
+        }
+        assertFalse(failed.cancel(false));
+    }
+
+    @Test
+    public void testUploadErrorFailsRequest() throws Exception {
+        FakeClock clock = new FakeClock();
+        ManualExecutor workers = new ManualExecutor();
+        AssetLoader loader = new AssetLoader(new FakeGLBackend(), workers, clock);
+        Log log = new Log();
+        FakeJob job = new FakeJob("d", 1, clock);
+        job.mUploadError = new OutOfMemoryError("no room for d");
+        AssetRequest<String> request = loader.load(job, log);
+        workers.runAll();
+
+        assertEquals(1, loader.drainUploads(Long.MAX_VALUE, Long.MAX_VALUE));
+        assertTrue(request.isDone());
+        assertEquals(Arrays.asList("failed no room for d"), log.mEvents);
+        assertEquals(1, loader.getFailedCount());
+        try {
+            request.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof OutOfMemoryError);
+        }
+    }
+
+    @Test
+    public void testRejectedDecodeLeavesNothingQueued() {
+        ExecutorService workers = Executors.newSingleThreadExecutor();
+        workers.shutdown();
+        AssetLoader loader = new AssetLoader(new FakeGLBackend(), workers, new FakeClock());
+        try {
+            loader.load(new FakeJob("e", 1, new FakeClock()), null);
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+        assertEquals(0, loader.getDecodeQueueDepth());
+    }
+
+    /** @return a mesh file of a square, 48 bytes of vertices and 12 of indices */
+    private static File squareFile() throws IOException {
+        File file = File.createTempFile("square", ".ngm");
+        file.deleteOnExit();
+        MeshFile.write(ObjLoader.load(new ByteArrayInputStream(
+                "v -0.5 0.5 0\nv -0.5 -0.5 0\nv 0.5 -0.5 0\nv 0.5 0.5 0\nf 1 2 3 4\n".getBytes())), file);
+        return file;
+    }
+
+    @Test
+    public void testMeshesCountAgainstBudget() throws Exception {
+        File file = squareFile();
+        FakeClock clock = new FakeClock();
+        ManualExecutor workers = new ManualExecutor();
+        FakeGLBackend gl = new FakeGLBackend();
+        GLResources resources = new GLResources(gl);
+        resources.setBudget(100);
+        AssetLoader loader = new AssetLoader(gl, workers, clock);
+        AssetRequest<MeshBuffers> first = loader.load(new MeshUploadJob(file, resources), null);
+        AssetRequest<MeshBuffers> second = loader.load(new MeshUploadJob(file, resources), null);
+        workers.runAll();
+
+        resources.beginFrame();
+        loader.drainUploads(Long.MAX_VALUE, 60);
+        assertEquals(60, resources.getResidentBytes());
+        // the second mesh doesn't fit next to the first, which wasn't drawn this frame; its
+        // vertex buffer goes, which leaves room for the rest
+        resources.beginFrame();
+        loader.drainUploads(Long.MAX_VALUE, 60);
+        assertTrue(second.isLoaded());
+        assertEquals(72, resources.getResidentBytes());
+        assertEquals(1, resources.getEvictions());
+
+        // drawn in the same frame as the second: over budget rather than thrashing
+        first.get().getVertexBuffer();
+        first.get().getIndexBuffer();
+        assertEquals(120, resources.getResidentBytes());
+    }
+
+    @Test
+    public void testMeshUploadOnWorkerThread() throws Exception {
+        File file = squareFile();
+
+        RecordingGLBackend gl = new RecordingGLBackend();
+        GLResources resources = new GLResources(gl);
+        ExecutorService workers = Executors.newSingleThreadExecutor();
+        try {
+            AssetLoader loader = new AssetLoader(gl, workers, new FakeClock());
+            AssetRequest<MeshBuffers> request = loader.load(new MeshUploadJob(file, resources), null);
+            long deadline = System.currentTimeMillis() + 10000;
+            while (!request.isDone() && System.currentTimeMillis() < deadline) {
+                loader.drainUploads(Long.MAX_VALUE, Long.MAX_VALUE);
+                Thread.sleep(1);
+            }
+
+            MeshBuffers mesh = request.get();
+            assertEquals(6, mesh.getIndexCount());
+            assertEquals(GLES20.GL_UNSIGNED_SHORT, mesh.getIndexType());
+            assertEquals(4 * 12 + 6 * 2, mesh.getBytes());
+            int vertices = mesh.getVertexBuffer(), indices = mesh.getIndexBuffer();
+            assertEquals(Arrays.asList("bind " + vertices, "data " + vertices + " 48", "bind 0",
+                    "bind " + indices, "data " + indices + " 12", "bind 0"), gl.take());
+            assertEquals(2, resources.getResidentCount(GLResources.BUFFER));
+            assertEquals(60, resources.getResidentBytes(GLResources.BUFFER));
+
+            // a lost context takes the buffers; they come back from the file
+            resources.onContextCreated();
+            int recreated = mesh.getVertexBuffer();
+            assertEquals(Arrays.asList("bind " + recreated, "data " + recreated + " 48", "bind 0"), gl.take());
+            resources.trim();
+            assertEquals(Arrays.asList("delete " + recreated), gl.take());
+            assertEquals(0, resources.getResidentBytes());
+
+            int vertexBuffer = mesh.getVertexBuffer(), indexBuffer = mesh.getIndexBuffer();
+            gl.take();
+            mesh.release();
+            assertEquals(Arrays.asList("delete " + vertexBuffer, "delete " + indexBuffer), gl.take());
+            assertEquals(0, resources.getRegisteredCount());
+
+            // nothing decoded is kept: without the file the buffers can't come back
+            request = loader.load(new MeshUploadJob(file, resources), null);
+            while (!request.isDone() && System.currentTimeMillis() < deadline) {
+                loader.drainUploads(Long.MAX_VALUE, Long.MAX_VALUE);
+                Thread.sleep(1);
+            }
+            MeshBuffers orphan = request.get();
+            resources.trim();
+            assertTrue(file.delete());
+            try {
+                orphan.getVertexBuffer();
+                fail();
+            } catch (IllegalStateException expected) {
+            }
+        } finally {
+            workers.shutdown();
+        }
+    }
+}
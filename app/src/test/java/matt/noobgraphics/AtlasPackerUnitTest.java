@@ -0,0 +1,138 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import matt.noobgraphics.texture.AtlasPacker;
+
+import static org.junit.Assert.*;
+
+public class AtlasPackerUnitTest {
+
+    private static void assertDisjoint(AtlasPacker atlas, int padding) {
+        for (int a = 0; a < atlas.getCount(); a++) {
+            int ax = atlas.getX(a), ay = atlas.getY(a);
+            int aw = atlas.getPackedWidth(a), ah = atlas.getPackedHeight(a);
+            assertTrue(ax >= 0 && ay >= 0);
+            assertTrue(ax + aw <= atlas.getWidth() && ay + ah <= atlas.getHeight());
+            for (int b = a + 1; b < atlas.getCount(); b++) {
+                int bx = atlas.getX(b), by = atlas.getY(b);
+                boolean apart = ax + aw + padding <= bx || bx + atlas.getPackedWidth(b) + padding <= ax
+                        || ay + ah + padding <= by || by + atlas.getPackedHeight(b) + padding <= ay;
+                assertTrue("rectangles " + a + " and " + b + " overlap", apart);
+            }
+        }
+    }
+
+    @Test
+    public void testOnlineInsertsDontOverlap() {
+        Random random = new Random(1);
+        AtlasPacker atlas = new AtlasPacker(512, 512, 2, true);
+        int packed = 0;
+        for (int i = 0; i < 600; i++)
+            if (atlas.insert(4 + random.nextInt(40), 4 + random.nextInt(20)) >= 0)
+                packed++;
+        assertEquals(packed, atlas.getCount());
+        assertTrue(packed > 300);
+        assertDisjoint(atlas, 2);
+    }
+
+    @Test
+    public void testFillsExactly() {
+        AtlasPacker atlas = new AtlasPacker(4, 4, 0, false);
+        for (int i = 0; i < 4; i++)
+            assertEquals(i, atlas.insert(2, 2));
+        assertEquals(-1, atlas.insert(1, 1));
+        assertEquals(1.0, atlas.getOccupancy(), 0);
+
+        atlas.clear();
+        assertEquals(0, atlas.getCount());
+        assertEquals(0, atlas.insert(4, 4));
+    }
+
+    @Test
+    public void testPaddingNotNeededAtTheEdge() {
+        AtlasPacker atlas = new AtlasPacker(10, 10, 2, false);
+        assertEquals(0, atlas.insert(4, 10));
+        assertEquals(1, atlas.insert(4, 10));
+        assertEquals(6, atlas.getX(1));
+        assertEquals(-1, atlas.insert(1, 1));
+    }
+
+    @Test
+    public void testRotatesWhenThatFits() {
+        AtlasPacker atlas = new AtlasPacker(10, 4, 0, true);
+        int rect = atlas.insert(4, 10);
+        assertTrue(atlas.isRotated(rect));
+        assertEquals(10, atlas.getPackedWidth(rect));
+        assertEquals(4, atlas.getPackedHeight(rect));
+        assertEquals(-1, new AtlasPacker(10, 4, 0, false).insert(4, 10));
+    }
+
+    @Test
+    public void testBulkPacksTighterThanArrivalOrder() {
+        Random random = new Random(2);
+        int count = 2000;
+        int[] widths = new int[count], heights = new int[count], rects = new int[count];
+        for (int i = 0; i < count; i++) {
+            widths[i] = 4 + random.nextInt(60);
+            heights[i] = 4 + random.nextInt(60);
+        }
+        AtlasPacker online = new AtlasPacker(2048, 4096, 1, true);
+        for (int i = 0; i < count; i++)
+            assertTrue(online.insert(widths[i], heights[i]) >= 0);
+        AtlasPacker bulk = new AtlasPacker(2048, 4096, 1, true);
+        assertEquals(count, bulk.insertAll(widths, heights, count, rects));
+        assertDisjoint(bulk, 1);
+        assertTrue(bulk.getOccupancy() > online.getOccupancy());
+        assertTrue("occupancy " + bulk.getOccupancy(), bulk.getOccupancy() > 0.8);
+        for (int i = 0; i < count; i++) {
+            boolean rotated = bulk.isRotated(rects[i]);
+            assertEquals(rotated ? heights[i] : widths[i], bulk.getPackedWidth(rects[i]));
+        }
+    }
+
+    @Test
+    public void testTexCoordsFindBlittedPixels() {
+        AtlasPacker atlas = new AtlasPacker(16, 8, 1, true);
+        int[] pixels = new int[16 * 8];
+        int[] image = new int[5 * 3];
+        for (int i = 0; i < image.length; i++)
+            image[i] = i + 1;
+        atlas.insert(7, 2);
+        int plain = atlas.insert(5, 3);
+        assertFalse(atlas.isRotated(plain));
+        atlas.blit(plain, image, pixels);
+        assertSamples(atlas, plain, pixels, image, 5, 3);
+
+        // and a rotated one
+        AtlasPacker rotating = new AtlasPacker(3, 5, 0, true);
+        int rect = rotating.insert(5, 3);
+        assertTrue(rotating.isRotated(rect));
+        int[] rotated = new int[3 * 5];
+        rotating.blit(rect, image, rotated);
+        assertSamples(rotating, rect, rotated, image, 5, 3);
+        assertEquals(image[0], rotated[2]);     // the top left corner ends up top right
+    }
+
+    /** Samples the atlas at each image pixel's centre, placed between the corner texcoords */
+    private static void assertSamples(AtlasPacker atlas, int rect, int[] pixels, int[] image, int width, int height) {
+        float[] uv = atlas.writeTexCoords(rect, new float[8], 0);
+        float[] bounds = atlas.getUVRect(rect, new float[4], 0);
+        for (int i = 0; i < 8; i += 2) {
+            assertTrue(uv[i] == bounds[0] || uv[i] == bounds[2]);
+            assertTrue(uv[i + 1] == bounds[1] || uv[i + 1] == bounds[3]);
+        }
+        for (int iy = 0; iy < height; iy++) {
+            for (int ix = 0; ix < width; ix++) {
+                float across = (ix + 0.5f) / width, down = (iy + 0.5f) / height;
+                // top left + across * (top right - top left) + down * (bottom left - top left)
+                float u = uv[0] + across * (uv[6] - uv[0]) + down * (uv[2] - uv[0]);
+                float v = uv[1] + across * (uv[7] - uv[1]) + down * (uv[3] - uv[1]);
+                int x = (int) (u * atlas.getWidth()), y = (int) (v * atlas.getHeight());
+                assertEquals("pixel " + ix + "," + iy, image[iy * width + ix], pixels[y * atlas.getWidth() + x]);
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package matt.noobgraphics;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import android.opengl.GLES20;
+
+import matt.noobgraphics.graphics.CommandList;
+import matt.noobgraphics.graphics.CommandReplayer;
+import matt.noobgraphics.graphics.ParallelCommandRecorder;
+import matt.noobgraphics.graphics.VertexBindings;
+import matt.noobgraphics.mesh.MeshFile;
+import matt.noobgraphics.mesh.VertexLayout;
+
+import static org.junit.Assert.*;
+
+public class CommandListUnitTest {
+    private static final ForkJoinPool sPool = new ForkJoinPool(4);
+    private static final VertexLayout LAYOUT = new VertexLayout()
+            .add(MeshFile.POSITION, 3, GLES20.GL_FLOAT, false);
+
+    @AfterClass
+    public static void shutdown() {
+        sPool.shutdown();
+    }
+
+    /** Draws item i as vertices i .. i + 2 with color i, keyed by one of three programs */
+    private static class Scene implements ParallelCommandRecorder.Recorder {
+        final int[] mKeys;
+
+        Scene(int items, long seed) {
+            Random random = new Random(seed);
+            mKeys = new int[items];
+            for (int i = 0; i < items; i++)
+                mKeys[i] = random.nextInt(3);
+        }
+
+        @Override
+        public void record(CommandList list, int from, int to) {
+            for (int i = from; i < to; i++) {
+                int program = 100 + mKeys[i];
+                int u = list.draw(mKeys[i], program, 10 + mKeys[i], 0, 0, 0, i, 3);
+                float[] uniforms = list.getUniforms();
+                uniforms[u] = i;
+                uniforms[u + 16] = i;
+            }
+        }
+    }
+
+    @Test
+    public void testSortIsStableAndUnsigned() {
+        RecordingGLBackend gl = new RecordingGLBackend();
+        CommandReplayer replayer = new CommandReplayer(gl, new VertexBindings(gl));
+        int layout = replayer.registerLayout(LAYOUT);
+        CommandList list = new CommandList(2);
+        int[] keys = { 3, 1, 0x80000000, 3, 2, 1 };
+        for (int i = 0; i < keys.length; i++)
+            list.draw(keys[i], 7, 8, layout, 0, 0, i, 3);
+        list.sort();
+
+        int[] sorted = { 1, 1, 2, 3, 3, 0x80000000 };
+        for (int i = 0; i < keys.length; i++)
+            assertEquals(sorted[i], list.getSortKey(i));
+
+        replayer.replay(list);
+        int[] firsts = { 1, 5, 4, 0, 3, 2 };
+        int draw = 0;
+        for (String call : gl.take())
+            if (call.startsWith("arrays"))
+                assertEquals("arrays " + firsts[draw++] + " 3", call);
+        assertEquals(6, draw);
+    }
+
+    @Test
+    public void testReplaySkipsUnchangedState() {
+        RecordingGLBackend gl = new RecordingGLBackend();
+        CommandReplayer replayer = new CommandReplayer(gl, new VertexBindings(gl));
+        int layout = replayer.registerLayout(LAYOUT);
+        assertEquals(layout, replayer.registerLayout(LAYOUT));
+
+        CommandList list = new CommandList();
+        for (int i = 0; i < 3; i++) {
+            int u = list.draw(0, 5, 6, layout, 9, GLES20.GL_UNSIGNED_SHORT, i * 12, 6);
+            list.getUniforms()[u + 16] = i;
+        }
+        list.draw(1, 4, 6, layout, 9, GLES20.GL_UNSIGNED_SHORT, 36, 6);
+        list.sort();
+        replayer.replay(list);
+
+        assertEquals(Arrays.asList("use 5", "bind 6", "bind 9",
+                "color 0.0", "elements 6 0", "color 1.0", "elements 6 12", "color 2.0", "elements 6 24",
+                "use 4", "color 0.0", "elements 6 36",
+                "bind 0", "bind 0"), gl.take());
+        assertEquals(4, replayer.getDraws());
+        assertEquals(2, replayer.getProgramChanges());
+        assertEquals(2, replayer.getBufferChanges());
+        assertEquals(2, gl.attribLookups);      // once per program
+    }
+
+    @Test
+    public void testGrowKeepsCommands() {
+        CommandList list = new CommandList(1);
+        for (int i = 0; i < 100; i++) {
+            int u = list.draw(100 - i, 1, 1, 0, 0, 0, i, 3);
+            assertEquals(i * CommandList.UNIFORMS_PER_DRAW, u);
+            list.getUniforms()[u + 19] = i;
+        }
+        assertEquals(100, list.size());
+        list.sort();
+        for (int i = 0; i < 100; i++)
+            assertEquals(i + 1, list.getSortKey(i));
+        assertEquals(99, list.getUniforms()[99 * CommandList.UNIFORMS_PER_DRAW + 19], 0);
+
+        list.clear();
+        assertEquals(0, list.size());
+    }
+
+    @Test
+    public void testParallelReplaysLikeSerial() {
+        Scene scene = new Scene(5000, 1);
+
+        RecordingGLBackend serialGL = new RecordingGLBackend();
+        CommandReplayer serial = new CommandReplayer(serialGL, new VertexBindings(serialGL));
+        serial.registerLayout(LAYOUT);
+        CommandList list = new CommandList();
+        scene.record(list, 0, 5000);
+        list.sort();
+        serial.replay(list);
+        List<String> expected = serialGL.take();
+
+        RecordingGLBackend gl = new RecordingGLBackend();
+        CommandReplayer replayer = new CommandReplayer(gl, new VertexBindings(gl));
+        replayer.registerLayout(LAYOUT);
+        ParallelCommandRecorder recorder = new ParallelCommandRecorder(sPool, 4, 16);
+        for (int frame = 0; frame < 3; frame++) {
+            int used = recorder.record(scene, 5000);
+            assertEquals(4, used);
+            replayer.replay(recorder.getLists(), used);
+            assertEquals(expected, gl.take());
+        }
+        assertEquals(3, replayer.getProgramChanges() / 3);
+
+        // too little work to split runs as one list
+        assertEquals(1, recorder.record(scene, 20));
+        assertEquals(20, recorder.getLists()[0].size());
+        assertEquals(0, recorder.getLists()[1].size());
+    }
+
+    @Test
+    public void testSteadyStateDoesNotAllocate() {
+        JvmAllocationCounter counter = new JvmAllocationCounter();
+        Assume.assumeTrue(counter.isSupported());
+
+        FakeGLBackend gl = new FakeGLBackend();
+        CommandReplayer replayer = new CommandReplayer(gl, new VertexBindings(gl));
+        replayer.registerLayout(LAYOUT);
+        // one range, so everything runs on this thread where the counter can see it
+        ParallelCommandRecorder recorder = new ParallelCommandRecorder(sPool, 4, 100000);
+        Scene scene = new Scene(2000, 2);
+        for (int frame = 0; frame < 3; frame++)
+            replayer.replay(recorder.getLists(), recorder.record(scene, 2000));
+
+        long before = counter.allocatedBytes();
+        for (int frame = 0; frame < 100; frame++)
+            replayer.replay(recorder.getLists(), recorder.record(scene, 2000));
+        assertEquals(0, counter.allocatedBytes() - before);
+        assertEquals(103 * 2000, gl.drawCalls);
+    }
+}
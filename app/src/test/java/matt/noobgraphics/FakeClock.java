@@ -0,0 +1,27 @@
+package matt.noobgraphics;
+
+import matt.noobgraphics.timing.Clock;
+
+/**
+ * Clock that only moves when the test says so
+ */
+public class FakeClock implements Clock {
+    public long now;
+
+    public FakeClock() {
+        this(1000000000L);
+    }
+
+    public FakeClock(long start) {
+        now = start;
+    }
+
+    public void advance(long nanos) {
+        now += nanos;
+    }
+
+    @Override
+    public long nanoTime() {
+        return now;
+    }
+}
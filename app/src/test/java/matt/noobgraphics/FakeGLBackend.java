@@ -0,0 +1,97 @@
+package matt.noobgraphics;
+
+import java.nio.Buffer;
+
+import matt.noobgraphics.graphics.gl.GLBackend;
+
+/**
+ * GLBackend that draws nothing. It hands out increasing ids and counts calls, and never
+ * allocates, so it doesn't disturb allocation measurements of the code under test.
+ */
+public class FakeGLBackend implements GLBackend {
+    public int nextId = 1;
+    public int clears;
+    public int drawCalls;
+    public int programSwitches;
+    public int uniformUploads;
+    public int viewportWidth;
+    public int viewportHeight;
+    public int attribLookups;
+    public int attribPointerCalls;
+    public int lastAttribType;
+    public boolean lastAttribNormalized;
+    public final float[] lastMatrix = new float[16];
+
+    @Override public void glClearColor(float red, float green, float blue, float alpha) { }
+    @Override public void glClear(int mask) { clears++; }
+    @Override public void glViewport(int x, int y, int width, int height) {
+        viewportWidth = width;
+        viewportHeight = height;
+    }
+    @Override public int glGetError() { return 0; }
+
+    @Override public int glCreateShader(int type) { return nextId++; }
+    @Override public void glShaderSource(int shader, String source) { }
+    @Override public void glCompileShader(int shader) { }
+    @Override public void glDeleteShader(int shader) { }
+
+    @Override public int glCreateProgram() { return nextId++; }
+    @Override public void glAttachShader(int program, int shader) { }
+    @Override public void glLinkProgram(int program) { }
+    @Override public void glUseProgram(int program) { programSwitches++; }
+    @Override public void glDeleteProgram(int program) { }
+
+    // shaders here only ever declare vPosition; real GL says -1 for anything a program lacks
+    @Override public int glGetAttribLocation(int program, String name) {
+        attribLookups++;
+        return name.equals("vPosition") ? 0 : -1;
+    }
+    @Override public int glGetUniformLocation(int program, String name) { return 1; }
+    @Override public void glEnableVertexAttribArray(int index) { }
+    @Override public void glDisableVertexAttribArray(int index) { }
+    @Override public void glVertexAttribPointer(int index, int size, int type, boolean normalized,
+                                                int stride, Buffer ptr) {
+        attribPointerCalls++;
+        lastAttribType = type;
+        lastAttribNormalized = normalized;
+    }
+    @Override public void glVertexAttribPointer(int index, int size, int type, boolean normalized,
+                                                int stride, int offset) {
+        attribPointerCalls++;
+        lastAttribType = type;
+        lastAttribNormalized = normalized;
+    }
+
+    @Override public void glGenBuffers(int n, int[] buffers, int offset) {
+        for (int i = 0; i < n; i++)
+            buffers[offset + i] = nextId++;
+    }
+    @Override public void glDeleteBuffers(int n, int[] buffers, int offset) { }
+    @Override public void glBindBuffer(int target, int buffer) { }
+    @Override public void glBufferData(int target, int size, Buffer data, int usage) { }
+    @Override public void glBufferSubData(int target, int offset, int size, Buffer data) { }
+
+    @Override public void glGenTextures(int n, int[] textures, int offset) {
+        for (int i = 0; i < n; i++)
+            textures[offset + i] = nextId++;
+    }
+    @Override public void glDeleteTextures(int n, int[] textures, int offset) { }
+    @Override public void glBindTexture(int target, int texture) { }
+    @Override public void glTexParameteri(int target, int pname, int param) { }
+    @Override public void glPixelStorei(int pname, int param) { }
+    @Override public void glTexImage2D(int target, int level, int internalformat, int width, int height,
+                                       int border, int format, int type, Buffer pixels) { }
+
+    @Override public void glUniform4fv(int location, int count, float[] v, int offset) {
+        uniformUploads++;
+    }
+    @Override public void glUniformMatrix4fv(int location, int count, boolean transpose,
+                                             float[] value, int offset) {
+        uniformUploads++;
+        System.arraycopy(value, offset, lastMatrix, 0, 16);
+    }
+
+    @Override public void glDrawArrays(int mode, int first, int count) { drawCalls++; }
+    @Override public void glDrawElements(int mode, int count, int type, Buffer indices) { drawCalls++; }
+    @Override public void glDrawElements(int mode, int count, int type, int offset) { drawCalls++; }
+}
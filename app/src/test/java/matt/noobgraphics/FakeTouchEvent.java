@@ -0,0 +1,36 @@
+package matt.noobgraphics;
+
+import matt.noobgraphics.input.TouchEvent;
+
+/**
+ * Synthetic TouchEvent. The last sample added is the current position, the ones before it are
+ * history.
+ */
+public class FakeTouchEvent implements TouchEvent {
+    private final int mAction;
+    private final float[] mX = new float[64];
+    private final float[] mY = new float[64];
+    private final long[] mTime = new long[64];
+    private int mCount;
+
+    public FakeTouchEvent(int action) {
+        mAction = action;
+    }
+
+    public FakeTouchEvent sample(float x, float y, long timeNanos) {
+        mX[mCount] = x;
+        mY[mCount] = y;
+        mTime[mCount] = timeNanos;
+        mCount++;
+        return this;
+    }
+
+    @Override public int getAction() { return mAction; }
+    @Override public int getHistorySize() { return mCount - 1; }
+    @Override public float getHistoricalX(int pos) { return mX[pos]; }
+    @Override public float getHistoricalY(int pos) { return mY[pos]; }
+    @Override public long getHistoricalEventTimeNanos(int pos) { return mTime[pos]; }
+    @Override public float getX() { return mX[mCount - 1]; }
+    @Override public float getY() { return mY[mCount - 1]; }
+    @Override public long getEventTimeNanos() { return mTime[mCount - 1]; }
+}
@@ -0,0 +1,136 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import matt.noobgraphics.math.Quaternion;
+import matt.noobgraphics.simulation.FixedTimestepLoop;
+import matt.noobgraphics.simulation.Simulation;
+import matt.noobgraphics.simulation.SimulationState;
+import matt.noobgraphics.simulation.SpinSimulation;
+import matt.noobgraphics.timing.Clock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FixedTimestepLoopUnitTest {
+    public static final double DELTA = 0.00001;
+    private static final long TICK = 10000000L; // 100 ticks per second
+
+    /**
+     * Moves every entity along x at 1 unit per second
+     */
+    private static class MoveSimulation implements Simulation {
+        @Override
+        public void step(SimulationState state, float dtSeconds) {
+            for (int i = 0; i < state.capacity; i++)
+                state.positions[i * 3] += dtSeconds;
+        }
+    }
+
+    private final FakeClock mClock = new FakeClock(0);
+
+    private FixedTimestepLoop newLoop(Simulation sim, int entities, int catchUp) {
+        return new FixedTimestepLoop(sim, new SimulationState(entities), mClock, 100.0f, catchUp);
+    }
+
+    @Test
+    public void testTicksAtFixedRate() {
+        FixedTimestepLoop loop = newLoop(new MoveSimulation(), 1, 5);
+
+        mClock.advance(TICK / 2);
+        assertEquals(0, loop.advance());
+        mClock.advance(TICK / 2);
+        assertEquals(1, loop.advance());
+        mClock.advance(3 * TICK + TICK / 3);
+        assertEquals(3, loop.advance());
+        assertEquals(4, loop.getTickCount());
+        assertEquals(0, loop.getDroppedTickCount());
+    }
+
+    @Test
+    public void testCatchUpLimit() {
+        FixedTimestepLoop loop = newLoop(new MoveSimulation(), 1, 5);
+
+        // a one second stall: run at most 5 ticks, drop the rest
+        mClock.advance(100 * TICK);
+        assertEquals(5, loop.advance());
+        assertEquals(95, loop.getDroppedTickCount());
+
+        // and then carry on normally
+        mClock.advance(TICK);
+        assertEquals(1, loop.advance());
+    }
+
+    @Test
+    public void testInterpolation() {
+        FixedTimestepLoop loop = newLoop(new MoveSimulation(), 2, 5);
+        SimulationState out = new SimulationState(2);
+
+        mClock.advance(2 * TICK);
+        loop.advance();
+
+        // previous tick at x = 0.01, current at x = 0.02
+        assertEquals(0.0f, loop.interpolate(mClock.now, out), DELTA);
+        assertEquals(0.01f, out.positions[0], DELTA);
+
+        assertEquals(0.25f, loop.interpolate(mClock.now + TICK / 4, out), DELTA);
+        assertEquals(0.0125f, out.positions[0], DELTA);
+        assertEquals(0.0125f, out.positions[3], DELTA);
+
+        // never extrapolates past the newest tick
+        assertEquals(1.0f, loop.interpolate(mClock.now + 5 * TICK, out), DELTA);
+        assertEquals(0.02f, out.positions[0], DELTA);
+    }
+
+    @Test
+    public void testRotationIsSlerped() {
+        float radPerSecond = (float) Math.PI;
+        FixedTimestepLoop loop = newLoop(new SpinSimulation(radPerSecond), 1, 20);
+        SimulationState out = new SimulationState(1);
+
+        mClock.advance(10 * TICK);
+        loop.advance();
+        loop.interpolate(mClock.now + TICK / 2, out);
+
+        // halfway between tick 9 and 10
+        Quaternion expected = new Quaternion().setAxisAngle(0, 0, 1, radPerSecond * 0.095f);
+        for (int i = 0; i < Quaternion.SIZE; i++)
+            assertEquals(expected.q[i], out.rotations[i], DELTA);
+    }
+
+    @Test
+    public void testDeterministic() {
+        FixedTimestepLoop a = newLoop(new SpinSimulation(1.0f), 8, 5);
+        FakeClock bClock = new FakeClock(0);
+        FixedTimestepLoop b = new FixedTimestepLoop(new SpinSimulation(1.0f), new SimulationState(8),
+                bClock, 100.0f, 5);
+
+        // same number of ticks, reached through different frame timings
+        for (int i = 0; i < 50; i++) {
+            mClock.advance(2 * TICK);
+            a.advance();
+        }
+        for (int i = 0; i < 20; i++) {
+            bClock.advance(5 * TICK);
+            b.advance();
+        }
+
+        SimulationState sa = new SimulationState(8), sb = new SimulationState(8);
+        a.interpolate(mClock.now, sa);
+        b.interpolate(bClock.now, sb);
+        assertEquals(sa, sb);
+    }
+
+    @Test
+    public void testThreadRuns() throws InterruptedException {
+        FixedTimestepLoop loop = new FixedTimestepLoop(new MoveSimulation(), new SimulationState(1),
+                Clock.SYSTEM, 1000.0f, 5);
+        loop.start();
+        assertTrue(loop.isRunning());
+        Thread.sleep(50);
+        loop.stop();
+        assertTrue(loop.getTickCount() > 0);
+        assertFalse(loop.isRunning());
+    }
+}
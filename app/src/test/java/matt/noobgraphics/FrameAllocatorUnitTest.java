@@ -0,0 +1,121 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import matt.noobgraphics.graphics.FrameAllocator;
+import matt.noobgraphics.graphics.FrameFence;
+
+import static org.junit.Assert.*;
+
+public class FrameAllocatorUnitTest {
+
+    /** A GPU that finishes frames only when told to */
+    private static class FakeFence implements FrameFence {
+        long completed = -1;
+        final List<Long> inserted = new ArrayList<>();
+        final List<Long> waited = new ArrayList<>();
+
+        @Override public void insert(long frame) { inserted.add(frame); }
+        @Override public boolean isComplete(long frame) { return frame <= completed; }
+        @Override public void waitFor(long frame) {
+            waited.add(frame);
+            completed = Math.max(completed, frame);
+        }
+    }
+
+    @Test
+    public void testSlicesAreAlignedAndDisjoint() {
+        FrameAllocator allocator = new FrameAllocator(2, 1024);
+        allocator.beginFrame();
+        ByteBuffer a = allocator.allocate(10);
+        ByteBuffer b = allocator.allocate(4, 4);
+        ByteBuffer c = allocator.allocate(8);
+        assertTrue(a.isDirect());
+        assertEquals(ByteOrder.nativeOrder(), a.order());
+        assertEquals(10, a.remaining());
+        assertEquals(0, b.position());
+
+        a.put(0, (byte) 1);
+        b.putInt(0, 0x22222222);
+        c.putLong(0, -1);
+        assertEquals(1, a.get(0));
+        assertEquals(0x22222222, b.getInt(0));
+        // 10 bytes, aligned to 12 for b, then to 16 for c
+        assertEquals(24, allocator.getFrameBytes());
+        assertEquals(32, allocator.reserve(0, 16));
+        allocator.endFrame();
+        assertEquals(32, allocator.getHighWaterMark());
+        assertEquals(0, allocator.getOverflowCount());
+    }
+
+    @Test
+    public void testRegionsRotateWithFrames() {
+        FrameAllocator allocator = new FrameAllocator(3, 256);
+        ByteBuffer[] chunks = new ByteBuffer[4];
+        for (int frame = 0; frame < 4; frame++) {
+            assertEquals(frame, allocator.beginFrame());
+            assertEquals(0, allocator.reserve(16, 16));
+            chunks[frame] = allocator.getChunk();
+            allocator.endFrame();
+        }
+        assertNotSame(chunks[0], chunks[1]);
+        assertNotSame(chunks[1], chunks[2]);
+        assertSame(chunks[0], chunks[3]);
+    }
+
+    @Test
+    public void testWaitsForTheFrameStillInFlight() {
+        FakeFence fence = new FakeFence();
+        FrameAllocator allocator = new FrameAllocator(2, 256, fence);
+        for (int frame = 0; frame < 2; frame++) {
+            allocator.beginFrame();
+            allocator.endFrame();
+        }
+        assertEquals(2, fence.inserted.size());
+        assertEquals(0, allocator.getWaitCount());
+
+        // frame 2 reuses frame 0's memory, which the GPU hasn't finished
+        allocator.beginFrame();
+        assertEquals(1, allocator.getWaitCount());
+        assertEquals(Long.valueOf(0), fence.waited.get(0));
+        allocator.endFrame();
+
+        // frame 3 reuses frame 1's, which has finished by now
+        fence.completed = 1;
+        allocator.beginFrame();
+        assertEquals(1, allocator.getWaitCount());
+    }
+
+    @Test
+    public void testOverflowGrowsTheRegion() {
+        FrameAllocator allocator = new FrameAllocator(1, 64);
+        allocator.beginFrame();
+        allocator.allocate(48);
+        ByteBuffer big = allocator.allocate(100);
+        assertEquals(100, big.remaining());
+        allocator.allocate(8);
+        assertEquals(1, allocator.getOverflowCount());
+        allocator.endFrame();
+        assertTrue(allocator.getCapacity() > 64);
+
+        // next time round the frame's memory is one buffer that fits it all
+        allocator.beginFrame();
+        assertEquals(1, allocator.getGrowthCount());
+        allocator.allocate(48);
+        allocator.allocate(100);
+        allocator.allocate(8);
+        allocator.endFrame();
+        assertEquals(1, allocator.getOverflowCount());
+        assertTrue(allocator.getHighWaterMark() >= 156);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAllocateOutsideFrame() {
+        new FrameAllocator(2, 64).allocate(4);
+    }
+}
@@ -0,0 +1,136 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import matt.noobgraphics.timing.FrameScheduler;
+import matt.noobgraphics.timing.FrameStats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives the scheduler with a fake 60Hz vsync and counts how many frames each mode produces
+ */
+public class FrameSchedulerUnitTest {
+    private static final long VSYNC = 1000000000L / 60;
+    private static final long SECOND = 1000000000L;
+
+    private final FakeClock mClock = new FakeClock();
+
+    private FrameScheduler newScheduler(int mode) {
+        FrameScheduler s = new FrameScheduler(mClock);
+        s.setDisplayRate(60);
+        s.setMode(mode);
+        return s;
+    }
+
+    /**
+     * @return frames rendered over the given number of vsyncs
+     */
+    private int run(FrameScheduler s, int vsyncs) {
+        int frames = 0;
+        for (int i = 0; i < vsyncs; i++) {
+            mClock.advance(VSYNC);
+            if (s.shouldRenderFrame()) {
+                s.onFrameStarted();
+                frames++;
+            }
+        }
+        return frames;
+    }
+
+    @Test
+    public void testOnDemand() {
+        FrameScheduler s = newScheduler(FrameScheduler.MODE_ON_DEMAND);
+        assertFalse(s.needsVsync());
+        assertEquals(0, run(s, 60));
+
+        s.requestFrame();
+        s.requestFrame();
+        assertTrue(s.needsVsync());
+        assertEquals(1, run(s, 60));
+        assertFalse(s.needsVsync());
+    }
+
+    @Test
+    public void testContinuous() {
+        FrameScheduler s = newScheduler(FrameScheduler.MODE_CONTINUOUS);
+        assertTrue(s.needsVsync());
+        assertEquals(60, run(s, 60));
+
+        FrameStats stats = s.getStats();
+        assertEquals(60, stats.getFrameCount());
+        assertEquals(VSYNC, stats.getLastIntervalNanos());
+        assertEquals(60.0, stats.getFps(), 0.01);
+        assertEquals(0, stats.getJankyFrameCount());
+    }
+
+    @Test
+    public void testCapped() {
+        FrameScheduler s = newScheduler(FrameScheduler.MODE_CAPPED);
+        s.setTargetRate(30);
+        assertEquals(30, run(s, 60));
+        assertEquals(2 * VSYNC, s.getStats().getLastIntervalNanos());
+
+        // a target that doesn't divide the refresh rate still averages out
+        s.setTargetRate(24);
+        s.setMode(FrameScheduler.MODE_CAPPED);
+        int frames = run(s, 600);
+        assertTrue("got " + frames, frames >= 238 && frames <= 242);
+    }
+
+    @Test
+    public void testCappedDoesNotCatchUpAfterStall() {
+        FrameScheduler s = newScheduler(FrameScheduler.MODE_CAPPED);
+        s.setTargetRate(30);
+        run(s, 10);
+        mClock.advance(SECOND);
+        // one frame for the stall, then back to every other vsync
+        assertEquals(5, run(s, 10));
+        assertTrue(s.getStats().getJankyFrameCount() >= 1);
+    }
+
+    @Test
+    public void testAdaptiveIdlesAndRampsUp() {
+        FrameScheduler s = newScheduler(FrameScheduler.MODE_ADAPTIVE);
+        s.setTargetRate(60);
+        s.setIdleRate(4);
+        s.setIdleTimeout(SECOND / 2);
+
+        // nothing happening: idle rate after the timeout
+        run(s, 60);
+        assertEquals(4, run(s, 60), 1);
+
+        // input: first frame right away, then full rate
+        s.requestFrame();
+        mClock.advance(VSYNC);
+        assertTrue(s.shouldRenderFrame());
+        assertEquals(29, run(s, 29));
+
+        // animation keeps it at full rate well past the timeout
+        s.setAnimating(true);
+        assertEquals(120, run(s, 120));
+
+        // and it decays back to idle once the animation ends
+        s.setAnimating(false);
+        run(s, 60);
+        assertEquals(4, run(s, 60), 1);
+    }
+
+    @Test
+    public void testAdaptiveIdleZeroStopsFrames() {
+        FrameScheduler s = newScheduler(FrameScheduler.MODE_ADAPTIVE);
+        s.setIdleRate(0);
+        s.setIdleTimeout(SECOND / 10);
+        run(s, 30);
+        assertEquals(0, run(s, 120));
+        s.requestFrame();
+        assertEquals(1, run(s, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadMode() {
+        newScheduler(42);
+    }
+}
@@ -0,0 +1,236 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import android.opengl.GLES20;
+
+import matt.noobgraphics.graphics.GLResources;
+import matt.noobgraphics.graphics.MyGLRenderer;
+
+import static org.junit.Assert.*;
+
+public class GLResourcesUnitTest {
+    private static final String VERTEX = "void main() { gl_Position = vec4(0.0); }";
+    private static final String FRAGMENT = "void main() { gl_FragColor = vec4(1.0); }";
+
+    @Test
+    public void testCreatedOnFirstUse() {
+        FakeGLBackend gl = new FakeGLBackend();
+        GLResources resources = new GLResources(gl);
+        int program = resources.register(GLResources.PROGRAM, GLResources.program(VERTEX, FRAGMENT));
+        assertFalse(resources.isResident(program));
+        assertEquals(0, resources.getCreates());
+        assertEquals(1, gl.nextId);
+
+        int name = resources.get(program);
+        assertEquals(3, name);      // after its two shaders
+        assertEquals(name, resources.get(program));
+        assertEquals(1, resources.getCreates());
+        assertEquals(1, resources.getResidentCount(GLResources.PROGRAM));
+        assertEquals(0, resources.getResidentBytes(GLResources.PROGRAM));
+    }
+
+    @Test
+    public void testTrimDeletesAndUseRecreates() {
+        RecordingGLBackend gl = new RecordingGLBackend();
+        GLResources resources = new GLResources(gl);
+        int buffer = resources.register(GLResources.BUFFER,
+                GLResources.buffer(GLES20.GL_ARRAY_BUFFER, ByteBuffer.allocateDirect(100), 100));
+        int texture = resources.register(GLResources.TEXTURE, GLResources.texture(4, 4,
+                GLES20.GL_RGB, GLES20.GL_UNSIGNED_SHORT_5_6_5, ByteBuffer.allocateDirect(32)));
+        assertEquals(1, resources.get(buffer));
+        assertEquals(2, resources.get(texture));
+        assertEquals(Arrays.asList("bind 1", "data 1 100", "bind 0", "texture 2 4x4"), gl.take());
+        assertEquals(100, resources.getResidentBytes(GLResources.BUFFER));
+        assertEquals(32, resources.getResidentBytes(GLResources.TEXTURE));
+
+        resources.trim();
+        assertEquals(Arrays.asList("delete 1", "delete texture 2"), gl.take());
+        assertEquals(0, resources.getResidentCount(GLResources.BUFFER));
+        assertEquals(0, resources.getResidentBytes(GLResources.TEXTURE));
+        assertEquals(2, resources.getRegisteredCount());
+
+        // only what is used comes back
+        assertEquals(3, resources.get(buffer));
+        assertFalse(resources.isResident(texture));
+        assertEquals(100, resources.getResidentBytes(GLResources.BUFFER));
+        assertEquals(3, resources.getCreates());
+    }
+
+    @Test
+    public void testContextLossForgetsWithoutDeleting() {
+        RecordingGLBackend gl = new RecordingGLBackend();
+        GLResources resources = new GLResources(gl);
+        assertFalse(resources.onContextCreated());
+        int program = resources.register(GLResources.PROGRAM, GLResources.program(VERTEX, FRAGMENT));
+        resources.get(program);
+        gl.take();
+
+        assertTrue(resources.onContextCreated());
+        assertEquals(Collections.emptyList(), gl.take());
+        assertFalse(resources.isResident(program));
+        assertEquals(1, resources.getContextLosses());
+        assertEquals(0, resources.getResidentCount(GLResources.PROGRAM));
+
+        assertEquals(6, resources.get(program));
+        assertTrue(resources.onContextCreated());
+        assertFalse(resources.onContextCreated());
+        assertEquals(2, resources.getContextLosses());
+    }
+
+    @Test
+    public void testReleaseFreesTheHandle() {
+        RecordingGLBackend gl = new RecordingGLBackend();
+        GLResources resources = new GLResources(gl);
+        int first = resources.register(GLResources.PROGRAM, GLResources.program(VERTEX, FRAGMENT));
+        int name = resources.get(first);
+        gl.take();
+        resources.release(first);
+        assertEquals(Arrays.asList("delete program " + name), gl.take());
+        assertEquals(0, resources.getRegisteredCount());
+
+        try {
+            resources.get(first);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(first, resources.register(GLResources.BUFFER,
+                GLResources.buffer(GLES20.GL_ARRAY_BUFFER, ByteBuffer.allocateDirect(4), 4)));
+    }
+
+    @Test
+    public void testRendererRecreatesAfterContextLossAndTrim() {
+        FakeGLBackend gl = new FakeGLBackend();
+        MyGLRenderer renderer = new MyGLRenderer(gl);
+        renderer.onSurfaceCreated(null, null);
+        renderer.onSurfaceChanged(null, 1080, 1920);
+        GLResources resources = renderer.getResources();
+        assertEquals(0, resources.getCreates());
+
+        renderer.onDrawFrame(null);
+        renderer.onDrawFrame(null);
+        assertEquals(2, resources.getCreates());
+        assertEquals(2, resources.getResidentCount(GLResources.PROGRAM));
+
+        // a new context: same renderer, same shapes, programs made again on the next draw
+        renderer.onSurfaceCreated(null, null);
+        assertEquals(1, resources.getContextLosses());
+        assertSame(resources, renderer.getResources());
+        renderer.onDrawFrame(null);
+        assertEquals(4, resources.getCreates());
+
+        renderer.trimResources();
+        assertEquals(0, resources.getResidentCount(GLResources.PROGRAM));
+        renderer.onDrawFrame(null);
+        assertEquals(6, resources.getCreates());
+        assertEquals(8, gl.drawCalls);
+    }
+
+    private static int buffer(GLResources resources, int bytes) {
+        return resources.register(GLResources.BUFFER,
+                GLResources.buffer(GLES20.GL_ARRAY_BUFFER, null, bytes));
+    }
+
+    @Test
+    public void testBudgetEvictsLeastRecentlyUsed() {
+        RecordingGLBackend gl = new RecordingGLBackend();
+        GLResources resources = new GLResources(gl);
+        resources.setBudget(300);
+        int a = buffer(resources, 100), b = buffer(resources, 100), c = buffer(resources, 100);
+        int d = buffer(resources, 100);
+        resources.beginFrame();
+        resources.get(a);
+        resources.get(b);
+        resources.get(c);
+        resources.beginFrame();
+        resources.get(b);
+        resources.get(a);
+        gl.take();
+
+        // c is the least recently used and not needed this frame
+        int name = resources.get(d);
+        assertEquals(Arrays.asList("delete 3", "bind " + name, "data " + name + " 100 null", "bind 0"), gl.take());
+        assertFalse(resources.isResident(c));
+        assertEquals(300, resources.getResidentBytes());
+        assertEquals(1, resources.getEvictions());
+        assertEquals(100, resources.getEvictedBytes());
+
+        // and streams back in when used again, now at b's expense
+        resources.beginFrame();
+        resources.get(a);
+        resources.get(d);
+        resources.get(c);
+        assertFalse(resources.isResident(b));
+        assertEquals(5, resources.getMisses());
+        assertEquals(4, resources.getHits());
+        assertEquals(4 / 9.0, resources.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void testFrameMayExceedBudgetRatherThanThrash() {
+        FakeGLBackend gl = new FakeGLBackend();
+        GLResources resources = new GLResources(gl);
+        resources.setBudget(250);
+        int a = buffer(resources, 100), b = buffer(resources, 100), c = buffer(resources, 100);
+        resources.beginFrame();
+        resources.get(a);
+        resources.get(b);
+        resources.get(c);
+        assertEquals(300, resources.getResidentBytes());
+        assertEquals(0, resources.getEvictions());
+
+        // next frame only needs c: the first new allocation brings it back under
+        int d = buffer(resources, 50);
+        resources.beginFrame();
+        resources.get(c);
+        resources.get(d);
+        assertEquals(1, resources.getEvictions());
+        assertEquals(250, resources.getResidentBytes());
+        assertFalse(resources.isResident(a));
+        assertTrue(resources.isResident(c));
+
+        // programs take no budget and are never evicted
+        int program = resources.register(GLResources.PROGRAM, GLResources.program(VERTEX, FRAGMENT));
+        resources.get(program);
+        resources.setBudget(0);
+        resources.beginFrame();
+        resources.get(a);
+        assertTrue(resources.isResident(program));
+        assertFalse(resources.isResident(c));
+        assertEquals(100, resources.getResidentBytes());
+    }
+
+    @Test
+    public void testSimulatedTraceStaysInBudget() {
+        FakeGLBackend gl = new FakeGLBackend();
+        GLResources resources = new GLResources(gl);
+        Random random = new Random(7);
+        int[] handles = new int[500];
+        int[] sizes = new int[handles.length];
+        for (int i = 0; i < handles.length; i++) {
+            sizes[i] = 1000 + random.nextInt(9000);
+            handles[i] = buffer(resources, sizes[i]);
+        }
+        long budget = 400000;
+        resources.setBudget(budget);
+
+        // a camera sliding along a row of resources, 60 visible at a time
+        for (int frame = 0; frame < 2000; frame++) {
+            resources.beginFrame();
+            int first = frame / 5 % (handles.length - 60);
+            long needed = 0;
+            for (int i = first; i < first + 60; i++) {
+                resources.get(handles[i]);
+                needed += sizes[i];
+            }
+            assertTrue(resources.getResidentBytes() <= Math.max(budget, needed));
+        }
+        assertTrue("hit rate " + resources.getHitRate(), resources.getHitRate() > 0.99);
+        assertTrue(resources.getEvictions() > 0);
+    }
+}
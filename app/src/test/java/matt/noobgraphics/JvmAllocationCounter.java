@@ -0,0 +1,39 @@
+package matt.noobgraphics;
+
+import java.lang.management.ManagementFactory;
+
+import matt.noobgraphics.debug.AllocationCounter;
+
+/**
+ * AllocationCounter for desktop JVMs, backed by HotSpot's per-thread allocation counters.
+ * Only for tests: java.lang.management doesn't exist on Android.
+ */
+public class JvmAllocationCounter implements AllocationCounter {
+    private final com.sun.management.ThreadMXBean mBean;
+    private final long mThreadId;
+
+    /**
+     * Counts allocations of the thread that creates the counter
+     */
+    public JvmAllocationCounter() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            mBean = (com.sun.management.ThreadMXBean) bean;
+            mBean.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            mBean = null;
+        }
+        mThreadId = Thread.currentThread().getId();
+    }
+
+    @Override
+    public boolean isSupported() {
+        return mBean != null;
+    }
+
+    @Override
+    public long allocatedBytes() {
+        return mBean == null ? 0 : mBean.getThreadAllocatedBytes(mThreadId);
+    }
+}
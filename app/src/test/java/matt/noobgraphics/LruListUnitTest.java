@@ -0,0 +1,56 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import matt.noobgraphics.util.LruList;
+
+import static org.junit.Assert.*;
+
+public class LruListUnitTest {
+
+    private static String order(LruList lru) {
+        StringBuilder order = new StringBuilder();
+        for (int id = lru.mostRecent(); id >= 0; id = lru.older(id))
+            order.append(id);
+        return order.toString();
+    }
+
+    @Test
+    public void testTouchMovesToFront() {
+        LruList lru = new LruList(2);
+        lru.touch(1, 10);
+        lru.touch(5, 11);
+        lru.touch(3, 12);
+        assertEquals("351", order(lru));
+        assertEquals(1, lru.leastRecent());
+
+        lru.touch(1, 13);
+        assertEquals("135", order(lru));
+        assertEquals(5, lru.leastRecent());
+        assertEquals(13, lru.lastUsed(1));
+        lru.touch(1, 14);
+        assertEquals("135", order(lru));
+        assertEquals(3, lru.size());
+    }
+
+    @Test
+    public void testRemove() {
+        LruList lru = new LruList();
+        for (int id = 0; id < 5; id++)
+            lru.touch(id, id);
+        lru.remove(4);
+        lru.remove(0);
+        lru.remove(2);
+        lru.remove(7);
+        assertEquals("31", order(lru));
+        assertEquals(1, lru.leastRecent());
+        assertFalse(lru.contains(2));
+        assertEquals(2, lru.size());
+
+        lru.clear();
+        assertEquals(-1, lru.leastRecent());
+        assertEquals(-1, lru.mostRecent());
+        lru.touch(2, 0);
+        assertEquals("2", order(lru));
+    }
+}
@@ -578,4 +578,84 @@ public class Matrix4UnitTest {
             assertEquals(mv2Answer.v[i], mv2.v[i], DELTA);
         }
     }
+
+    @Test
+    public void testInPlaceMultiply() {
+        Matrix4 a = new Matrix4(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16);
+        Matrix4 b = Matrix4.rotate(new Vector3(0.0f, 0.0f, 1.0f), 0.3f).multiply(Matrix4.translate(1, 2, 3));
+        Matrix4 answer = a.multiply(b);
+
+        Matrix4 out = new Matrix4();
+        assertEquals(out, a.multiply(b, out));
+        assertEquals(answer, out);
+
+        // aliasing the output with either input is allowed
+        Matrix4 lhs = new Matrix4(a);
+        lhs.multiply(b, lhs);
+        assertEquals(answer, lhs);
+
+        Matrix4 rhs = new Matrix4(b);
+        a.multiply(rhs, rhs);
+        assertEquals(answer, rhs);
+
+        // packed arrays with offsets
+        float[] packed = new float[48];
+        System.arraycopy(a.m, 0, packed, 16, 16);
+        System.arraycopy(b.m, 0, packed, 32, 16);
+        Matrix4.multiplyMM(packed, 0, packed, 16, packed, 32);
+        for (int i = 0; i < Matrix4.MATRIX_SIZE; i++)
+            assertEquals(answer.m[i], packed[i], DELTA);
+
+        Vector4 v = new Vector4(1.0f, 2.0f, 3.0f, 1.0f);
+        Vector4 vAnswer = a.multiply(v);
+        a.multiply(v, v);
+        for (int i = 0; i < Vector4.SIZE; i++)
+            assertEquals(vAnswer.v[i], v.v[i], DELTA);
+    }
+
+    @Test
+    public void testSetRotate() {
+        Vector3 axis = new Vector3(1.0f, 2.0f, 3.0f);
+        axis.normalize();
+        Matrix4 answer = Matrix4.rotate(axis, 1.1f);
+
+        Matrix4 m = Matrix4.translate(5, 5, 5);
+        m.setRotate(1.1f, axis.x(), axis.y(), axis.z());
+        for (int i = 0; i < Matrix4.MATRIX_SIZE; i++)
+            assertEquals(answer.m[i], m.m[i], 0.000001);
+    }
+
+    @Test
+    public void testSetLookAt() {
+        // Looking down -z from the origin is the identity view
+        Matrix4 view = new Matrix4().setLookAt(0, 0, 0, 0, 0, -1, 0, 1, 0);
+        for (int i = 0; i < Matrix4.MATRIX_SIZE; i++)
+            assertEquals(Matrix4.identity().m[i], view.m[i], DELTA);
+
+        // The eye maps to the origin and the target lands on -z
+        view.setLookAt(0, 0, -3, 0, 0, 0, 0, 1, 0);
+        Vector4 eye = view.multiply(new Vector4(0, 0, -3, 1));
+        Vector4 center = view.multiply(new Vector4(0, 0, 0, 1));
+        assertEquals(0.0f, eye.x(), DELTA);
+        assertEquals(0.0f, eye.y(), DELTA);
+        assertEquals(0.0f, eye.z(), DELTA);
+        assertEquals(0.0f, center.x(), DELTA);
+        assertEquals(-3.0f, center.z(), DELTA);
+    }
+
+    @Test
+    public void testSetFrustum() {
+        Matrix4 m = new Matrix4().setFrustum(-1, 1, -1, 1, 1, 10);
+
+        // A point on the near plane ends up at depth -1, on the far plane at +1
+        Vector4 near = m.multiply(new Vector4(0, 0, -1, 1));
+        Vector4 far = m.multiply(new Vector4(0, 0, -10, 1));
+        assertEquals(-1.0f, near.z() / near.w(), 0.00001);
+        assertEquals(1.0f, far.z() / far.w(), 0.00001);
+
+        // Symmetric frustum matches the perspective helper with a 90 degree fov
+        Matrix4 p = Matrix4.perspective((float) Math.PI / 2, 1.0f, 1, 10);
+        for (int i = 0; i < Matrix4.MATRIX_SIZE; i++)
+            assertEquals(p.m[i], m.m[i], 0.00001);
+    }
 }
@@ -0,0 +1,119 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import matt.noobgraphics.graphics.MeshShape;
+import matt.noobgraphics.mesh.MappedMesh;
+import matt.noobgraphics.mesh.Mesh;
+import matt.noobgraphics.mesh.MeshFile;
+import matt.noobgraphics.mesh.ObjLoader;
+import matt.noobgraphics.util.IntList;
+
+import static org.junit.Assert.*;
+
+public class MeshFileUnitTest {
+
+    private static Mesh square() throws IOException {
+        return ObjLoader.load(new ByteArrayInputStream((
+                "v -0.5 0.5 0\nv -0.5 -0.5 0\nv 0.5 -0.5 0\nv 0.5 0.5 0\n" +
+                "vt 0 1\nvt 0 0\nvt 1 0\nvt 1 1\n" +
+                "f 1/1 2/2 3/3 4/4\n").getBytes()));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Mesh mesh = square();
+        File file = File.createTempFile("square", ".ngm");
+        file.deleteOnExit();
+        MeshFile.write(mesh, file);
+
+        MappedMesh mapped = MappedMesh.open(file);
+        assertEquals(4, mapped.getVertexCount());
+        assertEquals(6, mapped.getIndexCount());
+        assertEquals(5 * 4, mapped.getVertexStride());
+        assertEquals(2, mapped.getAttributeCount());
+        assertEquals(-1, mapped.findAttribute(MeshFile.NORMAL));
+
+        int uv = mapped.findAttribute(MeshFile.TEX_COORD);
+        assertEquals(2, mapped.getAttributeComponents(uv));
+        assertEquals(MeshFile.TYPE_FLOAT, mapped.getAttributeType(uv));
+        assertFalse(mapped.isAttributeNormalized(uv));
+        assertEquals(12, mapped.getAttributeOffset(uv));
+
+        assertArrayEquals(new float[] { -0.5f, -0.5f, 0, 0.5f, 0.5f, 0 }, mapped.getBounds(new float[6]), 0);
+
+        FloatBuffer vertices = mapped.getVertexFloats();
+        assertTrue(vertices.isDirect());
+        assertEquals(20, vertices.remaining());
+        assertEquals(0.5f, vertices.get(15), 0);   // x of the 4th vertex
+        assertEquals(1, vertices.get(19), 0);      // v of the 4th vertex
+
+        ByteBuffer uvData = mapped.getAttributeData(uv);
+        assertEquals(12, uvData.position());
+        assertEquals(1.0f, uvData.getFloat(12 + 4), 0);
+
+        assertEquals(MeshFile.TYPE_UNSIGNED_SHORT, mapped.getIndexType());
+        ShortBuffer indices = mapped.getShortIndices();
+        short[] expected = { 0, 1, 2, 0, 2, 3 };
+        for (int i = 0; i < expected.length; i++)
+            assertEquals(expected[i], indices.get(i));
+    }
+
+    @Test
+    public void testIntIndicesAndLods() throws IOException {
+        Mesh mesh = new Mesh();
+        int vertices = 70000;
+        for (int i = 0; i < vertices; i++)
+            mesh.positions.add(i, 0, 0);
+        mesh.indices.add(0, 1, vertices - 1);
+        mesh.indices.add(2, 3, 4);
+        IntList lod = new IntList();
+        lod.add(0, 2, vertices - 1);
+
+        MappedMesh mapped = new MappedMesh(MeshFile.encode(mesh, new IntList[] { lod }, new float[] { 0.25f }));
+        assertEquals(MeshFile.TYPE_UNSIGNED_INT, mapped.getIndexType());
+        assertEquals(6, mapped.getIndexCount());
+        assertEquals(1, mapped.getLodCount());
+        assertEquals(6, mapped.getLodFirstIndex(0));
+        assertEquals(3, mapped.getLodIndexCount(0));
+        assertEquals(0.25f, mapped.getLodError(0), 0);
+
+        IntBuffer indices = mapped.getIntIndices();
+        assertEquals(9, indices.remaining());
+        assertEquals(vertices - 1, indices.get(2));
+        assertEquals(2, indices.get(7));
+    }
+
+    @Test
+    public void testDrawFromMapping() throws IOException {
+        FakeGLBackend gl = new FakeGLBackend();
+        MeshShape shape = new MeshShape(gl, new MappedMesh(MeshFile.encode(square(), null, null)));
+        shape.draw(new float[16]);
+        assertEquals(1, gl.drawCalls);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWrongIndexWidth() throws IOException {
+        new MappedMesh(MeshFile.encode(square(), null, null)).getIntIndices();
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAMeshFile() throws IOException {
+        new MappedMesh(ByteBuffer.wrap(new byte[128]));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        ByteBuffer data = MeshFile.encode(square(), null, null);
+        data.limit(data.limit() - 4);
+        new MappedMesh(data.slice());
+    }
+}
@@ -0,0 +1,242 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import matt.noobgraphics.mesh.ByteScanner;
+import matt.noobgraphics.mesh.Mesh;
+import matt.noobgraphics.mesh.ObjLoader;
+import matt.noobgraphics.mesh.PlyLoader;
+
+import static org.junit.Assert.*;
+
+public class MeshLoaderUnitTest {
+
+    private static ByteArrayInputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes());
+    }
+
+    @Test
+    public void testParseNumbers() throws IOException {
+        ByteScanner in = new ByteScanner(Channels.newChannel(stream("  -12 +7 0.5 -1.25e2 3E-3 .5 1. 0.000001234 123456789012345678901234\n42")), 8);
+        assertEquals(-12, in.nextInt());
+        assertEquals(7, in.nextInt());
+        assertEquals(0.5f, in.nextFloat(), 0);
+        assertEquals(-125f, in.nextFloat(), 0);
+        assertEquals(0.003f, in.nextFloat(), 0);
+        assertEquals(0.5f, in.nextFloat(), 0);
+        assertEquals(1.0f, in.nextFloat(), 0);
+        assertEquals(0.000001234f, in.nextFloat(), 0);
+        assertEquals(1.2345679e23f, in.nextFloat(), 1e17f);
+        assertTrue(in.atLineEnd());
+        in.skipLine();
+        assertEquals(42, in.nextInt());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testFloatsMatchParseFloat() throws IOException {
+        Random random = new Random(1);
+        StringBuilder text = new StringBuilder();
+        float[] expected = new float[10000];
+        for (int i = 0; i < expected.length; i++) {
+            String s = Float.toString((random.nextFloat() - 0.5f) * (float) Math.pow(10, random.nextInt(12) - 6));
+            expected[i] = Float.parseFloat(s);
+            text.append(s).append(' ');
+        }
+        ByteScanner in = new ByteScanner(Channels.newChannel(stream(text.toString())), 64);
+        for (float value : expected)
+            assertEquals(value, in.nextFloat(), Math.ulp(value));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotANumber() throws IOException {
+        new ByteScanner(Channels.newChannel(stream("abc"))).nextFloat();
+    }
+
+    @Test
+    public void testObjPositionsOnly() throws IOException {
+        Mesh mesh = ObjLoader.load(stream(
+                "# square\n" +
+                "o square\n" +
+                "v -0.5 0.5 0\n" +
+                "v -0.5 -0.5 0\r\n" +
+                "v 0.5 -0.5 0\n" +
+                "  v 0.5 0.5 0\n" +
+                "\n" +
+                "usemtl none\n" +
+                "f 1 2 3 4\n"));
+        assertEquals(4, mesh.getVertexCount());
+        assertArrayEquals(new int[] { 0, 1, 2, 0, 2, 3 }, mesh.indices.toArray());
+        assertFalse(mesh.hasNormals());
+        assertFalse(mesh.hasTexCoords());
+
+        FloatBuffer positions = mesh.getPositionBuffer();
+        assertTrue(positions.isDirect());
+        assertEquals(ByteOrder.nativeOrder(), positions.order());
+        assertEquals(12, positions.remaining());
+        assertEquals(0.5f, positions.get(9), 0);
+
+        float[] bounds = mesh.computeBounds(new float[6]);
+        assertArrayEquals(new float[] { -0.5f, -0.5f, 0, 0.5f, 0.5f, 0 }, bounds, 0);
+    }
+
+    @Test
+    public void testObjSplitsCorners() throws IOException {
+        Mesh mesh = ObjLoader.load(stream(
+                "v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\n" +
+                "vt 0 0\nvt 1 0\nvt 1 1\nvt 0 1\n" +
+                "vn 0 0 1\nvn 0 0 -1\n" +
+                "f 1/1/1 2/2/1 3/3/1\n" +
+                "f 1/1/1 3/3/1 4/4/1\n" +
+                // same positions, other normal: new vertices
+                "f -4/1/-1 -2/3/-1 -3/2/-1\n"));
+        assertEquals(7, mesh.getVertexCount());
+        assertEquals(3, mesh.getTriangleCount());
+        assertArrayEquals(new int[] { 0, 1, 2, 0, 2, 3, 4, 5, 6 }, mesh.indices.toArray());
+        assertEquals(-1, mesh.normals.get(4 * 3 + 2), 0);
+        assertEquals(1, mesh.texCoords.get(6 * 2), 0);     // vt 2 on the last corner
+        assertEquals(1, mesh.positions.get(5 * 3 + 1), 0); // v 3
+    }
+
+    @Test
+    public void testObjPartialAttributes() throws IOException {
+        Mesh mesh = ObjLoader.load(stream(
+                "v 0 0 0 1 0 0\nv 1 0 0\nv 1 1 0 0 0 1\n" +
+                "vn 0 0 1\n" +
+                "f 1//1 2 3//1\n"));
+        assertEquals(3, mesh.getVertexCount());
+        assertTrue(mesh.hasNormals());
+        assertFalse(mesh.hasTexCoords());
+        assertArrayEquals(new float[] { 0, 0, 1, 0, 0, 0, 0, 0, 1 }, mesh.normals.toArray(), 0);
+        assertArrayEquals(new float[] { 1, 0, 0, 1, 1, 1, 1, 1, 0, 0, 1, 1 }, mesh.colors.toArray(), 0);
+    }
+
+    @Test
+    public void testObjVertexForms() throws IOException {
+        // x y z w, x y z r g b a, x y z
+        Mesh mesh = ObjLoader.load(stream(
+                "v 0 0 0 1\nv 1 0 0 0.5 0.25 0 0.5\nv 1 1 0\n" +
+                "f 1 2 3\n"));
+        assertEquals(3, mesh.getVertexCount());
+        assertArrayEquals(new float[] { 0, 0, 0, 1, 0, 0, 1, 1, 0 }, mesh.positions.toArray(), 0);
+        assertArrayEquals(new float[] { 1, 1, 1, 1, 0.5f, 0.25f, 0, 0.5f, 1, 1, 1, 1 }, mesh.colors.toArray(), 0);
+
+        Mesh homogeneous = ObjLoader.load(stream("v 0 0 0 1\nv 1 0 0 1\nv 1 1 0 1\nf 1 2 3\n"));
+        assertEquals(3, homogeneous.getVertexCount());
+        assertTrue(homogeneous.colors.isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testObjBadIndex() throws IOException {
+        ObjLoader.load(stream("v 0 0 0\nf 1 2 3\n"));
+    }
+
+    @Test
+    public void testObjParallelMatchesSerial() throws IOException {
+        File file = File.createTempFile("mesh", ".obj");
+        file.deleteOnExit();
+        StringBuilder obj = new StringBuilder();
+        Random random = new Random(2);
+        int vertices = 0;
+        while (obj.length() < 3 << 20) {
+            obj.append("v ").append(random.nextFloat()).append(' ').append(random.nextFloat()).append(' ')
+                    .append(random.nextFloat()).append('\n');
+            obj.append("vt ").append(random.nextFloat()).append(' ').append(random.nextFloat()).append('\n');
+            vertices++;
+            if (vertices >= 3) {
+                // a mix of absolute and relative indices, some reaching far back
+                int far = 1 + random.nextInt(vertices);
+                obj.append("f ").append(far).append("/1 -1/-1 -2/").append(vertices - 1).append('\n');
+            }
+        }
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(obj.toString().getBytes());
+        out.close();
+
+        Mesh serial = ObjLoader.load(new java.io.FileInputStream(file));
+        ForkJoinPool pool = new ForkJoinPool(3);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        Mesh parallel = ObjLoader.load(raf.getChannel(), pool, 3);
+        raf.close();
+        pool.shutdown();
+
+        assertEquals(vertices - 2, serial.getTriangleCount());
+        assertArrayEquals(serial.positions.toArray(), parallel.positions.toArray(), 0);
+        assertArrayEquals(serial.texCoords.toArray(), parallel.texCoords.toArray(), 0);
+        assertArrayEquals(serial.indices.toArray(), parallel.indices.toArray());
+    }
+
+    private static final String PLY_HEADER_TAIL =
+            "element vertex 4\n" +
+            "property float x\nproperty float y\nproperty float z\n" +
+            "property uchar red\nproperty uchar green\nproperty uchar blue\n" +
+            "element face 1\n" +
+            "property list uchar int vertex_indices\n" +
+            "property uchar flags\n" +
+            "element edge 1\n" +
+            "property int vertex1\nproperty int vertex2\n" +
+            "end_header\n";
+
+    private static void assertPlySquare(Mesh mesh) {
+        assertEquals(4, mesh.getVertexCount());
+        assertArrayEquals(new int[] { 0, 1, 2, 0, 2, 3 }, mesh.indices.toArray());
+        assertEquals(0.5f, mesh.positions.get(6), 0);
+        assertEquals(1, mesh.colors.get(0), 0);
+        assertEquals(0, mesh.colors.get(1), 0);
+        assertEquals(1, mesh.colors.get(3), 0);
+    }
+
+    @Test
+    public void testPlyAscii() throws IOException {
+        Mesh mesh = PlyLoader.load(stream("ply\nformat ascii 1.0\ncomment test\n" + PLY_HEADER_TAIL +
+                "-0.5 0.5 0 255 0 0\n-0.5 -0.5 0 255 0 0\n0.5 -0.5 0 255 0 0\n0.5 0.5 0 255 0 0\n" +
+                "4 0 1 2 3 7\n" +
+                "0 1\n"));
+        assertPlySquare(mesh);
+    }
+
+    private static byte[] binaryPly(String format, ByteOrder order) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(("ply\nformat " + format + " 1.0\n" + PLY_HEADER_TAIL).getBytes());
+        ByteBuffer body = ByteBuffer.allocate(200).order(order);
+        float[] xy = { -0.5f, 0.5f, -0.5f, -0.5f, 0.5f, -0.5f, 0.5f, 0.5f };
+        for (int v = 0; v < 4; v++) {
+            body.putFloat(xy[v * 2]).putFloat(xy[v * 2 + 1]).putFloat(0);
+            body.put((byte) 255).put((byte) 0).put((byte) 0);
+        }
+        body.put((byte) 4).putInt(0).putInt(1).putInt(2).putInt(3).put((byte) 7);
+        body.putInt(0).putInt(1);
+        bytes.write(body.array(), 0, body.position());
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testPlyBinary() throws IOException {
+        assertPlySquare(PlyLoader.load(new ByteArrayInputStream(binaryPly("binary_little_endian", ByteOrder.LITTLE_ENDIAN))));
+        assertPlySquare(PlyLoader.load(new ByteArrayInputStream(binaryPly("binary_big_endian", ByteOrder.BIG_ENDIAN))));
+    }
+
+    @Test(expected = IOException.class)
+    public void testPlyTruncated() throws IOException {
+        byte[] ply = binaryPly("binary_little_endian", ByteOrder.LITTLE_ENDIAN);
+        PlyLoader.load(new ByteArrayInputStream(java.util.Arrays.copyOf(ply, ply.length - 12)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotPly() throws IOException {
+        PlyLoader.load(stream("solid cube\n"));
+    }
+}
@@ -0,0 +1,141 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import matt.noobgraphics.mesh.Mesh;
+import matt.noobgraphics.mesh.MeshOptimizer;
+import matt.noobgraphics.mesh.VertexCacheStats;
+import matt.noobgraphics.util.IntList;
+
+import static org.junit.Assert.*;
+
+public class MeshOptimizerUnitTest {
+
+    /** size x size indexed grid with its triangles shuffled */
+    private static Mesh shuffledGrid(int size) {
+        Mesh mesh = new Mesh();
+        for (int y = 0; y <= size; y++)
+            for (int x = 0; x <= size; x++)
+                mesh.positions.add(x, y, 0);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int i = y * (size + 1) + x;
+                mesh.indices.add(i, i + 1, i + size + 2);
+                mesh.indices.add(i, i + size + 2, i + size + 1);
+            }
+        }
+        Random random = new Random(7);
+        int[] indices = mesh.indices.array();
+        for (int t = mesh.getTriangleCount() - 1; t > 0; t--) {
+            int other = random.nextInt(t + 1);
+            for (int k = 0; k < 3; k++) {
+                int swap = indices[t * 3 + k];
+                indices[t * 3 + k] = indices[other * 3 + k];
+                indices[other * 3 + k] = swap;
+            }
+        }
+        return mesh;
+    }
+
+    /**
+     * Triangles as sorted position keys with their winding rotated to a canonical start, so
+     * orders and vertex numbering don't matter
+     */
+    private static String[] triangles(Mesh mesh) {
+        String[] out = new String[mesh.getTriangleCount()];
+        for (int t = 0; t < out.length; t++) {
+            String[] corners = new String[3];
+            for (int k = 0; k < 3; k++) {
+                int v = mesh.indices.get(t * 3 + k);
+                corners[k] = mesh.positions.get(v * 3) + "," + mesh.positions.get(v * 3 + 1);
+            }
+            int first = 0;
+            for (int k = 1; k < 3; k++)
+                if (corners[k].compareTo(corners[first]) < 0)
+                    first = k;
+            out[t] = corners[first] + " " + corners[(first + 1) % 3] + " " + corners[(first + 2) % 3];
+        }
+        Arrays.sort(out);
+        return out;
+    }
+
+    @Test
+    public void testStats() {
+        IntList indices = new IntList();
+        indices.add(0, 1, 2);
+        indices.add(2, 1, 3);
+        VertexCacheStats stats = VertexCacheStats.analyze(indices, 4, 16, VertexCacheStats.FIFO);
+        assertEquals(4, stats.misses);
+        assertEquals(2.0f, stats.getAcmr(), 0);
+        assertEquals(1.0f, stats.getAtvr(), 0);
+
+        // 0 is hit in between, which keeps it under LRU but not FIFO
+        indices.clear();
+        indices.add(0, 1, 2);
+        indices.add(0, 3, 4);
+        indices.add(0, 5, 6);
+        assertEquals(7, VertexCacheStats.analyze(indices, 7, 3, VertexCacheStats.LRU).misses);
+        assertEquals(8, VertexCacheStats.analyze(indices, 7, 3, VertexCacheStats.FIFO).misses);
+    }
+
+    @Test
+    public void testVertexCache() {
+        Mesh mesh = shuffledGrid(40);
+        String[] before = triangles(mesh);
+        VertexCacheStats shuffled = VertexCacheStats.analyze(mesh, 16, VertexCacheStats.FIFO);
+
+        MeshOptimizer.optimizeVertexCache(mesh, 16);
+        VertexCacheStats optimized = VertexCacheStats.analyze(mesh, 16, VertexCacheStats.FIFO);
+        assertArrayEquals(before, triangles(mesh));
+        assertTrue(shuffled.getAcmr() > 2.5f);
+        assertTrue(optimized.toString(), optimized.getAcmr() < 0.8f);
+        assertTrue(optimized.getAtvr() < 1.45f);
+    }
+
+    @Test
+    public void testOverdrawKeepsCacheEfficiency() {
+        Mesh mesh = shuffledGrid(40);
+        String[] before = triangles(mesh);
+        MeshOptimizer.optimizeVertexCache(mesh, 16);
+        float acmr = VertexCacheStats.analyze(mesh, 16, VertexCacheStats.FIFO).getAcmr();
+
+        MeshOptimizer.optimizeOverdraw(mesh, 16, 1.05f);
+        assertArrayEquals(before, triangles(mesh));
+        assertTrue(VertexCacheStats.analyze(mesh, 16, VertexCacheStats.FIFO).getAcmr() < acmr * 1.3f);
+    }
+
+    @Test
+    public void testVertexFetch() {
+        Mesh mesh = shuffledGrid(10);
+        mesh.positions.add(99, 99, 99);     // unused
+        mesh.texCoords.ensureCapacity(mesh.getVertexCount() * 2);
+        for (int v = 0; v < mesh.getVertexCount(); v++)
+            mesh.texCoords.add(mesh.positions.get(v * 3), mesh.positions.get(v * 3 + 1));
+        String[] before = triangles(mesh);
+
+        assertEquals(121, MeshOptimizer.optimizeVertexFetch(mesh));
+        assertEquals(121, mesh.getVertexCount());
+        assertEquals(242, mesh.texCoords.size());
+        assertArrayEquals(before, triangles(mesh));
+        int next = 0;
+        for (int i = 0; i < mesh.indices.size(); i++) {
+            int v = mesh.indices.get(i);
+            assertTrue(v <= next);
+            if (v == next)
+                next++;
+            assertEquals(mesh.positions.get(v * 3), mesh.texCoords.get(v * 2), 0);
+        }
+    }
+
+    @Test
+    public void testOptimize() {
+        Mesh mesh = shuffledGrid(30);
+        String[] before = triangles(mesh);
+        MeshOptimizer.optimize(mesh);
+        assertArrayEquals(before, triangles(mesh));
+        assertTrue(VertexCacheStats.analyze(mesh, 16, VertexCacheStats.FIFO).getAcmr() < 1.0f);
+    }
+}
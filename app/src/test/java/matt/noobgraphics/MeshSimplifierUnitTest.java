@@ -0,0 +1,196 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import matt.noobgraphics.math.Matrix4;
+import matt.noobgraphics.mesh.LodSelector;
+import matt.noobgraphics.mesh.MappedMesh;
+import matt.noobgraphics.mesh.Mesh;
+import matt.noobgraphics.mesh.MeshLods;
+import matt.noobgraphics.mesh.MeshSimplifier;
+import matt.noobgraphics.util.IntList;
+
+import static org.junit.Assert.*;
+
+public class MeshSimplifierUnitTest {
+
+    /** Closed unit sphere, one vertex per pole and no duplicated seam */
+    static Mesh sphere(int rings, int segments) {
+        Mesh mesh = new Mesh();
+        mesh.positions.add(0, 1, 0);
+        for (int r = 1; r < rings; r++) {
+            double theta = Math.PI * r / rings;
+            for (int s = 0; s < segments; s++) {
+                double phi = 2 * Math.PI * s / segments;
+                mesh.positions.add((float) (Math.sin(theta) * Math.cos(phi)), (float) Math.cos(theta),
+                        (float) (Math.sin(theta) * Math.sin(phi)));
+            }
+        }
+        mesh.positions.add(0, -1, 0);
+        int bottom = mesh.getVertexCount() - 1;
+        for (int s = 0; s < segments; s++) {
+            int next = (s + 1) % segments;
+            mesh.indices.add(0, 1 + next, 1 + s);
+            for (int r = 0; r < rings - 2; r++) {
+                int a = 1 + r * segments + s, b = 1 + r * segments + next;
+                mesh.indices.add(a, b, b + segments);
+                mesh.indices.add(a, b + segments, a + segments);
+            }
+            int last = 1 + (rings - 2) * segments;
+            mesh.indices.add(last + s, last + next, bottom);
+        }
+        return mesh;
+    }
+
+    /** Flat size x size grid in the xy plane; with a seam, column seamColumn is doubled with new UVs */
+    static Mesh grid(int size, int seamColumn) {
+        Mesh mesh = new Mesh();
+        int[] ids = new int[(size + 1) * (size + 1)];
+        int[] seamIds = new int[size + 1];
+        for (int y = 0; y <= size; y++) {
+            for (int x = 0; x <= size; x++) {
+                ids[y * (size + 1) + x] = mesh.getVertexCount();
+                mesh.positions.add(x, y, 0);
+                mesh.texCoords.add(x, y);
+                if (x == seamColumn) {
+                    seamIds[y] = mesh.getVertexCount();
+                    mesh.positions.add(x, y, 0);
+                    mesh.texCoords.add(x + 100, y);
+                }
+            }
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int a = ids[y * (size + 1) + x], b = ids[y * (size + 1) + x + 1];
+                int c = ids[(y + 1) * (size + 1) + x + 1], d = ids[(y + 1) * (size + 1) + x];
+                // the right side of the seam uses the second copies
+                if (x == seamColumn) {
+                    a = seamIds[y];
+                    d = seamIds[y + 1];
+                }
+                mesh.indices.add(a, b, c);
+                mesh.indices.add(a, c, d);
+            }
+        }
+        return mesh;
+    }
+
+    private static boolean references(IntList indices, Mesh mesh, float x, float y) {
+        for (int i = 0; i < indices.size(); i++) {
+            int v = indices.get(i);
+            if (mesh.positions.get(v * 3) == x && mesh.positions.get(v * 3 + 1) == y)
+                return true;
+        }
+        return false;
+    }
+
+    /** Sum of signed triangle areas in the xy plane */
+    private static float area(IntList indices, Mesh mesh) {
+        float area = 0;
+        for (int i = 0; i < indices.size(); i += 3) {
+            float[] p = new float[6];
+            for (int k = 0; k < 3; k++) {
+                p[k * 2] = mesh.positions.get(indices.get(i + k) * 3);
+                p[k * 2 + 1] = mesh.positions.get(indices.get(i + k) * 3 + 1);
+            }
+            area += ((p[2] - p[0]) * (p[5] - p[1]) - (p[4] - p[0]) * (p[3] - p[1])) / 2;
+        }
+        return area;
+    }
+
+    @Test
+    public void testFlatGridSimplifiesWithoutError() {
+        Mesh mesh = grid(16, -1);
+        MeshSimplifier simplifier = new MeshSimplifier(mesh);
+        IntList simplified = simplifier.simplify(mesh.indices, 60, Float.MAX_VALUE);
+
+        assertTrue(simplified.size() <= 60);
+        assertEquals(0, simplifier.getError(), 1e-4f);
+        // the outline, corners included, is kept and nothing folds over
+        assertEquals(256, area(simplified, mesh), 1e-3f);
+        assertTrue(references(simplified, mesh, 0, 0));
+        assertTrue(references(simplified, mesh, 16, 0));
+        assertTrue(references(simplified, mesh, 16, 16));
+        assertTrue(references(simplified, mesh, 0, 16));
+    }
+
+    @Test
+    public void testSeamsStay() {
+        Mesh mesh = grid(16, 8);
+        // everything that can go without error does
+        IntList simplified = new MeshSimplifier(mesh).simplify(mesh.indices, 0, 1e-3f);
+        assertTrue(simplified.size() < 150);
+        assertEquals(256, area(simplified, mesh), 1e-3f);
+        for (int y = 0; y <= 16; y++)
+            assertTrue("seam vertex " + y, references(simplified, mesh, 8, y));
+    }
+
+    @Test
+    public void testErrorGrowsAsTrianglesGo() {
+        Mesh mesh = sphere(32, 64);
+        MeshSimplifier simplifier = new MeshSimplifier(mesh);
+        float previous = 0;
+        for (int target : new int[] { 2000, 500, 100 }) {
+            IntList simplified = simplifier.simplify(mesh.indices, target * 3, Float.MAX_VALUE);
+            assertTrue(simplified.size() <= target * 3);
+            assertTrue(simplifier.getError() > previous);
+            previous = simplifier.getError();
+            for (int i = 0; i < simplified.size(); i++)
+                assertTrue(simplified.get(i) < mesh.getVertexCount());
+        }
+        assertTrue(previous < 0.5f);
+    }
+
+    @Test
+    public void testErrorLimit() {
+        Mesh mesh = sphere(32, 64);
+        MeshSimplifier simplifier = new MeshSimplifier(mesh);
+        IntList simplified = simplifier.simplify(mesh.indices, 0, 0.01f);
+        assertTrue(simplifier.getError() <= 0.01f);
+        assertTrue(simplified.size() > 100 * 3);
+        assertTrue(simplified.size() < mesh.indices.size());
+    }
+
+    @Test
+    public void testLodChain() throws IOException {
+        Mesh mesh = sphere(32, 64);
+        MeshLods lods = MeshLods.generate(mesh);
+        assertEquals(MeshLods.DEFAULT_RATIOS.length, lods.getLevelCount());
+        for (int l = 1; l < lods.getLevelCount(); l++) {
+            assertTrue(lods.indices[l].size() < lods.indices[l - 1].size());
+            assertTrue(lods.errors[l] >= lods.errors[l - 1]);
+        }
+
+        File file = File.createTempFile("lods", ".ngm");
+        file.deleteOnExit();
+        lods.write(mesh, file);
+        MappedMesh mapped = MappedMesh.open(file);
+        assertEquals(lods.getLevelCount(), mapped.getLodCount());
+        assertEquals(mesh.indices.size(), mapped.getIndexCount());
+        assertEquals(lods.indices[2].size(), mapped.getLodIndexCount(2));
+        assertEquals(lods.errors[2], mapped.getLodError(2), 0);
+    }
+
+    @Test
+    public void testLodSelection() {
+        LodSelector selector = new LodSelector(1);
+        // 90 degree fov: one unit at depth 1 spans half of 1000 pixels
+        selector.setProjection(Matrix4.perspective((float) Math.PI / 2, 1, 0.1f, 100), 1000);
+        assertEquals(5, selector.projectedError(0.01f, 1), 1e-4f);
+        assertEquals(0.5f, selector.projectedError(0.01f, 10), 1e-5f);
+
+        float[] errors = { 0.001f, 0.01f, 0.1f };
+        assertEquals(-1, selector.select(errors, 3, 1, 0.1f));
+        assertEquals(0, selector.select(errors, 3, 1, 1));
+        assertEquals(1, selector.select(errors, 3, 1, 10));
+        assertEquals(2, selector.select(errors, 3, 1, 100));
+        assertEquals(1, selector.select(errors, 3, 10, 100));
+
+        // orthographic: depth doesn't matter
+        selector.setProjection(Matrix4.ortho(-1, 1, -1, 1, 0.1f, 100), 1000);
+        assertEquals(5, selector.projectedError(0.01f, 50), 1e-4f);
+    }
+}
@@ -0,0 +1,153 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import matt.noobgraphics.mesh.Mesh;
+import matt.noobgraphics.mesh.MeshFile;
+import matt.noobgraphics.mesh.MeshWelder;
+
+import static org.junit.Assert.*;
+
+public class MeshWelderUnitTest {
+
+    /** Two triangles of a unit square, with no index buffer */
+    private static Mesh squareSoup() {
+        Mesh mesh = new Mesh();
+        mesh.positions.add(0, 0, 0);
+        mesh.positions.add(1, 0, 0);
+        mesh.positions.add(1, 1, 0);
+        mesh.positions.add(0, 0, 0);
+        mesh.positions.add(1, 1, 0);
+        mesh.positions.add(0, 1, 0);
+        return mesh;
+    }
+
+    @Test
+    public void testWeldSoup() {
+        Mesh mesh = squareSoup();
+        assertEquals(4, new MeshWelder().weld(mesh));
+        assertEquals(4, mesh.getVertexCount());
+        assertArrayEquals(new int[] { 0, 1, 2, 0, 2, 3 }, mesh.indices.toArray());
+        assertArrayEquals(new float[] { 0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0 }, mesh.positions.toArray(), 0);
+    }
+
+    @Test
+    public void testWeldIndexed() {
+        Mesh mesh = squareSoup();
+        mesh.indices.add(5, 4, 3);
+        mesh.indices.add(2, 1, 0);
+        new MeshWelder().weld(mesh);
+        assertArrayEquals(new int[] { 3, 2, 0, 2, 1, 0 }, mesh.indices.toArray());
+    }
+
+    @Test
+    public void testKeepsDifferentAttributes() {
+        Mesh mesh = squareSoup();
+        // a UV seam along the diagonal: the second triangle's copies differ
+        mesh.texCoords.add(0, 0);
+        mesh.texCoords.add(1, 0);
+        mesh.texCoords.add(1, 1);
+        mesh.texCoords.add(0.5f, 0);
+        mesh.texCoords.add(0.5f, 1);
+        mesh.texCoords.add(0, 1);
+        assertEquals(6, new MeshWelder().weld(mesh));
+        assertEquals(12, mesh.texCoords.size());
+    }
+
+    @Test
+    public void testWeldWithinEpsilon() {
+        Mesh mesh = squareSoup();
+        mesh.positions.set(9, 1e-5f);
+        mesh.positions.set(12, 1 - 1e-5f);
+
+        MeshWelder welder = new MeshWelder();
+        Mesh exact = squareSoup();
+        exact.positions.set(9, 1e-5f);
+        assertEquals(5, welder.weld(exact));
+        assertEquals(4, welder.weld(mesh, 1e-3f));
+        // the first vertex of each group is kept unsnapped
+        assertEquals(0, mesh.positions.get(0), 0);
+    }
+
+    @Test
+    public void testLargeCoordinatesSmallEpsilon() {
+        // 7000 / 1e-6 is far past 2^31 grid steps
+        Mesh mesh = new Mesh();
+        mesh.positions.add(5000, 5000, 5000);
+        mesh.positions.add(6000, 5000, 5000);
+        mesh.positions.add(6000, 6000, 5000);
+        mesh.positions.add(5000, 5000, 7000);
+        mesh.positions.add(6000, 6000, 7000);
+        mesh.positions.add(5000, 6000, 7000);
+        assertEquals(6, new MeshWelder().weld(mesh, 1e-6f));
+        assertEquals(6, mesh.indices.size());
+
+        Mesh huge = squareSoup();
+        for (int i = 0; i < huge.positions.size(); i++)
+            huge.positions.set(i, huge.positions.get(i) * 1e30f);
+        assertEquals(4, new MeshWelder().weld(huge, 1e-6f));
+        assertEquals(6, huge.indices.size());
+    }
+
+    @Test
+    public void testDropsCollapsedTriangles() {
+        Mesh mesh = squareSoup();
+        mesh.positions.add(0, 0, 0);
+        mesh.positions.add(0.0001f, 0, 0);
+        mesh.positions.add(0, 1, 0);
+        assertEquals(4, new MeshWelder().weld(mesh, 0.01f));
+        assertEquals(6, mesh.indices.size());
+    }
+
+    @Test
+    public void testReuseAcrossSizes() {
+        MeshWelder welder = new MeshWelder();
+        Mesh big = grid(300);
+        int soupVertices = big.getVertexCount();
+        assertEquals(301 * 301, welder.weld(big));
+        assertEquals(soupVertices, big.indices.size());
+        assertEquals(4, welder.weld(squareSoup()));
+    }
+
+    @Test
+    public void testIndexWidth() {
+        Mesh small = grid(10);
+        new MeshWelder().weld(small);
+        assertEquals(MeshFile.TYPE_UNSIGNED_SHORT, small.getIndexType());
+        ShortBuffer shorts = (ShortBuffer) small.createIndexBuffer();
+        assertEquals(small.indices.size(), shorts.remaining());
+        assertEquals(small.indices.get(5), shorts.get(5));
+
+        Mesh large = grid(300);
+        new MeshWelder().weld(large);
+        assertEquals(MeshFile.TYPE_UNSIGNED_INT, large.getIndexType());
+        IntBuffer ints = (IntBuffer) large.createIndexBuffer();
+        assertEquals(large.indices.get(large.indices.size() - 1), ints.get(ints.limit() - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsPartialTriangle() {
+        Mesh mesh = new Mesh();
+        mesh.positions.add(0, 0, 0);
+        new MeshWelder().weld(mesh);
+    }
+
+    /** size x size quads as an unindexed triangle soup */
+    static Mesh grid(int size) {
+        Mesh mesh = new Mesh(size * size * 6, 0);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                mesh.positions.add(x, y, 0);
+                mesh.positions.add(x + 1, y, 0);
+                mesh.positions.add(x + 1, y + 1, 0);
+                mesh.positions.add(x, y, 0);
+                mesh.positions.add(x + 1, y + 1, 0);
+                mesh.positions.add(x, y + 1, 0);
+            }
+        }
+        return mesh;
+    }
+}
@@ -0,0 +1,193 @@
+package matt.noobgraphics;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import android.opengl.GLES20;
+
+import matt.noobgraphics.graphics.GLResources;
+import matt.noobgraphics.texture.MipChain;
+import matt.noobgraphics.texture.MipmapGenerator;
+
+import static org.junit.Assert.*;
+
+public class MipmapGeneratorUnitTest {
+    private static final ForkJoinPool sPool = new ForkJoinPool(4);
+
+    @AfterClass
+    public static void shutdown() {
+        sPool.shutdown();
+    }
+
+    private static int argb(int a, int r, int g, int b) {
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+
+    /** @return RGBA8888 texel x, y of a level as a r, g, b, a array */
+    private static int[] texel(MipChain chain, int level, int x, int y) {
+        ByteBuffer data = chain.getLevel(level);
+        int at = (y * chain.getWidth(level) + x) * 4;
+        return new int[] { data.get(at) & 0xFF, data.get(at + 1) & 0xFF, data.get(at + 2) & 0xFF, data.get(at + 3) & 0xFF };
+    }
+
+    @Test
+    public void testLevelSizes() {
+        MipChain chain = new MipmapGenerator(sPool).generate(new int[5 * 3], 5, 3);
+        assertEquals(3, chain.getLevelCount());
+        assertEquals(2, chain.getWidth(1));
+        assertEquals(1, chain.getHeight(1));
+        assertEquals(1, chain.getWidth(2));
+        assertEquals((15 + 2 + 1) * 4, chain.getBytes());
+        assertTrue(chain.getLevel(0).isDirect());
+        assertEquals(8, chain.getLevel(1).remaining());
+        assertEquals(11, MipChain.levelCount(1024, 3));
+    }
+
+    @Test
+    public void testAveragesInLinearLight() {
+        int black = argb(255, 0, 0, 0), white = argb(255, 255, 255, 255);
+        int[] checker = { black, white, white, black };
+        MipChain gamma = new MipmapGenerator(sPool).generate(checker, 2, 2);
+        // half the light is sRGB 188, not 128
+        assertArrayEquals(new int[] { 188, 188, 188, 255 }, texel(gamma, 1, 0, 0));
+
+        MipChain linear = new MipmapGenerator(sPool).setGammaCorrect(false).generate(checker, 2, 2);
+        assertArrayEquals(new int[] { 128, 128, 128, 255 }, texel(linear, 1, 0, 0));
+    }
+
+    @Test
+    public void testPremultipliesWithoutBleeding() {
+        // opaque red next to fully transparent green
+        int[] image = { argb(255, 255, 0, 0), argb(0, 0, 255, 0), argb(128, 255, 255, 255), argb(255, 255, 0, 0) };
+        MipChain chain = new MipmapGenerator(sPool).generate(image, 4, 1);
+        assertArrayEquals(new int[] { 255, 0, 0, 255 }, texel(chain, 0, 0, 0));
+        assertArrayEquals(new int[] { 0, 0, 0, 0 }, texel(chain, 0, 1, 0));
+        assertArrayEquals(new int[] { 128, 128, 128, 128 }, texel(chain, 0, 2, 0));
+        // half covered red stays red, premultiplied
+        assertArrayEquals(new int[] { 128, 0, 0, 128 }, texel(chain, 1, 0, 0));
+    }
+
+    @Test
+    public void testBoxKeepsLastTexelOfOddSizes() {
+        // black but for a white last row and column
+        int black = argb(255, 0, 0, 0), white = argb(255, 255, 255, 255);
+        int[] image = { black, black, white, black, black, white, white, white, white };
+        MipChain chain = new MipmapGenerator(sPool).setGammaCorrect(false).generate(image, 3, 3);
+        // 5 of 9 texels white
+        assertArrayEquals(new int[] { 142, 142, 142, 255 }, texel(chain, 1, 0, 0));
+
+        // 5 wide: every output texel covers 2.5 source texels
+        int[] row = { white, white, black, black, black };
+        MipChain wide = new MipmapGenerator(sPool).setGammaCorrect(false).generate(row, 5, 1);
+        assertArrayEquals(new int[] { 204, 204, 204, 255 }, texel(wide, 1, 0, 0));
+        assertArrayEquals(new int[] { 0, 0, 0, 255 }, texel(wide, 1, 1, 0));
+        assertArrayEquals(new int[] { 102, 102, 102, 255 }, texel(wide, 2, 0, 0));
+    }
+
+    @Test
+    public void testSixteenBitFormats() {
+        int[] image = { argb(255, 255, 0, 0), argb(255, 255, 0, 0), argb(255, 255, 0, 0), argb(255, 255, 0, 0) };
+        MipChain rgb565 = new MipmapGenerator(sPool).setFormat(MipChain.RGB565).generate(image, 2, 2);
+        assertEquals(GLES20.GL_RGB, rgb565.getGLFormat());
+        assertEquals(GLES20.GL_UNSIGNED_SHORT_5_6_5, rgb565.getGLType());
+        assertEquals(10, rgb565.getBytes());
+        assertEquals((short) 0xF800, rgb565.getLevel(0).getShort(6));
+        assertEquals((short) 0xF800, rgb565.getLevel(1).getShort(0));
+
+        image[0] = argb(0, 0, 0, 0);
+        MipChain rgba4444 = new MipmapGenerator(sPool).setFormat(MipChain.RGBA4444).generate(image, 2, 2);
+        assertEquals(GLES20.GL_UNSIGNED_SHORT_4_4_4_4, rgba4444.getGLType());
+        assertEquals((short) 0xF00F, rgba4444.getLevel(0).getShort(2));
+        assertEquals(0, rgba4444.getLevel(0).getShort(0));
+        // three quarters covered: alpha 191 of 255 -> 11 of 15
+        assertEquals((short) 0xB00B, rgba4444.getLevel(1).getShort(0));
+    }
+
+    @Test
+    public void testKaiserKeepsFlatColor() {
+        int[] image = new int[37 * 20];
+        Arrays.fill(image, argb(255, 200, 100, 50));
+        MipChain chain = new MipmapGenerator(sPool).setFilter(MipmapGenerator.FILTER_KAISER).generate(image, 37, 20);
+        for (int level = 1; level < chain.getLevelCount(); level++) {
+            int[] texel = texel(chain, level, chain.getWidth(level) - 1, 0);
+            assertEquals(200, texel[0], 1);
+            assertEquals(100, texel[1], 1);
+            assertEquals(50, texel[2], 1);
+            assertEquals(255, texel[3]);
+        }
+    }
+
+    @Test
+    public void testSameResultOnAnyThreadCount() {
+        Random random = new Random(5);
+        int[] image = new int[301 * 203];
+        for (int i = 0; i < image.length; i++)
+            image[i] = random.nextInt();
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            for (int filter = 0; filter < 2; filter++) {
+                MipChain serial = new MipmapGenerator(single, 1).setFilter(filter).generate(image, 301, 203);
+                MipChain parallel = new MipmapGenerator(sPool, 2).setFilter(filter).generate(image, 301, 203);
+                assertEquals(serial.getLevel(0), parallel.getLevel(0));
+                for (int level = 1; level < serial.getLevelCount(); level++)
+                    assertEquals("level " + level, serial.getLevel(level), parallel.getLevel(level));
+            }
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @Test
+    public void testReusesRowBuffersAcrossTasks() throws Exception {
+        JvmAllocationCounter caller = new JvmAllocationCounter();
+        Assume.assumeTrue(caller.isSupported());
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            JvmAllocationCounter worker = single.submit(new Callable<JvmAllocationCounter>() {
+                @Override
+                public JvmAllocationCounter call() {
+                    return new JvmAllocationCounter();
+                }
+            }).get();
+            int[] image = new int[256 * 256];
+            MipmapGenerator generator = new MipmapGenerator(single, 1).setFilter(MipmapGenerator.FILTER_KAISER);
+            generator.generate(image, 256, 256);
+
+            long before = caller.allocatedBytes() + worker.allocatedBytes();
+            generator.generate(image, 256, 256);
+            long allocated = caller.allocatedBytes() + worker.allocatedBytes() - before;
+            // the 16 bit levels kept for the next one, 1 to 7, and the tasks themselves; row
+            // buffers per task would take megabytes
+            long kept = 0;
+            for (int size = 128; size > 1; size /= 2)
+                kept += size * size * 4 * 2;
+            assertTrue(allocated + " bytes", allocated < kept + 256 * 1024);
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @Test
+    public void testUploadsEveryLevel() {
+        MipChain chain = new MipmapGenerator(sPool).setFormat(MipChain.RGB565).generate(new int[8 * 4], 8, 4);
+        RecordingGLBackend gl = new RecordingGLBackend();
+        GLResources resources = new GLResources(gl);
+        int texture = resources.register(GLResources.TEXTURE, GLResources.texture(chain));
+        int name = resources.get(texture);
+        assertEquals(Arrays.asList("texture " + name + " 8x4", "texture " + name + " 4x2",
+                "texture " + name + " 2x1", "texture " + name + " 1x1"), gl.take());
+        assertEquals((32 + 8 + 2 + 1) * 2, resources.getResidentBytes(GLResources.TEXTURE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUploadRejectsNonPowerOfTwo() {
+        GLResources.texture(new MipmapGenerator(sPool).generate(new int[8 * 6], 8, 6));
+    }
+}
@@ -0,0 +1,89 @@
+package matt.noobgraphics;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import matt.noobgraphics.scene.ParallelTransformUpdater;
+import matt.noobgraphics.scene.TransformStore;
+
+import static org.junit.Assert.*;
+
+public class ParallelTransformUpdaterUnitTest {
+    private static final ForkJoinPool sPool = new ForkJoinPool(4);
+
+    @AfterClass
+    public static void shutdown() {
+        sPool.shutdown();
+    }
+
+    private static TransformStore randomStore(int count, int maxFanOutBack, long seed) {
+        Random random = new Random(seed);
+        TransformStore store = new TransformStore(count);
+        for (int i = 0; i < count; i++) {
+            store.create();
+            store.setPosition(i, random.nextFloat() * 10, random.nextFloat(), -random.nextFloat());
+            float angle = random.nextFloat();
+            store.setRotation(i, 0, (float) Math.sin(angle), 0, (float) Math.cos(angle));
+            store.setScale(i, 0.5f + random.nextFloat(), 1, 1);
+        }
+        for (int i = count - 1; i > 0; i--)
+            store.setParent(i, Math.max(0, i - 1 - random.nextInt(Math.min(i, maxFanOutBack))));
+        return store;
+    }
+
+    private static void assertSameAsSerial(TransformStore store, ParallelTransformUpdater updater) {
+        store.update();
+        float[] serial = store.getWorldMatrices().clone();
+        // scramble the results so a skipped slot can't pass by accident
+        java.util.Arrays.fill(store.getWorldMatrices(), Float.NaN);
+        updater.update(store);
+        float[] parallel = store.getWorldMatrices();
+        for (int i = 0; i < store.size() * 16; i++)
+            assertEquals("slot " + i / 16, Float.floatToIntBits(serial[i]), Float.floatToIntBits(parallel[i]));
+    }
+
+    @Test
+    public void testIdenticalToSerial() {
+        ParallelTransformUpdater updater = new ParallelTransformUpdater(sPool, 16);
+        assertSameAsSerial(randomStore(5000, 1000, 1), updater);   // wide
+        assertSameAsSerial(randomStore(5000, 3, 2), updater);      // deep
+        assertSameAsSerial(randomStore(5000, 40, 3), updater);
+    }
+
+    @Test
+    public void testRepeatable() {
+        TransformStore store = randomStore(3000, 50, 4);
+        ParallelTransformUpdater updater = new ParallelTransformUpdater(sPool, 8);
+        updater.update(store);
+        float[] first = store.getWorldMatrices().clone();
+        for (int run = 0; run < 5; run++) {
+            updater.update(store);
+            assertArrayEquals(first, store.getWorldMatrices(), 0);
+        }
+    }
+
+    @Test
+    public void testLevels() {
+        TransformStore store = new TransformStore();
+        int root = store.create();
+        int a = store.create();
+        int b = store.create();
+        store.setParent(b, a);
+        store.setParent(a, root);
+        store.setPosition(root, 1, 0, 0);
+        store.setPosition(a, 1, 0, 0);
+        store.setPosition(b, 1, 0, 0);
+
+        new ParallelTransformUpdater(sPool, 1).update(store);
+        assertEquals(3, store.getLevelCount());
+        assertEquals(3, store.getWorldMatrices()[store.indexOf(b) * 16 + 12], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadGrain() {
+        new ParallelTransformUpdater(sPool, 0);
+    }
+}
@@ -0,0 +1,147 @@
+package matt.noobgraphics;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import matt.noobgraphics.util.ByteList;
+import matt.noobgraphics.util.FloatList;
+import matt.noobgraphics.util.IntList;
+import matt.noobgraphics.util.ShortList;
+
+import static org.junit.Assert.*;
+
+public class PrimitiveListUnitTest {
+
+    @Test
+    public void testGrowthAndClearKeepsCapacity() {
+        FloatList list = new FloatList(1);
+        for (int i = 0; i < 1000; i++)
+            list.add(i, i + 1, i + 2, i + 3);
+        assertEquals(4000, list.size());
+        assertEquals(751, list.get(3001), 0);     // second component of the 751st add
+
+        float[] array = list.array();
+        list.clear();
+        assertTrue(list.isEmpty());
+        list.add(1, 2, 3);
+        assertSame(array, list.array());
+    }
+
+    @Test
+    public void testAddAllFromBuffers() {
+        FloatBuffer floats = FloatBuffer.wrap(new float[] { 1, 2, 3, 4 });
+        floats.position(1);
+        FloatList floatList = new FloatList(1);
+        floatList.add(0);
+        floatList.addAll(floats);
+        assertArrayEquals(new float[] { 0, 2, 3, 4 }, floatList.toArray(), 0);
+        assertEquals(4, floats.position());
+
+        IntBuffer ints = ByteBuffer.allocateDirect(12).order(ByteOrder.nativeOrder()).asIntBuffer();
+        ints.put(new int[] { 7, 8, 9 }).flip();
+        IntList intList = new IntList();
+        intList.addAll(ints);
+        assertArrayEquals(new int[] { 7, 8, 9 }, intList.toArray());
+
+        ShortList shortList = new ShortList();
+        shortList.addAll(ShortBuffer.wrap(new short[] { 5, 6 }));
+        shortList.add((short) 1, (short) 2, (short) 3);
+        assertArrayEquals(new short[] { 5, 6, 1, 2, 3 }, shortList.toArray());
+
+        ByteList byteList = new ByteList();
+        byteList.addAll(ByteBuffer.wrap(new byte[] { -1, 2 }));
+        assertEquals(-1, byteList.get(0));
+    }
+
+    @Test
+    public void testAsBufferDoesNotCopy() {
+        IntList list = new IntList();
+        list.add(1, 2, 3);
+        IntBuffer buffer = list.asBuffer();
+        assertEquals(0, buffer.position());
+        assertEquals(3, buffer.limit());
+        list.set(1, 42);
+        assertEquals(42, buffer.get(1));
+        assertSame(list.array(), buffer.array());
+    }
+
+    @Test
+    public void testDirectExportDoesNotAllocate() {
+        JvmAllocationCounter counter = new JvmAllocationCounter();
+        Assume.assumeTrue(counter.isSupported());
+
+        FloatList floats = new FloatList();
+        IntList ints = new IntList();
+        ShortList shorts = new ShortList();
+        for (int i = 0; i < 64; i++) {
+            floats.add(i);
+            ints.add(i);
+            shorts.add((short) i);
+        }
+        ByteBuffer floatTarget = floats.toDirectBuffer((ByteBuffer) null);
+        ByteBuffer intTarget = ints.toDirectBuffer((ByteBuffer) null);
+        ByteBuffer shortTarget = shorts.toDirectBuffer((ByteBuffer) null);
+
+        long before = counter.allocatedBytes();
+        for (int frame = 0; frame < 100; frame++) {
+            floats.toDirectBuffer(floatTarget);
+            ints.toDirectBuffer(intTarget);
+            shorts.toDirectBuffer(shortTarget);
+        }
+        assertEquals(0, counter.allocatedBytes() - before);
+        assertEquals(63, intTarget.getInt(63 * 4));
+        assertEquals(63, shortTarget.getShort(63 * 2));
+    }
+
+    @Test
+    public void testDirectExportReusesTarget() {
+        FloatList list = new FloatList();
+        list.add(1, 2, 3);
+        ByteBuffer target = list.toDirectBuffer((ByteBuffer) null);
+        assertTrue(target.isDirect());
+        assertEquals(ByteOrder.nativeOrder(), target.order());
+        assertEquals(12, target.limit());
+        assertEquals(2, target.getFloat(4), 0);
+
+        // the next frame's fill fits, so the same buffer comes back
+        list.clear();
+        list.add(5, 6);
+        assertSame(target, list.toDirectBuffer(target));
+        assertEquals(8, target.limit());
+        assertEquals(0, target.position());
+        assertEquals(6, target.getFloat(4), 0);
+
+        // too small: a new buffer with room to grow
+        list.addAll(new float[8], 0, 8);
+        ByteBuffer grown = list.toDirectBuffer(target);
+        assertNotSame(target, grown);
+        assertEquals(40, grown.limit());
+        assertTrue(grown.capacity() >= 40);
+
+        ShortList shorts = new ShortList();
+        shorts.add((short) 0, (short) 1, (short) 2);
+        ShortBuffer indices = shorts.toDirectBuffer();
+        assertTrue(indices.isDirect());
+        assertEquals(2, indices.get(2));
+
+        ByteList bytes = new ByteList();
+        bytes.add((byte) 9, (byte) 8);
+        ByteBuffer exported = bytes.toDirectBuffer(ByteBuffer.allocateDirect(16));
+        assertEquals(0, exported.position());
+        assertEquals(2, exported.limit());
+        assertEquals(8, exported.get(1));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetPastSize() {
+        ShortList list = new ShortList(8);
+        list.add((short) 1);
+        list.get(1);
+    }
+}
@@ -0,0 +1,104 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import matt.noobgraphics.math.Matrix4;
+import matt.noobgraphics.math.Quaternion;
+import matt.noobgraphics.math.Vector3;
+import matt.noobgraphics.math.Vector4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class QuaternionUnitTest {
+    public static final double DELTA = 0.00001;
+
+    private static void assertMatrixEquals(Matrix4 expected, Matrix4 actual) {
+        for (int i = 0; i < Matrix4.MATRIX_SIZE; i++)
+            assertEquals(expected.m[i], actual.m[i], DELTA);
+    }
+
+    private static void assertSameRotation(Quaternion expected, Quaternion actual) {
+        // q and -q are the same rotation
+        float sign = expected.dot(actual) < 0 ? -1 : 1;
+        for (int i = 0; i < Quaternion.SIZE; i++)
+            assertEquals(expected.q[i], sign * actual.q[i], DELTA);
+    }
+
+    @Test
+    public void testIdentity() {
+        Quaternion q = new Quaternion();
+        assertMatrixEquals(Matrix4.identity(), q.toMatrix());
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        Quaternion a = new Quaternion(0.0f, 0, 0, 1);
+        Quaternion b = new Quaternion(-0.0f, 0, 0, 1);
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a, new Quaternion(0, 0, 1, 0));
+    }
+
+    @Test
+    public void testToMatrixMatchesRotate() {
+        Vector3 axis = new Vector3(1.0f, -2.0f, 0.5f);
+        axis.normalize();
+        Quaternion q = Quaternion.fromAxisAngle(axis, 0.8f);
+        assertMatrixEquals(Matrix4.rotate(axis, 0.8f), q.toMatrix());
+        assertEquals(1.0f, q.length(), DELTA);
+    }
+
+    @Test
+    public void testMultiplyComposesRotations() {
+        Quaternion a = Quaternion.fromAxisAngle(new Vector3(0, 0, 1), 0.5f);
+        Quaternion b = Quaternion.fromAxisAngle(new Vector3(1, 0, 0), 1.2f);
+
+        assertMatrixEquals(a.toMatrix().multiply(b.toMatrix()), a.multiply(b).toMatrix());
+
+        // out aliasing the input
+        Quaternion c = new Quaternion(a);
+        c.multiply(b, c);
+        assertSameRotation(a.multiply(b), c);
+    }
+
+    @Test
+    public void testSlerp() {
+        Vector3 z = new Vector3(0, 0, 1);
+        Quaternion a = Quaternion.fromAxisAngle(z, 0.0f);
+        Quaternion b = Quaternion.fromAxisAngle(z, 2.0f);
+        Quaternion out = new Quaternion();
+
+        assertSameRotation(a, Quaternion.slerp(a, b, 0.0f, out));
+        assertSameRotation(b, Quaternion.slerp(a, b, 1.0f, out));
+        assertSameRotation(Quaternion.fromAxisAngle(z, 0.5f), Quaternion.slerp(a, b, 0.25f, out));
+
+        // takes the short way round even if b is given with the opposite sign
+        Quaternion negB = new Quaternion(-b.x(), -b.y(), -b.z(), -b.w());
+        assertSameRotation(Quaternion.fromAxisAngle(z, 1.0f), Quaternion.slerp(a, negB, 0.5f, out));
+
+        // nearly identical rotations go through the normalized lerp path
+        Quaternion c = Quaternion.fromAxisAngle(z, 0.001f);
+        Quaternion.slerp(a, c, 0.5f, out);
+        assertEquals(1.0f, out.length(), DELTA);
+        assertSameRotation(Quaternion.fromAxisAngle(z, 0.0005f), out);
+    }
+
+    @Test
+    public void testSetTRS() {
+        Vector3 t = new Vector3(1, 2, 3);
+        Vector3 s = new Vector3(2, 3, 4);
+        Vector3 axis = new Vector3(0, 1, 0);
+        Quaternion r = Quaternion.fromAxisAngle(axis, 0.7f);
+
+        Matrix4 expected = Matrix4.translate(1, 2, 3)
+                .multiply(Matrix4.rotate(axis, 0.7f))
+                .multiply(Matrix4.scale(2, 3, 4));
+        assertMatrixEquals(expected, new Matrix4().setTRS(t, r, s));
+
+        Vector4 p = new Matrix4().setTRS(t, r, s).multiply(new Vector4(1, 1, 1, 1));
+        Vector4 pExpected = expected.multiply(new Vector4(1, 1, 1, 1));
+        for (int i = 0; i < 4; i++)
+            assertEquals(pExpected.v[i], p.v[i], DELTA);
+    }
+}
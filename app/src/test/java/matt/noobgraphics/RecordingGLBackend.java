@@ -0,0 +1,80 @@
+package matt.noobgraphics;
+
+import java.nio.Buffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FakeGLBackend that also logs buffer object, program and draw calls as short strings, e.g.
+ * "bind 3", "data 3 1024 null", "sub 3 64 128", "use 2", "color 0.5", "elements 6 64",
+ * "arrays 0 3", "delete program 2", "texture 4 16x16", so tests can check the exact sequence. Unlike its
+ * parent it allocates, so keep it out of allocation tests.
+ */
+public class RecordingGLBackend extends FakeGLBackend {
+    public final List<String> calls = new ArrayList<>();
+    private int mBound;
+    private int mBoundTexture;
+
+    @Override public void glBindBuffer(int target, int buffer) {
+        mBound = buffer;
+        calls.add("bind " + buffer);
+    }
+
+    @Override public void glBufferData(int target, int size, Buffer data, int usage) {
+        calls.add("data " + mBound + " " + size + (data == null ? " null" : ""));
+    }
+
+    @Override public void glBufferSubData(int target, int offset, int size, Buffer data) {
+        calls.add("sub " + mBound + " " + offset + " " + size);
+    }
+
+    @Override public void glDeleteBuffers(int n, int[] buffers, int offset) {
+        for (int i = 0; i < n; i++)
+            calls.add("delete " + buffers[offset + i]);
+    }
+
+    @Override public void glDeleteProgram(int program) {
+        calls.add("delete program " + program);
+    }
+
+    @Override public void glDeleteTextures(int n, int[] textures, int offset) {
+        for (int i = 0; i < n; i++)
+            calls.add("delete texture " + textures[offset + i]);
+    }
+
+    @Override public void glBindTexture(int target, int texture) {
+        mBoundTexture = texture;
+    }
+
+    @Override public void glTexImage2D(int target, int level, int internalformat, int width, int height,
+                                       int border, int format, int type, Buffer pixels) {
+        calls.add("texture " + mBoundTexture + " " + width + "x" + height);
+    }
+
+    @Override public void glUseProgram(int program) {
+        super.glUseProgram(program);
+        calls.add("use " + program);
+    }
+
+    @Override public void glUniform4fv(int location, int count, float[] v, int offset) {
+        super.glUniform4fv(location, count, v, offset);
+        calls.add("color " + v[offset]);
+    }
+
+    @Override public void glDrawArrays(int mode, int first, int count) {
+        super.glDrawArrays(mode, first, count);
+        calls.add("arrays " + first + " " + count);
+    }
+
+    @Override public void glDrawElements(int mode, int count, int type, int offset) {
+        super.glDrawElements(mode, count, type, offset);
+        calls.add("elements " + count + " " + offset);
+    }
+
+    /** @return the calls since the last time, and forgets them */
+    public List<String> take() {
+        List<String> taken = new ArrayList<>(calls);
+        calls.clear();
+        return taken;
+    }
+}
@@ -0,0 +1,61 @@
+package matt.noobgraphics;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import matt.noobgraphics.debug.AllocationTracker;
+import matt.noobgraphics.graphics.MyGLRenderer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the real render loop against a fake GL and fails if the steady state allocates more than
+ * the budget. The loop runs in windows of frames until two windows in a row stay within the
+ * budget, so however long the JIT takes to settle only its one-off allocations are forgiven; a
+ * loop that keeps allocating never gets there. Window size and budget can be changed with
+ * -Dnoobgraphics.allocFrames and -Dnoobgraphics.allocBudget (average bytes per frame).
+ */
+public class RenderAllocationUnitTest {
+    private static final int FRAMES = Integer.getInteger("noobgraphics.allocFrames", 10000);
+    private static final long BUDGET = Long.getLong("noobgraphics.allocBudget", 0L);
+    // enough for any JIT to finish compiling a loop this small
+    private static final int MAX_WINDOWS = 30;
+
+    @Test
+    public void testSteadyStateFrameAllocations() {
+        JvmAllocationCounter counter = new JvmAllocationCounter();
+        Assume.assumeTrue(counter.isSupported());
+
+        FakeGLBackend gl = new FakeGLBackend();
+        MyGLRenderer renderer = new MyGLRenderer(gl);
+        AllocationTracker tracker = new AllocationTracker(counter);
+        renderer.setAllocationTracker(tracker, false);
+
+        renderer.onSurfaceCreated(null, null);
+        renderer.onSurfaceChanged(null, 1080, 1920);
+
+        int frame = 0;
+        int windows = 0;
+        int clean = 0;
+        String report = null;
+        while (clean < 2 && windows < MAX_WINDOWS) {
+            tracker.reset();
+            for (int i = 0; i < FRAMES; i++, frame++) {
+                renderer.setAngle(frame * 0.5f);
+                renderer.onDrawFrame(null);
+            }
+            assertEquals(FRAMES, tracker.getFrameCount());
+            windows++;
+            if (tracker.getAverageFrameBytes() <= BUDGET) {
+                clean++;
+            } else {
+                clean = 0;
+                report = tracker.report(3);
+            }
+        }
+
+        assertEquals(2 * frame, gl.drawCalls);
+        assertTrue("Render loop still allocates after " + windows + " windows: " + report, clean == 2);
+    }
+}
@@ -0,0 +1,193 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import matt.noobgraphics.math.Matrix4;
+import matt.noobgraphics.math.Quaternion;
+import matt.noobgraphics.math.Vector3;
+import matt.noobgraphics.scene.SceneGraph;
+
+import static org.junit.Assert.*;
+
+public class SceneGraphUnitTest {
+    private static final float EPS = 1e-5f;
+
+    private static Matrix4 trs(float tx, float ty, float tz, Quaternion r, float s) {
+        return new Matrix4().setTRS(new Vector3(tx, ty, tz), r, new Vector3(s));
+    }
+
+    private static void assertMatrix(Matrix4 expected, Matrix4 actual) {
+        assertArrayEquals(expected.m, actual.m, EPS);
+    }
+
+    @Test
+    public void testWorldIsParentTimesLocal() {
+        SceneGraph graph = new SceneGraph(2);
+        int root = graph.createNode(SceneGraph.NO_PARENT);
+        int child = graph.createNode(root);
+        int grandchild = graph.createNode(child);
+
+        Quaternion r1 = Quaternion.fromAxisAngle(new Vector3(0, 0, 1), 0.5f);
+        Quaternion r2 = Quaternion.fromAxisAngle(new Vector3(0, 1, 0), -1.2f);
+        graph.setTranslation(root, 1, 2, 3);
+        graph.setRotation(root, r1.x(), r1.y(), r1.z(), r1.w());
+        graph.setScale(child, 2, 2, 2);
+        graph.setTranslation(child, 0, 1, 0);
+        graph.setRotation(grandchild, r2.x(), r2.y(), r2.z(), r2.w());
+        graph.setTranslation(grandchild, 4, 0, 0);
+
+        assertEquals(3, graph.update());
+
+        Matrix4 rootWorld = trs(1, 2, 3, r1, 1);
+        Matrix4 childWorld = rootWorld.multiply(trs(0, 1, 0, new Quaternion(), 2));
+        Matrix4 grandchildWorld = childWorld.multiply(trs(4, 0, 0, r2, 1));
+
+        Matrix4 out = new Matrix4();
+        assertMatrix(rootWorld, graph.getWorldMatrix(root, out));
+        assertMatrix(childWorld, graph.getWorldMatrix(child, out));
+        assertMatrix(grandchildWorld, graph.getWorldMatrix(grandchild, out));
+    }
+
+    @Test
+    public void testOnlyDirtySubtreesAreUpdated() {
+        SceneGraph graph = new SceneGraph();
+        int root = graph.createNode(SceneGraph.NO_PARENT);
+        int a = graph.createNode(root);
+        int b = graph.createNode(root);
+        graph.createNode(a);
+        graph.createNode(a);
+        int b1 = graph.createNode(b);
+        assertEquals(6, graph.update());
+        assertEquals(0, graph.update());
+
+        graph.setTranslation(a, 1, 0, 0);
+        assertEquals(3, graph.update());
+
+        graph.setTranslation(b1, 1, 0, 0);
+        assertEquals(1, graph.update());
+
+        graph.setTranslation(root, 0, 1, 0);
+        graph.setTranslation(b1, 0, 0, 1);
+        assertEquals(6, graph.update());
+
+        graph.invalidateAll();
+        assertEquals(6, graph.update());
+    }
+
+    @Test
+    public void testReparent() {
+        SceneGraph graph = new SceneGraph();
+        int left = graph.createNode(SceneGraph.NO_PARENT);
+        int right = graph.createNode(SceneGraph.NO_PARENT);
+        int child = graph.createNode(left);
+        graph.setTranslation(left, -5, 0, 0);
+        graph.setTranslation(right, 5, 0, 0);
+        graph.setTranslation(child, 0, 1, 0);
+        graph.update();
+
+        Matrix4 out = new Matrix4();
+        assertEquals(-5, graph.getWorldMatrix(child, out).m[12], EPS);
+
+        graph.setParent(child, right);
+        assertEquals(1, graph.update());
+        assertEquals(5, graph.getWorldMatrix(child, out).m[12], EPS);
+        assertEquals(right, graph.getParent(child));
+
+        // moving the old parent no longer touches the child
+        graph.setTranslation(left, -6, 0, 0);
+        assertEquals(1, graph.update());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCycleRejected() {
+        SceneGraph graph = new SceneGraph();
+        int root = graph.createNode(SceneGraph.NO_PARENT);
+        int child = graph.createNode(root);
+        graph.setParent(root, child);
+    }
+
+    @Test
+    public void testBoundsPropagateUp() {
+        SceneGraph graph = new SceneGraph();
+        int root = graph.createNode(SceneGraph.NO_PARENT);
+        int a = graph.createNode(root);
+        int b = graph.createNode(root);
+        graph.setLocalBounds(a, -1, -1, -1, 1, 1, 1);
+        graph.setLocalBounds(b, -1, -1, -1, 1, 1, 1);
+        graph.setTranslation(a, -3, 0, 0);
+        graph.setTranslation(b, 3, 0, 0);
+        graph.setScale(b, 2, 2, 2);
+        graph.update();
+
+        float[] bounds = new float[6];
+        assertArrayEquals(new float[] { -4, -2, -2, 5, 2, 2 }, graph.getWorldBounds(root, bounds), EPS);
+
+        // a rotated box grows to the enclosing axis aligned box
+        Quaternion r = Quaternion.fromAxisAngle(new Vector3(0, 0, 1), (float) Math.PI / 4);
+        graph.setRotation(a, r.x(), r.y(), r.z(), r.w());
+        graph.setTranslation(b, 0, 0, 0);
+        graph.update();
+        float h = (float) Math.sqrt(2);
+        assertArrayEquals(new float[] { -3 - h, -2, -2, 2, 2, 2 }, graph.getWorldBounds(root, bounds), EPS);
+        assertArrayEquals(new float[] { -3 - h, -h, -1, -3 + h, h, 1 }, graph.getWorldBounds(a, bounds), EPS);
+    }
+
+    @Test
+    public void testReparentedBoundsReachNewParent() {
+        SceneGraph graph = new SceneGraph();
+        int left = graph.createNode(SceneGraph.NO_PARENT);
+        int right = graph.createNode(SceneGraph.NO_PARENT);
+        int child = graph.createNode(left);
+        graph.update();
+        float[] bounds = new float[6];
+        graph.getWorldBounds(left, bounds);
+        graph.getWorldBounds(right, bounds);
+
+        // fresh bounds flag the child before it moves
+        graph.setLocalBounds(child, -1, -1, -1, 1, 1, 1);
+        graph.setParent(child, right);
+        graph.update();
+        assertArrayEquals(new float[] { -1, -1, -1, 1, 1, 1 }, graph.getWorldBounds(right, bounds), EPS);
+        assertTrue(graph.getWorldBounds(left, bounds)[0] > bounds[3]);
+
+        // a node created under an updated parent
+        int late = graph.createNode(left);
+        graph.setLocalBounds(late, 0, 0, 0, 2, 2, 2);
+        graph.update();
+        assertArrayEquals(new float[] { 0, 0, 0, 2, 2, 2 }, graph.getWorldBounds(left, bounds), EPS);
+    }
+
+    @Test
+    public void testEmptyBounds() {
+        SceneGraph graph = new SceneGraph();
+        int root = graph.createNode(SceneGraph.NO_PARENT);
+        graph.createNode(root);
+        graph.update();
+        float[] bounds = graph.getWorldBounds(root, new float[6]);
+        assertTrue(bounds[0] > bounds[3]);
+    }
+
+    @Test
+    public void testMatchesFullRecompute() {
+        SceneGraph graph = new SceneGraph(16);
+        java.util.Random random = new java.util.Random(7);
+        int nodes = 2000;
+        for (int i = 0; i < nodes; i++)
+            graph.createNode(i == 0 ? SceneGraph.NO_PARENT : random.nextInt(i));
+        graph.update();
+
+        for (int frame = 0; frame < 20; frame++) {
+            for (int i = 0; i < 20; i++) {
+                int n = random.nextInt(nodes);
+                graph.setTranslation(n, random.nextFloat(), random.nextFloat(), random.nextFloat());
+                graph.setScale(n, 1 + random.nextFloat(), 1, 1);
+            }
+            graph.update();
+            float[] incremental = graph.getWorldMatrices().clone();
+            graph.invalidateAll();
+            assertEquals(nodes, graph.update());
+            for (int i = 0; i < nodes * 16; i++)
+                assertEquals(graph.getWorldMatrices()[i], incremental[i], 0.0f);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import android.opengl.GLES20;
+
+import matt.noobgraphics.graphics.StreamingBuffer;
+import matt.noobgraphics.graphics.VertexBindings;
+import matt.noobgraphics.mesh.MeshFile;
+import matt.noobgraphics.mesh.VertexLayout;
+
+import static org.junit.Assert.*;
+
+public class StreamingBufferUnitTest {
+    private static final ByteBuffer DATA = ByteBuffer.allocateDirect(64);
+
+    @Test
+    public void testRotateMovesToTheNextBufferEachFrame() {
+        RecordingGLBackend gl = new RecordingGLBackend();
+        StreamingBuffer stream = new StreamingBuffer(gl, GLES20.GL_ARRAY_BUFFER, 100, StreamingBuffer.ROTATE, 3);
+        assertEquals(Arrays.asList("bind 1", "data 1 100 null", "bind 2", "data 2 100 null",
+                "bind 3", "data 3 100 null"), gl.take());
+
+        // frame 0 writes to buffer 2, frame 1 to 3, frame 2 back to 1
+        int[] expected = { 2, 3, 1, 2 };
+        for (int frame = 0; frame < 4; frame++) {
+            stream.beginFrame();
+            assertEquals(0, stream.write(DATA, 10));
+            assertEquals(12, stream.write(DATA, 8));      // aligned to 4
+            int buffer = expected[frame];
+            assertEquals(buffer, stream.getBuffer());
+            assertEquals(Arrays.asList("bind " + buffer, "sub " + buffer + " 0 10",
+                    "bind " + buffer, "sub " + buffer + " 12 8"), gl.take());
+        }
+        assertEquals(4, stream.getRotationCount());
+        assertEquals(0, stream.getWrapCount());
+        assertEquals(72, stream.getBytesStreamed());
+    }
+
+    @Test
+    public void testOrphanAppendsAcrossFramesAndOrphansOnWrap() {
+        RecordingGLBackend gl = new RecordingGLBackend();
+        StreamingBuffer stream = new StreamingBuffer(gl, GLES20.GL_ARRAY_BUFFER, 100, StreamingBuffer.ORPHAN, 3);
+        assertEquals(Arrays.asList("bind 1", "data 1 100 null"), gl.take());
+
+        stream.beginFrame();
+        assertEquals(0, stream.write(DATA, 40));
+        stream.beginFrame();
+        assertEquals(40, stream.write(DATA, 40));
+        gl.take();
+
+        // doesn't fit: orphan, then start over at 0 in the same buffer object
+        assertEquals(0, stream.write(DATA, 40));
+        assertEquals(Arrays.asList("bind 1", "data 1 100 null", "sub 1 0 40"), gl.take());
+        assertEquals(1, stream.getWrapCount());
+        assertEquals(0, stream.getRotationCount());
+        assertEquals(120, stream.getBytesStreamed());
+        assertEquals(3, stream.getWriteCount());
+    }
+
+    @Test
+    public void testRotateOrphansWhenAFrameOverflows() {
+        RecordingGLBackend gl = new RecordingGLBackend();
+        StreamingBuffer stream = new StreamingBuffer(gl, GLES20.GL_ARRAY_BUFFER, 64, StreamingBuffer.ROTATE, 2);
+        stream.beginFrame();
+        stream.write(DATA, 60);
+        gl.take();
+        assertEquals(0, stream.write(DATA, 8));
+        assertEquals(Arrays.asList("bind 2", "data 2 64 null", "sub 2 0 8"), gl.take());
+        assertEquals(1, stream.getWrapCount());
+
+        stream.release();
+        assertEquals(Arrays.asList("delete 1", "delete 2"), gl.take());
+    }
+
+    @Test
+    public void testRecreatedInNewContext() {
+        RecordingGLBackend gl = new RecordingGLBackend();
+        StreamingBuffer stream = new StreamingBuffer(gl, GLES20.GL_ARRAY_BUFFER, 64, StreamingBuffer.ORPHAN);
+        stream.write(DATA, 40);
+        gl.take();
+
+        // the old name belongs to the lost context and isn't deleted
+        stream.onContextCreated();
+        assertEquals(Arrays.asList("bind 2", "data 2 64 null"), gl.take());
+        assertEquals(2, stream.getBuffer());
+        assertEquals(0, stream.write(DATA, 8));
+        assertEquals(0, stream.getWrapCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooBig() {
+        new StreamingBuffer(new FakeGLBackend(), GLES20.GL_ARRAY_BUFFER, 16, StreamingBuffer.ORPHAN).write(DATA, 17);
+    }
+
+    @Test
+    public void testBindAtBufferOffset() {
+        FakeGLBackend gl = new FakeGLBackend();
+        StreamingBuffer stream = new StreamingBuffer(gl, GLES20.GL_ARRAY_BUFFER, 256, StreamingBuffer.ROTATE);
+        VertexLayout layout = new VertexLayout().add(MeshFile.POSITION, 3, MeshFile.TYPE_FLOAT, false);
+        VertexBindings bindings = new VertexBindings(gl);
+        stream.beginFrame();
+        int offset = stream.write(DATA, 36);
+        bindings.bind(1, layout, offset);
+        assertEquals(1, gl.attribPointerCalls);
+        bindings.unbind();
+    }
+}
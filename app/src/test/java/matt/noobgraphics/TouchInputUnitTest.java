@@ -0,0 +1,120 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import matt.noobgraphics.graphics.MyGLRenderer;
+import matt.noobgraphics.input.RenderRequestThrottle;
+import matt.noobgraphics.input.TouchCoalescer;
+import matt.noobgraphics.input.TouchEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TouchInputUnitTest {
+    public static final double DELTA = 0.00001;
+
+    private static TouchCoalescer newCoalescer() {
+        TouchCoalescer c = new TouchCoalescer();
+        c.setViewSize(100, 100);
+        return c;
+    }
+
+    @Test
+    public void testHistoricalSamplesAreAccumulated() {
+        TouchCoalescer c = newCoalescer();
+        c.onTouchEvent(new FakeTouchEvent(TouchEvent.ACTION_DOWN).sample(60, 10, 0));
+
+        // top right quadrant: both directions count forwards
+        FakeTouchEvent move = new FakeTouchEvent(TouchEvent.ACTION_MOVE)
+                .sample(61, 10, 100)
+                .sample(62, 11, 200)
+                .sample(65, 13, 300);
+        assertTrue(c.onTouchEvent(move));
+
+        assertEquals(3, c.getSampleCount());
+        assertEquals(5.0f, c.getDx(), DELTA);
+        assertEquals(3.0f, c.getDy(), DELTA);
+        assertEquals(8.0f, c.getRotation(), DELTA);
+        assertEquals(100, c.getOldestSampleNanos());
+    }
+
+    @Test
+    public void testSameResultAsOneEventPerSample() {
+        float[][] path = { {60, 10}, {55, 20}, {40, 70}, {42, 90}, {80, 60}, {81, 59} };
+
+        TouchCoalescer batched = newCoalescer();
+        batched.onTouchEvent(new FakeTouchEvent(TouchEvent.ACTION_DOWN).sample(path[0][0], path[0][1], 0));
+        FakeTouchEvent move = new FakeTouchEvent(TouchEvent.ACTION_MOVE);
+        for (int i = 1; i < path.length; i++)
+            move.sample(path[i][0], path[i][1], i);
+        batched.onTouchEvent(move);
+
+        TouchCoalescer single = newCoalescer();
+        single.onTouchEvent(new FakeTouchEvent(TouchEvent.ACTION_DOWN).sample(path[0][0], path[0][1], 0));
+        for (int i = 1; i < path.length; i++)
+            single.onTouchEvent(new FakeTouchEvent(TouchEvent.ACTION_MOVE).sample(path[i][0], path[i][1], i));
+
+        assertEquals(single.getRotation(), batched.getRotation(), DELTA);
+        assertEquals(single.getDx(), batched.getDx(), DELTA);
+        assertEquals(single.getDy(), batched.getDy(), DELTA);
+        assertEquals(2, batched.getTotalEvents());
+        assertEquals(path.length - 1, batched.getTotalSamples());
+    }
+
+    @Test
+    public void testMidLineReversal() {
+        TouchCoalescer c = newCoalescer();
+        // bottom left quadrant: both directions reversed
+        c.onTouchEvent(new FakeTouchEvent(TouchEvent.ACTION_DOWN).sample(10, 80, 0));
+        c.onTouchEvent(new FakeTouchEvent(TouchEvent.ACTION_MOVE).sample(12, 83, 1));
+        assertEquals(-5.0f, c.getRotation(), DELTA);
+    }
+
+    @Test
+    public void testResetAndUp() {
+        TouchCoalescer c = newCoalescer();
+        c.onTouchEvent(new FakeTouchEvent(TouchEvent.ACTION_DOWN).sample(60, 10, 0));
+        c.onTouchEvent(new FakeTouchEvent(TouchEvent.ACTION_MOVE).sample(70, 10, 1));
+        c.reset();
+        assertFalse(c.hasDelta());
+        assertEquals(0.0f, c.getRotation(), DELTA);
+
+        // no movement, no delta
+        assertFalse(c.onTouchEvent(new FakeTouchEvent(TouchEvent.ACTION_MOVE).sample(70, 10, 2)));
+        assertFalse(c.onTouchEvent(new FakeTouchEvent(TouchEvent.ACTION_UP).sample(70, 10, 3)));
+    }
+
+    @Test
+    public void testThrottleAllowsOneOutstandingRequest() {
+        RenderRequestThrottle throttle = new RenderRequestThrottle();
+        assertTrue(throttle.tryRequest());
+        for (int i = 0; i < 10; i++)
+            assertFalse(throttle.tryRequest());
+
+        throttle.onFrameStarted();
+        assertTrue(throttle.tryRequest());
+        assertEquals(2, throttle.getRequestedCount());
+        assertEquals(10, throttle.getSuppressedCount());
+    }
+
+    @Test
+    public void testRendererMeasuresInputLatency() {
+        MyGLRenderer renderer = new MyGLRenderer(new FakeGLBackend());
+        renderer.onSurfaceCreated(null, null);
+        renderer.onSurfaceChanged(null, 100, 100);
+
+        long inputTime = System.nanoTime();
+        renderer.setAngle(10.0f, inputTime);
+        assertTrue(renderer.getRenderThrottle().tryRequest());
+        renderer.onDrawFrame(null);
+
+        assertFalse(renderer.getRenderThrottle().isPending());
+        assertEquals(1, renderer.getInputLatency().getCount());
+        assertTrue(renderer.getInputLatency().getLastNanos() >= 0);
+
+        // redrawing the same input doesn't count again
+        renderer.onDrawFrame(null);
+        assertEquals(1, renderer.getInputLatency().getCount());
+    }
+}
@@ -0,0 +1,126 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import matt.noobgraphics.math.Matrix4;
+import matt.noobgraphics.math.Quaternion;
+import matt.noobgraphics.math.Vector3;
+import matt.noobgraphics.scene.TransformStore;
+
+import static org.junit.Assert.*;
+
+public class TransformStoreUnitTest {
+    private static final float EPS = 1e-5f;
+
+    @Test
+    public void testSparseSet() {
+        TransformStore store = new TransformStore(2);
+        int a = store.create();
+        int b = store.create();
+        int c = store.create();
+        assertEquals(3, store.size());
+
+        store.setPosition(c, 7, 8, 9);
+        store.destroy(a);
+        assertEquals(2, store.size());
+        assertFalse(store.contains(a));
+        // the last entity moved into the hole and kept its data
+        assertEquals(0, store.indexOf(c));
+        assertEquals(c, store.entityAt(0));
+        assertEquals(7, store.getPositions()[0], 0);
+        assertEquals(b, store.entityAt(1));
+
+        // ids are reused and come back with an identity transform
+        int d = store.create();
+        assertEquals(a, d);
+        assertEquals(2, store.indexOf(d));
+        assertEquals(0, store.getPositions()[6], 0);
+        assertEquals(1, store.getRotations()[11], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeadEntity() {
+        TransformStore store = new TransformStore();
+        int a = store.create();
+        store.destroy(a);
+        store.setPosition(a, 1, 1, 1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDestroyParent() {
+        TransformStore store = new TransformStore();
+        int parent = store.create();
+        int child = store.create();
+        store.setParent(child, parent);
+        store.destroy(parent);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCycleRejected() {
+        TransformStore store = new TransformStore();
+        int a = store.create();
+        int b = store.create();
+        store.setParent(b, a);
+        store.setParent(a, b);
+    }
+
+    @Test
+    public void testHierarchy() {
+        TransformStore store = new TransformStore();
+        // create the child first so it sits before its parent in the dense arrays
+        int child = store.create();
+        int root = store.create();
+        store.setParent(child, root);
+
+        Quaternion r = Quaternion.fromAxisAngle(new Vector3(0, 0, 1), 0.7f);
+        store.setPosition(root, 1, 2, 3);
+        store.setRotation(root, r.x(), r.y(), r.z(), r.w());
+        store.setPosition(child, 0, 5, 0);
+        store.setScale(child, 2, 2, 2);
+        store.update();
+
+        Matrix4 rootWorld = new Matrix4().setTRS(new Vector3(1, 2, 3), r, new Vector3(1));
+        Matrix4 childWorld = rootWorld.multiply(
+                new Matrix4().setTRS(new Vector3(0, 5, 0), new Quaternion(), new Vector3(2)));
+        assertArrayEquals(rootWorld.m, store.getWorldMatrix(root, new Matrix4()).m, EPS);
+        assertArrayEquals(childWorld.m, store.getWorldMatrix(child, new Matrix4()).m, EPS);
+
+        store.setParent(child, TransformStore.NONE);
+        store.update();
+        assertEquals(5, store.getWorldMatrix(child, new Matrix4()).m[13], EPS);
+    }
+
+    @Test
+    public void testMatchesObjectPerEntity() {
+        Random random = new Random(3);
+        int count = 500;
+        TransformStore store = new TransformStore(8);
+        Matrix4[] expected = new Matrix4[count];
+        int[] parents = new int[count];
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, store.create());
+            parents[i] = i == 0 ? TransformStore.NONE : random.nextInt(i);
+        }
+        // parents are set in reverse so the dense order is nothing like the hierarchy order
+        for (int i = count - 1; i > 0; i--)
+            store.setParent(i, parents[i]);
+
+        for (int i = 0; i < count; i++) {
+            Vector3 t = new Vector3(random.nextFloat(), random.nextFloat(), random.nextFloat());
+            Quaternion r = Quaternion.fromAxisAngle(new Vector3(1, 0, 0), random.nextFloat());
+            Vector3 s = new Vector3(1 + random.nextFloat());
+            store.setPosition(i, t.x(), t.y(), t.z());
+            store.setRotation(i, r.x(), r.y(), r.z(), r.w());
+            store.setScale(i, s.x(), s.y(), s.z());
+            Matrix4 local = new Matrix4().setTRS(t, r, s);
+            expected[i] = i == 0 ? local : expected[parents[i]].multiply(local);
+        }
+        store.update();
+
+        Matrix4 out = new Matrix4();
+        for (int i = 0; i < count; i++)
+            assertArrayEquals(expected[i].m, store.getWorldMatrix(i, out).m, 0);
+    }
+}
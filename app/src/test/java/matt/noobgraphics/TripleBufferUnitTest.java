@@ -0,0 +1,125 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import matt.noobgraphics.concurrent.TripleBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TripleBufferUnitTest {
+
+    /**
+     * Snapshot with redundant fields, so a torn (half written) read is detectable
+     */
+    private static class Snapshot {
+        long sequence;
+        long check;
+        final float[] payload = new float[16];
+
+        void write(long seq) {
+            sequence = seq;
+            for (int i = 0; i < payload.length; i++)
+                payload[i] = seq + i;
+            check = ~seq;
+        }
+
+        boolean isConsistent() {
+            if (check != ~sequence) return false;
+            for (int i = 0; i < payload.length; i++)
+                if (payload[i] != (float) (sequence + i)) return false;
+            return true;
+        }
+    }
+
+    private static TripleBuffer<Snapshot> newBuffer() {
+        Snapshot initial = new Snapshot();
+        initial.write(0);
+        return new TripleBuffer<>(initial, new Snapshot(), new Snapshot());
+    }
+
+    @Test
+    public void testInitialSnapshot() {
+        Snapshot initial = new Snapshot();
+        TripleBuffer<Snapshot> buffer = new TripleBuffer<>(initial, new Snapshot(), new Snapshot());
+        assertFalse(buffer.hasUpdate());
+        assertSame(initial, buffer.acquire());
+        assertSame(initial, buffer.acquire());
+    }
+
+    @Test
+    public void testLatestWins() {
+        TripleBuffer<Snapshot> buffer = newBuffer();
+        for (int i = 1; i <= 5; i++) {
+            buffer.beginWrite().write(i);
+            buffer.publish();
+        }
+        assertTrue(buffer.hasUpdate());
+        assertEquals(5, buffer.acquire().sequence);
+        assertFalse(buffer.hasUpdate());
+        assertEquals(5, buffer.acquire().sequence);
+        assertEquals(5, buffer.getPublishedCount());
+        assertEquals(1, buffer.getAcquiredCount());
+    }
+
+    @Test
+    public void testSlotsNeverShared() {
+        TripleBuffer<Snapshot> buffer = newBuffer();
+        for (int i = 1; i <= 100; i++) {
+            Snapshot front = buffer.acquire();
+            Snapshot back = buffer.beginWrite();
+            assertTrue(front != back);
+            back.write(i);
+            buffer.publish();
+            if (i % 3 == 0)
+                assertEquals(i, buffer.acquire().sequence);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDistinctSlots() {
+        Snapshot s = new Snapshot();
+        new TripleBuffer<>(s, s, new Snapshot());
+    }
+
+    /**
+     * Producer and consumer hammer the buffer concurrently. The consumer must never see a torn
+     * snapshot or a sequence number going backwards, and must end on the final snapshot.
+     */
+    @Test
+    public void testConcurrentStress() throws InterruptedException {
+        final TripleBuffer<Snapshot> buffer = newBuffer();
+        final long publishes = 2000000;
+        final AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (long i = 1; i <= publishes; i++) {
+                    buffer.beginWrite().write(i);
+                    buffer.publish();
+                }
+            }
+        });
+
+        producer.start();
+        long last = 0;
+        while (last < publishes && failure.get() == null) {
+            Snapshot s = buffer.acquire();
+            if (!s.isConsistent())
+                failure.set("torn snapshot at " + s.sequence);
+            else if (s.sequence < last)
+                failure.set("sequence went backwards " + last + " -> " + s.sequence);
+            last = s.sequence;
+        }
+        producer.join();
+
+        assertNull(failure.get());
+        assertEquals(publishes, buffer.acquire().sequence);
+    }
+}
@@ -0,0 +1,167 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import matt.noobgraphics.graphics.MeshShape;
+import matt.noobgraphics.math.Matrix4;
+import matt.noobgraphics.mesh.MappedMesh;
+import matt.noobgraphics.mesh.Mesh;
+import matt.noobgraphics.mesh.MeshFile;
+import matt.noobgraphics.mesh.ObjLoader;
+import matt.noobgraphics.mesh.VertexCodec;
+
+import static org.junit.Assert.*;
+
+public class VertexCodecUnitTest {
+
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    public void testHalfSpecialValues() {
+        assertEquals(0x3C00, VertexCodec.toHalf(1.0f) & 0xFFFF);
+        assertEquals(0xC000, VertexCodec.toHalf(-2.0f) & 0xFFFF);
+        assertEquals(0x0000, VertexCodec.toHalf(0.0f) & 0xFFFF);
+        assertEquals(0x8000, VertexCodec.toHalf(-0.0f) & 0xFFFF);
+        assertEquals(0x7BFF, VertexCodec.toHalf(65504f) & 0xFFFF);         // largest half
+        assertEquals(0x7C00, VertexCodec.toHalf(65520f) & 0xFFFF);         // rounds up to infinity
+        assertEquals(0x7C00, VertexCodec.toHalf(Float.POSITIVE_INFINITY) & 0xFFFF);
+        assertEquals(0x0001, VertexCodec.toHalf(5.9604645e-8f) & 0xFFFF);  // smallest subnormal
+        assertEquals(0x0000, VertexCodec.toHalf(2.0e-8f) & 0xFFFF);
+        assertTrue(Float.isNaN(VertexCodec.fromHalf(VertexCodec.toHalf(Float.NaN))));
+        // halfway between 1 and the next half rounds to even
+        assertEquals(0x3C00, VertexCodec.toHalf(1 + 1 / 2048f) & 0xFFFF);
+        assertEquals(0x3C02, VertexCodec.toHalf(1 + 3 / 2048f) & 0xFFFF);
+    }
+
+    @Test
+    public void testEveryHalfRoundTrips() {
+        for (int bits = 0; bits < 0x10000; bits++) {
+            float value = VertexCodec.fromHalf((short) bits);
+            if (Float.isNaN(value))
+                continue;
+            assertEquals(Integer.toHexString(bits), bits, VertexCodec.toHalf(value) & 0xFFFF);
+        }
+    }
+
+    @Test
+    public void testOctahedralAccuracy() {
+        Random random = new Random(3);
+        int count = 10000;
+        float[] normals = new float[count * 3];
+        for (int i = 0; i < count; i++) {
+            float x = (float) random.nextGaussian(), y = (float) random.nextGaussian(), z = (float) random.nextGaussian();
+            float length = (float) Math.sqrt(x * x + y * y + z * z);
+            normals[i * 3] = x / length;
+            normals[i * 3 + 1] = y / length;
+            normals[i * 3 + 2] = z / length;
+        }
+        // the axes and the folded edges are the awkward cases
+        System.arraycopy(new float[] { 0, 0, 1, 0, 0, -1, 1, 0, 0, 0, -1, 0 }, 0, normals, 0, 12);
+
+        ByteBuffer data = buffer(count * 8);
+        VertexCodec.encodeOctahedral(normals, count, data, 4, 8);
+        float[] decoded = new float[count * 3];
+        VertexCodec.decodeOctahedral(data, 4, 8, count, decoded);
+        for (int i = 0; i < count; i++) {
+            // angle from the cross product, which unlike acos(dot) is well conditioned near 0
+            double ax = normals[i * 3], ay = normals[i * 3 + 1], az = normals[i * 3 + 2];
+            double bx = decoded[i * 3], by = decoded[i * 3 + 1], bz = decoded[i * 3 + 2];
+            double cx = ay * bz - az * by, cy = az * bx - ax * bz, cz = ax * by - ay * bx;
+            double degrees = Math.toDegrees(Math.asin(Math.min(1, Math.sqrt(cx * cx + cy * cy + cz * cz))));
+            assertTrue(ax * bx + ay * by + az * bz > 0);
+            assertTrue(i + ": " + degrees, degrees < 0.01);
+        }
+        // the other half of each stride is untouched
+        assertEquals(0, data.getInt(0));
+    }
+
+    @Test
+    public void testPositionsWithinHalfAStep() {
+        Random random = new Random(5);
+        int count = 1000;
+        float[] positions = new float[count * 3];
+        for (int i = 0; i < positions.length; i++)
+            positions[i] = random.nextFloat() * 20 - 10;
+        positions[1] = 0;
+        float[] bounds = { -10, -10, 0, 10, 10, 0 };
+        for (int i = 0; i < count; i++)
+            positions[i * 3 + 2] = 0;     // a flat axis encodes as 0
+
+        ByteBuffer data = buffer(count * 8);
+        VertexCodec.encodePositions(positions, count, bounds, data, 0, 8);
+        float[] decoded = new float[count * 3];
+        VertexCodec.decodePositions(data, 0, 8, count, bounds, decoded);
+        float step = 20f / 65535;
+        for (int i = 0; i < positions.length; i++)
+            assertEquals(positions[i], decoded[i], step / 2 + 1e-5f);
+
+        // the decode matrix does the same as decodePositions
+        float[] matrix = new float[16];
+        VertexCodec.positionDecodeMatrix(bounds, matrix, 0);
+        float x = (data.getShort(0) & 0xFFFF) / 65535f, y = (data.getShort(2) & 0xFFFF) / 65535f;
+        assertEquals(decoded[0], matrix[0] * x + matrix[12], 1e-4f);
+        assertEquals(decoded[1], matrix[5] * y + matrix[13], 1e-4f);
+        assertEquals(1, matrix[15], 0);
+    }
+
+    @Test
+    public void testUnorm8() {
+        float[] colors = { 0, 1, 0.5f, 2, -1, 0.2f, 0.999f, 1 };
+        ByteBuffer data = buffer(8);
+        VertexCodec.encodeUnorm8(colors, 4, 2, data, 0, 4);
+        assertEquals(128, data.get(2) & 0xFF);
+        float[] decoded = new float[8];
+        VertexCodec.decodeUnorm8(data, 0, 4, 4, 2, decoded);
+        assertArrayEquals(new float[] { 0, 1, 128 / 255f, 1, 0, 51 / 255f, 1, 1 }, decoded, 1e-6f);
+    }
+
+    @Test
+    public void testQuantizedMeshFile() throws IOException {
+        Mesh mesh = ObjLoader.load(new ByteArrayInputStream((
+                "v -0.5 0.5 0\nv -0.5 -0.5 0\nv 0.5 -0.5 0\nv 0.5 0.5 0\n" +
+                "vt 0 1\nvt 0 0\nvt 1 0\nvt 1 1\nvn 0 0 1\n" +
+                "f 1/1/1 2/2/1 3/3/1 4/4/1\n").getBytes()));
+        MappedMesh mapped = new MappedMesh(MeshFile.encode(mesh, null, null, true));
+        assertEquals(16, mapped.getVertexStride());
+        assertTrue(mapped.hasQuantizedPositions());
+
+        int position = mapped.findAttribute(MeshFile.POSITION);
+        assertEquals(MeshFile.TYPE_UNSIGNED_SHORT, mapped.getAttributeType(position));
+        assertTrue(mapped.isAttributeNormalized(position));
+        int normal = mapped.findAttribute(MeshFile.NORMAL);
+        assertEquals(2, mapped.getAttributeComponents(normal));
+        assertEquals(MeshFile.TYPE_SHORT, mapped.getAttributeType(normal));
+        assertEquals(8, mapped.getAttributeOffset(normal));
+        int uv = mapped.findAttribute(MeshFile.TEX_COORD);
+        assertEquals(MeshFile.TYPE_HALF_FLOAT, mapped.getAttributeType(uv));
+        assertFalse(mapped.isAttributeNormalized(uv));
+        assertEquals(12, mapped.getAttributeOffset(uv));
+
+        float[] positions = new float[12];
+        VertexCodec.decodePositions(mapped.getVertexData(), 0, 16, 4, mapped.getBounds(new float[6]), positions);
+        assertArrayEquals(mesh.positions.toArray(), positions, 1e-6f);
+        float[] normals = new float[12];
+        VertexCodec.decodeOctahedral(mapped.getVertexData(), 8, 16, 4, normals);
+        assertArrayEquals(new float[] { 0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 1 }, normals, 0);
+        float[] uvs = new float[8];
+        VertexCodec.decodeHalf(mapped.getVertexData(), 12, 16, 2, 4, uvs);
+        assertArrayEquals(mesh.texCoords.toArray(), uvs, 0);
+
+        // drawn with the decode matrix folded into the mvp
+        FakeGLBackend gl = new FakeGLBackend();
+        float[] mvp = Matrix4.scale(2).m;
+        new MeshShape(gl, mapped).draw(mvp);
+        assertEquals(MeshFile.TYPE_UNSIGNED_SHORT, gl.lastAttribType);
+        assertTrue(gl.lastAttribNormalized);
+        assertEquals(2, gl.lastMatrix[0], 1e-6f);       // 2 x extent 1
+        assertEquals(-1, gl.lastMatrix[12], 1e-6f);     // 2 x min -0.5
+    }
+}
@@ -0,0 +1,115 @@
+package matt.noobgraphics;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import matt.noobgraphics.graphics.Square;
+import matt.noobgraphics.graphics.Triangle;
+import matt.noobgraphics.graphics.VertexBindings;
+import matt.noobgraphics.mesh.MeshFile;
+import matt.noobgraphics.mesh.VertexBuilder;
+import matt.noobgraphics.mesh.VertexCodec;
+import matt.noobgraphics.mesh.VertexLayout;
+
+import static org.junit.Assert.*;
+
+public class VertexLayoutUnitTest {
+
+    private static VertexLayout fullLayout() {
+        return new VertexLayout()
+                .add(MeshFile.POSITION, 3, MeshFile.TYPE_FLOAT, false)
+                .add(MeshFile.NORMAL, 3, MeshFile.TYPE_BYTE, true)
+                .add(MeshFile.TEX_COORD, 2, MeshFile.TYPE_HALF_FLOAT, false)
+                .add(MeshFile.COLOR, 4, MeshFile.TYPE_UNSIGNED_BYTE, true);
+    }
+
+    @Test
+    public void testOffsetsAreAligned() {
+        VertexLayout layout = fullLayout();
+        assertEquals(4, layout.getAttributeCount());
+        assertEquals(0, layout.getOffset(0));
+        assertEquals(12, layout.getOffset(1));
+        assertEquals(16, layout.getOffset(2));      // 3 bytes of normal padded to 4
+        assertEquals(20, layout.getOffset(3));
+        assertEquals(24, layout.getStride());
+        assertEquals(2, layout.find(MeshFile.TEX_COORD));
+        assertEquals("vTexCoord", layout.getName(2));
+        assertEquals(-1, new VertexLayout().add(MeshFile.POSITION, 3, MeshFile.TYPE_FLOAT, false).find(MeshFile.COLOR));
+    }
+
+    @Test
+    public void testBuilderConvertsTypes() {
+        VertexLayout layout = fullLayout();
+        VertexBuilder builder = new VertexBuilder(layout, 1);
+        builder.put(0, 1, 2, 3).put(1, 0, -1, 0.5f).put(2, 0.5f, 1).put(3, 1, 0, 0.5f, 2).next();
+        builder.put(0, 4, 5, 6).next();     // grows
+
+        ByteBuffer data = builder.getBuffer();
+        assertTrue(data.isDirect());
+        assertEquals(0, data.position());
+        assertEquals(48, data.limit());
+        assertEquals(2, data.getFloat(4), 0);
+        assertEquals(-127, data.get(13));
+        assertEquals(64, data.get(14));
+        assertEquals(0.5f, VertexCodec.fromHalf(data.getShort(16)), 0);
+        assertEquals(255, data.get(20) & 0xFF);
+        assertEquals(128, data.get(22) & 0xFF);
+        assertEquals(255, data.get(23) & 0xFF);     // clamped
+        assertEquals(6, data.getFloat(24 + 8), 0);
+
+        int capacity = data.capacity();
+        builder.clear();
+        builder.put(0, 7, 8, 9).next();
+        data = builder.getBuffer();
+        assertEquals(capacity, data.capacity());
+        assertEquals(24, data.limit());
+        assertEquals(7, data.getFloat(0), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongComponentCount() {
+        new VertexBuilder(fullLayout(), 1).put(0, 1, 2);
+    }
+
+    @Test
+    public void testBindingsLookUpOncePerProgramAndLayout() {
+        FakeGLBackend gl = new FakeGLBackend();
+        VertexBindings bindings = new VertexBindings(gl);
+        VertexLayout layout = fullLayout();
+        ByteBuffer vertices = new VertexBuilder(layout, 4).getBuffer();
+
+        for (int i = 0; i < 10; i++) {
+            bindings.bind(1, layout, vertices);
+            bindings.unbind();
+        }
+        assertEquals(1, bindings.getLookups());
+        assertEquals(4, gl.attribLookups);          // one per attribute name
+        assertEquals(10, gl.attribPointerCalls);    // the fake program only has vPosition
+        assertEquals(0, vertices.position());
+
+        bindings.bind(2, layout, vertices);
+        bindings.bind(1, layout, vertices);
+        assertEquals(2, bindings.getLookups());
+
+        bindings.clear();
+        bindings.bind(1, layout, vertices);
+        assertEquals(3, bindings.getLookups());
+    }
+
+    @Test
+    public void testShapesShareBindings() {
+        FakeGLBackend gl = new FakeGLBackend();
+        VertexBindings bindings = new VertexBindings(gl);
+        Square square = new Square(gl, bindings);
+        Triangle triangle = new Triangle(gl, bindings);
+        float[] mvp = new float[16];
+        for (int frame = 0; frame < 5; frame++) {
+            square.draw(mvp);
+            triangle.draw(mvp);
+        }
+        assertEquals(2, bindings.getLookups());
+        assertEquals(10, gl.drawCalls);
+        assertEquals(MeshFile.TYPE_FLOAT, gl.lastAttribType);
+    }
+}
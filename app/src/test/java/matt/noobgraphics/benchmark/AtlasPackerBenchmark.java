@@ -0,0 +1,70 @@
+package matt.noobgraphics.benchmark;
+
+import java.util.Random;
+
+import matt.noobgraphics.texture.AtlasPacker;
+
+/**
+ * Packs 10k images of three typical mixes into a 4096 wide atlas, online in arrival order and
+ * offline with insertAll, with and without rotation, 1 pixel padding:
+ *   glyphs   6 - 32 px, narrow
+ *   icons    16 - 128 px, mostly square
+ *   sprites  8 - 128 px, any aspect
+ * Reports occupancy (image pixels over the used atlas area) and packing time.
+ *
+ * Plain main() on the unit test classpath. Optional argument: images (default 10000).
+ */
+public class AtlasPackerBenchmark {
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        System.out.println(count + " images into 4096 x 16384, padding 1");
+        System.out.println("mix       mode     rotate  packed  occupancy  used rows   ms   us/insert");
+        String[] mixes = { "glyphs", "icons", "sprites" };
+        for (int round = 0; round < 2; round++) {
+            for (String mix : mixes) {
+                int[] widths = new int[count], heights = new int[count];
+                generate(mix, widths, heights);
+                for (int rotate = 0; rotate < 2; rotate++) {
+                    run(mix, "online", widths, heights, rotate == 1, round == 1);
+                    run(mix, "bulk", widths, heights, rotate == 1, round == 1);
+                }
+            }
+        }
+    }
+
+    private static void generate(String mix, int[] widths, int[] heights) {
+        Random random = new Random(mix.hashCode());
+        for (int i = 0; i < widths.length; i++) {
+            if (mix.equals("glyphs")) {
+                heights[i] = 12 + random.nextInt(21);
+                widths[i] = 6 + random.nextInt(heights[i] - 5);
+            } else if (mix.equals("icons")) {
+                widths[i] = 16 << random.nextInt(4);
+                heights[i] = random.nextInt(4) == 0 ? widths[i] / 2 : widths[i];
+            } else {
+                widths[i] = 8 + random.nextInt(121);
+                heights[i] = 8 + random.nextInt(121);
+            }
+        }
+    }
+
+    private static void run(String mix, String mode, int[] widths, int[] heights, boolean rotate, boolean print) {
+        int count = widths.length;
+        AtlasPacker atlas = new AtlasPacker(4096, 16384, 1, rotate);
+        int[] rects = new int[count];
+        long start = System.nanoTime();
+        int packed = 0;
+        if (mode.equals("bulk")) {
+            packed = atlas.insertAll(widths, heights, count, rects);
+        } else {
+            for (int i = 0; i < count; i++)
+                if (atlas.insert(widths[i], heights[i]) >= 0)
+                    packed++;
+        }
+        double ms = (System.nanoTime() - start) / 1e6;
+        if (print)
+            System.out.printf("%-9s %-8s %6s %7d %9.1f%% %10d %6.1f %9.2f%n", mix, mode, rotate ? "yes" : "no",
+                    packed, atlas.getOccupancy() * 100, atlas.getUsedHeight(), ms, ms * 1000 / count);
+    }
+}
@@ -0,0 +1,110 @@
+package matt.noobgraphics.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import android.opengl.GLES20;
+
+import matt.noobgraphics.FakeGLBackend;
+import matt.noobgraphics.graphics.CommandList;
+import matt.noobgraphics.graphics.CommandReplayer;
+import matt.noobgraphics.graphics.ParallelCommandRecorder;
+import matt.noobgraphics.graphics.VertexBindings;
+import matt.noobgraphics.math.Matrix4;
+import matt.noobgraphics.mesh.MeshFile;
+import matt.noobgraphics.mesh.VertexLayout;
+
+/**
+ * Frame CPU time of recording a scene's draw commands with ParallelCommandRecorder on 1, 2, 4 ...
+ * up to the number of available cores, then replaying them on one thread into FakeGLBackend.
+ * Recording an object computes its MVP matrix, picks one of 8 programs and 64 meshes and keys
+ * it by program, mesh and depth; the lists are sorted on the recording threads.
+ *
+ * Plain main() on the unit test classpath. Optional arguments: objects, frames per measurement,
+ * most threads (default the core count; more than that shows the splitting overhead).
+ */
+public class CommandRecordingBenchmark {
+
+    private static class Scene implements ParallelCommandRecorder.Recorder {
+        final float[] mViewProjection = Matrix4.perspective(1, 1.5f, 0.1f, 100).m.clone();
+        final float[] mModels;
+        final int[] mMeshes;
+
+        Scene(int objects) {
+            Random random = new Random(1);
+            mModels = new float[objects * 16];
+            mMeshes = new int[objects];
+            for (int i = 0; i < objects; i++) {
+                float[] m = Matrix4.translate(random.nextFloat() * 20 - 10, random.nextFloat() * 4,
+                        -1 - random.nextFloat() * 50).m;
+                System.arraycopy(m, 0, mModels, i * 16, 16);
+                mMeshes[i] = random.nextInt(8 * 64);
+            }
+        }
+
+        @Override
+        public void record(CommandList list, int from, int to) {
+            for (int i = from; i < to; i++) {
+                int mesh = mMeshes[i];
+                int program = 1 + (mesh >> 6);
+                float z = -mModels[i * 16 + 14];
+                int depth = Math.min(0xFFFF, (int) (z * 1000));
+                int key = program << 28 | (mesh & 63) << 16 | depth;
+                int u = list.draw(key, program, 100 + mesh, 0, 1000 + mesh, GLES20.GL_UNSIGNED_SHORT, 0, 36);
+                float[] uniforms = list.getUniforms();
+                Matrix4.multiplyMM(uniforms, u, mViewProjection, 0, mModels, i * 16);
+                uniforms[u + 16] = 1;
+                uniforms[u + 17] = 0.5f;
+                uniforms[u + 18] = 0.25f;
+                uniforms[u + 19] = 1;
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        int objects = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int cores = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Scene scene = new Scene(objects);
+
+        System.out.println(objects + " objects, " + Runtime.getRuntime().availableProcessors() + " cores");
+        System.out.println("threads  record ms  replay ms  frame ms  speedup");
+        double single = 0;
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            double frame = run(scene, objects, threads, frames);
+            if (threads == 1)
+                single = frame;
+            System.out.printf(" %7.2fx%n", single / frame);
+        }
+        if (Integer.bitCount(cores) != 1) {
+            double frame = run(scene, objects, cores, frames);
+            System.out.printf(" %7.2fx%n", single / frame);
+        }
+    }
+
+    private static double run(Scene scene, int objects, int threads, int frames) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ParallelCommandRecorder recorder = new ParallelCommandRecorder(pool, threads);
+        FakeGLBackend gl = new FakeGLBackend();
+        CommandReplayer replayer = new CommandReplayer(gl, new VertexBindings(gl));
+        replayer.registerLayout(new VertexLayout().add(MeshFile.POSITION, 3, GLES20.GL_FLOAT, false));
+
+        for (int f = 0; f < frames; f++)
+            replayer.replay(recorder.getLists(), recorder.record(scene, objects));
+
+        long recordNanos = 0, replayNanos = 0;
+        for (int f = 0; f < frames; f++) {
+            long start = System.nanoTime();
+            int used = recorder.record(scene, objects);
+            long recorded = System.nanoTime();
+            replayer.replay(recorder.getLists(), used);
+            replayNanos += System.nanoTime() - recorded;
+            recordNanos += recorded - start;
+        }
+        pool.shutdown();
+
+        double record = recordNanos / 1e6 / frames, replay = replayNanos / 1e6 / frames;
+        System.out.printf("%7d %10.3f %10.3f %9.3f", threads, record, replay, record + replay);
+        return record + replay;
+    }
+}
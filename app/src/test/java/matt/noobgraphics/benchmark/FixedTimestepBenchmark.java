@@ -0,0 +1,62 @@
+package matt.noobgraphics.benchmark;
+
+import matt.noobgraphics.simulation.FixedTimestepLoop;
+import matt.noobgraphics.simulation.SimulationState;
+import matt.noobgraphics.simulation.SpinSimulation;
+import matt.noobgraphics.timing.Clock;
+
+/**
+ * Per-tick cost of FixedTimestepLoop (simulation step, state copies and publishing) and
+ * per-frame cost of interpolation, for a range of entity counts. A manual clock makes every
+ * advance() run exactly one tick, so the numbers contain no sleeping.
+ *
+ * Plain main() on the unit test classpath. Optional argument: ticks per measurement.
+ */
+public class FixedTimestepBenchmark {
+
+    private static class StepClock implements Clock {
+        long now;
+        @Override public long nanoTime() { return now; }
+    }
+
+    public static void main(String[] args) {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int[] entityCounts = { 1000, 5000, 20000, 100000 };
+
+        System.out.println("entities    ns/tick   ns/entity/tick   ns/interpolate");
+        for (int round = 0; round < 2; round++) {
+            for (int entities : entityCounts)
+                run(entities, ticks);
+        }
+    }
+
+    private static void run(int entities, int ticks) {
+        StepClock clock = new StepClock();
+        FixedTimestepLoop loop = new FixedTimestepLoop(new SpinSimulation(1.0f),
+                new SimulationState(entities), clock, 60.0f, 1);
+        SimulationState out = new SimulationState(entities);
+        long tick = loop.getTickNanos();
+
+        // warm up
+        for (int i = 0; i < ticks / 4; i++) {
+            clock.now += tick;
+            loop.advance();
+            loop.interpolate(clock.now + tick / 2, out);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            clock.now += tick;
+            loop.advance();
+        }
+        long tickCost = (System.nanoTime() - start) / ticks;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ticks; i++)
+            loop.interpolate(clock.now + (tick * (i % 16)) / 16, out);
+        long interpolateCost = (System.nanoTime() - start) / ticks;
+
+        System.out.printf("%8d %10d %16.2f %16d%n", entities, tickCost,
+                (double) tickCost / entities, interpolateCost);
+    }
+}
@@ -0,0 +1,63 @@
+package matt.noobgraphics.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import matt.noobgraphics.JvmAllocationCounter;
+import matt.noobgraphics.graphics.FrameAllocator;
+
+/**
+ * Hands out a frame's worth of small transient vertex buffers, as a sprite or debug line batcher
+ * would: with a fresh allocateDirect each, and from a FrameAllocator. Reports time and heap
+ * allocation per frame (allocateDirect's native memory isn't counted, only its wrappers).
+ *
+ * Plain main() on the unit test classpath. Optional argument: buffers per frame (default 2000).
+ */
+public class FrameAllocatorBenchmark {
+
+    public static void main(String[] args) {
+        int buffers = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int frames = 500;
+        int bytes = 4 * 24;     // a quad of position + uv + color
+        JvmAllocationCounter counter = new JvmAllocationCounter();
+        FrameAllocator allocator = new FrameAllocator(3, 64 * 1024);
+        System.out.printf("%d buffers of %d bytes per frame, %d frames%n", buffers, bytes, frames);
+        System.out.println("path              us/frame   allocated B/frame");
+
+        long sink = 0;
+        for (int round = 0; round < 3; round++) {
+            long allocated = counter.allocatedBytes();
+            long start = System.nanoTime();
+            for (int frame = 0; frame < frames; frame++) {
+                for (int i = 0; i < buffers; i++) {
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+                    buffer.putFloat(0, i);
+                    sink += buffer.capacity();
+                }
+            }
+            report("allocateDirect", start, counter.allocatedBytes() - allocated, frames);
+
+            allocated = counter.allocatedBytes();
+            start = System.nanoTime();
+            for (int frame = 0; frame < frames; frame++) {
+                allocator.beginFrame();
+                for (int i = 0; i < buffers; i++) {
+                    int offset = allocator.reserve(bytes, FrameAllocator.DEFAULT_ALIGNMENT);
+                    allocator.getChunk().putFloat(offset, i);
+                    sink += offset;
+                }
+                allocator.endFrame();
+            }
+            report("FrameAllocator", start, counter.allocatedBytes() - allocated, frames);
+        }
+        System.out.printf("high water %d KB, %d overflows, %d growths, %d KB held%n",
+                allocator.getHighWaterMark() / 1024, allocator.getOverflowCount(),
+                allocator.getGrowthCount(), allocator.getCapacity() / 1024);
+        if (sink == 42)
+            System.out.println();
+    }
+
+    private static void report(String name, long start, long allocated, int frames) {
+        System.out.printf("%-16s %10.1f %19d%n", name, (System.nanoTime() - start) / 1e3 / frames, allocated / frames);
+    }
+}
@@ -0,0 +1,74 @@
+package matt.noobgraphics.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.FloatBuffer;
+
+import matt.noobgraphics.mesh.MappedMesh;
+import matt.noobgraphics.mesh.Mesh;
+import matt.noobgraphics.mesh.MeshFile;
+import matt.noobgraphics.mesh.ObjLoader;
+
+/**
+ * Load time of a generated grid mesh from OBJ text against the memory mapped binary MeshFile.
+ * "mapped" is just opening the file; "mapped + touch" also reads every vertex once, which is
+ * the most the GL upload would have to wait for.
+ *
+ * Plain main() on the unit test classpath. Optional argument: grid size (default 700).
+ */
+public class MappedMeshBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int grid = args.length > 0 ? Integer.parseInt(args[0]) : 700;
+        File obj = File.createTempFile("bench", ".obj");
+        File binary = File.createTempFile("bench", ".ngm");
+        obj.deleteOnExit();
+        binary.deleteOnExit();
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(obj), 1 << 16);
+        for (int y = 0; y <= grid; y++)
+            for (int x = 0; x <= grid; x++)
+                out.write(("v " + (float) x / grid + " " + (float) y / grid + " 0\n").getBytes());
+        for (int y = 0; y < grid; y++) {
+            for (int x = 0; x < grid; x++) {
+                int i = y * (grid + 1) + x + 1;
+                out.write(("f " + i + " " + (i + 1) + " " + (i + grid + 2) + "\n").getBytes());
+                out.write(("f " + i + " " + (i + grid + 2) + " " + (i + grid + 1) + "\n").getBytes());
+            }
+        }
+        out.close();
+        MeshFile.write(ObjLoader.load(new FileInputStream(obj)), binary);
+
+        System.out.printf("%d triangles, obj %.1f MB, binary %.1f MB%n", 2 * grid * grid,
+                obj.length() / 1e6, binary.length() / 1e6);
+        System.out.println("path               ms");
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            Mesh mesh = ObjLoader.load(new FileInputStream(obj));
+            mesh.getPositionBuffer();
+            report("obj text", start);
+
+            start = System.nanoTime();
+            MappedMesh mapped = MappedMesh.open(binary);
+            report("mapped", start);
+
+            start = System.nanoTime();
+            mapped = MappedMesh.open(binary);
+            FloatBuffer vertices = mapped.getVertexFloats();
+            float sum = 0;
+            for (int i = 0; i < vertices.limit(); i++)
+                sum += vertices.get(i);
+            report("mapped + touch", start);
+            if (sum == 42)
+                System.out.println();
+        }
+    }
+
+    private static void report(String name, long start) {
+        System.out.printf("%-15s %8.2f%n", name, (System.nanoTime() - start) / 1e6);
+    }
+}
@@ -0,0 +1,158 @@
+package matt.noobgraphics.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import matt.noobgraphics.mesh.Mesh;
+import matt.noobgraphics.mesh.ObjLoader;
+import matt.noobgraphics.mesh.PlyLoader;
+
+/**
+ * Parse throughput and peak heap of the mesh loaders on a generated grid mesh (2 triangles per
+ * cell, millions of triangles), against a naive String.split / ArrayList&lt;Float&gt; OBJ loader.
+ *
+ * Plain main() on the unit test classpath. Optional argument: grid size (default 1000, i.e. 2M
+ * triangles). Run with a large -Xmx so the naive loader fits.
+ */
+public class MeshLoaderBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int grid = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        File obj = File.createTempFile("bench", ".obj");
+        File ply = File.createTempFile("bench", ".ply");
+        obj.deleteOnExit();
+        ply.deleteOnExit();
+        writeObj(obj, grid);
+        writePly(ply, grid);
+        System.out.printf("%d triangles, obj %.1f MB, binary ply %.1f MB%n",
+                2 * grid * grid, obj.length() / 1e6, ply.length() / 1e6);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(cores);
+        System.out.println("loader                 ms      MB/s   peak heap MB");
+        for (int round = 0; round < 2; round++) {
+            measure("obj naive", obj, new Load() { Object run(File f) throws IOException { return naiveObj(f); } });
+            measure("obj streaming", obj, new Load() { Object run(File f) throws IOException { return ObjLoader.load(new FileInputStream(f)); } });
+            final ForkJoinPool p = pool;
+            final int chunks = cores * 4;
+            measure("obj parallel x" + cores, obj, new Load() { Object run(File f) throws IOException {
+                RandomAccessFile file = new RandomAccessFile(f, "r");
+                try {
+                    return ObjLoader.load(file.getChannel(), p, chunks);
+                } finally {
+                    file.close();
+                }
+            } });
+            measure("ply binary", ply, new Load() { Object run(File f) throws IOException { return PlyLoader.load(new FileInputStream(f)); } });
+        }
+        pool.shutdown();
+    }
+
+    private abstract static class Load {
+        abstract Object run(File file) throws IOException;
+    }
+
+    private static void measure(String name, File file, Load load) throws IOException {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            pool.resetPeakUsage();
+        long start = System.nanoTime();
+        Object result = load.run(file);
+        double ms = (System.nanoTime() - start) / 1e6;
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                peak += pool.getPeakUsage().getUsed();
+        if (result instanceof Mesh)
+            ((Mesh) result).getPositionBuffer();
+        System.out.printf("%-18s %8.1f %9.1f %14.1f%n", name, ms, file.length() / 1e3 / ms, peak / 1e6);
+    }
+
+    private static void writeObj(File file, int grid) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+        StringBuilder line = new StringBuilder();
+        for (int y = 0; y <= grid; y++) {
+            for (int x = 0; x <= grid; x++) {
+                line.setLength(0);
+                line.append("v ").append((float) x / grid).append(' ').append((float) y / grid).append(' ')
+                        .append((float) Math.sin(x * 0.1) * 0.01f).append('\n');
+                out.write(line.toString().getBytes());
+            }
+        }
+        for (int y = 0; y < grid; y++) {
+            for (int x = 0; x < grid; x++) {
+                int i = y * (grid + 1) + x + 1;
+                line.setLength(0);
+                line.append("f ").append(i).append(' ').append(i + 1).append(' ').append(i + grid + 2).append('\n');
+                line.append("f ").append(i).append(' ').append(i + grid + 2).append(' ').append(i + grid + 1).append('\n');
+                out.write(line.toString().getBytes());
+            }
+        }
+        out.close();
+    }
+
+    private static void writePly(File file, int grid) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+        int vertices = (grid + 1) * (grid + 1);
+        out.write(("ply\nformat binary_little_endian 1.0\n" +
+                "element vertex " + vertices + "\nproperty float x\nproperty float y\nproperty float z\n" +
+                "element face " + (2 * grid * grid) + "\nproperty list uchar int vertex_indices\n" +
+                "end_header\n").getBytes());
+        ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        for (int y = 0; y <= grid; y++) {
+            for (int x = 0; x <= grid; x++) {
+                buffer.clear();
+                buffer.putFloat((float) x / grid).putFloat((float) y / grid).putFloat((float) Math.sin(x * 0.1) * 0.01f);
+                out.write(buffer.array(), 0, 12);
+            }
+        }
+        for (int y = 0; y < grid; y++) {
+            for (int x = 0; x < grid; x++) {
+                int i = y * (grid + 1) + x;
+                buffer.clear();
+                buffer.put((byte) 3).putInt(i).putInt(i + 1).putInt(i + grid + 2);
+                out.write(buffer.array(), 0, 13);
+                buffer.clear();
+                buffer.put((byte) 3).putInt(i).putInt(i + grid + 2).putInt(i + grid + 1);
+                out.write(buffer.array(), 0, 13);
+            }
+        }
+        out.close();
+    }
+
+    /**
+     * What a first attempt usually looks like
+     */
+    private static Object naiveObj(File file) throws IOException {
+        ArrayList<Float> positions = new ArrayList<>();
+        ArrayList<Integer> indices = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] tokens = line.trim().split("\\s+");
+            if (tokens[0].equals("v")) {
+                for (int i = 1; i <= 3; i++)
+                    positions.add(Float.parseFloat(tokens[i]));
+            } else if (tokens[0].equals("f")) {
+                for (int i = 1; i <= 3; i++)
+                    indices.add(Integer.parseInt(tokens[i].split("/")[0]) - 1);
+            }
+        }
+        reader.close();
+        return positions.size() + indices.size();
+    }
+}
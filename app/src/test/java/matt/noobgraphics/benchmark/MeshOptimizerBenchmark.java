@@ -0,0 +1,77 @@
+package matt.noobgraphics.benchmark;
+
+import java.util.Random;
+
+import matt.noobgraphics.mesh.Mesh;
+import matt.noobgraphics.mesh.MeshOptimizer;
+import matt.noobgraphics.mesh.VertexCacheStats;
+
+/**
+ * Simulated vertex cache efficiency of a grid mesh in generation order, shuffled, and after
+ * each optimization step, for FIFO caches of a few sizes and an LRU one, plus how long the
+ * steps take.
+ *
+ * Plain main() on the unit test classpath. Optional argument: grid size (default 500).
+ */
+public class MeshOptimizerBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        System.out.printf("%d triangles%n", 2 * size * size);
+        System.out.println("order               ms   FIFO 8 ACMR   FIFO 16 ACMR/ATVR   FIFO 32 ACMR   LRU 16 ACMR");
+
+        Mesh mesh = grid(size);
+        report("generated", mesh, 0);
+        shuffle(mesh);
+        report("shuffled", mesh, 0);
+
+        long start = System.nanoTime();
+        MeshOptimizer.optimizeVertexCache(mesh, MeshOptimizer.DEFAULT_CACHE_SIZE);
+        report("vertex cache", mesh, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        MeshOptimizer.optimizeOverdraw(mesh, MeshOptimizer.DEFAULT_CACHE_SIZE, MeshOptimizer.DEFAULT_OVERDRAW_THRESHOLD);
+        report("+ overdraw", mesh, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        MeshOptimizer.optimizeVertexFetch(mesh);
+        report("+ vertex fetch", mesh, System.nanoTime() - start);
+    }
+
+    private static void report(String name, Mesh mesh, long nanos) {
+        VertexCacheStats fifo16 = VertexCacheStats.analyze(mesh, 16, VertexCacheStats.FIFO);
+        System.out.printf("%-15s %7.1f %12.3f %12.3f/%.3f %14.3f %13.3f%n", name, nanos / 1e6,
+                VertexCacheStats.analyze(mesh, 8, VertexCacheStats.FIFO).getAcmr(),
+                fifo16.getAcmr(), fifo16.getAtvr(),
+                VertexCacheStats.analyze(mesh, 32, VertexCacheStats.FIFO).getAcmr(),
+                VertexCacheStats.analyze(mesh, 16, VertexCacheStats.LRU).getAcmr());
+    }
+
+    private static Mesh grid(int size) {
+        Mesh mesh = new Mesh((size + 1) * (size + 1), 2 * size * size);
+        for (int y = 0; y <= size; y++)
+            for (int x = 0; x <= size; x++)
+                mesh.positions.add(x, y, 0);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int i = y * (size + 1) + x;
+                mesh.indices.add(i, i + 1, i + size + 2);
+                mesh.indices.add(i, i + size + 2, i + size + 1);
+            }
+        }
+        return mesh;
+    }
+
+    private static void shuffle(Mesh mesh) {
+        Random random = new Random(1);
+        int[] indices = mesh.indices.array();
+        for (int t = mesh.getTriangleCount() - 1; t > 0; t--) {
+            int other = random.nextInt(t + 1);
+            for (int k = 0; k < 3; k++) {
+                int swap = indices[t * 3 + k];
+                indices[t * 3 + k] = indices[other * 3 + k];
+                indices[other * 3 + k] = swap;
+            }
+        }
+    }
+}
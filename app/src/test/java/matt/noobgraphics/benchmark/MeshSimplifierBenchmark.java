@@ -0,0 +1,72 @@
+package matt.noobgraphics.benchmark;
+
+import java.util.Random;
+
+import matt.noobgraphics.mesh.Mesh;
+import matt.noobgraphics.mesh.MeshLods;
+import matt.noobgraphics.mesh.MeshSimplifier;
+import matt.noobgraphics.util.IntList;
+
+/**
+ * Simplification speed and error against triangle count on a bumpy unit sphere, then the time
+ * for a whole default LOD chain.
+ *
+ * Plain main() on the unit test classpath. Optional argument: ring count (default 500, for a
+ * million triangles).
+ */
+public class MeshSimplifierBenchmark {
+
+    public static void main(String[] args) {
+        int rings = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        Mesh mesh = sphere(rings, rings * 2);
+        System.out.printf("%d vertices, %d triangles%n", mesh.getVertexCount(), mesh.getTriangleCount());
+        System.out.println("ratio    triangles        ms        error");
+
+        for (int round = 0; round < 2; round++) {
+            for (float ratio : new float[] { 0.5f, 0.25f, 0.1f, 0.01f, 0.001f }) {
+                long start = System.nanoTime();
+                MeshSimplifier simplifier = new MeshSimplifier(mesh);
+                int target = (int) (mesh.getTriangleCount() * ratio) * 3;
+                IntList simplified = simplifier.simplify(mesh.indices, target, Float.MAX_VALUE);
+                System.out.printf("%-6s %11d %9.1f %12.6f%n", ratio, simplified.size() / 3,
+                        (System.nanoTime() - start) / 1e6, simplifier.getError());
+            }
+        }
+
+        long start = System.nanoTime();
+        MeshLods lods = MeshLods.generate(mesh);
+        System.out.printf("LOD chain of %d levels: %.1f ms%n", lods.getLevelCount(), (System.nanoTime() - start) / 1e6);
+        for (int l = 0; l < lods.getLevelCount(); l++)
+            System.out.printf("  level %d: %d triangles, error %.6f%n", l, lods.indices[l].size() / 3, lods.errors[l]);
+    }
+
+    /** Unit sphere with a little noise, so no collapse is free */
+    private static Mesh sphere(int rings, int segments) {
+        Random random = new Random(3);
+        Mesh mesh = new Mesh((rings - 1) * segments + 2, 2 * rings * segments);
+        mesh.positions.add(0, 1, 0);
+        for (int r = 1; r < rings; r++) {
+            double theta = Math.PI * r / rings;
+            for (int s = 0; s < segments; s++) {
+                double phi = 2 * Math.PI * s / segments;
+                double radius = 1 + random.nextFloat() * 0.001;
+                mesh.positions.add((float) (radius * Math.sin(theta) * Math.cos(phi)),
+                        (float) (radius * Math.cos(theta)), (float) (radius * Math.sin(theta) * Math.sin(phi)));
+            }
+        }
+        mesh.positions.add(0, -1, 0);
+        int bottom = mesh.getVertexCount() - 1;
+        for (int s = 0; s < segments; s++) {
+            int next = (s + 1) % segments;
+            mesh.indices.add(0, 1 + next, 1 + s);
+            for (int r = 0; r < rings - 2; r++) {
+                int a = 1 + r * segments + s, b = 1 + r * segments + next;
+                mesh.indices.add(a, b, b + segments);
+                mesh.indices.add(a, b + segments, a + segments);
+            }
+            int last = 1 + (rings - 2) * segments;
+            mesh.indices.add(last + s, last + next, bottom);
+        }
+        return mesh;
+    }
+}
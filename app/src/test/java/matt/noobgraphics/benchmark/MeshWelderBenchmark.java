@@ -0,0 +1,106 @@
+package matt.noobgraphics.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import matt.noobgraphics.JvmAllocationCounter;
+import matt.noobgraphics.mesh.Mesh;
+import matt.noobgraphics.mesh.MeshWelder;
+import matt.noobgraphics.util.IntList;
+
+/**
+ * Welds a triangle soup grid with MeshWelder and with the usual HashMap of boxed vertex keys,
+ * reporting time and how much each one allocated.
+ *
+ * Plain main() on the unit test classpath; wants a big heap (-Xmx3g) at the default size.
+ * Optional argument: soup vertex count (default 10M).
+ */
+public class MeshWelderBenchmark {
+
+    /** What a boxed weld keys on */
+    private static final class Key {
+        final float x, y, z;
+
+        Key(float x, float y, float z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return Float.floatToIntBits(x) == Float.floatToIntBits(k.x)
+                    && Float.floatToIntBits(y) == Float.floatToIntBits(k.y)
+                    && Float.floatToIntBits(z) == Float.floatToIntBits(k.z);
+        }
+
+        @Override
+        public int hashCode() {
+            return (Float.floatToIntBits(x) * 31 + Float.floatToIntBits(y)) * 31 + Float.floatToIntBits(z);
+        }
+    }
+
+    public static void main(String[] args) {
+        int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        int size = (int) Math.sqrt(vertices / 6);
+        System.out.printf("%d soup vertices, %d after welding%n", size * size * 6, (size + 1) * (size + 1));
+        System.out.println("path            ms   allocated MB");
+
+        JvmAllocationCounter counter = new JvmAllocationCounter();
+        MeshWelder welder = new MeshWelder();
+        for (int round = 0; round < 3; round++) {
+            Mesh mesh = grid(size);
+            long allocated = counter.allocatedBytes();
+            long start = System.nanoTime();
+            welder.weld(mesh);
+            report("welder", start, counter.allocatedBytes() - allocated);
+            mesh = null;
+
+            Mesh soup = grid(size);
+            allocated = counter.allocatedBytes();
+            start = System.nanoTime();
+            boxedWeld(soup);
+            report("HashMap", start, counter.allocatedBytes() - allocated);
+        }
+    }
+
+    private static Mesh boxedWeld(Mesh soup) {
+        Map<Key, Integer> map = new HashMap<>();
+        Mesh out = new Mesh();
+        float[] p = soup.positions.array();
+        IntList indices = out.indices;
+        for (int v = 0; v < soup.getVertexCount(); v++) {
+            Key key = new Key(p[v * 3], p[v * 3 + 1], p[v * 3 + 2]);
+            Integer index = map.get(key);
+            if (index == null) {
+                index = map.size();
+                map.put(key, index);
+                out.positions.add(key.x, key.y, key.z);
+            }
+            indices.add(index);
+        }
+        return out;
+    }
+
+    private static Mesh grid(int size) {
+        Mesh mesh = new Mesh(size * size * 6, 0);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                mesh.positions.add(x, y, 0);
+                mesh.positions.add(x + 1, y, 0);
+                mesh.positions.add(x + 1, y + 1, 0);
+                mesh.positions.add(x, y, 0);
+                mesh.positions.add(x + 1, y + 1, 0);
+                mesh.positions.add(x, y + 1, 0);
+            }
+        }
+        return mesh;
+    }
+
+    private static void report(String name, long start, long bytes) {
+        System.out.printf("%-9s %8.1f %12.1f%n", name, (System.nanoTime() - start) / 1e6, bytes / 1e6);
+    }
+}
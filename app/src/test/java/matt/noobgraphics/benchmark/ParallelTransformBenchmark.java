@@ -0,0 +1,80 @@
+package matt.noobgraphics.benchmark;
+
+import java.util.concurrent.ForkJoinPool;
+
+import matt.noobgraphics.scene.ParallelTransformUpdater;
+import matt.noobgraphics.scene.TransformStore;
+
+/**
+ * Full world transform refresh with ParallelTransformUpdater for 1, 2, 4 ... up to the number of
+ * available cores, against the serial TransformStore.update(), on three tree shapes:
+ *   wide      every node a child of one of 16 roots (2 levels)
+ *   deep      64 long chains (n / 64 levels of 64 nodes)
+ *   balanced  a binary tree (log2(n) levels)
+ *
+ * Plain main() on the unit test classpath. Optional arguments: node count, frames per measurement.
+ */
+public class ParallelTransformBenchmark {
+
+    public static void main(String[] args) {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        System.out.println(nodes + " nodes, " + cores + " cores");
+        System.out.println("shape      levels   threads   serial ms  parallel ms  speedup");
+        String[] shapes = { "wide", "deep", "balanced" };
+        for (String shape : shapes) {
+            TransformStore store = build(shape, nodes);
+            for (int threads = 1; threads <= cores; threads *= 2)
+                run(shape, store, threads, frames);
+            if (Integer.bitCount(cores) != 1)
+                run(shape, store, cores, frames);
+        }
+    }
+
+    private static TransformStore build(String shape, int nodes) {
+        TransformStore store = new TransformStore(nodes);
+        for (int i = 0; i < nodes; i++) {
+            store.create();
+            store.setPosition(i, i % 7, 1, 0);
+            store.setRotation(i, 0, 0.0998f, 0, 0.995f);
+        }
+        for (int i = 1; i < nodes; i++) {
+            int parent;
+            if (shape.equals("wide"))
+                parent = i < 16 ? TransformStore.NONE : i % 16;
+            else if (shape.equals("deep"))
+                parent = i < 64 ? TransformStore.NONE : i - 64;
+            else
+                parent = (i - 1) / 2;
+            store.setParent(i, parent);
+        }
+        store.update();
+        return store;
+    }
+
+    private static void run(String shape, TransformStore store, int threads, int frames) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ParallelTransformUpdater updater = new ParallelTransformUpdater(pool);
+
+        for (int f = 0; f < frames; f++) {
+            store.update();
+            updater.update(store);
+        }
+
+        long start = System.nanoTime();
+        for (int f = 0; f < frames; f++)
+            store.update();
+        double serial = (System.nanoTime() - start) / 1e6 / frames;
+
+        start = System.nanoTime();
+        for (int f = 0; f < frames; f++)
+            updater.update(store);
+        double parallel = (System.nanoTime() - start) / 1e6 / frames;
+        pool.shutdown();
+
+        System.out.printf("%-9s %7d %9d %11.3f %12.3f %8.2fx%n", shape, store.getLevelCount(), threads,
+                serial, parallel, serial / parallel);
+    }
+}
@@ -0,0 +1,64 @@
+package matt.noobgraphics.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+
+import matt.noobgraphics.JvmAllocationCounter;
+import matt.noobgraphics.util.FloatList;
+
+/**
+ * Builds a frame's worth of vertex floats and exports them to a direct buffer, the way a batcher
+ * would every frame: with an ArrayList&lt;Float&gt; and a fresh allocateDirect, and with a reused
+ * FloatList and target buffer. Reports time and bytes allocated per frame.
+ *
+ * Plain main() on the unit test classpath. Optional argument: floats per frame (default 1M).
+ */
+public class PrimitiveListBenchmark {
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int frames = 20;
+        JvmAllocationCounter counter = new JvmAllocationCounter();
+        System.out.printf("%d floats per frame, %d frames%n", count, frames);
+        System.out.println("path                    ms/frame   allocated KB/frame");
+
+        FloatList list = new FloatList();
+        ByteBuffer target = null;
+        for (int round = 0; round < 3; round++) {
+            long allocated = counter.allocatedBytes();
+            long start = System.nanoTime();
+            float sink = 0;
+            for (int frame = 0; frame < frames; frame++) {
+                ArrayList<Float> boxed = new ArrayList<>();
+                for (int i = 0; i < count; i++)
+                    boxed.add(i * 0.5f);
+                FloatBuffer buffer = ByteBuffer.allocateDirect(boxed.size() * 4)
+                        .order(ByteOrder.nativeOrder()).asFloatBuffer();
+                for (Float value : boxed)
+                    buffer.put(value);
+                sink += buffer.get(count - 1);
+            }
+            report("ArrayList + allocate", start, counter.allocatedBytes() - allocated, frames);
+
+            allocated = counter.allocatedBytes();
+            start = System.nanoTime();
+            for (int frame = 0; frame < frames; frame++) {
+                list.clear();
+                for (int i = 0; i < count; i++)
+                    list.add(i * 0.5f);
+                target = list.toDirectBuffer(target);
+                sink += target.getFloat((count - 1) * 4);
+            }
+            report("FloatList + reuse", start, counter.allocatedBytes() - allocated, frames);
+            if (sink == 0)
+                System.out.println();
+        }
+    }
+
+    private static void report(String name, long start, long allocated, int frames) {
+        System.out.printf("%-22s %10.2f %20.1f%n", name, (System.nanoTime() - start) / 1e6 / frames,
+                allocated / 1024.0 / frames);
+    }
+}
@@ -0,0 +1,97 @@
+package matt.noobgraphics.benchmark;
+
+import java.util.Random;
+
+import android.opengl.GLES20;
+
+import matt.noobgraphics.FakeGLBackend;
+import matt.noobgraphics.graphics.GLResources;
+
+/**
+ * Replays a simulated access trace through GLResources under shrinking memory budgets. The
+ * world is a ring of objects, each with a mesh buffer (16 KB - 512 KB) and a texture shared by
+ * a few neighbours (64 KB - 4 MB); the camera circles the ring and draws what is within its view
+ * distance, plus a few random far objects (reflections, UI) each frame. Budgets are fractions of
+ * the whole world's size. Reports hit rate, evictions and re-streamed bytes per frame, and the
+ * cost of a get.
+ *
+ * Plain main() on the unit test classpath. Optional arguments: objects, frames.
+ */
+public class ResidencyBenchmark {
+
+    public static void main(String[] args) {
+        int objects = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int view = objects / 20;
+        Random random = new Random(3);
+
+        int[] meshBytes = new int[objects];
+        int[] textureBytes = new int[objects / 4];
+        long total = 0;
+        for (int i = 0; i < objects; i++)
+            total += meshBytes[i] = logUniform(random, 16 << 10, 512 << 10);
+        for (int i = 0; i < textureBytes.length; i++)
+            total += textureBytes[i] = logUniform(random, 64 << 10, 4 << 20);
+
+        // the trace: per frame the objects drawn, camera advancing one object every 4 frames
+        int[][] trace = new int[frames][];
+        for (int f = 0; f < frames; f++) {
+            int first = f / 4 % objects;
+            int[] drawn = new int[view + 4];
+            for (int i = 0; i < view; i++)
+                drawn[i] = (first + i) % objects;
+            for (int i = view; i < drawn.length; i++)
+                drawn[i] = random.nextInt(objects);
+            trace[f] = drawn;
+        }
+
+        System.out.printf("%d objects, %d textures, %.1f MB in all, %d drawn per frame, %d frames%n",
+                objects, textureBytes.length, total / 1e6, view + 4, frames);
+        System.out.println("budget  hit rate  evictions/frame  restreamed MB/frame  resident MB  ns/get");
+        double[] fractions = { 1.0, 0.5, 0.25, 0.12, 0.06 };
+        for (int round = 0; round < 2; round++)
+            for (double fraction : fractions)
+                run(meshBytes, textureBytes, trace, (long) (total * fraction), fraction, round == 1);
+    }
+
+    private static int logUniform(Random random, int min, int max) {
+        return (int) Math.exp(Math.log(min) + random.nextDouble() * (Math.log(max) - Math.log(min)));
+    }
+
+    private static void run(int[] meshBytes, int[] textureBytes, int[][] trace, long budget,
+                            double fraction, boolean print) {
+        FakeGLBackend gl = new FakeGLBackend();
+        GLResources resources = new GLResources(gl);
+        int[] meshes = new int[meshBytes.length];
+        for (int i = 0; i < meshes.length; i++)
+            meshes[i] = resources.register(GLResources.BUFFER,
+                    GLResources.buffer(GLES20.GL_ARRAY_BUFFER, null, meshBytes[i]));
+        int[] textures = new int[textureBytes.length];
+        for (int i = 0; i < textures.length; i++)
+            textures[i] = resources.register(GLResources.TEXTURE,
+                    GLResources.texture(1, textureBytes[i], GLES20.GL_ALPHA, GLES20.GL_UNSIGNED_BYTE, null));
+        resources.setBudget(budget);
+
+        long gets = 0, sink = 0;
+        long start = System.nanoTime();
+        for (int[] drawn : trace) {
+            resources.beginFrame();
+            for (int object : drawn) {
+                sink += resources.get(meshes[object]);
+                sink += resources.get(textures[object / 4]);
+                gets += 2;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        if (sink == 42)
+            System.out.println();
+
+        if (print) {
+            int frames = trace.length;
+            System.out.printf("%5.0f%% %9.4f %16.2f %20.2f %12.1f %7.1f%n", fraction * 100,
+                    resources.getHitRate(), (double) resources.getEvictions() / frames,
+                    resources.getEvictedBytes() / 1e6 / frames, resources.getResidentBytes() / 1e6,
+                    (double) nanos / gets);
+        }
+    }
+}
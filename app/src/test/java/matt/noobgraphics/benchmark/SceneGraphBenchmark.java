@@ -0,0 +1,67 @@
+package matt.noobgraphics.benchmark;
+
+import java.util.Random;
+
+import matt.noobgraphics.scene.SceneGraph;
+
+/**
+ * Per-frame cost of SceneGraph.update() with about 1% of the nodes moving each frame, against
+ * recomputing every world matrix, for 10k to 1M nodes. Trees are random with a bounded fan-out,
+ * so the moving nodes sit at all depths and drag differently sized subtrees along.
+ *
+ * Plain main() on the unit test classpath. Optional arguments: frames per measurement, percentage
+ * of nodes changed per frame.
+ */
+public class SceneGraphBenchmark {
+
+    public static void main(String[] args) {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        float percent = args.length > 1 ? Float.parseFloat(args[1]) : 1.0f;
+        int[] nodeCounts = { 10000, 100000, 1000000 };
+
+        System.out.println("   nodes  changed/frame  updated/frame  incremental ms  full ms");
+        for (int round = 0; round < 2; round++) {
+            for (int nodes : nodeCounts)
+                run(nodes, frames, percent);
+        }
+    }
+
+    private static SceneGraph build(int nodes, Random random) {
+        SceneGraph graph = new SceneGraph(nodes);
+        graph.createNode(SceneGraph.NO_PARENT);
+        // parent among the most recent nodes, which keeps depth around log(n)
+        for (int i = 1; i < nodes; i++)
+            graph.createNode(Math.max(0, i - 1 - random.nextInt(Math.min(i, 64))) / 2);
+        graph.update();
+        return graph;
+    }
+
+    private static void run(int nodes, int frames, float percent) {
+        Random random = new Random(nodes);
+        SceneGraph graph = build(nodes, random);
+        int changed = Math.max(1, (int) (nodes * percent / 100));
+        int[] targets = new int[changed * frames];
+        for (int i = 0; i < targets.length; i++)
+            targets[i] = random.nextInt(nodes);
+
+        long updated = 0;
+        long start = System.nanoTime();
+        for (int f = 0; f < frames; f++) {
+            for (int i = 0; i < changed; i++) {
+                int n = targets[f * changed + i];
+                graph.setTranslation(n, f, i, 0);
+            }
+            updated += graph.update();
+        }
+        double incremental = (System.nanoTime() - start) / 1e6 / frames;
+
+        start = System.nanoTime();
+        for (int f = 0; f < frames; f++) {
+            graph.invalidateAll();
+            graph.update();
+        }
+        double full = (System.nanoTime() - start) / 1e6 / frames;
+
+        System.out.printf("%8d %14d %14d %15.3f %8.3f%n", nodes, changed, updated / frames, incremental, full);
+    }
+}
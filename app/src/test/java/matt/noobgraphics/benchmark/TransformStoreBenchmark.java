@@ -0,0 +1,85 @@
+package matt.noobgraphics.benchmark;
+
+import java.util.Random;
+
+import matt.noobgraphics.math.Matrix4;
+import matt.noobgraphics.math.Quaternion;
+import matt.noobgraphics.math.Vector3;
+import matt.noobgraphics.scene.TransformStore;
+
+/**
+ * Full transform update (TRS to matrix, then parent multiply) for 10k to 1M entities, with
+ * TransformStore against an object-per-entity baseline where every entity owns its vectors,
+ * quaternion and matrices. A quarter of the entities have a parent.
+ *
+ * Plain main() on the unit test classpath. Optional argument: frames per measurement.
+ */
+public class TransformStoreBenchmark {
+
+    private static class Entity {
+        final Vector3 position = new Vector3();
+        final Quaternion rotation = new Quaternion();
+        final Vector3 scale = new Vector3(1);
+        final Matrix4 local = new Matrix4();
+        final Matrix4 world = new Matrix4();
+        Entity parent;
+    }
+
+    public static void main(String[] args) {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int[] counts = { 10000, 100000, 1000000 };
+
+        System.out.println("entities   objects ms   packed ms   speedup");
+        for (int round = 0; round < 2; round++) {
+            for (int count : counts)
+                run(count, frames);
+        }
+    }
+
+    private static void run(int count, int frames) {
+        Random random = new Random(count);
+        int[] parents = new int[count];
+        for (int i = 0; i < count; i++)
+            parents[i] = i > 0 && random.nextInt(4) == 0 ? random.nextInt(i) : TransformStore.NONE;
+
+        // baseline, entities in parent-first order like a typical hand-rolled update
+        Entity[] entities = new Entity[count];
+        for (int i = 0; i < count; i++) {
+            Entity e = new Entity();
+            e.position.v[0] = random.nextFloat();
+            e.rotation.setAxisAngle(0, 1, 0, random.nextFloat());
+            e.parent = parents[i] == TransformStore.NONE ? null : entities[parents[i]];
+            entities[i] = e;
+        }
+
+        TransformStore store = new TransformStore(count);
+        for (int i = 0; i < count; i++) {
+            store.create();
+            Entity e = entities[i];
+            store.setPosition(i, e.position.x(), e.position.y(), e.position.z());
+            store.setRotation(i, e.rotation.x(), e.rotation.y(), e.rotation.z(), e.rotation.w());
+            if (parents[i] != TransformStore.NONE)
+                store.setParent(i, parents[i]);
+        }
+        store.update();
+
+        long start = System.nanoTime();
+        for (int f = 0; f < frames; f++) {
+            for (Entity e : entities) {
+                e.local.setTRS(e.position, e.rotation, e.scale);
+                if (e.parent == null)
+                    System.arraycopy(e.local.m, 0, e.world.m, 0, Matrix4.MATRIX_SIZE);
+                else
+                    e.parent.world.multiply(e.local, e.world);
+            }
+        }
+        double objects = (System.nanoTime() - start) / 1e6 / frames;
+
+        start = System.nanoTime();
+        for (int f = 0; f < frames; f++)
+            store.update();
+        double packed = (System.nanoTime() - start) / 1e6 / frames;
+
+        System.out.printf("%8d %12.3f %11.3f %9.2fx%n", count, objects, packed, objects / packed);
+    }
+}
@@ -0,0 +1,114 @@
+package matt.noobgraphics.benchmark;
+
+import java.util.Arrays;
+
+import matt.noobgraphics.concurrent.TripleBuffer;
+
+/**
+ * Publish-to-acquire latency of TripleBuffer between two threads, compared with handing the
+ * same snapshot over under a lock. Plain main() on the unit test classpath, argument is the
+ * number of samples per round. Needs at least two cores for meaningful numbers.
+ */
+public class TripleBufferBenchmark {
+
+    private static class Snapshot {
+        volatile long publishedAt;
+        final float[] payload = new float[64];
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int samples = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+        for (int round = 0; round < 3; round++) {
+            report("triple buffer", tripleBuffer(samples));
+            report("synchronized", locked(samples));
+        }
+    }
+
+    private static long[] tripleBuffer(final int samples) throws InterruptedException {
+        final TripleBuffer<Snapshot> buffer =
+                new TripleBuffer<>(new Snapshot(), new Snapshot(), new Snapshot());
+        final long[] latencies = new long[samples];
+
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int n = 0;
+                while (n < samples) {
+                    if (buffer.hasUpdate()) {
+                        Snapshot s = buffer.acquire();
+                        latencies[n++] = System.nanoTime() - s.publishedAt;
+                    } else {
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+        consumer.start();
+
+        while (consumer.isAlive()) {
+            Snapshot s = buffer.beginWrite();
+            for (int i = 0; i < s.payload.length; i++)
+                s.payload[i] = i;
+            s.publishedAt = System.nanoTime();
+            buffer.publish();
+            spin(2000);
+        }
+        return latencies;
+    }
+
+    private static long[] locked(final int samples) throws InterruptedException {
+        final Object lock = new Object();
+        final Snapshot shared = new Snapshot();
+        final Snapshot local = new Snapshot();
+        final boolean[] fresh = new boolean[1];
+        final long[] latencies = new long[samples];
+
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int n = 0;
+                while (n < samples) {
+                    boolean got = false;
+                    synchronized (lock) {
+                        if (fresh[0]) {
+                            System.arraycopy(shared.payload, 0, local.payload, 0, local.payload.length);
+                            local.publishedAt = shared.publishedAt;
+                            fresh[0] = false;
+                            got = true;
+                        }
+                    }
+                    if (got)
+                        latencies[n++] = System.nanoTime() - local.publishedAt;
+                    else
+                        Thread.yield();
+                }
+            }
+        });
+        consumer.start();
+
+        while (consumer.isAlive()) {
+            synchronized (lock) {
+                for (int i = 0; i < shared.payload.length; i++)
+                    shared.payload[i] = i;
+                shared.publishedAt = System.nanoTime();
+                fresh[0] = true;
+            }
+            spin(2000);
+        }
+        return latencies;
+    }
+
+    private static void spin(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) { }
+    }
+
+    private static void report(String name, long[] latencies) {
+        Arrays.sort(latencies);
+        System.out.printf("%-14s p50 %6d ns  p99 %7d ns  max %8d ns%n", name,
+                latencies[latencies.length / 2],
+                latencies[(int) (latencies.length * 0.99)],
+                latencies[latencies.length - 1]);
+    }
+}
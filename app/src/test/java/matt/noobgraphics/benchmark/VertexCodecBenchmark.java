@@ -0,0 +1,96 @@
+package matt.noobgraphics.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import matt.noobgraphics.mesh.Mesh;
+import matt.noobgraphics.mesh.MeshFile;
+import matt.noobgraphics.mesh.VertexCodec;
+
+/**
+ * Encodes a mesh with every attribute as floats and quantized, reporting vertex data size, encode
+ * and decode throughput per attribute, and the largest error each quantization introduced.
+ *
+ * Plain main() on the unit test classpath. Optional argument: vertex count (default 1M).
+ */
+public class VertexCodecBenchmark {
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        Mesh mesh = randomMesh(count);
+
+        int floatSize = MeshFile.encode(mesh, null, null, false).capacity();
+        int quantizedSize = MeshFile.encode(mesh, null, null, true).capacity();
+        System.out.printf("%d vertices: %.1f MB as floats, %.1f MB quantized (%.0f%% smaller)%n", count,
+                floatSize / 1e6, quantizedSize / 1e6, 100.0 * (floatSize - quantizedSize) / floatSize);
+
+        float[] positions = mesh.positions.array();
+        float[] normals = mesh.normals.array();
+        float[] texCoords = mesh.texCoords.array();
+        float[] colors = mesh.colors.array();
+        float[] bounds = mesh.computeBounds(new float[6]);
+        ByteBuffer out = ByteBuffer.allocateDirect(count * 16).order(ByteOrder.LITTLE_ENDIAN);
+        float[] decoded = new float[count * 4];
+
+        System.out.println("attribute     encode Mvert/s  decode Mvert/s  max error");
+        for (int round = 0; round < 5; round++) {
+            boolean last = round == 4;
+
+            long start = System.nanoTime();
+            VertexCodec.encodePositions(positions, count, bounds, out, 0, 16);
+            long encoded = System.nanoTime();
+            VertexCodec.decodePositions(out, 0, 16, count, bounds, decoded);
+            if (last)
+                report("position", count, start, encoded, System.nanoTime(), maxError(positions, decoded, count * 3));
+
+            start = System.nanoTime();
+            VertexCodec.encodeOctahedral(normals, count, out, 8, 16);
+            encoded = System.nanoTime();
+            VertexCodec.decodeOctahedral(out, 8, 16, count, decoded);
+            if (last)
+                report("normal", count, start, encoded, System.nanoTime(), maxError(normals, decoded, count * 3));
+
+            start = System.nanoTime();
+            VertexCodec.encodeHalf(texCoords, 2, count, out, 12, 16);
+            encoded = System.nanoTime();
+            VertexCodec.decodeHalf(out, 12, 16, 2, count, decoded);
+            if (last)
+                report("tex coord", count, start, encoded, System.nanoTime(), maxError(texCoords, decoded, count * 2));
+
+            start = System.nanoTime();
+            VertexCodec.encodeUnorm8(colors, 4, count, out, 0, 16);
+            encoded = System.nanoTime();
+            VertexCodec.decodeUnorm8(out, 0, 16, 4, count, decoded);
+            if (last)
+                report("color", count, start, encoded, System.nanoTime(), maxError(colors, decoded, count * 4));
+        }
+    }
+
+    private static Mesh randomMesh(int count) {
+        Random random = new Random(1);
+        Mesh mesh = new Mesh(count, 0);
+        for (int v = 0; v < count; v++) {
+            mesh.positions.add(random.nextFloat() * 100 - 50, random.nextFloat() * 10, random.nextFloat() * 100 - 50);
+            float x = (float) random.nextGaussian(), y = (float) random.nextGaussian(), z = (float) random.nextGaussian();
+            float length = (float) Math.sqrt(x * x + y * y + z * z);
+            mesh.normals.add(x / length, y / length, z / length);
+            mesh.texCoords.add(random.nextFloat(), random.nextFloat());
+            mesh.colors.add(random.nextFloat(), random.nextFloat(), random.nextFloat());
+            mesh.colors.add(1);
+        }
+        return mesh;
+    }
+
+    private static float maxError(float[] expected, float[] actual, int count) {
+        float max = 0;
+        for (int i = 0; i < count; i++)
+            max = Math.max(max, Math.abs(expected[i] - actual[i]));
+        return max;
+    }
+
+    private static void report(String name, int count, long start, long encoded, long decoded, float error) {
+        System.out.printf("%-12s %15.1f %15.1f  %.2g%n", name,
+                count * 1e3 / (encoded - start), count * 1e3 / (decoded - encoded), error);
+    }
+}
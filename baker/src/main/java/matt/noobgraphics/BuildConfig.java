@@ -0,0 +1,9 @@
+package matt.noobgraphics;
+
+/**
+ * Stands in for the BuildConfig the Android plugin generates for the app, which the shared math
+ * sources refer to
+ */
+public final class BuildConfig {
+    public static final boolean DEBUG = false;
+}
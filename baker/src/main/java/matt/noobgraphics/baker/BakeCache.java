@@ -0,0 +1,97 @@
+package matt.noobgraphics.baker;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Remembers the content hash each asset was last baked from, so unchanged inputs are skipped.
+ * Stored as "hash path" lines in a text file next to the outputs.
+ */
+public class BakeCache {
+    private final File mFile;
+    private final Map<String, String> mHashes = new TreeMap<>();
+
+    public BakeCache(File file) throws IOException {
+        mFile = file;
+        if (!file.exists())
+            return;
+        BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                if (space > 0)
+                    mHashes.put(line.substring(space + 1), line.substring(0, space));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * SHA-256 of the file's bytes and a salt, as hex. The salt should change whenever the
+     * output for the same input would, e.g. the pipeline version and options.
+     */
+    public static String hash(File file, String salt) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(salt.getBytes(StandardCharsets.UTF_8));
+        byte[] buffer = new byte[64 * 1024];
+        InputStream in = new FileInputStream(file);
+        try {
+            int read;
+            while ((read = in.read(buffer)) > 0)
+                digest.update(buffer, 0, read);
+        } finally {
+            in.close();
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest())
+            hex.append(String.format("%02x", b & 0xFF));
+        return hex.toString();
+    }
+
+    public synchronized boolean isUpToDate(String asset, String hash) {
+        return hash.equals(mHashes.get(asset));
+    }
+
+    public synchronized void put(String asset, String hash) {
+        mHashes.put(asset, hash);
+    }
+
+    public synchronized void remove(String asset) {
+        mHashes.remove(asset);
+    }
+
+    /**
+     * Writes the cache, replacing the old file in one step
+     */
+    public synchronized void save() throws IOException {
+        File tmp = new File(mFile.getPath() + ".tmp");
+        BufferedWriter writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8);
+        try {
+            for (Map.Entry<String, String> entry : mHashes.entrySet()) {
+                writer.write(entry.getValue() + " " + entry.getKey());
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+        Files.move(tmp.toPath(), mFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,52 @@
+package matt.noobgraphics.baker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What happened to one asset, with the time each step took
+ */
+public class BakeResult {
+    public static final int BAKED = 0;
+    public static final int SKIPPED = 1;
+    public static final int FAILED = 2;
+
+    public final String asset;
+    public int status;
+    public String error;
+
+    private final Map<String, Long> mStepNanos = new LinkedHashMap<>();
+    private long mStepStart = System.nanoTime();
+
+    public BakeResult(String asset) {
+        this.asset = asset;
+    }
+
+    /**
+     * Records the time since the previous step ended as the given step
+     */
+    public void endStep(String step) {
+        long now = System.nanoTime();
+        mStepNanos.put(step, now - mStepStart);
+        mStepStart = now;
+    }
+
+    public Map<String, Long> getStepNanos() {
+        return mStepNanos;
+    }
+
+    public long getTotalNanos() {
+        long total = 0;
+        for (long nanos : mStepNanos.values())
+            total += nanos;
+        return total;
+    }
+
+    public String getStatusName() {
+        switch (status) {
+            case BAKED: return "baked";
+            case SKIPPED: return "skipped";
+            default: return "FAILED";
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package matt.noobgraphics.baker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Offline asset baker: finds every source mesh under an input directory and bakes it, in
+ * parallel, into a {@link matt.noobgraphics.mesh.MeshFile} at the same relative path under the
+ * output directory.
+ *
+ * Inputs whose content hash matches the cache from the last run, and whose output still exists,
+ * are skipped. Sources that would bake to the same output (a.obj and a.ply) all fail instead.
+ *
+ * <pre>
+ * java matt.noobgraphics.baker.Baker &lt;input dir&gt; &lt;output dir&gt; [--threads N] [--force] [--float]
+ * </pre>
+ */
+public class Baker {
+    public static final String OUTPUT_EXTENSION = ".ngm";
+    public static final String CACHE_FILE = ".bakecache";
+
+    // bump when the output for the same input changes, to invalidate every cache
+    static final String PIPELINE_VERSION = "mesh-5";
+
+    private final File mInput;
+    private final File mOutput;
+    private final int mThreads;
+    private boolean mForce;
+    private boolean mQuantize = true;
+
+    public Baker(File input, File output, int threads) {
+        mInput = input;
+        mOutput = output;
+        mThreads = Math.max(1, threads);
+    }
+
+    /**
+     * Rebake everything, ignoring the cache
+     */
+    public void setForce(boolean force) {
+        mForce = force;
+    }
+
+    /**
+     * Write quantized vertex attributes (the default) or floats
+     */
+    public void setQuantize(boolean quantize) {
+        mQuantize = quantize;
+    }
+
+    /**
+     * @return one result per source asset, sorted by path
+     */
+    public List<BakeResult> run() throws IOException {
+        if (!mInput.isDirectory())
+            throw new IOException("No input directory " + mInput);
+        List<String> assets = new ArrayList<>();
+        find(mInput, "", assets);
+
+        if (!mOutput.isDirectory() && !mOutput.mkdirs())
+            throw new IOException("Can't create " + mOutput);
+        final BakeCache cache = new BakeCache(new File(mOutput, CACHE_FILE));
+
+        // a.obj and a.ply would both write a.ngm, concurrently; bake neither
+        Map<String, Integer> outputs = new HashMap<>();
+        for (String asset : assets) {
+            Integer count = outputs.get(outputName(asset));
+            outputs.put(outputName(asset), count == null ? 1 : count + 1);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(mThreads);
+        List<Future<BakeResult>> futures = new ArrayList<>(assets.size());
+        for (final String asset : assets) {
+            if (outputs.get(outputName(asset)) > 1) {
+                futures.add(null);
+                continue;
+            }
+            futures.add(pool.submit(new Callable<BakeResult>() {
+                @Override
+                public BakeResult call() {
+                    return bake(asset, cache);
+                }
+            }));
+        }
+
+        List<BakeResult> results = new ArrayList<>(assets.size());
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                Future<BakeResult> future = futures.get(i);
+                results.add(future != null ? future.get() : collision(assets.get(i), cache));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Bake task failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        cache.save();
+        return results;
+    }
+
+    private static void find(File dir, String prefix, List<String> out) {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return;
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory())
+                find(file, prefix + file.getName() + "/", out);
+            else if (MeshBaker.canBake(file))
+                out.add(prefix + file.getName());
+        }
+    }
+
+    static String outputName(String asset) {
+        int dot = asset.lastIndexOf('.');
+        return asset.substring(0, dot) + OUTPUT_EXTENSION;
+    }
+
+    private static BakeResult collision(String asset, BakeCache cache) {
+        cache.remove(asset);
+        BakeResult result = new BakeResult(asset);
+        result.status = BakeResult.FAILED;
+        result.error = "Another source also bakes to " + outputName(asset);
+        return result;
+    }
+
+    private BakeResult bake(String asset, BakeCache cache) {
+        BakeResult result = new BakeResult(asset);
+        File source = new File(mInput, asset);
+        File output = new File(mOutput, outputName(asset));
+        try {
+            String hash = BakeCache.hash(source, PIPELINE_VERSION + (mQuantize ? "" : "-float"));
+            result.endStep("hash");
+            if (!mForce && output.exists() && cache.isUpToDate(asset, hash)) {
+                result.status = BakeResult.SKIPPED;
+                return result;
+            }
+
+            MeshBaker.bake(source, output, mQuantize, result);
+            cache.put(asset, hash);
+            result.status = BakeResult.BAKED;
+        } catch (IOException | RuntimeException e) {
+            cache.remove(asset);
+            result.status = BakeResult.FAILED;
+            result.error = e.toString();
+        }
+        return result;
+    }
+
+    /**
+     * Prints one line per asset with its step times, then totals
+     */
+    public static void printReport(List<BakeResult> results, long wallNanos, PrintStream out) {
+        int baked = 0, skipped = 0, failed = 0;
+        long cpu = 0;
+        for (BakeResult result : results) {
+            StringBuilder line = new StringBuilder(String.format("%-8s %9.1f ms  %s",
+                    result.getStatusName(), result.getTotalNanos() / 1e6, result.asset));
+            for (Map.Entry<String, Long> step : result.getStepNanos().entrySet())
+                line.append(String.format("  %s %.1f", step.getKey(), step.getValue() / 1e6));
+            if (result.error != null)
+                line.append("  ").append(result.error);
+            out.println(line);
+
+            cpu += result.getTotalNanos();
+            if (result.status == BakeResult.BAKED) baked++;
+            else if (result.status == BakeResult.SKIPPED) skipped++;
+            else failed++;
+        }
+        out.printf("%d baked, %d skipped, %d failed; %.1f ms total, %.1f ms summed over assets%n",
+                baked, skipped, failed, wallNanos / 1e6, cpu / 1e6);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean force = false;
+        boolean quantize = true;
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length)
+                threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--force"))
+                force = true;
+            else if (args[i].equals("--float"))
+                quantize = false;
+            else
+                paths.add(args[i]);
+        }
+        if (paths.size() != 2) {
+            System.err.println("usage: Baker <input dir> <output dir> [--threads N] [--force] [--float]");
+            System.exit(2);
+        }
+
+        Baker baker = new Baker(new File(paths.get(0)), new File(paths.get(1)), threads);
+        baker.setForce(force);
+        baker.setQuantize(quantize);
+        long start = System.nanoTime();
+        List<BakeResult> results = baker.run();
+        printReport(results, System.nanoTime() - start, System.out);
+
+        for (BakeResult result : results)
+            if (result.status == BakeResult.FAILED)
+                System.exit(1);
+    }
+}
@@ -0,0 +1,58 @@
+package matt.noobgraphics.baker;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import matt.noobgraphics.mesh.Mesh;
+import matt.noobgraphics.mesh.MeshConverter;
+import matt.noobgraphics.mesh.MeshFile;
+import matt.noobgraphics.mesh.MeshLods;
+import matt.noobgraphics.mesh.MeshNormals;
+import matt.noobgraphics.mesh.MeshOptimizer;
+import matt.noobgraphics.mesh.MeshWelder;
+
+/**
+ * Turns one source mesh into a {@link MeshFile} ready for the app
+ */
+public final class MeshBaker {
+    private MeshBaker() {}
+
+    public static boolean canBake(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".obj") || name.endsWith(".ply");
+    }
+
+    /**
+     * Bakes source into output, recording step times in result. The output is written to a
+     * temporary file first, so a failed bake never leaves a half written one behind.
+     * @param quantize whether to write compact vertex attributes rather than floats
+     */
+    public static void bake(File source, File output, boolean quantize, BakeResult result) throws IOException {
+        Mesh mesh = MeshConverter.load(source);
+        result.endStep("load");
+
+        new MeshWelder().weld(mesh);
+        result.endStep("weld");
+
+        if (!mesh.hasNormals()) {
+            MeshNormals.compute(mesh);
+            result.endStep("normals");
+        }
+
+        MeshOptimizer.optimize(mesh);
+        result.endStep("optimize");
+
+        MeshLods lods = MeshLods.generate(mesh);
+        result.endStep("lod");
+
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs())
+            throw new IOException("Can't create " + parent);
+        File tmp = new File(output.getPath() + ".tmp");
+        lods.write(mesh, quantize, tmp);
+        Files.move(tmp.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        result.endStep("write");
+    }
+}
@@ -0,0 +1,179 @@
+package matt.noobgraphics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import matt.noobgraphics.baker.BakeResult;
+import matt.noobgraphics.baker.Baker;
+import matt.noobgraphics.mesh.MappedMesh;
+import matt.noobgraphics.mesh.MeshFile;
+import matt.noobgraphics.mesh.VertexCodec;
+
+import static org.junit.Assert.*;
+
+public class BakerUnitTest {
+    private static final String SQUARE =
+            "v -0.5 0.5 0\nv -0.5 -0.5 0\nv 0.5 -0.5 0\nv 0.5 0.5 0\nf 1 2 3 4\n";
+    private static final String TRIANGLE =
+            "ply\nformat ascii 1.0\nelement vertex 3\nproperty float x\nproperty float y\n" +
+            "property float z\nelement face 1\nproperty list uchar int vertex_indices\nend_header\n" +
+            "0 0 0\n1 0 0\n0 1 0\n3 0 1 2\n";
+
+    private File mInput;
+    private File mOutput;
+
+    @Before
+    public void setUp() throws IOException {
+        mInput = Files.createTempDirectory("bake-in").toFile();
+        mOutput = Files.createTempDirectory("bake-out").toFile();
+        write("square.obj", SQUARE);
+        write("props/triangle.ply", TRIANGLE);
+        write("readme.txt", "not a mesh");
+    }
+
+    @After
+    public void tearDown() {
+        delete(mInput);
+        delete(mOutput);
+    }
+
+    private void write(String path, String text) throws IOException {
+        File file = new File(mInput, path);
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null)
+            for (File child : children)
+                delete(child);
+        file.delete();
+    }
+
+    private List<BakeResult> bake() throws IOException {
+        return new Baker(mInput, mOutput, 2).run();
+    }
+
+    private static int count(List<BakeResult> results, int status) {
+        int count = 0;
+        for (BakeResult result : results)
+            if (result.status == status)
+                count++;
+        return count;
+    }
+
+    @Test
+    public void testBakesEveryMesh() throws IOException {
+        List<BakeResult> results = bake();
+        assertEquals(2, results.size());
+        assertEquals("props/triangle.ply", results.get(0).asset);
+        assertEquals("square.obj", results.get(1).asset);
+        assertEquals(2, count(results, BakeResult.BAKED));
+
+        MappedMesh square = MappedMesh.open(new File(mOutput, "square.ngm"));
+        assertEquals(4, square.getVertexCount());
+        assertEquals(6, square.getIndexCount());
+        assertEquals(1, square.getLodCount());
+        assertEquals(3, square.getLodIndexCount(0));
+        // the source has no normals, so the baker generated them
+        int normal = square.findAttribute(MeshFile.NORMAL);
+        assertTrue(normal >= 0);
+        float[] normals = new float[12];
+        VertexCodec.decodeOctahedral(square.getVertexData(), square.getAttributeOffset(normal),
+                square.getVertexStride(), 4, normals);
+        assertEquals(1, normals[2], 1e-6f);
+        assertTrue(square.hasQuantizedPositions());
+
+        assertTrue(new File(mOutput, "props/triangle.ngm").isFile());
+        assertTrue(results.get(1).getStepNanos().containsKey("load"));
+    }
+
+    @Test
+    public void testSkipsUnchanged() throws IOException {
+        bake();
+        File output = new File(mOutput, "square.ngm");
+        long modified = output.lastModified();
+
+        List<BakeResult> results = bake();
+        assertEquals(2, count(results, BakeResult.SKIPPED));
+        assertEquals(modified, output.lastModified());
+    }
+
+    @Test
+    public void testRebakesChanged() throws IOException {
+        bake();
+        write("square.obj", SQUARE + "v 0 0 1\nf 1 2 5\n");
+        List<BakeResult> results = bake();
+        assertEquals(BakeResult.SKIPPED, results.get(0).status);
+        assertEquals(BakeResult.BAKED, results.get(1).status);
+        assertEquals(5, MappedMesh.open(new File(mOutput, "square.ngm")).getVertexCount());
+    }
+
+    @Test
+    public void testRebakesMissingOutput() throws IOException {
+        bake();
+        assertTrue(new File(mOutput, "square.ngm").delete());
+        assertEquals(1, count(bake(), BakeResult.BAKED));
+    }
+
+    @Test
+    public void testForce() throws IOException {
+        bake();
+        Baker baker = new Baker(mInput, mOutput, 1);
+        baker.setForce(true);
+        assertEquals(2, count(baker.run(), BakeResult.BAKED));
+    }
+
+    @Test
+    public void testFloatOutputRebakes() throws IOException {
+        bake();
+        Baker baker = new Baker(mInput, mOutput, 1);
+        baker.setQuantize(false);
+        assertEquals(2, count(baker.run(), BakeResult.BAKED));
+        MappedMesh square = MappedMesh.open(new File(mOutput, "square.ngm"));
+        assertFalse(square.hasQuantizedPositions());
+        assertEquals(MeshFile.TYPE_FLOAT, square.getAttributeType(square.findAttribute(MeshFile.NORMAL)));
+    }
+
+    @Test
+    public void testReportsFailures() throws IOException {
+        write("broken.obj", "v 0 0 0\nf 1 2 3\n");
+        List<BakeResult> results = bake();
+        BakeResult broken = results.get(0);
+        assertEquals("broken.obj", broken.asset);
+        assertEquals(BakeResult.FAILED, broken.status);
+        assertNotNull(broken.error);
+        assertFalse(new File(mOutput, "broken.ngm").exists());
+        assertEquals(2, count(results, BakeResult.BAKED));
+
+        // failures aren't cached
+        assertEquals(BakeResult.FAILED, bake().get(0).status);
+    }
+
+    @Test
+    public void testFailsOnOutputCollision() throws IOException {
+        write("square.ply", TRIANGLE);
+        List<BakeResult> results = bake();
+        assertEquals(3, results.size());
+        assertEquals("square.obj", results.get(1).asset);
+        assertEquals(BakeResult.FAILED, results.get(1).status);
+        assertEquals("square.ply", results.get(2).asset);
+        assertEquals(BakeResult.FAILED, results.get(2).status);
+        assertTrue(results.get(2).error.contains("square.ngm"));
+        assertFalse(new File(mOutput, "square.ngm").exists());
+        assertEquals(BakeResult.BAKED, results.get(0).status);
+    }
+}